@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.ma2;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Element access to a rank 3 ArrayDouble: through an {@link IndexIterator}, with {@link Index#set(int, int, int)},
+ * and by runs with {@link Array#forEachDouble}. Contiguous, strided section and transposed Arrays take different
+ * Index implementations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexBenchmark {
+
+  @Param({"contiguous", "section", "transpose"})
+  public String layout;
+
+  private Array array;
+  private int[] shape;
+
+  @Setup
+  public void setup() throws InvalidRangeException {
+    Array data = Array.factory(DataType.DOUBLE, new int[] {10, 400, 500});
+    IndexIterator ii = data.getIndexIterator();
+    for (int count = 0; ii.hasNext(); count++)
+      ii.setDoubleNext(count % 1000);
+    switch (layout) {
+      case "section":
+        array = data.section(new Section("0:9:2, 0:399:2, 0:499:2").getRanges());
+        break;
+      case "transpose":
+        array = data.transpose(1, 2);
+        break;
+      default:
+        array = data;
+    }
+    shape = array.getShape();
+  }
+
+  @Benchmark
+  public double iterator() {
+    double sum = 0;
+    IndexIterator ii = array.getIndexIterator();
+    while (ii.hasNext())
+      sum += ii.getDoubleNext();
+    return sum;
+  }
+
+  @Benchmark
+  public double indexSet() {
+    double sum = 0;
+    Index index = array.getIndex();
+    for (int i = 0; i < shape[0]; i++) {
+      for (int j = 0; j < shape[1]; j++) {
+        for (int k = 0; k < shape[2]; k++)
+          sum += array.getDouble(index.set(i, j, k));
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double forEachDouble() {
+    double[] sum = new double[1];
+    array.forEachDouble(d -> sum[0] += d);
+    return sum[0];
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.ma2;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link MAMath} reductions and copies, on a contiguous Array, a strided section of one and a transposed one.
+ * Every 100th value is the missing value.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MAMathBenchmark {
+  private static final double MISSING = -9999.0;
+
+  @Param({"double", "float", "short"})
+  public String dataType;
+
+  @Param({"contiguous", "section", "transpose"})
+  public String layout;
+
+  private Array array;
+  private Array result;
+
+  @Setup
+  public void setup() throws InvalidRangeException {
+    Array data = Array.factory(DataType.getType(dataType), new int[] {10, 400, 500});
+    Random random = new Random(42);
+    IndexIterator ii = data.getIndexIterator();
+    for (int count = 0; ii.hasNext(); count++)
+      ii.setDoubleNext(count % 100 == 0 ? MISSING : Math.round(random.nextGaussian() * 1000));
+    switch (layout) {
+      case "section":
+        array = data.section(new Section("0:9:2, 0:399:2, 0:499:2").getRanges());
+        break;
+      case "transpose":
+        array = data.transpose(1, 2);
+        break;
+      default:
+        array = data;
+    }
+    result = Array.factory(DataType.DOUBLE, array.getShape());
+  }
+
+  @Benchmark
+  public double sumDouble() {
+    return MAMath.sumDouble(array);
+  }
+
+  @Benchmark
+  public double sumDoubleSkipMissingData() {
+    return MAMath.sumDoubleSkipMissingData(array, MISSING);
+  }
+
+  @Benchmark
+  public MAMath.MinMax getMinMax() {
+    return MAMath.getMinMax(array);
+  }
+
+  @Benchmark
+  public MAMath.MinMax getMinMaxSkipMissingData() {
+    return MAMath.getMinMaxSkipMissingData(array, MISSING);
+  }
+
+  @Benchmark
+  public Array copyDouble() {
+    MAMath.copyDouble(result, array);
+    return result;
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/**
+ * {@link CoordinateAxis1D#findCoordElement(double)} and findCoordElementBounded() for a regular axis, which is
+ * computed, and an irregular one, which is a binary search over the cell edges. A tenth of the values are outside
+ * the axis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CoordinateAxis1DBenchmark {
+  private static final int NLAT = 1801;
+  private static final int NVALUES = 10 * 1000;
+
+  @Param({"regular", "irregular"})
+  public String axis;
+
+  private File file;
+  private NetcdfDataset ncd;
+  private CoordinateAxis1D coordAxis;
+  private double[] values;
+
+  @Setup
+  public void setup() throws IOException, InvalidRangeException {
+    file = File.createTempFile("CoordinateAxis1DBenchmark", ".nc");
+    file.deleteOnExit();
+    NetcdfFormatWriter.Builder writerb = NetcdfFormatWriter.createNewNetcdf3(file.getPath());
+    writerb.addDimension("regular", NLAT);
+    writerb.addDimension("irregular", NLAT);
+    writerb.addVariable("regular", DataType.DOUBLE, "regular")
+        .addAttribute(new Attribute(CDM.UNITS, "degrees_north"));
+    writerb.addVariable("irregular", DataType.DOUBLE, "irregular")
+        .addAttribute(new Attribute(CDM.UNITS, "degrees_north"));
+
+    // irregular is closer together near the poles, like a Gaussian grid drawn on the sphere
+    double[] regular = new double[NLAT];
+    double[] irregular = new double[NLAT];
+    for (int i = 0; i < NLAT; i++) {
+      regular[i] = -90.0 + i * 0.1;
+      irregular[i] = Math.toDegrees(Math.asin(-1.0 + 2.0 * i / (NLAT - 1)));
+    }
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      writer.write("regular", Array.makeFromJavaArray(regular));
+      writer.write("irregular", Array.makeFromJavaArray(irregular));
+    }
+
+    ncd = NetcdfDatasets.openDataset(file.getPath());
+    coordAxis = (CoordinateAxis1D) ncd.findCoordinateAxis(axis);
+    if (coordAxis.isRegular() != axis.equals("regular"))
+      throw new IllegalStateException(axis + " isRegular = " + coordAxis.isRegular());
+
+    Random random = new Random(42);
+    values = new double[NVALUES];
+    for (int i = 0; i < NVALUES; i++)
+      values[i] = -99.0 + 198.0 * random.nextDouble();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    ncd.close();
+    file.delete();
+  }
+
+  @Benchmark
+  public long findCoordElement() {
+    long sum = 0;
+    for (double value : values)
+      sum += coordAxis.findCoordElement(value);
+    return sum;
+  }
+
+  @Benchmark
+  public long findCoordElementBounded() {
+    long sum = 0;
+    for (double value : values)
+      sum += coordAxis.findCoordElementBounded(value);
+    return sum;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * Decoding of one GRIB-2 record on a 0.25 degree global grid, with the data section unpacked by
+ * {@link ucar.nc2.grib.BitUnpacker} or by the original BitReader decoders, for simple packing without and with a
+ * bitmap (a land mask), and complex packing with spatial differencing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Grib2BulkUnpackerBenchmark {
+  private static final int NX = 1440, NY = 721;
+
+  @Param({"simple", "simpleBitmap", "spatialDifferencing"})
+  public String packing;
+
+  @Param({"true", "false"})
+  public boolean bulkUnpacker;
+
+  private File file;
+  private RandomAccessFile raf;
+  private Grib2Record record;
+
+  @Setup
+  public void setup() throws IOException {
+    file = File.createTempFile("Grib2BulkUnpackerBenchmark", ".grib2");
+    file.deleteOnExit();
+    // a temperature-like field, with a land mask made of the same waves
+    float[] values = new float[NX * NY];
+    boolean[] land = new boolean[NX * NY];
+    for (int j = 0; j < NY; j++) {
+      double lat = Math.toRadians(90.0 - j * 0.25);
+      for (int i = 0; i < NX; i++) {
+        double lon = Math.toRadians(i * 0.25);
+        double wave = Math.sin(4 * lon) * Math.cos(3 * lat);
+        values[j * NX + i] = (float) (250.0 + 50.0 * Math.cos(lat) + 5.0 * wave);
+        land[j * NX + i] = wave > 0.3;
+      }
+    }
+    int drsTemplate = packing.equals("spatialDifferencing") ? 3 : 0;
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+      new Grib2MessageWriter(NX, NY, 2).write(out, drsTemplate, values, packing.equals("simpleBitmap") ? land : null);
+    }
+
+    raf = new RandomAccessFile(file.getPath(), "r");
+    Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+    if (!scanner.hasNext())
+      throw new IllegalStateException("no GRIB-2 records in " + file);
+    record = scanner.next();
+    Grib2DataReader.useBulkUnpacker = bulkUnpacker;
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Grib2DataReader.useBulkUnpacker = true;
+    raf.close();
+    file.delete();
+  }
+
+  @Benchmark
+  public float[] readData() throws IOException {
+    return record.readData(raf);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * Decoding of one GRIB-2 record through {@link Grib2DataReader}, for data representation templates 0 (simple
+ * packing), 2 (complex packing), 3 (complex packing with spatial differencing), 40 (JPEG 2000) and 41 (PNG).
+ * <p/>
+ * The messages for 0, 2, 3 and 41 are encoded at setup from a 0.5 degree global field. There is no JPEG 2000 encoder
+ * at hand, so template 40 decodes the first record of the GRIB-2 file named by the system property
+ * {@value #JPEG2000_FILE}, which the jmh task sets to a file in grib/src/test/data.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Grib2DataReaderBenchmark {
+  public static final String JPEG2000_FILE = "cdm.jmh.grib2.jpeg2000";
+  private static final int NX = 720, NY = 361;
+
+  @Param({"0", "2", "3", "40", "41"})
+  public int drsTemplate;
+
+  private File file;
+  private RandomAccessFile raf;
+  private Grib2Record record;
+
+  @Setup
+  public void setup() throws IOException {
+    String filename;
+    if (drsTemplate == 40) {
+      filename = System.getProperty(JPEG2000_FILE);
+      if (filename == null || !new File(filename).exists())
+        throw new IllegalStateException("-D" + JPEG2000_FILE + " must name a GRIB-2 file with JPEG 2000 packing");
+    } else {
+      file = File.createTempFile("Grib2DataReaderBenchmark", ".grib2");
+      file.deleteOnExit();
+      // a temperature-like field: a smooth gradient from the poles to the equator with some waves on it
+      float[] values = new float[NX * NY];
+      for (int j = 0; j < NY; j++) {
+        double lat = Math.toRadians(90.0 - j * 0.5);
+        for (int i = 0; i < NX; i++) {
+          double lon = Math.toRadians(i * 0.5);
+          values[j * NX + i] = (float) (250.0 + 50.0 * Math.cos(lat) + 5.0 * Math.sin(4 * lon) * Math.cos(3 * lat));
+        }
+      }
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+        new Grib2MessageWriter(NX, NY, 2).write(out, drsTemplate, values);
+      }
+      filename = file.getPath();
+    }
+
+    raf = new RandomAccessFile(filename, "r");
+    Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+    if (!scanner.hasNext())
+      throw new IllegalStateException("no GRIB-2 records in " + filename);
+    record = scanner.next();
+    int template = record.getDataRepresentationSection().getDataTemplate();
+    if (template != drsTemplate)
+      throw new IllegalStateException(filename + " has data representation template " + template);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    raf.close();
+    if (file != null)
+      file.delete();
+  }
+
+  @Benchmark
+  public float[] readData() throws IOException {
+    return record.readData(raf);
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferUShort;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+/**
+ * Encodes a field on a global lat/lon grid as a GRIB-2 message, with data representation template 5.0 (simple
+ * packing), 5.2 (complex packing), 5.3 (complex packing and second order spatial differencing) or 5.41 (PNG).
+ * The grid definition is template 3.0, the product definition template 4.0, and there is a bitmap only if one is
+ * given, with simple packing.
+ * Only used to make benchmark files on the fly; the encoding is simple rather than compact.
+ */
+class Grib2MessageWriter {
+  private static final int GROUP_LENGTH = 16; // complex packing group length
+
+  private final int nx, ny;
+  private final int decimalScale;
+
+  /**
+   * Constructor.
+   *
+   * @param nx number of points along a parallel
+   * @param ny number of points along a meridian
+   * @param decimalScale values are kept to this many decimal digits
+   */
+  Grib2MessageWriter(int nx, int ny, int decimalScale) {
+    this.nx = nx;
+    this.ny = ny;
+    this.decimalScale = decimalScale;
+  }
+
+  /** Write values, in scan mode 0 order, as a message with the given data representation template. */
+  void write(OutputStream out, int drsTemplate, float[] values) throws IOException {
+    write(out, drsTemplate, values, null);
+  }
+
+  /**
+   * Write values, in scan mode 0 order, as a message with the given data representation template.
+   *
+   * @param bitmap if not null, only the points that are true have a value. Only with simple packing.
+   */
+  void write(OutputStream out, int drsTemplate, float[] values, boolean[] bitmap) throws IOException {
+    int npoints = nx * ny;
+    if (values.length != npoints || (bitmap != null && bitmap.length != npoints))
+      throw new IllegalArgumentException("need " + npoints + " values");
+    if (bitmap != null && drsTemplate != 0)
+      throw new UnsupportedOperationException("bitmap only with simple packing");
+
+    // scaled integers of the points with a value, relative to the minimum
+    double dd = Math.pow(10, decimalScale);
+    int[] scaled = new int[npoints];
+    int ndata = 0;
+    int min = Integer.MAX_VALUE;
+    for (int i = 0; i < npoints; i++) {
+      if (bitmap == null || bitmap[i]) {
+        scaled[ndata] = (int) Math.round(values[i] * dd);
+        min = Math.min(min, scaled[ndata++]);
+      }
+    }
+    scaled = Arrays.copyOf(scaled, ndata);
+    for (int i = 0; i < ndata; i++)
+      scaled[i] -= min;
+
+    ByteArrayOutputStream drs = new ByteArrayOutputStream();
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    switch (drsTemplate) {
+      case 0:
+        simplePacking(scaled, min, drs, data);
+        break;
+      case 2:
+      case 3:
+        complexPacking(scaled, min, drsTemplate == 3, drs, data);
+        break;
+      case 41:
+        pngPacking(scaled, min, drs, data);
+        break;
+      default:
+        throw new UnsupportedOperationException("Unsupported DRS template = " + drsTemplate);
+    }
+
+    ByteArrayOutputStream sections = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(sections);
+    // section 1: identification
+    dos.writeInt(21);
+    dos.write(new byte[] {1, 0, 7, 0, 0, 2, 1, 1});
+    dos.writeShort(2020);
+    dos.write(new byte[] {1, 1, 0, 0, 0, 0, 1});
+    // section 3: grid definition, template 3.0
+    dos.writeInt(72);
+    dos.write(new byte[] {3, 0});
+    dos.writeInt(npoints);
+    dos.write(new byte[] {0, 0, 0, 0, 6, 0});
+    dos.writeInt(0);
+    dos.write(0);
+    dos.writeInt(0);
+    dos.write(0);
+    dos.writeInt(0);
+    dos.writeInt(nx);
+    dos.writeInt(ny);
+    dos.writeInt(0);
+    dos.writeInt(-1);
+    double di = 360.0 / nx;
+    double dj = 180.0 / (ny - 1);
+    dos.writeInt(signMagnitude(90000000));
+    dos.writeInt(0);
+    dos.write(48);
+    dos.writeInt(signMagnitude(-90000000));
+    dos.writeInt((int) Math.round((360.0 - di) * 1.0e6));
+    dos.writeInt((int) Math.round(di * 1.0e6));
+    dos.writeInt((int) Math.round(dj * 1.0e6));
+    dos.write(0);
+    // section 4: product definition, template 4.0, temperature at the surface
+    dos.writeInt(34);
+    dos.write(new byte[] {4, 0, 0, 0, 0, 0, 0, 2, 0, 96, 0, 0, 0, 1});
+    dos.writeInt(0);
+    dos.write(new byte[] {1, 0});
+    dos.writeInt(0);
+    dos.write(new byte[] {(byte) 255, (byte) 255});
+    dos.writeInt(-1);
+    // section 5: data representation
+    dos.writeInt(11 + drs.size());
+    dos.write(5);
+    dos.writeInt(ndata);
+    dos.writeShort(drsTemplate);
+    drs.writeTo(dos);
+    // section 6: bitmap
+    if (bitmap == null) {
+      dos.writeInt(6);
+      dos.write(new byte[] {6, (byte) 255});
+    } else {
+      byte[] bits = new byte[(npoints + 7) / 8];
+      for (int i = 0; i < npoints; i++) {
+        if (bitmap[i])
+          bits[i / 8] |= (byte) (0x80 >>> (i % 8));
+      }
+      dos.writeInt(6 + bits.length);
+      dos.write(new byte[] {6, 0});
+      dos.write(bits);
+    }
+    // section 7: data
+    dos.writeInt(5 + data.size());
+    dos.write(7);
+    data.writeTo(dos);
+    dos.flush();
+
+    DataOutputStream msg = new DataOutputStream(out);
+    msg.writeBytes("GRIB");
+    msg.write(new byte[] {0, 0, 0, 2});
+    msg.writeLong(16 + sections.size() + 4);
+    sections.writeTo(msg);
+    msg.writeBytes("7777");
+    msg.flush();
+  }
+
+  // template 5.0 fields: R, E, D, number of bits, type of original field values
+  private void writeTemplate50(DataOutputStream drs, int reference, int nbits) throws IOException {
+    drs.writeFloat(reference);
+    drs.writeShort(0);
+    drs.writeShort(decimalScale);
+    drs.write(nbits);
+    drs.write(0);
+  }
+
+  private void simplePacking(int[] scaled, int reference, ByteArrayOutputStream drs, ByteArrayOutputStream data)
+      throws IOException {
+    int nbits = bitsNeeded(max(scaled, 0, scaled.length));
+    writeTemplate50(new DataOutputStream(drs), reference, nbits);
+    BitWriter bits = new BitWriter(data);
+    for (int value : scaled)
+      bits.write(value, nbits);
+    bits.flush();
+  }
+
+  private void pngPacking(int[] scaled, int reference, ByteArrayOutputStream drs, ByteArrayOutputStream data)
+      throws IOException {
+    if (bitsNeeded(max(scaled, 0, scaled.length)) > 16)
+      throw new IllegalArgumentException("values need more than 16 bits");
+    writeTemplate50(new DataOutputStream(drs), reference, 16);
+    BufferedImage image = new BufferedImage(nx, ny, BufferedImage.TYPE_USHORT_GRAY);
+    short[] pixels = ((DataBufferUShort) image.getRaster().getDataBuffer()).getData();
+    for (int i = 0; i < scaled.length; i++)
+      pixels[i] = (short) scaled[i];
+    ImageIO.write(image, "png", data);
+  }
+
+  /*
+   * Complex packing (template 7.2): the values are split into groups of GROUP_LENGTH, the group minimum is the group
+   * reference (X1) and each group has its own bit width for the differences (X2). With spatial differencing (template
+   * 7.3), second order differences, less their minimum, are packed instead, after the first two values and the
+   * minimum.
+   */
+  private void complexPacking(int[] scaled, int reference, boolean spatialDifferencing, ByteArrayOutputStream drs,
+      ByteArrayOutputStream data) throws IOException {
+    int npoints = scaled.length;
+    int[] packed = scaled;
+    int hmin = 0;
+    if (spatialDifferencing) {
+      packed = new int[npoints];
+      hmin = Integer.MAX_VALUE;
+      for (int i = 2; i < npoints; i++) {
+        packed[i] = scaled[i] - 2 * scaled[i - 1] + scaled[i - 2];
+        hmin = Math.min(hmin, packed[i]);
+      }
+      for (int i = 2; i < npoints; i++)
+        packed[i] -= hmin;
+    }
+
+    int ngroups = (npoints + GROUP_LENGTH - 1) / GROUP_LENGTH;
+    int lastLength = npoints - (ngroups - 1) * GROUP_LENGTH;
+    int[] refs = new int[ngroups];
+    int[] widths = new int[ngroups];
+    for (int g = 0; g < ngroups; g++) {
+      int start = g * GROUP_LENGTH;
+      int end = Math.min(start + GROUP_LENGTH, npoints);
+      int gmin = Integer.MAX_VALUE;
+      for (int i = start; i < end; i++)
+        gmin = Math.min(gmin, packed[i]);
+      refs[g] = gmin;
+      widths[g] = bitsNeeded(max(packed, start, end) - gmin);
+    }
+    int refBits = bitsNeeded(max(refs, 0, ngroups));
+    int widthBits = bitsNeeded(max(widths, 0, ngroups));
+    int lengthBits = 1; // all scaled group lengths are 0: the true length of the last group is in the DRS
+
+    DataOutputStream dos = new DataOutputStream(drs);
+    writeTemplate50(dos, reference, refBits);
+    dos.write(1); // group splitting method: general
+    dos.write(0); // no explicit missing values
+    dos.writeInt(-1);
+    dos.writeInt(-1);
+    dos.writeInt(ngroups);
+    dos.write(0); // reference for group widths
+    dos.write(widthBits);
+    dos.writeInt(GROUP_LENGTH); // reference for group lengths
+    dos.write(1); // length increment
+    dos.writeInt(lastLength);
+    dos.write(lengthBits);
+    if (spatialDifferencing) {
+      dos.write(2); // second order
+      dos.write(4); // bytes for the extra descriptors
+    }
+
+    BitWriter bits = new BitWriter(data);
+    if (spatialDifferencing) {
+      bits.write(signMagnitude(scaled[0]), 32);
+      bits.write(signMagnitude(npoints > 1 ? scaled[1] : 0), 32);
+      bits.write(signMagnitude(hmin), 32);
+    }
+    for (int ref : refs)
+      bits.write(ref, refBits);
+    bits.flush();
+    for (int width : widths)
+      bits.write(width, widthBits);
+    bits.flush();
+    for (int g = 0; g < ngroups; g++)
+      bits.write(0, lengthBits);
+    bits.flush();
+    for (int g = 0; g < ngroups; g++) {
+      int start = g * GROUP_LENGTH;
+      int end = Math.min(start + GROUP_LENGTH, npoints);
+      for (int i = start; i < end; i++)
+        bits.write(packed[i] - refs[g], widths[g]);
+    }
+    bits.flush();
+  }
+
+  private static int max(int[] values, int start, int end) {
+    int result = 0;
+    for (int i = start; i < end; i++)
+      result = Math.max(result, values[i]);
+    return result;
+  }
+
+  private static int bitsNeeded(int value) {
+    return 32 - Integer.numberOfLeadingZeros(value);
+  }
+
+  // GRIB encodes negative numbers with a sign bit
+  private static int signMagnitude(int value) {
+    return value < 0 ? (0x80000000 | -value) : value;
+  }
+
+  /** Packs unsigned values most significant bit first. flush() pads to a byte boundary. */
+  private static class BitWriter {
+    private final ByteArrayOutputStream out;
+    private long buffer;
+    private int nbuffered;
+
+    BitWriter(ByteArrayOutputStream out) {
+      this.out = out;
+    }
+
+    void write(int value, int nbits) {
+      if (nbits == 0)
+        return;
+      buffer = (buffer << nbits) | (value & (0xffffffffL >>> (32 - nbits)));
+      nbuffered += nbits;
+      while (nbuffered >= 8) {
+        nbuffered -= 8;
+        out.write((int) (buffer >>> nbuffered));
+      }
+    }
+
+    void flush() {
+      if (nbuffered > 0)
+        write(0, 8 - nbuffered);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/**
+ * Reads through {@link H5iospNew} of a whole variable, a strided section and a subset, for a contiguous variable
+ * (H5iospNew uses LayoutRegular), a chunked variable (H5tiledLayout) and a chunked variable with the shuffle and
+ * deflate filters ({@link H5tiledLayoutBB}). Set decodeThreads to decode the filtered chunks in parallel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class H5ReadBenchmark {
+  private static final int NY = 2000, NX = 2000, CHUNK = 200; // 16 Mbytes of ints
+
+  @Param({"contiguous", "chunked", "deflate"})
+  public String variable;
+
+  @Param({"1"})
+  public int decodeThreads;
+
+  private File file;
+  private NetcdfFile ncfile;
+  private Variable v;
+  private Section strided, subset;
+
+  @Setup
+  public void setup() throws IOException, InvalidRangeException {
+    file = File.createTempFile("H5ReadBenchmark", ".h5");
+    file.deleteOnExit();
+    // a smooth field, which compresses about as well as model output does
+    new H5fileWriter().addContiguous("contiguous", NY, NX, H5ReadBenchmark::value)
+        .addChunked("chunked", NY, NX, CHUNK, CHUNK, false, H5ReadBenchmark::value)
+        .addChunked("deflate", NY, NX, CHUNK, CHUNK, true, H5ReadBenchmark::value).write(file.getPath());
+
+    H5tiledLayoutBB.setDecodeThreads(decodeThreads);
+    ncfile = NetcdfFiles.open(file.getPath());
+    v = ncfile.findVariable(variable);
+    strided = new Section("0:1999:5, 0:1999:5");
+    subset = new Section("250:449, 1250:1649");
+  }
+
+  private static int value(int y, int x) {
+    return (int) (10000 * Math.sin(y * 0.01) * Math.cos(x * 0.013)) + (x * 7 + y * 3) % 17;
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    ncfile.close();
+    file.delete();
+    H5tiledLayoutBB.setDecodeThreads(1);
+  }
+
+  @Benchmark
+  public Array readAll() throws IOException {
+    return v.read();
+  }
+
+  @Benchmark
+  public Array readStrided() throws IOException, InvalidRangeException {
+    return v.read(strided);
+  }
+
+  @Benchmark
+  public Array readSubset() throws IOException, InvalidRangeException {
+    return v.read(subset);
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a minimal HDF5 file with 2D int datasets, contiguous or chunked, optionally with the shuffle and deflate
+ * filters. Superblock version 0, version 1 object headers, a symbol table root group and version 1 chunk B-trees:
+ * the layout that the HDF5 library writes by default, and that H5iospNew reads most often.
+ * The library is not needed, so benchmark files can be made on the fly.
+ */
+class H5fileWriter {
+  private static final long UNDEF = -1L;
+  private static final int BTREE_LEAF = 32; // max entries in a chunk B-tree node
+
+  private static class Dataset {
+    final String name;
+    final int[] shape;
+    final int[] chunk; // null = contiguous
+    final boolean deflate;
+    final IntBinaryOperator value;
+
+    Dataset(String name, int[] shape, int[] chunk, boolean deflate, IntBinaryOperator value) {
+      this.name = name;
+      this.shape = shape;
+      this.chunk = chunk;
+      this.deflate = deflate;
+      this.value = value;
+    }
+  }
+
+  private final List<Dataset> datasets = new ArrayList<>();
+  private ByteBuffer bb;
+
+  /** Add a contiguous dataset, value(i, j) gives the data. */
+  H5fileWriter addContiguous(String name, int nx, int ny, IntBinaryOperator value) {
+    datasets.add(new Dataset(name, new int[] {nx, ny}, null, false, value));
+    return this;
+  }
+
+  /** Add a chunked dataset, with shuffle and deflate if deflate is true. */
+  H5fileWriter addChunked(String name, int nx, int ny, int cx, int cy, boolean deflate, IntBinaryOperator value) {
+    datasets.add(new Dataset(name, new int[] {nx, ny}, new int[] {cx, cy}, deflate, value));
+    return this;
+  }
+
+  void write(String filename) throws IOException {
+    long size = 4096;
+    for (Dataset d : datasets)
+      size += 2L * d.shape[0] * d.shape[1] * 4 + 4096;
+    bb = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+    bb.position(96); // superblock, filled in at the end
+
+    // local heap data: the dataset names
+    ByteArrayOutputStream heapData = new ByteArrayOutputStream();
+    heapData.write(new byte[8]);
+    long[] nameOffsets = new long[datasets.size()];
+    long[] headers = new long[datasets.size()];
+    for (int i = 0; i < datasets.size(); i++) {
+      Dataset d = datasets.get(i);
+      nameOffsets[i] = heapData.size();
+      byte[] name = d.name.getBytes("UTF-8");
+      heapData.write(name);
+      heapData.write(new byte[8 - name.length % 8]);
+      headers[i] = d.chunk == null ? writeContiguous(d) : writeChunked(d);
+    }
+    heapData.write(new byte[8]);
+
+    // symbol table node
+    align();
+    long snod = position();
+    bb.put("SNOD".getBytes("US-ASCII")).put((byte) 1).put((byte) 0).putShort((short) datasets.size());
+    for (int i = 0; i < datasets.size(); i++) {
+      bb.putLong(nameOffsets[i]).putLong(headers[i]).putInt(0).putInt(0).put(new byte[16]);
+    }
+
+    // group B-tree, the keys are heap offsets
+    align();
+    long groupBtree = position();
+    bb.put("TREE".getBytes("US-ASCII")).put((byte) 0).put((byte) 0).putShort((short) 1).putLong(UNDEF).putLong(UNDEF);
+    bb.putLong(0).putLong(snod).putLong(nameOffsets[nameOffsets.length - 1]);
+
+    align();
+    long heapDataAddress = position();
+    bb.put(heapData.toByteArray());
+    align();
+    long heap = position();
+    bb.put("HEAP".getBytes("US-ASCII")).put((byte) 0).put(new byte[3]).putLong(heapData.size()).putLong(UNDEF)
+        .putLong(heapDataAddress);
+
+    align();
+    ByteBuffer stab = message(0x11, 16);
+    stab.putLong(groupBtree).putLong(heap);
+    long root = objectHeader(stab);
+    align();
+    long eof = position();
+
+    bb.position(0);
+    bb.put(new byte[] {(byte) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n'});
+    bb.put(new byte[] {0, 0, 0, 0, 0, 8, 8, 0}).putShort((short) 4).putShort((short) 16).putInt(0);
+    bb.putLong(0).putLong(UNDEF).putLong(eof).putLong(UNDEF);
+    bb.putLong(0).putLong(root).putInt(1).putInt(0).putLong(groupBtree).putLong(heap);
+
+    try (OutputStream out = new FileOutputStream(filename)) {
+      out.write(bb.array(), 0, (int) eof);
+    }
+  }
+
+  private long position() {
+    return bb.position();
+  }
+
+  private void align() {
+    while (bb.position() % 8 != 0)
+      bb.put((byte) 0);
+  }
+
+  private long writeContiguous(Dataset d) {
+    align();
+    long address = position();
+    for (int i = 0; i < d.shape[0]; i++) {
+      for (int j = 0; j < d.shape[1]; j++)
+        bb.putInt(d.value.applyAsInt(i, j));
+    }
+    long size = position() - address;
+    align();
+
+    ByteBuffer layout = message(0x8, 18);
+    layout.put((byte) 3).put((byte) 1).putLong(address).putLong(size);
+    return objectHeader(dataspace(d), datatype(), layout);
+  }
+
+  private long writeChunked(Dataset d) throws IOException {
+    int nx = (d.shape[0] + d.chunk[0] - 1) / d.chunk[0];
+    int ny = (d.shape[1] + d.chunk[1] - 1) / d.chunk[1];
+    ByteBuffer chunk = ByteBuffer.allocate(d.chunk[0] * d.chunk[1] * 4).order(ByteOrder.LITTLE_ENDIAN);
+
+    // the chunks in row major order, each entry is (size, offset i, offset j, address)
+    List<long[]> entries = new ArrayList<>();
+    for (int ci = 0; ci < nx; ci++) {
+      for (int cj = 0; cj < ny; cj++) {
+        chunk.clear();
+        for (int i = ci * d.chunk[0]; i < (ci + 1) * d.chunk[0]; i++) {
+          for (int j = cj * d.chunk[1]; j < (cj + 1) * d.chunk[1]; j++)
+            chunk.putInt(i < d.shape[0] && j < d.shape[1] ? d.value.applyAsInt(i, j) : 0);
+        }
+        byte[] data = d.deflate ? deflate(shuffle(chunk.array(), 4)) : chunk.array();
+        entries.add(new long[] {data.length, ci * d.chunk[0], cj * d.chunk[1], position()});
+        bb.put(data);
+      }
+    }
+
+    // write the B-tree from the leaves up, each level is a list of (first offset i, first offset j, address)
+    int level = 0;
+    List<long[]> nodes = entries;
+    do {
+      List<long[]> parents = new ArrayList<>();
+      for (int k = 0; k < nodes.size(); k += BTREE_LEAF) {
+        List<long[]> group = nodes.subList(k, Math.min(k + BTREE_LEAF, nodes.size()));
+        align();
+        long address = position();
+        bb.put("TREE".getBytes("US-ASCII")).put((byte) 1).put((byte) level).putShort((short) group.size());
+        bb.putLong(UNDEF).putLong(UNDEF);
+        for (long[] entry : group) {
+          int n = entry.length;
+          bb.putInt(level == 0 ? (int) entry[0] : 0).putInt(0);
+          bb.putLong(entry[n - 3]).putLong(entry[n - 2]).putLong(0).putLong(entry[n - 1]);
+        }
+        bb.putInt(0).putInt(0).putLong(d.shape[0]).putLong(d.shape[1]).putLong(0);
+        parents.add(new long[] {group.get(0)[group.get(0).length - 3], group.get(0)[group.get(0).length - 2],
+            address});
+      }
+      nodes = parents;
+      level++;
+    } while (nodes.size() > 1);
+    long btree = nodes.get(0)[2];
+    align();
+
+    ByteBuffer layout = message(0x8, 23);
+    layout.put((byte) 3).put((byte) 2).put((byte) 3).putLong(btree).putInt(d.chunk[0]).putInt(d.chunk[1]).putInt(4);
+    if (!d.deflate)
+      return objectHeader(dataspace(d), datatype(), layout);
+
+    ByteBuffer filters = message(0xB, 40);
+    filters.put((byte) 1).put((byte) 2).put(new byte[6]);
+    filters.putShort((short) 2).putShort((short) 0).putShort((short) 0).putShort((short) 1).putInt(4).putInt(0);
+    filters.putShort((short) 1).putShort((short) 0).putShort((short) 0).putShort((short) 1).putInt(6).putInt(0);
+    return objectHeader(dataspace(d), datatype(), layout, filters);
+  }
+
+  private ByteBuffer dataspace(Dataset d) {
+    ByteBuffer dataspace = message(0x1, 8 + 8 * d.shape.length);
+    dataspace.put((byte) 1).put((byte) d.shape.length).put((byte) 0).put(new byte[5]);
+    for (int len : d.shape)
+      dataspace.putLong(len);
+    return dataspace;
+  }
+
+  // 4 byte little endian signed int
+  private ByteBuffer datatype() {
+    ByteBuffer datatype = message(0x3, 12);
+    datatype.put((byte) 0x10).put((byte) 0x08).put((byte) 0).put((byte) 0).putInt(4).putShort((short) 0)
+        .putShort((short) 32);
+    return datatype;
+  }
+
+  // a message with its header, the data padded to 8 bytes
+  private static ByteBuffer message(int type, int size) {
+    int padded = (size + 7) / 8 * 8;
+    ByteBuffer msg = ByteBuffer.allocate(8 + padded).order(ByteOrder.LITTLE_ENDIAN);
+    msg.putShort((short) type).putShort((short) padded).put((byte) 0).put(new byte[3]);
+    return msg;
+  }
+
+  private long objectHeader(ByteBuffer... msgs) {
+    align();
+    long address = position();
+    int size = 0;
+    for (ByteBuffer msg : msgs)
+      size += msg.capacity();
+    bb.put((byte) 1).put((byte) 0).putShort((short) msgs.length).putInt(1).putInt(size).putInt(0);
+    for (ByteBuffer msg : msgs)
+      bb.put(msg.array());
+    return address;
+  }
+
+  private static byte[] shuffle(byte[] data, int elemSize) {
+    int n = data.length / elemSize;
+    byte[] result = new byte[data.length];
+    for (int i = 0; i < n; i++) {
+      for (int k = 0; k < elemSize; k++)
+        result[k * n + i] = data[i * elemSize + k];
+    }
+    return result;
+  }
+
+  private static byte[] deflate(byte[] data) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 2);
+    try (DeflaterOutputStream out = new DeflaterOutputStream(bos)) {
+      out.write(data);
+    }
+    return bos.toByteArray();
+  }
+}
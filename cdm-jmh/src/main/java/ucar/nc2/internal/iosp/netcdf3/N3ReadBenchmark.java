@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.netcdf3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/**
+ * Reads through {@link N3iospNew} of a whole variable, a strided section and one time step, for a fixed size
+ * variable and a record variable, whose records are interleaved with the other record variables.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class N3ReadBenchmark {
+  private static final int NT = 20, NY = 400, NX = 500; // 16 Mbytes of floats
+
+  @Param({"fixed", "rec"})
+  public String variable;
+
+  private File file;
+  private NetcdfFile ncfile;
+  private Variable v;
+  private Section strided, timeStep;
+
+  @Setup
+  public void setup() throws IOException, InvalidRangeException {
+    file = File.createTempFile("N3ReadBenchmark", ".nc");
+    file.deleteOnExit();
+    NetcdfFormatWriter.Builder writerb = NetcdfFormatWriter.createNewNetcdf3(file.getPath()).setFill(false);
+    writerb.addUnlimitedDimension("time");
+    writerb.addDimension("t", NT);
+    writerb.addDimension("y", NY);
+    writerb.addDimension("x", NX);
+    writerb.addVariable("fixed", DataType.FLOAT, "t y x");
+    writerb.addVariable("rec", DataType.FLOAT, "time y x");
+    writerb.addVariable("rec2", DataType.SHORT, "time y");
+
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      float[] values = new float[NY * NX];
+      for (int t = 0; t < NT; t++) {
+        for (int i = 0; i < values.length; i++)
+          values[i] = t + i * 0.001f;
+        Array data = Array.factory(DataType.FLOAT, new int[] {1, NY, NX}, values);
+        writer.write("fixed", new int[] {t, 0, 0}, data);
+        writer.write("rec", new int[] {t, 0, 0}, data);
+        writer.write("rec2", new int[] {t, 0}, Array.factory(DataType.SHORT, new int[] {1, NY}));
+      }
+    }
+
+    ncfile = NetcdfFiles.open(file.getPath());
+    v = ncfile.findVariable(variable);
+    strided = new Section("0:19:2, 0:399:4, 0:499:4");
+    timeStep = new Section("10, :, :");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    ncfile.close();
+    file.delete();
+  }
+
+  @Benchmark
+  public Array readAll() throws IOException {
+    return v.read();
+  }
+
+  @Benchmark
+  public Array readStrided() throws IOException, InvalidRangeException {
+    return v.read(strided);
+  }
+
+  @Benchmark
+  public Array readTimeStep() throws IOException, InvalidRangeException {
+    return v.read(timeStep);
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.time;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of ISO 8601 date strings and udunits time units with {@link CalendarDate} and {@link CalendarDateUnit},
+ * and making dates from time coordinate values, in the default and a 365 day calendar.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CalendarDateBenchmark {
+  private static final String[] ISO_DATES = {"2020-01-15T12:30:00Z", "2020-01-15 12:30:00", "2020-01-15",
+      "1999-12-31T23:59:59.999Z", "2020-6-1T6:00:00Z"};
+
+  @Param({"gregorian", "noleap"})
+  public String calendar;
+
+  private CalendarDateUnit dateUnit;
+  private int count;
+
+  @Setup
+  public void setup() {
+    dateUnit = CalendarDateUnit.of(calendar, "hours since 1970-01-01T00:00:00Z");
+  }
+
+  @Benchmark
+  public CalendarDate parseISOformat() {
+    return CalendarDate.parseISOformat(calendar, ISO_DATES[count++ % ISO_DATES.length]);
+  }
+
+  @Benchmark
+  public CalendarDate parseUdunits() {
+    return CalendarDate.parseUdunits(calendar, "6 hours since 2000-01-01 00:00:00");
+  }
+
+  @Benchmark
+  public CalendarDateUnit calendarDateUnit() {
+    return CalendarDateUnit.of(calendar, "days since 1850-01-01");
+  }
+
+  @Benchmark
+  public CalendarDate makeCalendarDate() {
+    return dateUnit.makeCalendarDate(438000.0 + (count++ % 1000) * 6);
+  }
+}
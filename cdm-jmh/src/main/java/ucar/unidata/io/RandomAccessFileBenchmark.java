@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Primitive reads through {@link RandomAccessFile}: one value at a time, into arrays, at random positions, and
+ * positional reads into a ByteBuffer. The file is generated at setup; after the first iteration it is in the
+ * OS page cache, so this measures the library, not the disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RandomAccessFileBenchmark {
+  private static final int NINTS = 8 * 1024 * 1024; // 32 Mbytes
+  private static final int NRANDOM = 10 * 1000;
+  private static final int BLOCK = 64 * 1024;
+
+  /** "buffered" is the default RandomAccessFile, "mmap" is MMapRandomAccessFile */
+  @Param({"buffered", "mmap"})
+  public String mode;
+
+  private File file;
+  private RandomAccessFile raf;
+  private long[] randomPositions;
+  private float[] floats;
+  private ByteBuffer block;
+
+  @Setup
+  public void setup() throws IOException {
+    file = File.createTempFile("RandomAccessFileBenchmark", ".dat");
+    file.deleteOnExit();
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BLOCK))) {
+      for (int i = 0; i < NINTS; i++)
+        out.writeInt(i);
+    }
+    raf = mode.equals("mmap") ? new MMapRandomAccessFile(file.getPath()) : new RandomAccessFile(file.getPath(), "r");
+
+    Random random = new Random(42);
+    randomPositions = new long[NRANDOM];
+    for (int i = 0; i < NRANDOM; i++)
+      randomPositions[i] = 4L * random.nextInt(NINTS);
+    floats = new float[BLOCK / 4];
+    block = ByteBuffer.allocate(BLOCK);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    raf.close();
+    file.delete();
+  }
+
+  @Benchmark
+  public long readIntSequential() throws IOException {
+    raf.seek(0);
+    long sum = 0;
+    for (int i = 0; i < NINTS; i++)
+      sum += raf.readInt();
+    return sum;
+  }
+
+  @Benchmark
+  public double readFloatArray() throws IOException {
+    raf.seek(0);
+    double sum = 0;
+    for (int i = 0; i < NINTS; i += floats.length) {
+      raf.readFloat(floats, 0, floats.length);
+      sum += floats[0];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long readIntRandom() throws IOException {
+    long sum = 0;
+    for (long pos : randomPositions) {
+      raf.seek(pos);
+      sum += raf.readInt();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long readPositional() throws IOException {
+    long sum = 0;
+    for (long pos = 0; pos < 4L * NINTS; pos += BLOCK) {
+      block.clear();
+      raf.readFully(pos, block);
+      sum += block.getInt(0);
+    }
+    return sum;
+  }
+}
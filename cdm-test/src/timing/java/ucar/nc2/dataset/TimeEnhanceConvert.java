@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.nc2.Attribute;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/**
+ * Time VariableDS.convert() on packed shorts with scale, offset, _FillValue and valid_range, against the conversion
+ * one element at a time through Numbers that it replaced.
+ * Run with: java ucar.nc2.dataset.TimeEnhanceConvert [nelems]
+ */
+public class TimeEnhanceConvert {
+  private static final int NTIMES = 20;
+
+  // the old conversion, one element at a time through Numbers
+  private static Array convertElementwise(VariableDS vs, Array packed) {
+    Array out = Array.factory(vs.getDataType(), packed.getShape());
+    boolean convertMissing = vs.getDataType().isFloatingPoint();
+    IndexIterator iterIn = packed.getIndexIterator();
+    IndexIterator iterOut = out.getIndexIterator();
+    while (iterIn.hasNext()) {
+      Number value = (Number) iterIn.getObjectNext();
+      if (vs.getSignedness() == DataType.Signedness.UNSIGNED)
+        value = vs.convertUnsigned(value);
+      if (vs.hasScaleOffset())
+        value = vs.applyScaleOffset(value);
+      if (convertMissing)
+        value = vs.convertMissing(value);
+      iterOut.setObjectNext(value);
+    }
+    return out;
+  }
+
+  private static String makeFile(int nelems) throws IOException, InvalidRangeException {
+    File file = File.createTempFile("TimeEnhanceConvert", ".nc");
+    file.deleteOnExit();
+    NetcdfFormatWriter.Builder writerb = NetcdfFormatWriter.createNewNetcdf3(file.getAbsolutePath());
+    writerb.addDimension("n", nelems);
+    writerb.addVariable("packed", DataType.SHORT, "n").addAttribute(new Attribute(CDM.SCALE_FACTOR, 0.01f))
+        .addAttribute(new Attribute(CDM.ADD_OFFSET, 273.15f)).addAttribute(new Attribute(CDM.FILL_VALUE, (short) -1))
+        .addAttribute(Attribute.builder(CDM.VALID_RANGE).setValues(Array.makeFromJavaArray(new short[] {0, 30000}))
+            .build());
+
+    short[] values = new short[nelems];
+    for (int i = 0; i < nelems; i++)
+      values[i] = (short) (i % 101 == 0 ? -1 : (i * 7) % 32000);
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      writer.write("packed", Array.makeFromJavaArray(values));
+    }
+    return file.getAbsolutePath();
+  }
+
+  public static void main(String[] args) throws IOException, InvalidRangeException {
+    int nelems = (args.length > 0) ? Integer.parseInt(args[0]) : 10 * 1000 * 1000;
+    String filename = makeFile(nelems);
+
+    try (NetcdfDataset ncd = NetcdfDatasets.openDataset(filename)) {
+      VariableDS vs = (VariableDS) ncd.findVariable("packed");
+      Array packed = vs.getOriginalVariable().read();
+      System.out.printf("%s %s -> %s, %d elements%n", vs.getShortName(), packed.getDataType(), vs.getDataType(),
+          nelems);
+
+      double sum1 = 0, sum2 = 0;
+      long took1 = 0, took2 = 0;
+      for (int i = 0; i < 2 * NTIMES; i++) {
+        boolean warmup = i < NTIMES;
+        long start = System.nanoTime();
+        Array old = convertElementwise(vs, packed);
+        long mid = System.nanoTime();
+        Array fused = vs.convert(packed, true, true, true);
+        long end = System.nanoTime();
+        if (!warmup) {
+          took1 += mid - start;
+          took2 += end - mid;
+          sum1 += MAMath.sumDoubleSkipMissingData(old, Double.NaN);
+          sum2 += MAMath.sumDoubleSkipMissingData(fused, Double.NaN);
+        }
+      }
+      System.out.printf("elementwise took %.1f msecs, %.2f nsecs/elem%n", took1 * 1.0e-6 / NTIMES,
+          (double) took1 / NTIMES / nelems);
+      System.out.printf("convert     took %.1f msecs, %.2f nsecs/elem%n", took2 * 1.0e-6 / NTIMES,
+          (double) took2 / NTIMES / nelems);
+      System.out.printf("sums %f %f%n", sum1, sum2);
+    }
+  }
+}
@@ -9,6 +9,7 @@ import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.function.DoubleConsumer;
 import java.nio.*;
 
 /**
@@ -66,7 +67,7 @@ public abstract class Array {
    *
    * @param dataType DataType, eg DataType.DOUBLE.
    * @param shape shape of the array.
-   * @param storage primitive array of correct type
+   * @param storage primitive array of correct type, or the ByteBuffer from ArrayBB.getStorage()
    * @return new Array<type> or Array<type>.D<rank> if 0 <= rank <= 7.
    * @throws ClassCastException wrong storage type
    */
@@ -76,6 +77,9 @@ public abstract class Array {
 
   /* generate new Array with given type, index and storage */
   public static Array factory(DataType dtype, Index index, Object storage) {
+    if (storage instanceof ByteBuffer && ArrayBB.isSupported(dtype))
+      return ArrayBB.factory(dtype, index, (ByteBuffer) storage);
+
     switch (dtype) {
       case DOUBLE:
         return ArrayDouble.factory(index, (double[]) storage);
@@ -658,6 +662,59 @@ public abstract class Array {
     return newA;
   }
 
+  /**
+   * Pass each element to action as a double, in canonical order.
+   * Faster than an IndexIterator for sections and other views, as there's no index arithmetic per element.
+   *
+   * @param action called with each value
+   * @since 5.4
+   */
+  public void forEachDouble(DoubleConsumer action) {
+    indexCalc.forEachRow((start, count, step) -> {
+      for (int i = 0, elem = start; i < count; i++, elem += step)
+        action.accept(getDouble(elem));
+    });
+  }
+
+  /**
+   * Copy the elements as doubles into dst, in canonical order.
+   *
+   * @param dst copy to here, starting at 0; must have at least getSize() elements
+   * @since 5.4
+   */
+  public void copyTo(double[] dst) {
+    checkCopyTo(dst.length);
+    int[] pos = new int[1];
+    indexCalc.forEachRow((start, count, step) -> {
+      int p = pos[0];
+      for (int i = 0, elem = start; i < count; i++, elem += step)
+        dst[p + i] = getDouble(elem);
+      pos[0] = p + count;
+    });
+  }
+
+  /**
+   * Copy the elements as floats into dst, in canonical order.
+   *
+   * @param dst copy to here, starting at 0; must have at least getSize() elements
+   * @since 5.4
+   */
+  public void copyTo(float[] dst) {
+    checkCopyTo(dst.length);
+    int[] pos = new int[1];
+    indexCalc.forEachRow((start, count, step) -> {
+      int p = pos[0];
+      for (int i = 0, elem = start; i < count; i++, elem += step)
+        dst[p + i] = getFloat(elem);
+      pos[0] = p + count;
+    });
+  }
+
+  void checkCopyTo(int length) {
+    if (length < getSize())
+      throw new IllegalArgumentException("destination has " + length + " elements, need " + getSize());
+  }
+
   /**
    * This gets the equivalent java array of the wanted type, in correct order.
    * It avoids copying if possible.
@@ -0,0 +1,860 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.ma2;
+
+import com.google.common.base.Preconditions;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * An Array whose data is in a ByteBuffer, which may be on or off the heap, or memory-mapped, in either byte order.
+ * Data read from a file can be returned without copying it into a Java array, and written out again without copying.
+ * Index, IndexIterator and section() work as for any Array; sections and other views share the ByteBuffer.
+ * <p>
+ * getStorage() returns the ByteBuffer, not a Java array; use get1DJavaArray() or copyTo1DJavaArray() to get one.
+ * getDataAsByteBuffer() copies, as for other Arrays; getContiguousData() does not.
+ * Supports the numeric types, enums, and CHAR stored as one byte per char.
+ *
+ * @since 5.4
+ */
+public abstract class ArrayBB extends Array {
+
+  /**
+   * Wrap a ByteBuffer in an Array, without copying.
+   *
+   * @param dataType type of the data
+   * @param shape shape of the Array
+   * @param bb the data, from its position to its limit, in its byte order
+   * @return an ArrayBB that uses bb for its storage
+   */
+  public static ArrayBB factory(DataType dataType, int[] shape, ByteBuffer bb) {
+    Index index = Index.factory(shape);
+    Preconditions.checkArgument(bb.remaining() >= index.getSize() * dataType.getSize(),
+        "ByteBuffer has %s bytes, need %s", bb.remaining(), index.getSize() * dataType.getSize());
+    return factory(dataType, index, bb.slice().order(bb.order()));
+  }
+
+  /** Does ArrayBB support this type of data. */
+  public static boolean isSupported(DataType dataType) {
+    switch (dataType) {
+      case ENUM1:
+      case UBYTE:
+      case BYTE:
+      case CHAR:
+      case ENUM2:
+      case USHORT:
+      case SHORT:
+      case ENUM4:
+      case UINT:
+      case INT:
+      case ULONG:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  static ArrayBB factory(DataType dataType, Index index, ByteBuffer bb) {
+    switch (dataType) {
+      case ENUM1:
+      case UBYTE:
+      case BYTE:
+        return new Bytes(dataType, index, bb);
+      case CHAR:
+        return new Chars(index, bb);
+      case ENUM2:
+      case USHORT:
+      case SHORT:
+        return new Shorts(dataType, index, bb);
+      case ENUM4:
+      case UINT:
+      case INT:
+        return new Ints(dataType, index, bb);
+      case ULONG:
+      case LONG:
+        return new Longs(dataType, index, bb);
+      case FLOAT:
+        return new Floats(index, bb);
+      case DOUBLE:
+        return new Doubles(index, bb);
+      default:
+        throw new IllegalArgumentException("ArrayBB does not support " + dataType);
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////
+  protected final ByteBuffer bb; // starts at position 0
+
+  ArrayBB(DataType dataType, Index index, ByteBuffer bb) {
+    super(dataType, index);
+    this.bb = bb;
+  }
+
+  /** The ByteBuffer with the data, shared with this Array. Views of this Array share it, with a different Index. */
+  public ByteBuffer getByteBuffer() {
+    return bb.duplicate().order(bb.order());
+  }
+
+  public ByteOrder getByteOrder() {
+    return bb.order();
+  }
+
+  /** Returns the ByteBuffer. */
+  @Override
+  public Object getStorage() {
+    return getByteBuffer();
+  }
+
+  @Override
+  protected Array createView(Index index) {
+    return factory(dataType, index, bb);
+  }
+
+  /** The result shares the ByteBuffer. Like other Arrays, this assumes the data is in canonical order. */
+  @Override
+  public Array reshapeNoCopy(int[] shape) {
+    Index index = Index.factory(shape);
+    if (index.getSize() != getSize())
+      throw new IllegalArgumentException("reshape arrays must have same total size");
+    return factory(dataType, index, bb);
+  }
+
+  @Override
+  public Object get1DJavaArray(DataType wantType) {
+    return (wantType == dataType) ? copyTo1DJavaArray() : super.get1DJavaArray(wantType);
+  }
+
+  /** Copy in bulk when the data is contiguous. */
+  @Override
+  public Object copyTo1DJavaArray() {
+    Object javaArray = java.lang.reflect.Array.newInstance(getElementType(), (int) getSize());
+    copyTo1DJavaArray(getIndexIterator(), javaArray);
+    return javaArray;
+  }
+
+  // The subclasses copy in bulk through a typed view of the ByteBuffer when the iterator is in canonical order,
+  // otherwise element by element. Either way the iterator moves past the copied elements.
+
+  /** If iter is a fast iterator, move it past the next n elements and return the first one, else return -1. */
+  static int skipFast(IndexIterator iter, int n) {
+    return (iter instanceof IteratorFast) ? ((IteratorFast) iter).skip(n) : -1;
+  }
+
+  /** A duplicate of bb, positioned at the given element. */
+  ByteBuffer bufferAt(int elem) {
+    ByteBuffer result = getByteBuffer();
+    result.position(elem * dataType.getSize());
+    return result;
+  }
+
+  /**
+   * The data in canonical order, if it is contiguous in the ByteBuffer, that is, if this Array is not a strided
+   * section or other rearranged view. The returned buffer shares the data, and has the byte order of this Array.
+   *
+   * @return the data without copying, or null if it must be copied, see getDataAsByteBuffer()
+   */
+  @Nullable
+  public ByteBuffer getContiguousData() {
+    if (!indexCalc.isFastIterator())
+      return null;
+    ByteBuffer result = getByteBuffer();
+    result.limit((int) (getSize() * dataType.getSize()));
+    return result;
+  }
+
+  /** Copy the data in canonical order into a big-endian heap ByteBuffer. */
+  @Override
+  public ByteBuffer getDataAsByteBuffer() {
+    return getDataAsByteBuffer(null);
+  }
+
+  /** Copy the data in canonical order into a heap ByteBuffer with the given byte order, big-endian if null. */
+  @Override
+  public ByteBuffer getDataAsByteBuffer(ByteOrder order) {
+    ByteBuffer result = super.getDataAsByteBuffer((int) (getSize() * dataType.getSize()), order);
+    MAMath.copy(factory(dataType, Index.factory(getShape()), result.duplicate().order(result.order())), this);
+    return result;
+  }
+
+  //////////////////////////////////////////////////////////////////
+  // all access is by element; the subclasses convert between types, like the corresponding ArrayXXX
+
+  @Override
+  public double getDouble(Index i) {
+    return getDouble(i.currentElement());
+  }
+
+  @Override
+  public void setDouble(Index i, double value) {
+    setDouble(i.currentElement(), value);
+  }
+
+  @Override
+  public float getFloat(Index i) {
+    return getFloat(i.currentElement());
+  }
+
+  @Override
+  public void setFloat(Index i, float value) {
+    setFloat(i.currentElement(), value);
+  }
+
+  @Override
+  public long getLong(Index i) {
+    return getLong(i.currentElement());
+  }
+
+  @Override
+  public void setLong(Index i, long value) {
+    setLong(i.currentElement(), value);
+  }
+
+  @Override
+  public int getInt(Index i) {
+    return getInt(i.currentElement());
+  }
+
+  @Override
+  public void setInt(Index i, int value) {
+    setInt(i.currentElement(), value);
+  }
+
+  @Override
+  public short getShort(Index i) {
+    return getShort(i.currentElement());
+  }
+
+  @Override
+  public void setShort(Index i, short value) {
+    setShort(i.currentElement(), value);
+  }
+
+  @Override
+  public byte getByte(Index i) {
+    return getByte(i.currentElement());
+  }
+
+  @Override
+  public void setByte(Index i, byte value) {
+    setByte(i.currentElement(), value);
+  }
+
+  @Override
+  public char getChar(Index i) {
+    return getChar(i.currentElement());
+  }
+
+  @Override
+  public void setChar(Index i, char value) {
+    setChar(i.currentElement(), value);
+  }
+
+  @Override
+  public boolean getBoolean(Index i) {
+    throw new ForbiddenConversionException();
+  }
+
+  @Override
+  public void setBoolean(Index i, boolean value) {
+    throw new ForbiddenConversionException();
+  }
+
+  @Override
+  public Object getObject(Index i) {
+    return getObject(i.currentElement());
+  }
+
+  @Override
+  public void setObject(Index i, Object value) {
+    setObject(i.currentElement(), value);
+  }
+
+  @Override
+  public float getFloat(int elem) {
+    return (float) getDouble(elem);
+  }
+
+  @Override
+  public void setFloat(int elem, float value) {
+    setDouble(elem, value);
+  }
+
+  @Override
+  public int getInt(int elem) {
+    return (int) getLong(elem);
+  }
+
+  @Override
+  public void setInt(int elem, int value) {
+    setLong(elem, value);
+  }
+
+  @Override
+  public short getShort(int elem) {
+    return (short) getLong(elem);
+  }
+
+  @Override
+  public void setShort(int elem, short value) {
+    setLong(elem, value);
+  }
+
+  @Override
+  public byte getByte(int elem) {
+    return (byte) getLong(elem);
+  }
+
+  @Override
+  public void setByte(int elem, byte value) {
+    setLong(elem, value);
+  }
+
+  @Override
+  public char getChar(int elem) {
+    return (char) getLong(elem);
+  }
+
+  @Override
+  public void setChar(int elem, char value) {
+    setLong(elem, value);
+  }
+
+  @Override
+  public boolean getBoolean(int elem) {
+    throw new ForbiddenConversionException();
+  }
+
+  @Override
+  public void setBoolean(int elem, boolean value) {
+    throw new ForbiddenConversionException();
+  }
+
+  //////////////////////////////////////////////////////////////////
+
+  private static class Bytes extends ArrayBB {
+    Bytes(DataType dataType, Index index, ByteBuffer bb) {
+      super(dataType, index, bb);
+    }
+
+    @Override
+    public Class getElementType() {
+      return byte.class;
+    }
+
+    @Override
+    public double getDouble(int elem) {
+      return getLong(elem);
+    }
+
+    @Override
+    public void setDouble(int elem, double value) {
+      bb.put(elem, (byte) value);
+    }
+
+    @Override
+    public long getLong(int elem) {
+      byte val = bb.get(elem);
+      return isUnsigned() ? DataType.unsignedByteToShort(val) : val;
+    }
+
+    @Override
+    public void setLong(int elem, long value) {
+      bb.put(elem, (byte) value);
+    }
+
+    @Override
+    public byte getByte(int elem) {
+      return bb.get(elem);
+    }
+
+    @Override
+    public Object getObject(int elem) {
+      return getByte(elem);
+    }
+
+    @Override
+    public void setObject(int elem, Object value) {
+      bb.put(elem, ((Number) value).byteValue());
+    }
+
+    @Override
+    protected void copyFrom1DJavaArray(IndexIterator iter, Object javaArray) {
+      byte[] ja = (byte[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        bufferAt(start).put(ja);
+      } else {
+        for (byte aJa : ja)
+          iter.setByteNext(aJa);
+      }
+    }
+
+    @Override
+    protected void copyTo1DJavaArray(IndexIterator iter, Object javaArray) {
+      byte[] ja = (byte[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        bufferAt(start).get(ja);
+      } else {
+        for (int i = 0; i < ja.length; i++)
+          ja[i] = iter.getByteNext();
+      }
+    }
+  }
+
+  private static class Chars extends ArrayBB {
+    Chars(Index index, ByteBuffer bb) {
+      super(DataType.CHAR, index, bb);
+    }
+
+    @Override
+    public Class getElementType() {
+      return char.class;
+    }
+
+    @Override
+    public double getDouble(int elem) {
+      return getLong(elem);
+    }
+
+    @Override
+    public void setDouble(int elem, double value) {
+      bb.put(elem, (byte) value);
+    }
+
+    @Override
+    public long getLong(int elem) {
+      return bb.get(elem) & 0xff;
+    }
+
+    @Override
+    public void setLong(int elem, long value) {
+      bb.put(elem, (byte) value);
+    }
+
+    @Override
+    public Object getObject(int elem) {
+      return getChar(elem);
+    }
+
+    @Override
+    public void setObject(int elem, Object value) {
+      bb.put(elem, (byte) ((Character) value).charValue());
+    }
+
+    // one byte per char, so there is no typed view
+    @Override
+    protected void copyFrom1DJavaArray(IndexIterator iter, Object javaArray) {
+      char[] ja = (char[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        for (int i = 0; i < ja.length; i++)
+          bb.put(start + i, (byte) ja[i]);
+      } else {
+        for (char aJa : ja)
+          iter.setCharNext(aJa);
+      }
+    }
+
+    @Override
+    protected void copyTo1DJavaArray(IndexIterator iter, Object javaArray) {
+      char[] ja = (char[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        for (int i = 0; i < ja.length; i++)
+          ja[i] = (char) (bb.get(start + i) & 0xff);
+      } else {
+        for (int i = 0; i < ja.length; i++)
+          ja[i] = iter.getCharNext();
+      }
+    }
+  }
+
+  private static class Shorts extends ArrayBB {
+    private final ShortBuffer sb;
+
+    Shorts(DataType dataType, Index index, ByteBuffer bb) {
+      super(dataType, index, bb);
+      this.sb = bb.asShortBuffer();
+    }
+
+    @Override
+    public Class getElementType() {
+      return short.class;
+    }
+
+    @Override
+    public double getDouble(int elem) {
+      return getLong(elem);
+    }
+
+    @Override
+    public void setDouble(int elem, double value) {
+      sb.put(elem, (short) value);
+    }
+
+    @Override
+    public long getLong(int elem) {
+      short val = sb.get(elem);
+      return isUnsigned() ? DataType.unsignedShortToInt(val) : val;
+    }
+
+    @Override
+    public void setLong(int elem, long value) {
+      sb.put(elem, (short) value);
+    }
+
+    @Override
+    public short getShort(int elem) {
+      return sb.get(elem);
+    }
+
+    @Override
+    public Object getObject(int elem) {
+      return getShort(elem);
+    }
+
+    @Override
+    public void setObject(int elem, Object value) {
+      sb.put(elem, ((Number) value).shortValue());
+    }
+
+    @Override
+    protected void copyFrom1DJavaArray(IndexIterator iter, Object javaArray) {
+      short[] ja = (short[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        bufferAt(start).asShortBuffer().put(ja);
+      } else {
+        for (short aJa : ja)
+          iter.setShortNext(aJa);
+      }
+    }
+
+    @Override
+    protected void copyTo1DJavaArray(IndexIterator iter, Object javaArray) {
+      short[] ja = (short[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        bufferAt(start).asShortBuffer().get(ja);
+      } else {
+        for (int i = 0; i < ja.length; i++)
+          ja[i] = iter.getShortNext();
+      }
+    }
+  }
+
+  private static class Ints extends ArrayBB {
+    private final IntBuffer ib;
+
+    Ints(DataType dataType, Index index, ByteBuffer bb) {
+      super(dataType, index, bb);
+      this.ib = bb.asIntBuffer();
+    }
+
+    @Override
+    public Class getElementType() {
+      return int.class;
+    }
+
+    @Override
+    public double getDouble(int elem) {
+      return getLong(elem);
+    }
+
+    @Override
+    public void setDouble(int elem, double value) {
+      ib.put(elem, (int) value);
+    }
+
+    @Override
+    public long getLong(int elem) {
+      int val = ib.get(elem);
+      return isUnsigned() ? DataType.unsignedIntToLong(val) : val;
+    }
+
+    @Override
+    public void setLong(int elem, long value) {
+      ib.put(elem, (int) value);
+    }
+
+    @Override
+    public int getInt(int elem) {
+      return ib.get(elem);
+    }
+
+    @Override
+    public Object getObject(int elem) {
+      return getInt(elem);
+    }
+
+    @Override
+    public void setObject(int elem, Object value) {
+      ib.put(elem, ((Number) value).intValue());
+    }
+
+    @Override
+    protected void copyFrom1DJavaArray(IndexIterator iter, Object javaArray) {
+      int[] ja = (int[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        bufferAt(start).asIntBuffer().put(ja);
+      } else {
+        for (int aJa : ja)
+          iter.setIntNext(aJa);
+      }
+    }
+
+    @Override
+    protected void copyTo1DJavaArray(IndexIterator iter, Object javaArray) {
+      int[] ja = (int[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        bufferAt(start).asIntBuffer().get(ja);
+      } else {
+        for (int i = 0; i < ja.length; i++)
+          ja[i] = iter.getIntNext();
+      }
+    }
+  }
+
+  private static class Longs extends ArrayBB {
+    private final LongBuffer lb;
+
+    Longs(DataType dataType, Index index, ByteBuffer bb) {
+      super(dataType, index, bb);
+      this.lb = bb.asLongBuffer();
+    }
+
+    @Override
+    public Class getElementType() {
+      return long.class;
+    }
+
+    @Override
+    public double getDouble(int elem) {
+      return (double) lb.get(elem);
+    }
+
+    @Override
+    public void setDouble(int elem, double value) {
+      lb.put(elem, (long) value);
+    }
+
+    @Override
+    public float getFloat(int elem) {
+      return (float) lb.get(elem);
+    }
+
+    @Override
+    public long getLong(int elem) {
+      return lb.get(elem);
+    }
+
+    @Override
+    public void setLong(int elem, long value) {
+      lb.put(elem, value);
+    }
+
+    @Override
+    public Object getObject(int elem) {
+      return getLong(elem);
+    }
+
+    @Override
+    public void setObject(int elem, Object value) {
+      lb.put(elem, ((Number) value).longValue());
+    }
+
+    @Override
+    protected void copyFrom1DJavaArray(IndexIterator iter, Object javaArray) {
+      long[] ja = (long[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        bufferAt(start).asLongBuffer().put(ja);
+      } else {
+        for (long aJa : ja)
+          iter.setLongNext(aJa);
+      }
+    }
+
+    @Override
+    protected void copyTo1DJavaArray(IndexIterator iter, Object javaArray) {
+      long[] ja = (long[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        bufferAt(start).asLongBuffer().get(ja);
+      } else {
+        for (int i = 0; i < ja.length; i++)
+          ja[i] = iter.getLongNext();
+      }
+    }
+  }
+
+  private static class Floats extends ArrayBB {
+    private final FloatBuffer fb;
+
+    Floats(Index index, ByteBuffer bb) {
+      super(DataType.FLOAT, index, bb);
+      this.fb = bb.asFloatBuffer();
+    }
+
+    @Override
+    public Class getElementType() {
+      return float.class;
+    }
+
+    @Override
+    public double getDouble(int elem) {
+      return fb.get(elem);
+    }
+
+    @Override
+    public void setDouble(int elem, double value) {
+      fb.put(elem, (float) value);
+    }
+
+    @Override
+    public float getFloat(int elem) {
+      return fb.get(elem);
+    }
+
+    @Override
+    public void setFloat(int elem, float value) {
+      fb.put(elem, value);
+    }
+
+    @Override
+    public long getLong(int elem) {
+      return (long) fb.get(elem);
+    }
+
+    @Override
+    public void setLong(int elem, long value) {
+      fb.put(elem, (float) value);
+    }
+
+    @Override
+    public int getInt(int elem) {
+      return (int) fb.get(elem);
+    }
+
+    @Override
+    public Object getObject(int elem) {
+      return getFloat(elem);
+    }
+
+    @Override
+    public void setObject(int elem, Object value) {
+      fb.put(elem, ((Number) value).floatValue());
+    }
+
+    @Override
+    protected void copyFrom1DJavaArray(IndexIterator iter, Object javaArray) {
+      float[] ja = (float[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        bufferAt(start).asFloatBuffer().put(ja);
+      } else {
+        for (float aJa : ja)
+          iter.setFloatNext(aJa);
+      }
+    }
+
+    @Override
+    protected void copyTo1DJavaArray(IndexIterator iter, Object javaArray) {
+      float[] ja = (float[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        bufferAt(start).asFloatBuffer().get(ja);
+      } else {
+        for (int i = 0; i < ja.length; i++)
+          ja[i] = iter.getFloatNext();
+      }
+    }
+  }
+
+  private static class Doubles extends ArrayBB {
+    private final DoubleBuffer db;
+
+    Doubles(Index index, ByteBuffer bb) {
+      super(DataType.DOUBLE, index, bb);
+      this.db = bb.asDoubleBuffer();
+    }
+
+    @Override
+    public Class getElementType() {
+      return double.class;
+    }
+
+    @Override
+    public double getDouble(int elem) {
+      return db.get(elem);
+    }
+
+    @Override
+    public void setDouble(int elem, double value) {
+      db.put(elem, value);
+    }
+
+    @Override
+    public long getLong(int elem) {
+      return (long) db.get(elem);
+    }
+
+    @Override
+    public void setLong(int elem, long value) {
+      db.put(elem, (double) value);
+    }
+
+    @Override
+    public int getInt(int elem) {
+      return (int) db.get(elem);
+    }
+
+    @Override
+    public Object getObject(int elem) {
+      return getDouble(elem);
+    }
+
+    @Override
+    public void setObject(int elem, Object value) {
+      db.put(elem, ((Number) value).doubleValue());
+    }
+
+    @Override
+    protected void copyFrom1DJavaArray(IndexIterator iter, Object javaArray) {
+      double[] ja = (double[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        bufferAt(start).asDoubleBuffer().put(ja);
+      } else {
+        for (double aJa : ja)
+          iter.setDoubleNext(aJa);
+      }
+    }
+
+    @Override
+    protected void copyTo1DJavaArray(IndexIterator iter, Object javaArray) {
+      double[] ja = (double[]) javaArray;
+      int start = skipFast(iter, ja.length);
+      if (start >= 0) {
+        bufferAt(start).asDoubleBuffer().get(ja);
+      } else {
+        for (int i = 0; i < ja.length; i++)
+          ja[i] = iter.getDoubleNext();
+      }
+    }
+  }
+}
@@ -6,6 +6,7 @@ package ucar.ma2;
 
 import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
+import java.util.function.DoubleConsumer;
 
 /**
  * Concrete implementation of Array specialized for doubles.
@@ -116,6 +117,32 @@ public class ArrayDouble extends Array {
     return bb;
   }
 
+  @Override
+  public void forEachDouble(DoubleConsumer action) {
+    final double[] src = storageD;
+    indexCalc.forEachRow((start, count, step) -> {
+      for (int i = 0, elem = start; i < count; i++, elem += step)
+        action.accept(src[elem]);
+    });
+  }
+
+  @Override
+  public void copyTo(double[] dst) {
+    checkCopyTo(dst.length);
+    final double[] src = storageD;
+    if (indexCalc.isFastIterator()) {
+      System.arraycopy(src, 0, dst, 0, (int) getSize());
+      return;
+    }
+    int[] pos = new int[1];
+    indexCalc.forEachRow((start, count, step) -> {
+      int p = pos[0];
+      for (int i = 0, elem = start; i < count; i++, elem += step)
+        dst[p + i] = src[elem];
+      pos[0] = p + count;
+    });
+  }
+
   /** Return the element class type */
   public Class getElementType() {
     return double.class;
@@ -6,6 +6,7 @@ package ucar.ma2;
 
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.util.function.DoubleConsumer;
 
 /**
  * Concrete implementation of Array specialized for floats.
@@ -119,6 +120,32 @@ public class ArrayFloat extends Array {
     return bb;
   }
 
+  @Override
+  public void forEachDouble(DoubleConsumer action) {
+    final float[] src = storage;
+    indexCalc.forEachRow((start, count, step) -> {
+      for (int i = 0, elem = start; i < count; i++, elem += step)
+        action.accept(src[elem]);
+    });
+  }
+
+  @Override
+  public void copyTo(float[] dst) {
+    checkCopyTo(dst.length);
+    final float[] src = storage;
+    if (indexCalc.isFastIterator()) {
+      System.arraycopy(src, 0, dst, 0, (int) getSize());
+      return;
+    }
+    int[] pos = new int[1];
+    indexCalc.forEachRow((start, count, step) -> {
+      int p = pos[0];
+      for (int i = 0, elem = start; i < count; i++, elem += step)
+        dst[p + i] = src[elem];
+      pos[0] = p + count;
+    });
+  }
+
   /** Return the element class type */
   public Class getElementType() {
     return float.class;
@@ -479,6 +479,57 @@ public class Index implements Cloneable {
     return fastIterator;
   }
 
+  /** Receives runs of elements of the backing array, see forEachRow(). */
+  interface RowVisitor {
+    /** Visit the elements start, start + step, ... start + (count - 1) * step of the backing array. */
+    void visit(int start, int count, int step);
+  }
+
+  /**
+   * Visit all elements in canonical order, as runs along the last dimension. Outer dimensions that are contiguous with
+   * the run are merged into it, so an Array in canonical order is a single run. There's no per-element index
+   * arithmetic, and the loop over a run can be compiled as a plain loop with a fixed step.
+   * A vlen dimension is ignored, as in currentElement().
+   */
+  void forEachRow(RowVisitor visitor) {
+    int last = hasvlen ? rank - 2 : rank - 1;
+    if (size == 0)
+      return;
+    if (last < 0) {
+      visitor.visit(offset, 1, 1);
+      return;
+    }
+
+    int count = shape[last];
+    int step = stride[last];
+    while (last > 0) {
+      int n = shape[last - 1];
+      if (count == 1) {
+        count = n;
+        step = stride[last - 1];
+      } else if (n == 1 || stride[last - 1] == step * count) {
+        count *= n;
+      } else {
+        break;
+      }
+      last--;
+    }
+
+    int[] counter = new int[last];
+    int elem = offset;
+    long nruns = size / count;
+    for (long run = 0; run < nruns; run++) {
+      visitor.visit(elem, count, step);
+      for (int d = last - 1; d >= 0; d--) {
+        elem += stride[d];
+        if (++counter[d] < shape[d])
+          break;
+        elem -= stride[d] * shape[d];
+        counter[d] = 0;
+      }
+    }
+  }
+
   /**
    * Get the total number of elements in the array.
    *
@@ -89,6 +89,12 @@ public class IndexConstant extends Index {
     return false;
   }
 
+  @Override
+  void forEachRow(RowVisitor visitor) {
+    if (size > 0)
+      visitor.visit(0, (int) size, 0);
+  }
+
   ///////////////////////
 
   IndexIterator getIndexIterator(Array maa) {
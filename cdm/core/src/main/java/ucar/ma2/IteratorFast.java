@@ -30,6 +30,13 @@ public class IteratorFast implements IndexIterator {
     return currElement < size - howMany;
   }
 
+  // move past the next n elements, returning the first of them
+  int skip(int n) {
+    int first = currElement + 1;
+    currElement += n;
+    return first;
+  }
+
   private Index counter; // usually not used
 
   public String toString() {
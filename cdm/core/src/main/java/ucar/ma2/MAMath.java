@@ -211,6 +211,10 @@ public class MAMath {
     if (!conformable(a, result))
       throw new IllegalArgumentException("copy arrays are not conformable");
 
+    if (result instanceof ArrayDouble && result.indexCalc.isFastIterator()) {
+      a.copyTo((double[]) result.getStorage());
+      return;
+    }
     IndexIterator iterA = a.getIndexIterator();
     IndexIterator iterR = result.getIndexIterator();
     while (iterA.hasNext())
@@ -231,6 +235,10 @@ public class MAMath {
     if (!conformable(a, result))
       throw new IllegalArgumentException("copy arrays are not conformable");
 
+    if (result instanceof ArrayFloat && result.indexCalc.isFastIterator()) {
+      a.copyTo((float[]) result.getStorage());
+      return;
+    }
     IndexIterator iterA = a.getIndexIterator();
     IndexIterator iterR = result.getIndexIterator();
     while (iterA.hasNext())
@@ -394,29 +402,11 @@ public class MAMath {
   }
 
   public static double getMinimum(Array a) {
-    IndexIterator iter = a.getIndexIterator();
-    double min = Double.MAX_VALUE;
-    while (iter.hasNext()) {
-      double val = iter.getDoubleNext();
-      if (Double.isNaN(val))
-        continue;
-      if (val < min)
-        min = val;
-    }
-    return min;
+    return getMinMax(a).min;
   }
 
   public static double getMaximum(Array a) {
-    IndexIterator iter = a.getIndexIterator();
-    double max = -Double.MAX_VALUE;
-    while (iter.hasNext()) {
-      double val = iter.getDoubleNext();
-      if (Double.isNaN(val))
-        continue;
-      if (val > max)
-        max = val;
-    }
-    return max;
+    return getMinMax(a).max;
   }
 
   /**
@@ -426,19 +416,7 @@ public class MAMath {
    * @return MinMax
    */
   public static MAMath.MinMax getMinMax(Array a) {
-    IndexIterator iter = a.getIndexIterator();
-    double max = -Double.MAX_VALUE;
-    double min = Double.MAX_VALUE;
-    while (iter.hasNext()) {
-      double val = iter.getDoubleNext();
-      if (Double.isNaN(val))
-        continue;
-      if (val > max)
-        max = val;
-      if (val < min)
-        min = val;
-    }
-    return new MinMax(min, max);
+    return getMinMaxSkipMissingData(a, Double.NaN);
   }
 
   public static MAMath.MinMax getMinMaxSkipMissingData(Array a, IsMissingEvaluator eval) {
@@ -462,41 +440,24 @@ public class MAMath {
 
 
   public static double getMinimumSkipMissingData(Array a, double missingValue) {
-    IndexIterator iter = a.getIndexIterator();
-    double min = Double.MAX_VALUE;
-    while (iter.hasNext()) {
-      double val = iter.getDoubleNext();
-      if ((val != missingValue) && (val < min))
-        min = val;
-    }
-    return min;
+    return getMinMaxSkipMissingData(a, missingValue).min;
   }
 
   public static double getMaximumSkipMissingData(Array a, double missingValue) {
-    IndexIterator iter = a.getIndexIterator();
-    double max = -Double.MAX_VALUE;
-    while (iter.hasNext()) {
-      double val = iter.getDoubleNext();
-      if ((val != missingValue) && (val > max))
-        max = val;
-    }
-    return max;
+    return getMinMaxSkipMissingData(a, missingValue).max;
   }
 
+  /**
+   * Find min and max value in this array, getting values as doubles. Skip missingValue and Double.NaN.
+   *
+   * @param a the array.
+   * @param missingValue skip values equal to this
+   * @return MinMax
+   */
   public static MAMath.MinMax getMinMaxSkipMissingData(Array a, double missingValue) {
-    IndexIterator iter = a.getIndexIterator();
-    double max = -Double.MAX_VALUE;
-    double min = Double.MAX_VALUE;
-    while (iter.hasNext()) {
-      double val = iter.getDoubleNext();
-      if (val == missingValue)
-        continue;
-      if (val > max)
-        max = val;
-      if (val < min)
-        min = val;
-    }
-    return new MinMax(min, max);
+    Reduction minmax = new Reduction(a, false, missingValue, false);
+    a.indexCalc.forEachRow(minmax);
+    return new MinMax(minmax.min, minmax.max);
   }
 
 
@@ -522,12 +483,9 @@ public class MAMath {
    * @return sum of elements
    */
   public static double sumDouble(Array a) {
-    double sum = 0;
-    IndexIterator iterA = a.getIndexIterator();
-    while (iterA.hasNext()) {
-      sum += iterA.getDoubleNext();
-    }
-    return sum;
+    Reduction sum = new Reduction(a, true, Double.NaN, false);
+    a.indexCalc.forEachRow(sum);
+    return sum.sum;
   }
 
   /**
@@ -539,15 +497,79 @@ public class MAMath {
    * @return sum of elements
    */
   public static double sumDoubleSkipMissingData(Array a, double missingValue) {
-    double sum = 0;
-    IndexIterator iterA = a.getIndexIterator();
-    while (iterA.hasNext()) {
-      double val = iterA.getDoubleNext();
-      if ((val == missingValue) || Double.isNaN(val))
-        continue;
-      sum += val;
+    Reduction sum = new Reduction(a, true, missingValue, true);
+    a.indexCalc.forEachRow(sum);
+    return sum.sum;
+  }
+
+  /**
+   * Sum or min and max over the runs of an Array, see Index.forEachRow(). The loops are over the backing array for
+   * double and float data, and use getDouble(elem) for the other types. NaN fails all comparisons, so min and max
+   * skip it.
+   */
+  private static class Reduction implements Index.RowVisitor {
+    private final Array a;
+    private final double[] dstorage;
+    private final float[] fstorage;
+    private final boolean isSum;
+    private final double missing; // skip values equal to this; NaN skips nothing
+    private final boolean skipNaN; // sum only
+    double min = Double.MAX_VALUE;
+    double max = -Double.MAX_VALUE;
+    double sum;
+
+    Reduction(Array a, boolean isSum, double missing, boolean skipNaN) {
+      this.a = a;
+      this.dstorage = (a instanceof ArrayDouble) ? (double[]) a.getStorage() : null;
+      this.fstorage = (a instanceof ArrayFloat) ? (float[]) a.getStorage() : null;
+      this.isSum = isSum;
+      this.missing = missing;
+      this.skipNaN = skipNaN;
+    }
+
+    @Override
+    public void visit(int start, int count, int step) {
+      if (isSum) {
+        double total = sum;
+        for (int i = 0, elem = start; i < count; i++, elem += step) {
+          double val = (dstorage != null) ? dstorage[elem] : (fstorage != null) ? fstorage[elem] : a.getDouble(elem);
+          if (val != missing && !(skipNaN && Double.isNaN(val)))
+            total += val;
+        }
+        sum = total;
+        return;
+      }
+
+      double lo = min;
+      double hi = max;
+      if (dstorage != null) {
+        for (int i = 0, elem = start; i < count; i++, elem += step) {
+          double val = dstorage[elem];
+          if (val != missing) {
+            lo = (val < lo) ? val : lo;
+            hi = (val > hi) ? val : hi;
+          }
+        }
+      } else if (fstorage != null) {
+        for (int i = 0, elem = start; i < count; i++, elem += step) {
+          double val = fstorage[elem];
+          if (val != missing) {
+            lo = (val < lo) ? val : lo;
+            hi = (val > hi) ? val : hi;
+          }
+        }
+      } else {
+        for (int i = 0, elem = start; i < count; i++, elem += step) {
+          double val = a.getDouble(elem);
+          if (val != missing) {
+            lo = (val < lo) ? val : lo;
+            hi = (val > hi) ? val : hi;
+          }
+        }
+      }
+      min = lo;
+      max = hi;
     }
-    return sum;
   }
 
   /**
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.ma2;
+
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A multidimensional array of primitives that may be larger than an Array: more than Integer.MAX_VALUE elements, or
+ * more than 2 Gbytes. The data is stored in segments, each a ByteBuffer of at most maxSegmentSize bytes, and elements
+ * are addressed by a long index in row-major order.
+ * Each segment holds whole rows, that is, a fixed number of indices of the outer dimension, so the data of a segment
+ * is a Section of the array, and can be read or written as an ordinary Array.
+ *
+ * Supports the numeric data types, enums and CHAR. Use an Array when the data fits in one.
+ *
+ * @since 5.4
+ */
+public class SegmentedArray {
+  /** The default maximum segment size, 1 Gbyte. */
+  public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+  /**
+   * Create a SegmentedArray filled with zeros, with the default segment size and native byte order.
+   *
+   * @param dataType type of the elements
+   * @param shape shape of the array
+   */
+  public static SegmentedArray factory(DataType dataType, int[] shape) {
+    return factory(dataType, shape, DEFAULT_SEGMENT_SIZE, ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Create a SegmentedArray filled with zeros.
+   *
+   * @param dataType type of the elements
+   * @param shape shape of the array
+   * @param maxSegmentSize maximum size in bytes of a segment; must hold at least one row
+   * @param order byte order of the segments
+   */
+  public static SegmentedArray factory(DataType dataType, int[] shape, int maxSegmentSize, ByteOrder order) {
+    return new SegmentedArray(dataType, shape, maxSegmentSize, order);
+  }
+
+  private final DataType dataType;
+  private final int[] shape;
+  private final int elemSize;
+  private final long size;
+  private final long rowSize; // number of elements in one index of the outer dimension
+  private final int nrows;
+  private final int rowsPerSegment;
+  private final long segmentElems;
+  private final ByteBuffer[] segments;
+
+  private SegmentedArray(DataType dataType, int[] shape, int maxSegmentSize, ByteOrder order) {
+    Class<?> primitive = dataType.getPrimitiveClassType();
+    Preconditions.checkArgument(
+        dataType == DataType.CHAR || (primitive.isPrimitive() && primitive != char.class && primitive != boolean.class),
+        "SegmentedArray does not support %s", dataType);
+    this.dataType = dataType;
+    this.shape = shape.clone();
+    this.elemSize = dataType.getSize();
+
+    long inner = 1;
+    for (int d = 1; d < shape.length; d++)
+      inner *= shape[d];
+    this.rowSize = inner;
+    this.nrows = shape.length == 0 ? 1 : shape[0];
+    this.size = nrows * rowSize;
+    if (rowSize * elemSize > maxSegmentSize)
+      throw new IllegalArgumentException(
+          "A row of " + rowSize * elemSize + " bytes is larger than the segment size " + maxSegmentSize);
+
+    this.rowsPerSegment = (int) Math.max(1, Math.min(nrows, maxSegmentSize / Math.max(1, rowSize * elemSize)));
+    this.segmentElems = rowsPerSegment * rowSize;
+    int nsegments = (nrows + rowsPerSegment - 1) / rowsPerSegment;
+    this.segments = new ByteBuffer[nsegments];
+    for (int i = 0; i < nsegments; i++) {
+      int rows = Math.min(rowsPerSegment, nrows - i * rowsPerSegment);
+      segments[i] = ByteBuffer.allocate((int) (rows * rowSize * elemSize)).order(order);
+    }
+  }
+
+  public DataType getDataType() {
+    return dataType;
+  }
+
+  public int[] getShape() {
+    return shape.clone();
+  }
+
+  public int getRank() {
+    return shape.length;
+  }
+
+  /** The total number of elements. */
+  public long getSize() {
+    return size;
+  }
+
+  /** The total number of bytes of data. */
+  public long getSizeBytes() {
+    return size * elemSize;
+  }
+
+  public int getElementSize() {
+    return elemSize;
+  }
+
+  public int getSegmentCount() {
+    return segments.length;
+  }
+
+  /** The number of indices of the outer dimension in each segment, except perhaps the last. */
+  public int getRowsPerSegment() {
+    return rowsPerSegment;
+  }
+
+  /** The index of the first element of segment i. */
+  public long getSegmentStart(int i) {
+    return i * segmentElems;
+  }
+
+  /** The data of segment i. The returned buffer shares the data, but has its own position and limit. */
+  public ByteBuffer getSegment(int i) {
+    return segments[i].duplicate().order(segments[i].order());
+  }
+
+  /** The part of this array held in segment i. */
+  public Section getSegmentSection(int i) {
+    Section.Builder sb = Section.builder();
+    if (shape.length > 0) {
+      int first = i * rowsPerSegment;
+      int rows = Math.min(rowsPerSegment, nrows - first);
+      try {
+        sb.appendRange(first, first + rows - 1);
+      } catch (InvalidRangeException e) {
+        throw new IllegalStateException(e); // cant happen
+      }
+      for (int d = 1; d < shape.length; d++)
+        sb.appendRange(shape[d]);
+    }
+    return sb.build();
+  }
+
+  /** Copy the data of segment i into an Array. */
+  public Array getSegmentArray(int i) {
+    ByteBuffer bb = getSegment(i);
+    Object data;
+    Class<?> primitive = dataType.getPrimitiveClassType();
+    if (dataType == DataType.CHAR) {
+      char[] pa = new char[bb.remaining()];
+      for (int j = 0; j < pa.length; j++)
+        pa[j] = (char) (bb.get(j) & 0xff);
+      data = pa;
+    } else if (primitive == byte.class) {
+      byte[] pa = new byte[bb.remaining()];
+      bb.get(pa);
+      data = pa;
+    } else if (primitive == short.class) {
+      short[] pa = new short[bb.remaining() / 2];
+      bb.asShortBuffer().get(pa);
+      data = pa;
+    } else if (primitive == int.class) {
+      int[] pa = new int[bb.remaining() / 4];
+      bb.asIntBuffer().get(pa);
+      data = pa;
+    } else if (primitive == long.class) {
+      long[] pa = new long[bb.remaining() / 8];
+      bb.asLongBuffer().get(pa);
+      data = pa;
+    } else if (primitive == float.class) {
+      float[] pa = new float[bb.remaining() / 4];
+      bb.asFloatBuffer().get(pa);
+      data = pa;
+    } else {
+      double[] pa = new double[bb.remaining() / 8];
+      bb.asDoubleBuffer().get(pa);
+      data = pa;
+    }
+    return Array.factory(dataType, getSegmentSection(i).getShape(), data);
+  }
+
+  /** Copy data into segment i. It must have the size of the segment. */
+  public void setSegmentArray(int i, Array data) {
+    ByteBuffer bb = getSegment(i);
+    Preconditions.checkArgument(data.getSize() * elemSize == bb.remaining(), "data has the wrong size");
+    Class<?> primitive = dataType.getPrimitiveClassType();
+    if (dataType == DataType.CHAR) {
+      IndexIterator ii = data.getIndexIterator();
+      for (int j = 0; ii.hasNext(); j++)
+        bb.put(j, (byte) ii.getCharNext());
+    } else if (primitive == byte.class) {
+      bb.put((byte[]) data.get1DJavaArray(dataType));
+    } else if (primitive == short.class) {
+      bb.asShortBuffer().put((short[]) data.get1DJavaArray(dataType));
+    } else if (primitive == int.class) {
+      bb.asIntBuffer().put((int[]) data.get1DJavaArray(dataType));
+    } else if (primitive == long.class) {
+      bb.asLongBuffer().put((long[]) data.get1DJavaArray(dataType));
+    } else if (primitive == float.class) {
+      bb.asFloatBuffer().put((float[]) data.get1DJavaArray(dataType));
+    } else {
+      bb.asDoubleBuffer().put((double[]) data.get1DJavaArray(dataType));
+    }
+  }
+
+  /** The element index of a multidimensional index. */
+  public long getIndex(int... index) {
+    Preconditions.checkArgument(index.length == shape.length, "wrong rank");
+    long result = 0;
+    for (int d = 0; d < shape.length; d++) {
+      if (index[d] < 0 || index[d] >= shape[d])
+        throw new ArrayIndexOutOfBoundsException("index " + index[d] + " out of bounds for dimension " + d);
+      result = result * shape[d] + index[d];
+    }
+    return result;
+  }
+
+  private ByteBuffer segmentOf(long i) {
+    if (i < 0 || i >= size)
+      throw new ArrayIndexOutOfBoundsException("index " + i + " out of bounds for size " + size);
+    return segments[(int) (i / segmentElems)];
+  }
+
+  private int positionOf(long i) {
+    return (int) (i % segmentElems) * elemSize;
+  }
+
+  /** Get element i as a long; unsigned types are widened. */
+  public long getLong(long i) {
+    ByteBuffer bb = segmentOf(i);
+    int pos = positionOf(i);
+    if (dataType == DataType.FLOAT)
+      return (long) bb.getFloat(pos);
+    if (dataType == DataType.DOUBLE)
+      return (long) bb.getDouble(pos);
+    boolean unsigned = dataType.isUnsigned();
+    switch (elemSize) {
+      case 1:
+        byte b = bb.get(pos);
+        return unsigned || dataType == DataType.CHAR ? DataType.unsignedByteToShort(b) : b;
+      case 2:
+        short s = bb.getShort(pos);
+        return unsigned ? DataType.unsignedShortToInt(s) : s;
+      case 4:
+        int val = bb.getInt(pos);
+        return unsigned ? DataType.unsignedIntToLong(val) : val;
+      default:
+        return bb.getLong(pos);
+    }
+  }
+
+  /** Get element i as a double; unsigned types are widened. */
+  public double getDouble(long i) {
+    if (dataType == DataType.FLOAT)
+      return segmentOf(i).getFloat(positionOf(i));
+    if (dataType == DataType.DOUBLE)
+      return segmentOf(i).getDouble(positionOf(i));
+    if (dataType == DataType.ULONG)
+      return DataType.unsignedLongToBigInt(getLong(i)).doubleValue();
+    return getLong(i);
+  }
+
+  public float getFloat(long i) {
+    return (float) getDouble(i);
+  }
+
+  public int getInt(long i) {
+    return (int) getLong(i);
+  }
+
+  public short getShort(long i) {
+    return (short) getLong(i);
+  }
+
+  public byte getByte(long i) {
+    return (byte) getLong(i);
+  }
+
+  public char getChar(long i) {
+    return (char) getLong(i);
+  }
+
+  /**
+   * Copy a section of this array into an Array.
+   *
+   * @param want the section, in the index space of this array; it must fit in an Array
+   * @return the data in the section
+   * @throws InvalidRangeException if the section is not valid for this array
+   */
+  public Array section(Section want) throws InvalidRangeException {
+    Section s = Section.fill(want, shape);
+    Array result = Array.factory(dataType, s.getShape());
+    int rank = shape.length;
+    long[] stride = new long[rank];
+    long product = 1;
+    for (int d = rank - 1; d >= 0; d--) {
+      stride[d] = product;
+      product *= shape[d];
+    }
+
+    boolean isFloat = dataType.isFloatingPoint();
+    int[] counter = new int[rank];
+    IndexIterator ii = result.getIndexIterator();
+    while (ii.hasNext()) {
+      long index = 0;
+      for (int d = 0; d < rank; d++)
+        index += s.getRange(d).element(counter[d]) * stride[d];
+      if (isFloat)
+        ii.setDoubleNext(getDouble(index));
+      else if (dataType == DataType.CHAR)
+        ii.setCharNext(getChar(index));
+      else
+        ii.setLongNext(getLong(index));
+
+      for (int d = rank - 1; d >= 0; d--) {
+        if (++counter[d] < s.getShape(d))
+          break;
+        counter[d] = 0;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return dataType + " " + Arrays.toString(shape) + " in " + segments.length + " segments";
+  }
+}
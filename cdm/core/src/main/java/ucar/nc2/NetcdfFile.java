@@ -10,6 +10,8 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Formatter;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -21,7 +23,9 @@ import org.slf4j.LoggerFactory;
 import ucar.ma2.Array;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
+import ucar.ma2.SegmentedArray;
 import ucar.ma2.StructureDataIterator;
+import ucar.nc2.dataset.VariableEnhanced;
 import ucar.nc2.internal.iosp.netcdf3.N3headerNew;
 import ucar.nc2.internal.iosp.netcdf3.N3iospNew;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
@@ -100,6 +104,13 @@ public class NetcdfFile implements FileCacheable, Closeable {
   public static final String IOSP_MESSAGE_ADD_RECORD_STRUCTURE = "AddRecordStructure";
   public static final String IOSP_MESSAGE_RANDOM_ACCESS_FILE = "RandomAccessFile";
   public static final String IOSP_MESSAGE_GET_IOSP = "IOSP";
+  /**
+   * Ask the IOSP to return data as an ArrayBB, backed by a heap ByteBuffer in the byte order of the file, when it can.
+   * Callers must then not assume that Array.getStorage() is a Java array.
+   */
+  public static final String IOSP_MESSAGE_ARRAY_BB = "ArrayBB";
+  /** Like IOSP_MESSAGE_ARRAY_BB, but the ByteBuffers are direct, eg to be written to a channel without copying. */
+  public static final String IOSP_MESSAGE_ARRAY_BB_DIRECT = "ArrayBBDirect";
 
   static boolean debugSPI, debugCompress;
   static boolean debugStructureIterator;
@@ -489,6 +500,12 @@ public class NetcdfFile implements FileCacheable, Closeable {
     return iosp.getStructureIterator(s, bufferSize);
   }
 
+  // the netcdf-3 iosp iterates over the records of the record structure, reading a window at a time
+  @Nullable
+  StructureDataIterator getRecordIterator(Structure s, int bufferSize) throws IOException {
+    return (iosp instanceof N3iospNew && readsDirectly(s)) ? iosp.getStructureIterator(s, bufferSize) : null;
+  }
+
   /**
    * Do not call this directly, use Variable.read() !!
    * Ranges must be filled (no nulls)
@@ -519,6 +536,84 @@ public class NetcdfFile implements FileCacheable, Closeable {
     return result;
   }
 
+  /**
+   * Read sections of several Variables of this file, and return one memory resident Array for each.
+   * This is the same as calling Variable.read(section) for each Variable, but the IOSP may read them together,
+   * for example the record variables of a netCDF-3 file with one pass through the records.
+   *
+   * @param variables Variables of this file
+   * @param sections the section of each Variable, in the same order, or null to read all the data of each.
+   *        A null section, or a null Range in a section, means all the data in that Dimension.
+   * @return the requested data, one Array for each Variable, in the same order
+   * @throws IOException if error
+   * @throws InvalidRangeException if a section is invalid
+   */
+  public List<Array> readArrays(List<Variable> variables, @Nullable List<Section> sections)
+      throws IOException, InvalidRangeException {
+    Preconditions.checkArgument(sections == null || sections.size() == variables.size(),
+        "must have a section for each variable");
+    Array[] result = new Array[variables.size()];
+
+    // the variables that the iosp can read together
+    List<Integer> which = new ArrayList<>();
+    List<Variable> batch = new ArrayList<>();
+    List<Section> batchSections = new ArrayList<>();
+    for (int i = 0; i < variables.size(); i++) {
+      Variable v = variables.get(i);
+      Section section = (sections == null) ? null : sections.get(i);
+      if (!readsDirectly(v)) {
+        result[i] = v.read(section); // let the variable handle it
+      } else {
+        which.add(i);
+        batch.add(v);
+        batchSections.add(Section.fill(section, v.getShape()));
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      if (showRequest)
+        log.info("Data request for {} variables", batch.size());
+      List<Array> data = iosp.readArrays(batch, batchSections);
+      for (int j = 0; j < which.size(); j++)
+        result[which.get(j)] = data.get(j);
+    }
+    return Arrays.asList(result);
+  }
+
+  /**
+   * Read a section of a Variable of this file into a SegmentedArray, which may be larger than 2 Gbytes.
+   * The data must be of a numeric or CHAR type, and each index of its outer dimension must fit in an Array.
+   *
+   * @param v a Variable of this file
+   * @param section the section to read, or null to read all the data.
+   *        A null Range in the section means all the data in that Dimension.
+   * @return the requested data
+   * @throws IOException if error
+   * @throws InvalidRangeException if the section is invalid
+   */
+  public SegmentedArray readSegmented(Variable v, @Nullable Section section)
+      throws IOException, InvalidRangeException {
+    Section want = Section.fill(section, v.getShape());
+    if (readsDirectly(v)) {
+      if (showRequest)
+        log.info("Data request for variable: {} section {}...", v.getFullName(), want);
+      return iosp.readSegmented(v, want);
+    }
+
+    // let the variable read each segment
+    SegmentedArray result = SegmentedArray.factory(v.getDataType(), want.getShape());
+    for (int i = 0; i < result.getSegmentCount(); i++) {
+      result.setSegmentArray(i, v.read(want.compose(result.getSegmentSection(i))));
+    }
+    return result;
+  }
+
+  // can the iosp read the variable, or must it be read through the variable
+  private boolean readsDirectly(Variable v) {
+    return iosp != null && v.getNetcdfFile() == this && !v.isMemberOfStructure() && v.proxyReader == v
+        && !(v instanceof VariableEnhanced) && !v.hasCachedData() && !v.isCaching();
+  }
+
   /**
    * Read a variable using the given section specification.
    * The result is always an array of the type of the innermost variable.
@@ -21,10 +21,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.ServiceLoader;
-import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import javax.annotation.Nullable;
+import ucar.nc2.filter.Deflate;
 import ucar.nc2.internal.iosp.netcdf3.N3headerNew;
 import ucar.nc2.internal.iosp.netcdf3.N3iospNew;
 import ucar.nc2.internal.util.StringLocker;
@@ -94,6 +94,13 @@ public class NetcdfFiles {
         log.info("Cant load class InMemoryRandomAccessFileProvider", e);
     }
 
+    try {
+      registerRandomAccessFileProvider("ucar.unidata.io.MMapRandomAccessFile$Provider");
+    } catch (Throwable e) {
+      if (loadWarnings)
+        log.info("Cant load class MMapRandomAccessFileProvider", e);
+    }
+
     // if a user explicitly registers an IOSP or RandomAccessFile implementation via
     // registerIOProvider or registerRandomAccessFileProvider, this ensures they are tried first,
     // even before the core implementations.
@@ -248,6 +255,7 @@ public class NetcdfFiles {
    *        <li>local netcdf-4 filename (with a file: prefix or no prefix)
    *        <li>local hdf-5 filename (with a file: prefix or no prefix)
    *        <li>local iosp filename (with a file: prefix or no prefix)
+   *        <li>local filename, read through memory-mapped segments (with an mmap: prefix)
    *        </ol>
    *        If file ends with ".Z", ".zip", ".gzip", ".gz", or ".bz2", it will uncompress/unzip and write to new file
    *        without the suffix,
@@ -562,8 +570,8 @@ public class NetcdfFiles {
             log.info("unbzipped {} to {}", filename, uncompressedFile);
 
         } else if (suffix.equalsIgnoreCase("gzip") || suffix.equalsIgnoreCase("gz")) {
-          try (InputStream in = new GZIPInputStream(new FileInputStream(filename))) {
-            IO.copyBuffered(in, fout, 100000);
+          try (InputStream in = new FileInputStream(filename)) {
+            Deflate.gunzip(in, fout);
           }
 
           if (NetcdfFile.debugCompress)
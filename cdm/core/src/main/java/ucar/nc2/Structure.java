@@ -243,6 +243,9 @@ public class Structure extends Variable {
    * @throws java.io.IOException on read error
    */
   public StructureDataIterator getStructureIterator(int bufferSize) throws java.io.IOException {
+    StructureDataIterator records = (ncfile != null) ? ncfile.getRecordIterator(this, bufferSize) : null;
+    if (records != null)
+      return records;
     return (getRank() < 2) ? new Structure.IteratorRank1(bufferSize) : new IteratorRankAny();
   }
 
@@ -313,6 +316,7 @@ public class Structure extends Variable {
       if (bytes <= 0)
         bytes = defaultBufferSize;
       readAtaTime = Math.max(10, bytes / structureSize);
+      readAtaTime = Math.max(1, Math.min(readAtaTime, (Integer.MAX_VALUE - 8) / structureSize)); // fit in an Array
       if (NetcdfFile.debugStructureIterator)
         System.out.println("Iterator structureSize= " + structureSize + " readAtaTime= " + readAtaTime);
     }
@@ -432,6 +432,9 @@ class EnhanceScaleMissingUnsignedImpl implements EnhanceScaleMissingUnsigned {
 
   @Override
   public boolean isInvalidData(double val) {
+    if (val > validMin && val < validMax) {
+      return false; // shortcut for the usual case; the unset limits are +/- Double.MAX_VALUE
+    }
     // valid_min and valid_max may have been multiplied by scale_factor, which could be a float, not a double.
     // That potential loss of precision means that we cannot do the nearlyEquals() comparison with
     // Misc.defaultMaxRelativeDiffDouble.
@@ -451,7 +454,7 @@ class EnhanceScaleMissingUnsignedImpl implements EnhanceScaleMissingUnsigned {
 
   @Override
   public boolean isFillValue(double val) {
-    return hasFillValue && Misc.nearlyEquals(val, fillValue, Misc.defaultMaxRelativeDiffFloat);
+    return hasFillValue && nearlyEquals(val, fillValue);
   }
 
   @Override
@@ -475,13 +478,22 @@ class EnhanceScaleMissingUnsignedImpl implements EnhanceScaleMissingUnsigned {
       return false;
     }
     for (double aMissingValue : missingValue) {
-      if (Misc.nearlyEquals(val, aMissingValue, Misc.defaultMaxRelativeDiffFloat)) {
+      if (nearlyEquals(val, aMissingValue)) {
         return true;
       }
     }
     return false;
   }
 
+  // Misc.nearlyEquals(val, ref, defaultMaxRelativeDiffFloat), with a cheap test first for values that are clearly
+  // different: nearly equal values differ by less than 2 * defaultMaxRelativeDiffFloat * |ref|, or by a denormal.
+  private static boolean nearlyEquals(double val, double ref) {
+    if (Math.abs(val - ref) > 2 * Misc.defaultMaxRelativeDiffFloat * Math.abs(ref) + Double.MIN_NORMAL) {
+      return false;
+    }
+    return Misc.nearlyEquals(val, ref, Misc.defaultMaxRelativeDiffFloat);
+  }
+
   @Override
   public double[] getMissingValues() {
     return missingValue;
@@ -585,26 +597,104 @@ class EnhanceScaleMissingUnsignedImpl implements EnhanceScaleMissingUnsigned {
       convertMissing = false;
     }
 
+    // one pass, from the Java array of the packed values into the storage of the output, without boxing
+    Object packed = in.get1DJavaArray(in.getDataType());
     Array out = Array.factory(outType, in.getShape());
-    IndexIterator iterIn = in.getIndexIterator();
-    IndexIterator iterOut = out.getIndexIterator();
+    if (applyScaleOffset || convertMissing || outType.isFloatingPoint() || packed instanceof float[]
+        || packed instanceof double[]) {
+      convertToDouble(packed, out, convertUnsigned, applyScaleOffset, convertMissing);
+    } else {
+      convertToLong(packed, out, convertUnsigned);
+    }
+    return out;
+  }
 
-    while (iterIn.hasNext()) {
-      Number value = (Number) iterIn.getObjectNext();
+  // number of values converted at a time, when the output isn't a double[]
+  private static final int CHUNK = 1024;
+
+  // the values go through a double, as in applyScaleOffset(Number), in chunks so each step is a simple loop
+  private void convertToDouble(Object packed, Array out, boolean convertUnsigned, boolean applyScaleOffset,
+      boolean convertMissing) {
+    int size = (int) out.getSize();
+    Object storage = out.getStorage();
+    double[] buffer = (storage instanceof double[]) ? (double[]) storage : new double[Math.min(size, CHUNK)];
+
+    for (int start = 0; start < size; start += CHUNK) {
+      int len = Math.min(CHUNK, size - start);
+      int off = (buffer == storage) ? start : 0;
+      unpack(packed, start, len, buffer, off, convertUnsigned);
 
-      if (convertUnsigned) {
-        value = convertUnsigned(value);
-      }
       if (applyScaleOffset) {
-        value = applyScaleOffset(value);
+        for (int i = off; i < off + len; i++)
+          buffer[i] = scale * buffer[i] + offset;
       }
       if (convertMissing) {
-        value = convertMissing(value);
+        for (int i = off; i < off + len; i++) {
+          if (isMissing(buffer[i]))
+            buffer[i] = Double.NaN;
+        }
       }
 
-      iterOut.setObjectNext(value);
+      if (storage instanceof float[]) {
+        float[] result = (float[]) storage;
+        for (int i = 0; i < len; i++)
+          result[start + i] = (float) buffer[i];
+      } else if (buffer != storage) {
+        for (int i = 0; i < len; i++)
+          out.setDouble(start + i, buffer[i]);
+      }
     }
+  }
 
-    return out;
+  // copy len values starting at start into buffer at off, widening unsigned values if convertUnsigned
+  private static void unpack(Object packed, int start, int len, double[] buffer, int off, boolean convertUnsigned) {
+    if (packed instanceof byte[]) {
+      byte[] pa = (byte[]) packed;
+      for (int i = 0; i < len; i++)
+        buffer[off + i] = convertUnsigned ? pa[start + i] & 0xff : pa[start + i];
+    } else if (packed instanceof short[]) {
+      short[] pa = (short[]) packed;
+      for (int i = 0; i < len; i++)
+        buffer[off + i] = convertUnsigned ? pa[start + i] & 0xffff : pa[start + i];
+    } else if (packed instanceof int[]) {
+      int[] pa = (int[]) packed;
+      for (int i = 0; i < len; i++)
+        buffer[off + i] = convertUnsigned ? pa[start + i] & 0xffffffffL : pa[start + i];
+    } else if (packed instanceof long[]) {
+      long[] pa = (long[]) packed;
+      for (int i = 0; i < len; i++) {
+        long val = pa[start + i];
+        buffer[off + i] = (convertUnsigned && val < 0) ? DataType.unsignedLongToBigInt(val).doubleValue() : val;
+      }
+    } else if (packed instanceof float[]) {
+      float[] pa = (float[]) packed;
+      for (int i = 0; i < len; i++)
+        buffer[off + i] = pa[start + i];
+    } else {
+      double[] pa = (double[]) packed;
+      System.arraycopy(pa, start, buffer, off, len);
+    }
+  }
+
+  // integral output without scale/offset: only the unsigned conversion, which is exact in a long
+  private static void convertToLong(Object packed, Array out, boolean convertUnsigned) {
+    int size = (int) out.getSize();
+    if (packed instanceof byte[]) {
+      byte[] pa = (byte[]) packed;
+      for (int i = 0; i < size; i++)
+        out.setLong(i, convertUnsigned ? pa[i] & 0xff : pa[i]);
+    } else if (packed instanceof short[]) {
+      short[] pa = (short[]) packed;
+      for (int i = 0; i < size; i++)
+        out.setLong(i, convertUnsigned ? pa[i] & 0xffff : pa[i]);
+    } else if (packed instanceof int[]) {
+      int[] pa = (int[]) packed;
+      for (int i = 0; i < size; i++)
+        out.setLong(i, convertUnsigned ? pa[i] & 0xffffffffL : pa[i]);
+    } else {
+      long[] pa = (long[]) packed;
+      for (int i = 0; i < size; i++)
+        out.setLong(i, pa[i]);
+    }
   }
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.filter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The HDF5 Blosc filter, id 32001. Each chunk is a Blosc (version 1) buffer: a 16 byte header, then independently
+ * compressed blocks, optionally byte or bit shuffled. The blosclz, lz4, zlib and zstd compressors are supported.
+ * The delta filter is not; such chunks throw an IOException.
+ */
+public class Blosc implements Filter {
+  public static final int ID = 32001;
+
+  private static final int HEADER_SIZE = 16;
+  private static final int DOSHUFFLE = 0x01;
+  private static final int MEMCPYED = 0x02;
+  private static final int DOBITSHUFFLE = 0x04;
+  private static final int DODELTA = 0x08;
+  private static final int DONTSPLIT = 0x10;
+  private static final int MAX_SPLITS = 16;
+  private static final int MIN_BUFFERSIZE = 128;
+
+  private static final int BLOSCLZ = 0;
+  private static final int LZ4 = 1;
+  private static final int SNAPPY = 2;
+  private static final int ZLIB = 3;
+  private static final int ZSTD = 4;
+
+  @Override
+  public String getName() {
+    return "blosc";
+  }
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public byte[] decode(byte[] dataIn) throws IOException {
+    if (dataIn.length < HEADER_SIZE)
+      throw new IOException("Blosc chunk too short");
+    int flags = dataIn[2] & 0xff;
+    int typesize = dataIn[3] & 0xff;
+    int nbytes = readIntLE(dataIn, 4);
+    int blocksize = readIntLE(dataIn, 8);
+    int cbytes = readIntLE(dataIn, 12);
+    if (nbytes < 0 || cbytes > dataIn.length || typesize == 0)
+      throw new IOException("Invalid Blosc header");
+
+    byte[] out = new byte[nbytes];
+    if ((flags & MEMCPYED) != 0) {
+      if (HEADER_SIZE + nbytes > dataIn.length)
+        throw new IOException("Blosc chunk truncated");
+      System.arraycopy(dataIn, HEADER_SIZE, out, 0, nbytes);
+      return out;
+    }
+    if (nbytes == 0)
+      return out;
+    if (blocksize <= 0)
+      throw new IOException("Invalid Blosc header");
+    if ((flags & DODELTA) != 0)
+      throw new IOException("Blosc delta filter is not supported");
+
+    int compressor = flags >>> 5;
+    boolean shuffle = (flags & DOSHUFFLE) != 0 && typesize > 1;
+    boolean bitshuffle = (flags & DOBITSHUFFLE) != 0;
+    int nblocks = nbytes / blocksize + (nbytes % blocksize == 0 ? 0 : 1);
+    byte[] tmp = (shuffle || bitshuffle) ? new byte[blocksize] : null;
+
+    for (int j = 0; j < nblocks; j++) {
+      int start = readIntLE(dataIn, HEADER_SIZE + 4 * j);
+      int bsize = Math.min(blocksize, nbytes - j * blocksize);
+      boolean leftover = bsize < blocksize;
+      byte[] dst = (tmp != null) ? tmp : out;
+      int dstPos = (tmp != null) ? 0 : j * blocksize;
+
+      // the block may be split into typesize streams, each compressed separately
+      int nstreams = ((flags & DONTSPLIT) == 0 && !leftover && typesize <= MAX_SPLITS
+          && blocksize / typesize >= MIN_BUFFERSIZE) ? typesize : 1;
+      int streamSize = bsize / nstreams;
+      int ip = start;
+      for (int k = 0; k < nstreams; k++) {
+        if (ip + 4 > dataIn.length)
+          throw new IOException("Blosc chunk truncated");
+        int csize = readIntLE(dataIn, ip);
+        ip += 4;
+        if (csize < 0 || ip + csize > dataIn.length)
+          throw new IOException("Blosc chunk truncated");
+        int pos = dstPos + k * streamSize;
+        if (csize == streamSize) {
+          System.arraycopy(dataIn, ip, dst, pos, streamSize); // stored as is
+        } else {
+          int n = decompress(compressor, dataIn, ip, csize, dst, pos, streamSize);
+          if (n != streamSize)
+            throw new IOException("Blosc stream decompressed to " + n + " bytes, expected " + streamSize);
+        }
+        ip += csize;
+      }
+
+      if (shuffle) {
+        unshuffle(typesize, bsize, tmp, out, j * blocksize);
+      } else if (bitshuffle) {
+        bitunshuffle(typesize, bsize, tmp, out, j * blocksize);
+      }
+    }
+    return out;
+  }
+
+  private int decompress(int compressor, byte[] src, int srcPos, int srcLen, byte[] dst, int dstPos, int maxLen)
+      throws IOException {
+    switch (compressor) {
+      case BLOSCLZ:
+        return blosclzDecompress(src, srcPos, srcLen, dst, dstPos, maxLen);
+      case LZ4:
+        return Lz4.decompressBlock(src, srcPos, srcLen, dst, dstPos, maxLen);
+      case ZLIB:
+        return Deflate.inflate(src, srcPos, srcLen, dst, dstPos, maxLen);
+      case ZSTD:
+        byte[] data = ZstdDecoder.decompress(Arrays.copyOfRange(src, srcPos, srcPos + srcLen));
+        if (data.length > maxLen)
+          throw new IOException("Blosc zstd stream too large");
+        System.arraycopy(data, 0, dst, dstPos, data.length);
+        return data.length;
+      case SNAPPY:
+        throw new IOException("Blosc snappy compressor is not supported");
+      default:
+        throw new IOException("Unknown Blosc compressor " + compressor);
+    }
+  }
+
+  // BloscLZ, a FastLZ variant
+  static int blosclzDecompress(byte[] src, int srcPos, int srcLen, byte[] dst, int dstPos, int maxLen)
+      throws IOException {
+    final int maxDistance = 8191;
+    int ip = srcPos;
+    int ipEnd = srcPos + srcLen;
+    int op = dstPos;
+    int opEnd = dstPos + maxLen;
+    if (srcLen == 0)
+      return 0;
+    try {
+      int ctrl = src[ip++] & 31;
+      while (true) {
+        if (ctrl >= 32) { // match
+          int len = (ctrl >>> 5) - 1;
+          int ofs = (ctrl & 31) << 8;
+          if (len == 6) {
+            int code;
+            do {
+              code = src[ip++] & 0xff;
+              len += code;
+            } while (code == 255);
+          }
+          int code = src[ip++] & 0xff;
+          len += 3;
+          int ref = op - ofs - code;
+          if (code == 255 && ofs == (31 << 8)) { // 16 bit distance
+            ofs = (src[ip++] & 0xff) << 8;
+            ofs += src[ip++] & 0xff;
+            ref = op - ofs - maxDistance;
+          }
+          ref--;
+          if (ref < dstPos || op + len > opEnd)
+            throw new IOException("Invalid blosclz stream: match out of bounds");
+          Lz4.copyMatch(dst, op, op - ref, len);
+          op += len;
+        } else { // literal run
+          ctrl++;
+          if (op + ctrl > opEnd || ip + ctrl > ipEnd)
+            throw new IOException("Invalid blosclz stream: literals out of bounds");
+          System.arraycopy(src, ip, dst, op, ctrl);
+          op += ctrl;
+          ip += ctrl;
+        }
+        if (ip >= ipEnd)
+          break;
+        ctrl = src[ip++] & 0xff;
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Invalid blosclz stream: truncated");
+    }
+    return op - dstPos;
+  }
+
+  // byte unshuffle; trailing bytes that don't make up a whole element are not shuffled
+  static void unshuffle(int typesize, int bsize, byte[] src, byte[] dst, int dstPos) {
+    int nelems = bsize / typesize;
+    for (int j = 0; j < typesize; j++) {
+      int from = j * nelems;
+      for (int i = 0; i < nelems; i++) {
+        dst[dstPos + i * typesize + j] = src[from + i];
+      }
+    }
+    int done = nelems * typesize;
+    System.arraycopy(src, done, dst, dstPos + done, bsize - done);
+  }
+
+  // bit unshuffle: bit k of byte j of element i is at bit (8 * j + k) * nelems + i.
+  // Only whole groups of 8 elements are shuffled.
+  static void bitunshuffle(int typesize, int bsize, byte[] src, byte[] dst, int dstPos) {
+    int nelems = bsize / typesize;
+    nelems -= nelems % 8;
+    int rowBytes = nelems / 8;
+    Arrays.fill(dst, dstPos, dstPos + nelems * typesize, (byte) 0);
+    for (int row = 0; row < 8 * typesize; row++) {
+      int j = row >>> 3;
+      int k = row & 7;
+      int rowStart = row * rowBytes;
+      for (int b = 0; b < rowBytes; b++) {
+        int bits = src[rowStart + b] & 0xff;
+        if (bits == 0)
+          continue;
+        for (int bit = 0; bit < 8; bit++) {
+          if ((bits & (1 << bit)) != 0) {
+            int i = 8 * b + bit;
+            dst[dstPos + i * typesize + j] |= (byte) (1 << k);
+          }
+        }
+      }
+    }
+    int done = nelems * typesize;
+    System.arraycopy(src, done, dst, dstPos + done, bsize - done);
+  }
+
+  private static int readIntLE(byte[] src, int pos) {
+    return (src[pos] & 0xff) | ((src[pos + 1] & 0xff) << 8) | ((src[pos + 2] & 0xff) << 16)
+        | ((src[pos + 3] & 0xff) << 24);
+  }
+
+  public static class Provider implements FilterProvider {
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getName() {
+      return "blosc";
+    }
+
+    @Override
+    public Filter create(int[] clientData) {
+      return new Blosc();
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.filter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import ucar.unidata.io.bzip2.BZip2ReadException;
+import ucar.unidata.io.bzip2.CBZip2InputStream;
+
+/** The HDF5 bzip2 filter, id 307. Each chunk is a bzip2 stream. */
+public class Bzip2 implements Filter {
+  public static final int ID = 307;
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+
+  @Override
+  public String getName() {
+    return "bzip2";
+  }
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public byte[] decode(byte[] dataIn) throws IOException {
+    if (dataIn.length < 2 || dataIn[0] != 'B' || dataIn[1] != 'Z')
+      throw new IOException("Not a bzip2 stream");
+    byte[] out = new byte[(int) Math.min(MAX_ARRAY_LEN, Math.max(64, 4L * dataIn.length))];
+    int n = 0;
+    try {
+      // skip the "BZ" magic, which CBZip2InputStream does not expect
+      CBZip2InputStream in = new CBZip2InputStream(new ByteArrayInputStream(dataIn), true);
+      while (true) {
+        int count = in.read(out, n, out.length - n);
+        if (count < 0)
+          break;
+        n += count;
+        if (n == out.length) {
+          // out is full: grow it only if there really is more data
+          int b = in.read();
+          if (b < 0)
+            break;
+          if (out.length == MAX_ARRAY_LEN)
+            throw new IOException("Decompressed bzip2 data too large");
+          out = Arrays.copyOf(out, (int) Math.min(MAX_ARRAY_LEN, 2L * out.length));
+          out[n++] = (byte) b;
+        }
+      }
+    } catch (BZip2ReadException e) {
+      throw new IOException(e);
+    }
+    return n == out.length ? out : Arrays.copyOf(out, n);
+  }
+
+  public static class Provider implements FilterProvider {
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getName() {
+      return "bzip2";
+    }
+
+    @Override
+    public Filter create(int[] clientData) {
+      return new Bzip2();
+    }
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.filter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * The HDF5 deflate filter, id 1, and the zlib and gzip decompression used elsewhere in the library.
+ * Each thread keeps and reuses its Inflaters, rather than creating one for every chunk and leaving its native
+ * memory to be freed by finalization. Data is inflated directly into a destination array, which is exactly
+ * sized when the uncompressed size is known.
+ *
+ * @since 5.4
+ */
+public class Deflate implements Filter {
+  public static final int ID = 1;
+
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16;
+
+  private static final ThreadLocal<Inflater> zlibInflater = ThreadLocal.withInitial(Inflater::new);
+  private static final ThreadLocal<Inflater> rawInflater = ThreadLocal.withInitial(() -> new Inflater(true));
+
+  @Override
+  public String getName() {
+    return "deflate";
+  }
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public byte[] decode(byte[] dataIn) throws IOException {
+    return inflate(dataIn, 0, dataIn.length, 0);
+  }
+
+  /**
+   * Inflate zlib data.
+   *
+   * @param src compressed data
+   * @param expectedSize the uncompressed size if known, else an estimate or 0. The result is always exact.
+   * @return the uncompressed data
+   * @throws IOException if the data is invalid
+   */
+  public static byte[] inflate(byte[] src, int expectedSize) throws IOException {
+    return inflate(src, 0, src.length, expectedSize);
+  }
+
+  /**
+   * Inflate zlib data.
+   *
+   * @param src compressed data
+   * @param off start of the data in src
+   * @param len length of the data
+   * @param expectedSize the uncompressed size if known, else an estimate or 0. The result is always exact.
+   * @return the uncompressed data
+   * @throws IOException if the data is invalid
+   */
+  public static byte[] inflate(byte[] src, int off, int len, int expectedSize) throws IOException {
+    Inflater inflater = zlibInflater.get();
+    inflater.reset();
+    inflater.setInput(src, off, len);
+    int size = expectedSize > 0 ? expectedSize : (int) Math.min(MAX_ARRAY_LEN, Math.max(64, 4L * len));
+    byte[] out = new byte[size];
+    int n = 0;
+    try {
+      while (true) {
+        n += inflate(inflater, out, n, out.length - n);
+        if (inflater.finished())
+          break;
+        // out is full: grow it only if there really is more data
+        byte[] probe = new byte[1];
+        int extra = inflate(inflater, probe, 0, 1);
+        if (extra == 0 && inflater.finished())
+          break;
+        if (out.length == MAX_ARRAY_LEN)
+          throw new IOException("Inflated data too large");
+        out = Arrays.copyOf(out, (int) Math.min(MAX_ARRAY_LEN, 2L * out.length));
+        out[n] = probe[0];
+        n += extra;
+      }
+    } finally {
+      inflater.reset();
+    }
+    return n == out.length ? out : Arrays.copyOf(out, n);
+  }
+
+  /**
+   * Inflate zlib data into the given array.
+   *
+   * @param src compressed data
+   * @param off start of the data in src
+   * @param len length of the data
+   * @param dst put the uncompressed data here
+   * @param dstOff start here in dst
+   * @param dstLen maximum number of bytes to write
+   * @return the number of bytes written
+   * @throws IOException if the data is invalid, or its uncompressed size is larger than dstLen
+   */
+  public static int inflate(byte[] src, int off, int len, byte[] dst, int dstOff, int dstLen) throws IOException {
+    Inflater inflater = zlibInflater.get();
+    inflater.reset();
+    inflater.setInput(src, off, len);
+    try {
+      int n = inflate(inflater, dst, dstOff, dstLen);
+      if (!inflater.finished() && (inflate(inflater, new byte[1], 0, 1) > 0 || !inflater.finished()))
+        throw new IOException("Inflated data larger than " + dstLen + " bytes");
+      return n;
+    } finally {
+      inflater.reset();
+    }
+  }
+
+  // inflate until finished or dst is full
+  private static int inflate(Inflater inflater, byte[] dst, int dstOff, int dstLen) throws IOException {
+    int n = 0;
+    try {
+      while (n < dstLen && !inflater.finished()) {
+        int count = inflater.inflate(dst, dstOff + n, dstLen - n);
+        if (count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary()))
+          throw new EOFException("Compressed data is truncated");
+        n += count;
+      }
+    } catch (DataFormatException e) {
+      throw new ZipException(e.getMessage());
+    }
+    return n;
+  }
+
+  /**
+   * Decompress gzip data, which may have several members, from in to out.
+   * Trailing data after a member that does not start another member is ignored.
+   *
+   * @param in gzip data
+   * @param out write the uncompressed data here
+   * @return the number of uncompressed bytes written
+   * @throws IOException if the data is invalid, or on io error
+   */
+  public static long gunzip(InputStream in, OutputStream out) throws IOException {
+    Inflater inflater = rawInflater.get();
+    byte[] inbuf = new byte[64 * 1024];
+    byte[] outbuf = new byte[64 * 1024];
+    CRC32 crc = new CRC32();
+    long total = 0;
+
+    // input not yet given to the inflater, or left over from the previous member
+    int avail = 0;
+    int pos = 0;
+    boolean first = true;
+    try {
+      while (true) {
+        // header
+        if (avail == 0) {
+          avail = readSome(in, inbuf);
+          pos = 0;
+        }
+        if (avail <= 0) {
+          if (first)
+            throw new EOFException("Empty gzip data");
+          break;
+        }
+        GzipInput gin = new GzipInput(in, inbuf, pos, avail);
+        if (first) {
+          gin.readHeader();
+        } else {
+          // like GZIPInputStream, ignore whatever follows the last member that is not a gzip header, eg padding
+          try {
+            gin.readHeader();
+          } catch (ZipException | EOFException e) {
+            break;
+          }
+        }
+        pos = gin.pos;
+        avail = gin.avail;
+        first = false;
+
+        // deflated data
+        inflater.reset();
+        crc.reset();
+        long memberSize = 0;
+        while (!inflater.finished()) {
+          if (inflater.needsInput()) {
+            if (avail == 0) {
+              avail = readSome(in, inbuf);
+              pos = 0;
+              if (avail <= 0)
+                throw new EOFException("Unexpected end of gzip data");
+            }
+            inflater.setInput(inbuf, pos, avail);
+            pos += avail;
+            avail = 0;
+          }
+          int n = inflater.inflate(outbuf);
+          if (n > 0) {
+            out.write(outbuf, 0, n);
+            crc.update(outbuf, 0, n);
+            memberSize += n;
+          } else if (inflater.needsDictionary()) {
+            throw new ZipException("Invalid gzip data: needs a dictionary");
+          }
+        }
+        total += memberSize;
+
+        // the input the inflater did not use starts the trailer
+        int unused = inflater.getRemaining();
+        pos -= unused;
+        avail += unused;
+        gin = new GzipInput(in, inbuf, pos, avail);
+        long storedCrc = gin.readIntLE() & 0xffffffffL;
+        long storedSize = gin.readIntLE() & 0xffffffffL;
+        if (storedCrc != crc.getValue() || storedSize != (memberSize & 0xffffffffL))
+          throw new ZipException("Corrupt gzip data: bad checksum or size");
+        pos = gin.pos;
+        avail = gin.avail;
+      }
+    } catch (DataFormatException e) {
+      throw new ZipException(e.getMessage());
+    } finally {
+      inflater.reset();
+    }
+    return total;
+  }
+
+  private static int readSome(InputStream in, byte[] buf) throws IOException {
+    int n;
+    do {
+      n = in.read(buf);
+    } while (n == 0);
+    return n;
+  }
+
+  // reads the bytes around the deflated data: from a buffer, refilling from the stream when needed
+  private static class GzipInput {
+    private final InputStream in;
+    private final byte[] buf;
+    int pos, avail;
+
+    GzipInput(InputStream in, byte[] buf, int pos, int avail) {
+      this.in = in;
+      this.buf = buf;
+      this.pos = pos;
+      this.avail = avail;
+    }
+
+    int readByte() throws IOException {
+      if (avail == 0) {
+        avail = readSome(in, buf);
+        pos = 0;
+        if (avail <= 0)
+          throw new EOFException("Unexpected end of gzip data");
+      }
+      avail--;
+      return buf[pos++] & 0xff;
+    }
+
+    int readShortLE() throws IOException {
+      return readByte() | (readByte() << 8);
+    }
+
+    int readIntLE() throws IOException {
+      return readShortLE() | (readShortLE() << 16);
+    }
+
+    void readHeader() throws IOException {
+      if (readShortLE() != GZIP_MAGIC)
+        throw new ZipException("Not in gzip format");
+      if (readByte() != 8)
+        throw new ZipException("Unsupported gzip compression method");
+      int flags = readByte();
+      for (int i = 0; i < 6; i++) {
+        readByte(); // mtime, xfl, os
+      }
+      if ((flags & FEXTRA) != 0) {
+        int n = readShortLE();
+        for (int i = 0; i < n; i++)
+          readByte();
+      }
+      if ((flags & FNAME) != 0) {
+        while (readByte() != 0);
+      }
+      if ((flags & FCOMMENT) != 0) {
+        while (readByte() != 0);
+      }
+      if ((flags & FHCRC) != 0) {
+        readShortLE();
+      }
+    }
+  }
+
+  public static class Provider implements FilterProvider {
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getName() {
+      return "deflate";
+    }
+
+    @Override
+    public Filter create(int[] clientData) {
+      return new Deflate();
+    }
+  }
+}
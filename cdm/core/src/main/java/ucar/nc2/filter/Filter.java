@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.filter;
+
+import java.io.IOException;
+
+/**
+ * Decodes data that was encoded by an HDF5 filter, eg a compressor.
+ * Implementations must be thread-safe, since chunks may be decoded in parallel.
+ *
+ * @since 5.4
+ */
+public interface Filter {
+
+  /** The name of the filter. */
+  String getName();
+
+  /** The HDF5 filter id, see https://portal.hdfgroup.org/display/support/Registered+Filter+Plugins. */
+  int getId();
+
+  /**
+   * Decode the data.
+   *
+   * @param dataIn the encoded data
+   * @return the decoded data
+   * @throws IOException if the data is invalid
+   */
+  byte[] decode(byte[] dataIn) throws IOException;
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.filter;
+
+/**
+ * A Service Provider of {@link Filter}, keyed by HDF5 filter id.
+ * Providers are found with the {@link java.util.ServiceLoader} mechanism, or added with
+ * {@link Filters#registerFilterProvider(FilterProvider)}.
+ *
+ * @since 5.4
+ */
+public interface FilterProvider {
+
+  /** The HDF5 filter id. */
+  int getId();
+
+  /** The name of the filter. */
+  String getName();
+
+  /** Determine if this Provider can decode the given HDF5 filter id. */
+  default boolean canProvide(int id) {
+    return id == getId();
+  }
+
+  /**
+   * Create a Filter.
+   *
+   * @param clientData the filter's parameters, as stored in the HDF5 filter pipeline message
+   */
+  Filter create(int[] clientData);
+}
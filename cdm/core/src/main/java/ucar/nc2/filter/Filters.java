@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import javax.annotation.Nullable;
+
+/**
+ * Finds the {@link Filter} for an HDF5 filter id. Explicitly registered providers are tried first,
+ * then the ones found by the {@link ServiceLoader}. The library provides deflate (1), bzip2 (307), LZ4 (32004),
+ * Blosc (32001) and Zstandard (32015). Shuffle and fletcher32 are handled by the HDF5 iosp itself.
+ *
+ * @since 5.4
+ */
+public class Filters {
+  private static final List<FilterProvider> registeredProviders = new ArrayList<>();
+  private static List<FilterProvider> loadedProviders;
+
+  /**
+   * Register a FilterProvider. It is tried before any previously registered, and before those found by the
+   * ServiceLoader.
+   */
+  public static synchronized void registerFilterProvider(FilterProvider provider) {
+    registeredProviders.add(0, provider);
+  }
+
+  /**
+   * Get a Filter for the given HDF5 filter id.
+   *
+   * @param id the HDF5 filter id
+   * @param clientData the filter's parameters
+   * @return the Filter, or null if no provider can decode this filter
+   */
+  @Nullable
+  public static Filter getFilter(int id, int[] clientData) {
+    for (FilterProvider provider : getProviders()) {
+      if (provider.canProvide(id))
+        return provider.create(clientData);
+    }
+    return null;
+  }
+
+  private static synchronized List<FilterProvider> getProviders() {
+    if (loadedProviders == null) {
+      loadedProviders = new ArrayList<>();
+      for (FilterProvider provider : ServiceLoader.load(FilterProvider.class)) {
+        loadedProviders.add(provider);
+      }
+    }
+    List<FilterProvider> result = new ArrayList<>(registeredProviders);
+    result.addAll(loadedProviders);
+    return result;
+  }
+}
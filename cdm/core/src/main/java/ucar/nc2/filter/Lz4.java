@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The HDF5 LZ4 filter, id 32004. A chunk is the 8 byte uncompressed size and the 4 byte block size (both big endian),
+ * followed by the blocks, each one a 4 byte compressed size and an LZ4 block. A block whose compressed size equals
+ * its uncompressed size is stored as is.
+ */
+public class Lz4 implements Filter {
+  public static final int ID = 32004;
+
+  @Override
+  public String getName() {
+    return "lz4";
+  }
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public byte[] decode(byte[] dataIn) throws IOException {
+    if (dataIn.length < 12)
+      throw new IOException("LZ4 chunk too short");
+    ByteBuffer bb = ByteBuffer.wrap(dataIn); // big endian
+    long origSize = bb.getLong();
+    int blockSize = bb.getInt();
+    if (origSize < 0 || origSize > Integer.MAX_VALUE - 8 || blockSize <= 0)
+      throw new IOException("Invalid LZ4 chunk header: size=" + origSize + " blockSize=" + blockSize);
+
+    byte[] out = new byte[(int) origSize];
+    int op = 0;
+    while (op < out.length) {
+      int want = Math.min(blockSize, out.length - op);
+      if (bb.remaining() < 4)
+        throw new IOException("LZ4 chunk truncated");
+      int compressedSize = bb.getInt();
+      if (compressedSize < 0 || compressedSize > bb.remaining())
+        throw new IOException("LZ4 chunk truncated");
+      if (compressedSize == want) {
+        System.arraycopy(dataIn, bb.position(), out, op, want);
+      } else {
+        int n = decompressBlock(dataIn, bb.position(), compressedSize, out, op, want);
+        if (n != want)
+          throw new IOException("LZ4 block decompressed to " + n + " bytes, expected " + want);
+      }
+      bb.position(bb.position() + compressedSize);
+      op += want;
+    }
+    return out;
+  }
+
+  /**
+   * Decompress an LZ4 block.
+   *
+   * @param src compressed data
+   * @param srcPos start of the block in src
+   * @param srcLen length of the block
+   * @param dst put the decompressed data here
+   * @param dstPos start here in dst
+   * @param maxLen maximum number of bytes to write
+   * @return the number of decompressed bytes
+   * @throws IOException if the block is invalid
+   */
+  static int decompressBlock(byte[] src, int srcPos, int srcLen, byte[] dst, int dstPos, int maxLen)
+      throws IOException {
+    int ip = srcPos;
+    int ipEnd = srcPos + srcLen;
+    int op = dstPos;
+    int opEnd = dstPos + maxLen;
+    try {
+      while (ip < ipEnd) {
+        int token = src[ip++] & 0xff;
+
+        // literals
+        int litLen = token >>> 4;
+        if (litLen == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xff;
+            litLen += b;
+          } while (b == 255);
+        }
+        if (ip + litLen > ipEnd || op + litLen > opEnd)
+          throw new IOException("Invalid LZ4 block: literals out of bounds");
+        System.arraycopy(src, ip, dst, op, litLen);
+        ip += litLen;
+        op += litLen;
+        if (ip == ipEnd)
+          break; // the last sequence has only literals
+
+        // match
+        int offset = (src[ip] & 0xff) | ((src[ip + 1] & 0xff) << 8);
+        ip += 2;
+        int matchLen = token & 15;
+        if (matchLen == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xff;
+            matchLen += b;
+          } while (b == 255);
+        }
+        matchLen += 4;
+        if (offset == 0 || op - offset < dstPos || op + matchLen > opEnd)
+          throw new IOException("Invalid LZ4 block: match out of bounds");
+        copyMatch(dst, op, offset, matchLen);
+        op += matchLen;
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Invalid LZ4 block: truncated");
+    }
+    return op - dstPos;
+  }
+
+  // copy len bytes starting offset bytes back; the source and destination may overlap
+  static void copyMatch(byte[] buf, int op, int offset, int len) {
+    int from = op - offset;
+    if (offset >= len) {
+      System.arraycopy(buf, from, buf, op, len);
+    } else {
+      for (int i = 0; i < len; i++) {
+        buf[op + i] = buf[from + i];
+      }
+    }
+  }
+
+  public static class Provider implements FilterProvider {
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getName() {
+      return "lz4";
+    }
+
+    @Override
+    public Filter create(int[] clientData) {
+      return new Lz4();
+    }
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.filter;
+
+import java.io.IOException;
+
+/** The HDF5 Zstandard filter, id 32015. Each chunk is a zstd frame. */
+public class Zstd implements Filter {
+  public static final int ID = 32015;
+
+  @Override
+  public String getName() {
+    return "zstd";
+  }
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public byte[] decode(byte[] dataIn) throws IOException {
+    return ZstdDecoder.decompress(dataIn);
+  }
+
+  public static class Provider implements FilterProvider {
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getName() {
+      return "zstd";
+    }
+
+    @Override
+    public Filter create(int[] clientData) {
+      return new Zstd();
+    }
+  }
+}
@@ -0,0 +1,742 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.filter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Decompresses data in the Zstandard format, RFC 8878. Concatenated and skippable frames are handled.
+ * Dictionaries are not supported, and content checksums are not verified.
+ */
+class ZstdDecoder {
+  private static final int MAGIC = 0xFD2FB528;
+  private static final int SKIPPABLE_MAGIC = 0x184D2A50; // low 4 bits are any
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+
+  private static final int MAX_LL = 35;
+  private static final int MAX_ML = 52;
+  private static final int MAX_OF = 31;
+
+  private static final int[] LL_BASE = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 18, 20, 22, 24, 28,
+      32, 40, 48, 64, 128, 256, 512, 1024, 2048, 4096, 8192, 16384, 32768, 65536};
+  private static final int[] LL_BITS = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7,
+      8, 9, 10, 11, 12, 13, 14, 15, 16};
+  private static final int[] ML_BASE = {3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24,
+      25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027, 2051,
+      4099, 8195, 16387, 32771, 65539};
+  private static final int[] ML_BITS = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+
+  // the predefined distributions
+  private static final FseTable LL_DEFAULT = FseTable.build(new short[] {4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1,
+      1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1, -1, -1, -1, -1}, 36, 6);
+  private static final FseTable ML_DEFAULT = FseTable.build(new short[] {1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1,
+      -1, -1}, 53, 6);
+  private static final FseTable OF_DEFAULT = FseTable.build(new short[] {1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1}, 29, 5);
+
+  /**
+   * Decompress all the frames in src.
+   *
+   * @param src compressed data
+   * @return the decompressed data
+   * @throws IOException if the data is invalid or uses a dictionary
+   */
+  static byte[] decompress(byte[] src) throws IOException {
+    ZstdDecoder decoder = new ZstdDecoder(src);
+    try {
+      decoder.decodeFrames();
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Invalid zstd data: truncated");
+    }
+    return decoder.out.length == decoder.op ? decoder.out : Arrays.copyOf(decoder.out, decoder.op);
+  }
+
+  private final byte[] src;
+  private int ip;
+
+  private byte[] out = new byte[0];
+  private int op;
+  private int frameStart;
+
+  // state kept between the blocks of a frame
+  private final int[] rep = new int[3];
+  private HuffmanTable huffman;
+  private FseTable llTable, ofTable, mlTable;
+  private byte[] literals = new byte[0];
+
+  private ZstdDecoder(byte[] src) {
+    this.src = src;
+  }
+
+  private void decodeFrames() throws IOException {
+    while (ip < src.length) {
+      int magic = readIntLE(src, ip);
+      if ((magic & 0xFFFFFFF0) == SKIPPABLE_MAGIC) {
+        ip += 8 + readIntLE(src, ip + 4);
+        continue;
+      }
+      if (magic != MAGIC)
+        throw new IOException("Invalid zstd data: bad magic number");
+      ip += 4;
+      decodeFrame();
+    }
+  }
+
+  private void decodeFrame() throws IOException {
+    int descriptor = src[ip++] & 0xff;
+    int fcsFlag = descriptor >>> 6;
+    boolean singleSegment = (descriptor & 0x20) != 0;
+    boolean hasChecksum = (descriptor & 0x04) != 0;
+    int dictFlag = descriptor & 0x03;
+    if ((descriptor & 0x08) != 0)
+      throw new IOException("Invalid zstd data: reserved bit set");
+    if (!singleSegment)
+      ip++; // window descriptor; the whole frame is decoded into memory anyway
+
+    int dictIdSize = dictFlag == 3 ? 4 : dictFlag;
+    long dictId = readLongLE(src, ip, dictIdSize);
+    ip += dictIdSize;
+    if (dictId != 0)
+      throw new IOException("zstd dictionaries are not supported");
+
+    int fcsSize = (fcsFlag == 0) ? (singleSegment ? 1 : 0) : 1 << fcsFlag;
+    long contentSize = -1;
+    if (fcsSize > 0) {
+      contentSize = readLongLE(src, ip, fcsSize);
+      if (fcsSize == 2)
+        contentSize += 256;
+      ip += fcsSize;
+      if (contentSize < 0 || op + contentSize > MAX_ARRAY_LEN)
+        throw new IOException("zstd frame too large: " + contentSize);
+      ensureCapacity((int) contentSize);
+    }
+
+    frameStart = op;
+    rep[0] = 1;
+    rep[1] = 4;
+    rep[2] = 8;
+    huffman = null;
+    llTable = ofTable = mlTable = null;
+
+    boolean last;
+    do {
+      int header = (src[ip] & 0xff) | ((src[ip + 1] & 0xff) << 8) | ((src[ip + 2] & 0xff) << 16);
+      ip += 3;
+      last = (header & 1) != 0;
+      int type = (header >>> 1) & 3;
+      int size = header >>> 3;
+      switch (type) {
+        case 0: // raw
+          if (ip + size > src.length)
+            throw new IOException("Invalid zstd data: truncated");
+          ensureCapacity(size);
+          System.arraycopy(src, ip, out, op, size);
+          op += size;
+          ip += size;
+          break;
+        case 1: // RLE
+          ensureCapacity(size);
+          Arrays.fill(out, op, op + size, src[ip]);
+          op += size;
+          ip += 1;
+          break;
+        case 2:
+          if (ip + size > src.length)
+            throw new IOException("Invalid zstd data: truncated");
+          int blockEnd = ip + size;
+          decodeCompressedBlock(blockEnd);
+          ip = blockEnd;
+          break;
+        default:
+          throw new IOException("Invalid zstd data: reserved block type");
+      }
+    } while (!last);
+
+    if (contentSize >= 0 && op - frameStart != contentSize)
+      throw new IOException("zstd frame decompressed to " + (op - frameStart) + " bytes, expected " + contentSize);
+    if (hasChecksum)
+      ip += 4;
+  }
+
+  private void ensureCapacity(int n) throws IOException {
+    long need = (long) op + n;
+    if (need > out.length) {
+      if (need > MAX_ARRAY_LEN)
+        throw new IOException("zstd data too large");
+      out = Arrays.copyOf(out, (int) Math.min(MAX_ARRAY_LEN, Math.max(need, 2L * out.length)));
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////
+  // compressed blocks
+
+  private void decodeCompressedBlock(int blockEnd) throws IOException {
+    // literals section
+    int header = src[ip] & 0xff;
+    int litType = header & 3;
+    int sizeFormat = (header >>> 2) & 3;
+    byte[] litBuf;
+    int litStart;
+    int litSize;
+
+    if (litType == 0 || litType == 1) { // raw or RLE
+      switch (sizeFormat) {
+        case 1:
+          litSize = (header >>> 4) + ((src[ip + 1] & 0xff) << 4);
+          ip += 2;
+          break;
+        case 3:
+          litSize = (header >>> 4) + ((src[ip + 1] & 0xff) << 4) + ((src[ip + 2] & 0xff) << 12);
+          ip += 3;
+          break;
+        default:
+          litSize = header >>> 3;
+          ip += 1;
+      }
+      if (litType == 0) {
+        if (ip + litSize > blockEnd)
+          throw new IOException("Invalid zstd data: literals out of bounds");
+        litBuf = src;
+        litStart = ip;
+        ip += litSize;
+      } else {
+        litBuf = literalsBuffer(litSize);
+        Arrays.fill(litBuf, 0, litSize, src[ip]);
+        litStart = 0;
+        ip += 1;
+      }
+
+    } else { // compressed or treeless
+      int headerSize, nbits;
+      boolean fourStreams = sizeFormat != 0;
+      switch (sizeFormat) {
+        case 2:
+          headerSize = 4;
+          nbits = 14;
+          break;
+        case 3:
+          headerSize = 5;
+          nbits = 18;
+          break;
+        default:
+          headerSize = 3;
+          nbits = 10;
+      }
+      long h = readLongLE(src, ip, headerSize);
+      int mask = (1 << nbits) - 1;
+      litSize = (int) ((h >>> 4) & mask);
+      int compressedSize = (int) ((h >>> (4 + nbits)) & mask);
+      ip += headerSize;
+      int end = ip + compressedSize;
+      if (end > blockEnd)
+        throw new IOException("Invalid zstd data: literals out of bounds");
+
+      if (litType == 2) {
+        huffman = HuffmanTable.read(src, ip, end);
+        ip = huffman.end;
+      } else if (huffman == null) {
+        throw new IOException("Invalid zstd data: no previous Huffman table");
+      }
+
+      litBuf = literalsBuffer(litSize);
+      litStart = 0;
+      if (fourStreams) {
+        if (ip + 6 > end)
+          throw new IOException("Invalid zstd data: literals out of bounds");
+        int size1 = (src[ip] & 0xff) | ((src[ip + 1] & 0xff) << 8);
+        int size2 = (src[ip + 2] & 0xff) | ((src[ip + 3] & 0xff) << 8);
+        int size3 = (src[ip + 4] & 0xff) | ((src[ip + 5] & 0xff) << 8);
+        int start1 = ip + 6;
+        int start2 = start1 + size1;
+        int start3 = start2 + size2;
+        int start4 = start3 + size3;
+        if (start4 >= end)
+          throw new IOException("Invalid zstd data: literals out of bounds");
+        int segment = (litSize + 3) / 4;
+        if (3 * segment > litSize)
+          throw new IOException("Invalid zstd data: too few literals for four streams");
+        huffman.decodeStream(src, start1, start2, litBuf, 0, segment);
+        huffman.decodeStream(src, start2, start3, litBuf, segment, segment);
+        huffman.decodeStream(src, start3, start4, litBuf, 2 * segment, segment);
+        huffman.decodeStream(src, start4, end, litBuf, 3 * segment, litSize - 3 * segment);
+      } else {
+        huffman.decodeStream(src, ip, end, litBuf, 0, litSize);
+      }
+      ip = end;
+    }
+
+    // sequences section
+    int nbSeq = src[ip++] & 0xff;
+    if (nbSeq >= 128) {
+      if (nbSeq < 255) {
+        nbSeq = ((nbSeq - 128) << 8) + (src[ip++] & 0xff);
+      } else {
+        nbSeq = (src[ip] & 0xff) + ((src[ip + 1] & 0xff) << 8) + 0x7F00;
+        ip += 2;
+      }
+    }
+
+    ensureCapacity(litSize);
+    if (nbSeq == 0) {
+      if (ip != blockEnd)
+        throw new IOException("Invalid zstd data: extra bytes in block");
+      System.arraycopy(litBuf, litStart, out, op, litSize);
+      op += litSize;
+      return;
+    }
+
+    int modes = src[ip++] & 0xff;
+    if ((modes & 3) != 0)
+      throw new IOException("Invalid zstd data: reserved bits set");
+    llTable = selectTable(modes >>> 6, LL_DEFAULT, llTable, MAX_LL, 9, blockEnd);
+    ofTable = selectTable((modes >>> 4) & 3, OF_DEFAULT, ofTable, MAX_OF, 8, blockEnd);
+    mlTable = selectTable((modes >>> 2) & 3, ML_DEFAULT, mlTable, MAX_ML, 9, blockEnd);
+
+    executeSequences(nbSeq, blockEnd, litBuf, litStart, litSize);
+  }
+
+  private byte[] literalsBuffer(int size) {
+    if (literals.length < size)
+      literals = new byte[Math.max(size, 128 * 1024)];
+    return literals;
+  }
+
+  private FseTable selectTable(int mode, FseTable predefined, FseTable previous, int maxSymbol, int maxLog,
+      int blockEnd) throws IOException {
+    switch (mode) {
+      case 0:
+        return predefined;
+      case 1:
+        int symbol = src[ip++] & 0xff;
+        if (symbol > maxSymbol)
+          throw new IOException("Invalid zstd data: RLE symbol out of range");
+        return FseTable.rle(symbol);
+      case 2:
+        short[] counts = new short[maxSymbol + 1];
+        int[] result = readNormalizedCounts(src, ip, blockEnd, counts, maxLog);
+        ip = result[2];
+        return FseTable.build(counts, result[1], result[0]);
+      default:
+        if (previous == null)
+          throw new IOException("Invalid zstd data: no previous table to repeat");
+        return previous;
+    }
+  }
+
+  private void executeSequences(int nbSeq, int blockEnd, byte[] litBuf, int litStart, int litSize)
+      throws IOException {
+    int litPos = litStart;
+    int litEnd = litStart + litSize;
+    FseTable llt = llTable, oft = ofTable, mlt = mlTable;
+
+    BackwardBitReader br = new BackwardBitReader(src, ip, blockEnd);
+    int llState = br.read(llt.log);
+    int ofState = br.read(oft.log);
+    int mlState = br.read(mlt.log);
+
+    for (int i = 0; i < nbSeq; i++) {
+      int ofCode = oft.symbol[ofState];
+      int llCode = llt.symbol[llState];
+      int mlCode = mlt.symbol[mlState];
+      if (ofCode > MAX_OF)
+        throw new IOException("Invalid zstd data: offset code out of range");
+
+      long offsetValue = (1L << ofCode) + br.read(ofCode);
+      int matchLen = ML_BASE[mlCode] + br.read(ML_BITS[mlCode]);
+      int litLen = LL_BASE[llCode] + br.read(LL_BITS[llCode]);
+
+      int offset;
+      if (offsetValue > 3) {
+        if (offsetValue - 3 > MAX_ARRAY_LEN)
+          throw new IOException("Invalid zstd data: offset out of range");
+        offset = (int) (offsetValue - 3);
+        rep[2] = rep[1];
+        rep[1] = rep[0];
+        rep[0] = offset;
+      } else {
+        int index = (int) offsetValue - 1 + (litLen == 0 ? 1 : 0);
+        if (index == 0) {
+          offset = rep[0];
+        } else {
+          offset = (index == 3) ? rep[0] - 1 : rep[index];
+          if (offset == 0)
+            offset = 1;
+          if (index != 1)
+            rep[2] = rep[1];
+          rep[1] = rep[0];
+          rep[0] = offset;
+        }
+      }
+
+      if (i < nbSeq - 1) {
+        llState = llt.newState[llState] + br.read(llt.nbBits[llState]);
+        mlState = mlt.newState[mlState] + br.read(mlt.nbBits[mlState]);
+        ofState = oft.newState[ofState] + br.read(oft.nbBits[ofState]);
+      }
+
+      if (litPos + litLen > litEnd)
+        throw new IOException("Invalid zstd data: literals out of bounds");
+      ensureCapacity(litLen + matchLen);
+      System.arraycopy(litBuf, litPos, out, op, litLen);
+      litPos += litLen;
+      op += litLen;
+
+      if (offset > op - frameStart)
+        throw new IOException("Invalid zstd data: match offset out of bounds");
+      Lz4.copyMatch(out, op, offset, matchLen);
+      op += matchLen;
+    }
+    if (br.overflowed())
+      throw new IOException("Invalid zstd data: sequences truncated");
+
+    int rest = litEnd - litPos;
+    ensureCapacity(rest);
+    System.arraycopy(litBuf, litPos, out, op, rest);
+    op += rest;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////
+  // entropy coding
+
+  /**
+   * Read an FSE table description.
+   *
+   * @return accuracy log, number of symbols, and the position after the description
+   */
+  static int[] readNormalizedCounts(byte[] src, int start, int end, short[] counts, int maxLog) throws IOException {
+    ForwardBitReader br = new ForwardBitReader(src, start, end);
+    int log = br.peek(4) + 5;
+    br.skip(4);
+    if (log > maxLog)
+      throw new IOException("Invalid zstd data: FSE accuracy log too large");
+
+    int maxSymbol = counts.length - 1;
+    int remaining = (1 << log) + 1;
+    int threshold = 1 << log;
+    int nbits = log + 1;
+    int symbol = 0;
+    boolean previous0 = false;
+    while (remaining > 1 && symbol <= maxSymbol) {
+      if (previous0) {
+        int n0 = symbol;
+        while (br.peek(2) == 3) {
+          n0 += 3;
+          br.skip(2);
+        }
+        n0 += br.peek(2);
+        br.skip(2);
+        if (n0 > maxSymbol)
+          throw new IOException("Invalid zstd data: FSE symbol out of range");
+        while (symbol < n0)
+          counts[symbol++] = 0;
+      }
+
+      int max = (2 * threshold - 1) - remaining;
+      int bits = br.peek(nbits);
+      int count;
+      if ((bits & (threshold - 1)) < max) {
+        count = bits & (threshold - 1);
+        br.skip(nbits - 1);
+      } else {
+        count = bits & (2 * threshold - 1);
+        if (count >= threshold)
+          count -= max;
+        br.skip(nbits);
+      }
+      count--;
+      remaining -= Math.abs(count);
+      counts[symbol++] = (short) count;
+      previous0 = count == 0;
+      while (remaining < threshold) {
+        nbits--;
+        threshold >>= 1;
+      }
+    }
+    if (remaining != 1 || br.overflowed())
+      throw new IOException("Invalid zstd data: bad FSE table description");
+    return new int[] {log, symbol, br.bytePosition()};
+  }
+
+  /** An FSE decoding table. */
+  static class FseTable {
+    final int log;
+    final int[] symbol;
+    final int[] nbBits;
+    final int[] newState;
+
+    private FseTable(int log) {
+      int size = 1 << log;
+      this.log = log;
+      this.symbol = new int[size];
+      this.nbBits = new int[size];
+      this.newState = new int[size];
+    }
+
+    static FseTable rle(int symbol) {
+      FseTable table = new FseTable(0);
+      table.symbol[0] = symbol;
+      return table;
+    }
+
+    static FseTable build(short[] counts, int nsymbols, int log) {
+      FseTable table = new FseTable(log);
+      int size = 1 << log;
+      int highThreshold = size - 1;
+      int[] symbolNext = new int[nsymbols];
+
+      // "less than 1" probabilities go at the end
+      for (int s = 0; s < nsymbols; s++) {
+        if (counts[s] == -1) {
+          table.symbol[highThreshold--] = s;
+          symbolNext[s] = 1;
+        } else {
+          symbolNext[s] = counts[s];
+        }
+      }
+
+      // spread the other symbols
+      int step = (size >>> 1) + (size >>> 3) + 3;
+      int mask = size - 1;
+      int position = 0;
+      for (int s = 0; s < nsymbols; s++) {
+        for (int i = 0; i < counts[s]; i++) {
+          table.symbol[position] = s;
+          do {
+            position = (position + step) & mask;
+          } while (position > highThreshold);
+        }
+      }
+
+      for (int u = 0; u < size; u++) {
+        int s = table.symbol[u];
+        int next = symbolNext[s]++;
+        int nb = log - highestBit(next);
+        table.nbBits[u] = nb;
+        table.newState[u] = (next << nb) - size;
+      }
+      return table;
+    }
+  }
+
+  /** A Huffman decoding table for literals. */
+  static class HuffmanTable {
+    final int maxBits;
+    final byte[] symbol;
+    final byte[] nbBits;
+    int end; // position after the table description
+
+    private HuffmanTable(int maxBits) {
+      this.maxBits = maxBits;
+      this.symbol = new byte[1 << maxBits];
+      this.nbBits = new byte[1 << maxBits];
+    }
+
+    static HuffmanTable read(byte[] src, int ip, int end) throws IOException {
+      int header = src[ip++] & 0xff;
+      int[] weights = new int[256];
+      int nweights;
+      if (header < 128) { // FSE compressed weights
+        int weightsEnd = ip + header;
+        if (weightsEnd > end)
+          throw new IOException("Invalid zstd data: Huffman table out of bounds");
+        nweights = decodeWeights(src, ip, weightsEnd, weights);
+        ip = weightsEnd;
+      } else { // 4 bits each
+        nweights = header - 127;
+        if (ip + (nweights + 1) / 2 > end)
+          throw new IOException("Invalid zstd data: Huffman table out of bounds");
+        for (int i = 0; i < nweights; i++) {
+          int b = src[ip + i / 2] & 0xff;
+          weights[i] = (i % 2 == 0) ? b >>> 4 : b & 15;
+        }
+        ip += (nweights + 1) / 2;
+      }
+
+      // the weight of the last symbol is implied
+      int total = 0;
+      for (int i = 0; i < nweights; i++) {
+        if (weights[i] > 11)
+          throw new IOException("Invalid zstd data: Huffman weight too large");
+        if (weights[i] > 0)
+          total += 1 << (weights[i] - 1);
+      }
+      if (total == 0)
+        throw new IOException("Invalid zstd data: empty Huffman table");
+      int maxBits = highestBit(total) + 1;
+      int rest = (1 << maxBits) - total;
+      if (maxBits > 11 || Integer.bitCount(rest) != 1)
+        throw new IOException("Invalid zstd data: bad Huffman weights");
+      weights[nweights] = highestBit(rest) + 1;
+      int nsymbols = nweights + 1;
+
+      // symbols get codes in order of increasing weight, then increasing value
+      HuffmanTable table = new HuffmanTable(maxBits);
+      int pos = 0;
+      for (int w = 1; w <= maxBits; w++) {
+        for (int s = 0; s < nsymbols; s++) {
+          if (weights[s] == w) {
+            int len = 1 << (w - 1);
+            Arrays.fill(table.symbol, pos, pos + len, (byte) s);
+            Arrays.fill(table.nbBits, pos, pos + len, (byte) (maxBits + 1 - w));
+            pos += len;
+          }
+        }
+      }
+      table.end = ip;
+      return table;
+    }
+
+    // FSE compressed Huffman weights, decoded with two interleaved states
+    private static int decodeWeights(byte[] src, int start, int end, int[] weights) throws IOException {
+      short[] counts = new short[256];
+      int[] desc = readNormalizedCounts(src, start, end, counts, 6);
+      FseTable table = FseTable.build(counts, desc[1], desc[0]);
+      BackwardBitReader br = new BackwardBitReader(src, desc[2], end);
+      int state1 = br.read(table.log);
+      int state2 = br.read(table.log);
+      int n = 0;
+      while (true) {
+        if (n > 253)
+          throw new IOException("Invalid zstd data: too many Huffman weights");
+        weights[n++] = table.symbol[state1];
+        state1 = table.newState[state1] + br.read(table.nbBits[state1]);
+        if (br.overflowed()) {
+          weights[n++] = table.symbol[state2];
+          break;
+        }
+        weights[n++] = table.symbol[state2];
+        state2 = table.newState[state2] + br.read(table.nbBits[state2]);
+        if (br.overflowed()) {
+          weights[n++] = table.symbol[state1];
+          break;
+        }
+      }
+      return n;
+    }
+
+    void decodeStream(byte[] src, int start, int end, byte[] dst, int dstPos, int count) throws IOException {
+      BackwardBitReader br = new BackwardBitReader(src, start, end);
+      for (int i = 0; i < count; i++) {
+        int index = br.peek(maxBits);
+        dst[dstPos + i] = symbol[index];
+        br.skip(nbBits[index]);
+      }
+      if (br.remaining() != 0)
+        throw new IOException("Invalid zstd data: Huffman stream size mismatch");
+    }
+  }
+
+  /** Reads a bitstream backwards, from the last bit (below the end marker) to the first. */
+  static class BackwardBitReader {
+    private final byte[] src;
+    private final int start;
+    private int pos; // number of bits not yet read; negative after reading past the start
+
+    BackwardBitReader(byte[] src, int start, int end) throws IOException {
+      if (end <= start || src[end - 1] == 0)
+        throw new IOException("Invalid zstd data: bad bitstream");
+      this.src = src;
+      this.start = start;
+      this.pos = (end - start - 1) * 8 + highestBit(src[end - 1] & 0xff);
+    }
+
+    int read(int n) {
+      int value = peek(n);
+      pos -= n;
+      return value;
+    }
+
+    // the next n bits, padded with zeros past the start
+    int peek(int n) {
+      if (n == 0)
+        return 0;
+      int from = pos - n;
+      if (from >= 0)
+        return getBits(src, start, from, n);
+      return (pos <= 0) ? 0 : getBits(src, start, 0, pos) << -from;
+    }
+
+    void skip(int n) {
+      pos -= n;
+    }
+
+    int remaining() {
+      return pos;
+    }
+
+    boolean overflowed() {
+      return pos < 0;
+    }
+  }
+
+  /** Reads a bitstream forwards, from the lowest bit of the first byte. */
+  static class ForwardBitReader {
+    private final byte[] src;
+    private final int start;
+    private final int end;
+    private int pos; // bits read
+
+    ForwardBitReader(byte[] src, int start, int end) {
+      this.src = src;
+      this.start = start;
+      this.end = end;
+    }
+
+    // the next n bits, padded with zeros past the end
+    int peek(int n) {
+      long value = 0;
+      int first = start + (pos >>> 3);
+      int nbytes = ((pos & 7) + n + 7) >>> 3;
+      for (int i = 0; i < nbytes && first + i < end; i++) {
+        value |= (long) (src[first + i] & 0xff) << (8 * i);
+      }
+      return (int) ((value >>> (pos & 7)) & ((1L << n) - 1));
+    }
+
+    void skip(int n) {
+      pos += n;
+    }
+
+    boolean overflowed() {
+      return start + (pos + 7) / 8 > end;
+    }
+
+    int bytePosition() {
+      return start + (pos + 7) / 8;
+    }
+  }
+
+  // n bits starting at bit pos, little endian
+  private static int getBits(byte[] src, int start, int pos, int n) {
+    int first = start + (pos >>> 3);
+    int shift = pos & 7;
+    int nbytes = (shift + n + 7) >>> 3;
+    long value = 0;
+    for (int i = 0; i < nbytes; i++) {
+      value |= (long) (src[first + i] & 0xff) << (8 * i);
+    }
+    return (int) ((value >>> shift) & ((1L << n) - 1));
+  }
+
+  private static int highestBit(int value) {
+    return 31 - Integer.numberOfLeadingZeros(value);
+  }
+
+  private static int readIntLE(byte[] src, int pos) {
+    return (src[pos] & 0xff) | ((src[pos + 1] & 0xff) << 8) | ((src[pos + 2] & 0xff) << 16)
+        | ((src[pos + 3] & 0xff) << 24);
+  }
+
+  private static long readLongLE(byte[] src, int pos, int nbytes) {
+    long value = 0;
+    for (int i = 0; i < nbytes; i++) {
+      value |= (long) (src[pos + i] & 0xff) << (8 * i);
+    }
+    return value;
+  }
+}
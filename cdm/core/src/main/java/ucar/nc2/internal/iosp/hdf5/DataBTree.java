@@ -5,10 +5,16 @@
 
 package ucar.nc2.internal.iosp.hdf5;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.Collections;
+import javax.annotation.Nullable;
 import ucar.ma2.Section;
 import ucar.nc2.iosp.LayoutTiled;
+import ucar.unidata.io.FileRange;
 import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.io.ReadableRemoteFile;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -26,6 +32,8 @@ import java.util.List;
  * The pointers out of internal nodes point to sub-trees while the pointers out of leaf nodes point to symbol nodes and
  * raw data chunks. Aside from that difference, internal nodes and leaf nodes are identical.
  *
+ * The whole tree may instead be read once into a {@link DataChunkIndex}, see {@link #setIndexLoading(IndexLoading)}.
+ *
  * @see "http://www.hdfgroup.org/HDF5/doc/H5.format.html#Btrees"
  * @author caron
  * @since 6/27/12
@@ -36,21 +44,65 @@ public class DataBTree {
   private static final boolean debugChunkOrder = false;
   private static java.io.PrintStream debugOut = System.out;
 
+  /** When the chunk index of a variable is read. */
+  public enum IndexLoading {
+    /** never: walk the B-tree on every read */
+    NONE,
+    /** on the first read of the variable */
+    LAZY,
+    /** when the file is opened */
+    EAGER
+  }
+
+  // System property name for -D flag: when the chunk index is read, default none
+  static final String CHUNKINDEX = "unidata.h5iosp.chunkindex";
+
+  private static volatile IndexLoading indexLoading = makeIndexLoading();
+
+  private static IndexLoading makeIndexLoading() {
+    String s = System.getProperty(CHUNKINDEX);
+    if (s != null) {
+      try {
+        return IndexLoading.valueOf(s.toUpperCase());
+      } catch (IllegalArgumentException e) {
+        H5iospNew.log.warn(String.format("-D%s must be one of %s", CHUNKINDEX, Arrays.toString(IndexLoading.values())));
+      }
+    }
+    return IndexLoading.NONE;
+  }
+
+  /**
+   * Set when the chunk index of a variable is read, for all files opened afterwards. With an index, reads find
+   * their chunks without reading the B-tree again, which matters most for remote files with many chunks.
+   *
+   * @param loading when to read the index
+   */
+  public static void setIndexLoading(IndexLoading loading) {
+    indexLoading = loading;
+  }
+
+  public static IndexLoading getIndexLoading() {
+    return indexLoading;
+  }
+
   private final H5headerNew h5;
   private final RandomAccessFile raf;
   private final MemTracker memTracker;
 
   private final long rootNodeAddress;
   private final Tiling tiling;
+  private final int[] storageSize;
   private final int ndimStorage, wantType;
 
   private Object owner;
+  private volatile DataChunkIndex chunkIndex;
 
   public DataBTree(H5headerNew h5, long rootNodeAddress, int[] varShape, int[] storageSize, MemTracker memTracker) {
     this.h5 = h5;
     this.raf = h5.getRandomAccessFile();
     this.rootNodeAddress = rootNodeAddress;
     this.tiling = new Tiling(varShape, storageSize);
+    this.storageSize = storageSize;
     this.ndimStorage = storageSize.length;
     this.memTracker = memTracker;
 
@@ -61,6 +113,121 @@ public class DataBTree {
     this.owner = owner;
   }
 
+  /**
+   * Get the chunk index, reading the whole B-tree the first time.
+   *
+   * @return the index of all allocated chunks
+   * @throws IOException on read error
+   */
+  public DataChunkIndex getChunkIndex() throws IOException {
+    DataChunkIndex index = chunkIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = chunkIndex;
+        if (index == null) {
+          index = readChunkIndex();
+          chunkIndex = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  // has the chunk index been read
+  boolean hasChunkIndex() {
+    return chunkIndex != null;
+  }
+
+  // the chunk index, if it is to be used
+  @Nullable
+  private DataChunkIndex useChunkIndex() throws IOException {
+    DataChunkIndex index = chunkIndex;
+    if (index != null || indexLoading == IndexLoading.NONE)
+      return index;
+    return getChunkIndex();
+  }
+
+  // Read the B-tree one level at a time: each node with one read, and all the nodes of a level of a remote file
+  // with one vectored read.
+  private DataChunkIndex readChunkIndex() throws IOException {
+    DataChunkIndex.Builder builder = DataChunkIndex.builder(storageSize);
+    int sizeOffsets = h5.getSizeOffsets();
+    int keySize = 8 + 8 * ndimStorage;
+    int[] offset = new int[ndimStorage];
+
+    List<Long> addresses = Collections.singletonList(rootNodeAddress);
+    while (!addresses.isEmpty()) {
+      // the node headers, to get the number of entries
+      List<FileRange> ranges = new ArrayList<>(addresses.size());
+      for (long address : addresses)
+        ranges.add(FileRange.create(h5.getFileOffset(address), 8));
+      List<ByteBuffer> headers = readRanges(ranges);
+
+      ranges.clear();
+      for (int n = 0; n < addresses.size(); n++) {
+        ByteBuffer header = headers.get(n);
+        if (header.getInt(0) != 0x45455254) // "TREE" little-endian
+          throw new IllegalStateException("DataBTree doesnt start with TREE");
+        if (header.get(4) != wantType)
+          throw new IllegalStateException("DataBTree must be type " + wantType);
+        int nentries = header.getShort(6) & 0xffff;
+        int size = 8 + 2 * sizeOffsets + nentries * (keySize + sizeOffsets) + keySize;
+        ranges.add(FileRange.create(h5.getFileOffset(addresses.get(n)), size));
+        if (memTracker != null)
+          memTracker.addByLen("Data BTree (" + owner + ")", addresses.get(n), size);
+      }
+
+      List<Long> children = new ArrayList<>();
+      for (ByteBuffer node : readRanges(ranges)) {
+        int level = node.get(5);
+        int nentries = node.getShort(6) & 0xffff;
+        node.position(8 + 2 * sizeOffsets);
+        for (int i = 0; i < nentries; i++) {
+          int size = node.getInt();
+          int filterMask = node.getInt();
+          for (int j = 0; j < ndimStorage; j++) {
+            long loffset = node.getLong();
+            assert loffset < Integer.MAX_VALUE;
+            offset[j] = (int) loffset;
+          }
+          long address = (sizeOffsets == 8) ? node.getLong() : node.getInt();
+          if (level == 0) {
+            long filePos = h5.getFileOffset(address);
+            builder.add(filePos, size, filterMask, offset);
+            if (memTracker != null)
+              memTracker.addByLen("Chunked Data (" + owner + ")", filePos, size);
+          } else {
+            children.add(address);
+          }
+        }
+      }
+      addresses = children;
+    }
+
+    DataChunkIndex index = builder.build();
+    if (debugDataBtree)
+      debugOut.printf("DataBTree %s read chunk index nchunks=%d%n", owner, index.getNumberOfChunks());
+    return index;
+  }
+
+  private List<ByteBuffer> readRanges(List<FileRange> ranges) throws IOException {
+    List<ByteBuffer> result;
+    if (raf instanceof ReadableRemoteFile) {
+      result = ((ReadableRemoteFile) raf).readVectored(ranges);
+    } else {
+      result = new ArrayList<>(ranges.size());
+      for (FileRange range : ranges) {
+        ByteBuffer bb = ByteBuffer.allocate(range.getLength());
+        raf.readFully(range.getOffset(), bb);
+        bb.flip();
+        result.add(bb);
+      }
+    }
+    for (ByteBuffer bb : result)
+      bb.order(ByteOrder.LITTLE_ENDIAN); // header information is in le byte order
+    return result;
+  }
+
   // used by H5tiledLayoutBB
   public DataChunkIterator getDataChunkIteratorFilter(Section want) throws IOException {
     return new DataChunkIterator(want);
@@ -77,6 +244,9 @@ public class DataBTree {
   class DataChunkIteratorNoFilter implements LayoutTiled.DataChunkIterator {
     private Node root;
     private int nChunkDim;
+    private DataChunkIndex index;
+    private int[] chunks; // from the index
+    private int current;
 
     /**
      * Constructor
@@ -87,17 +257,24 @@ public class DataBTree {
      */
     DataChunkIteratorNoFilter(Section want, int nChunkDim) throws IOException {
       this.nChunkDim = nChunkDim;
+      index = useChunkIndex();
+      if (index != null) {
+        chunks = index.findChunks(want);
+        return;
+      }
       root = new Node(rootNodeAddress, -1); // should we cache the nodes ???
       int[] wantOrigin = (want != null) ? want.getOrigin() : null;
       root.first(wantOrigin);
     }
 
     public boolean hasNext() {
+      if (index != null)
+        return current < chunks.length;
       return root.hasNext(); // && !node.greaterThan(wantOrigin);
     }
 
     public LayoutTiled.DataChunk next() throws IOException {
-      DataChunk dc = root.next();
+      DataChunk dc = (index != null) ? new DataChunk(index, chunks[current++]) : root.next();
       int[] offset = dc.offset;
       if (offset.length > nChunkDim) { // may have to eliminate last offset
         offset = new int[nChunkDim];
@@ -116,6 +293,9 @@ public class DataBTree {
   public class DataChunkIterator {
     private Node root;
     private int[] wantOrigin;
+    private DataChunkIndex index;
+    private int[] chunks; // from the index
+    private int current;
 
     /**
      * Constructor
@@ -124,16 +304,25 @@ public class DataBTree {
      * @throws IOException on error
      */
     DataChunkIterator(Section want) throws IOException {
+      index = useChunkIndex();
+      if (index != null) {
+        chunks = index.findChunks(want);
+        return;
+      }
       root = new Node(rootNodeAddress, -1); // should we cache the nodes ???
       wantOrigin = (want != null) ? want.getOrigin() : null;
       root.first(wantOrigin);
     }
 
     public boolean hasNext() {
+      if (index != null)
+        return current < chunks.length;
       return root.hasNext(); // && !node.greaterThan(wantOrigin);
     }
 
     public DataChunk next() throws IOException {
+      if (index != null)
+        return new DataChunk(index, chunks[current++]);
       return root.next();
     }
   }
@@ -313,6 +502,13 @@ public class DataBTree {
         memTracker.addByLen("Chunked Data (" + owner + ")", filePos, size);
     }
 
+    DataChunk(DataChunkIndex index, int i) {
+      this.size = index.getSize(i);
+      this.filterMask = index.getFilterMask(i);
+      this.offset = index.getOffset(i);
+      this.filePos = index.getFilePos(i);
+    }
+
     public String toString() {
       StringBuilder sbuff = new StringBuilder();
       sbuff.append("  ChunkedDataNode size=").append(size).append(" filterMask=").append(filterMask).append(" filePos=")
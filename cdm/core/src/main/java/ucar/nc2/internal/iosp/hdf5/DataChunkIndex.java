@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import java.util.Arrays;
+import java.util.Formatter;
+import javax.annotation.concurrent.Immutable;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+
+/**
+ * The complete chunk index of a chunked variable, read once from its data B-tree and held in primitive arrays:
+ * for each allocated chunk its file position, size in bytes, filter mask and offset.
+ * The chunks are sorted by offset, in the row-major order of the chunk grid (the B-tree order),
+ * so the chunks intersecting a section are found by binary search, without reading the B-tree again.
+ *
+ * @since 5.4
+ */
+@Immutable
+public class DataChunkIndex {
+  private final int ndim; // number of offsets per chunk; the last is for the element size, and always 0
+  private final int[] chunkSize; // storage size, in the same dimensions
+  private final int nchunks;
+  private final long[] filePos;
+  private final int[] sizes;
+  private final int[] filterMasks;
+  private final int[] offsets; // chunk i has offsets[i * ndim, (i + 1) * ndim)
+
+  private DataChunkIndex(Builder builder) {
+    this.ndim = builder.ndim;
+    this.chunkSize = builder.chunkSize;
+    this.nchunks = builder.nchunks;
+    this.filePos = Arrays.copyOf(builder.filePos, nchunks);
+    this.sizes = Arrays.copyOf(builder.sizes, nchunks);
+    this.filterMasks = Arrays.copyOf(builder.filterMasks, nchunks);
+    this.offsets = Arrays.copyOf(builder.offsets, nchunks * ndim);
+    if (!isSorted())
+      sort();
+  }
+
+  /** The number of allocated chunks. */
+  public int getNumberOfChunks() {
+    return nchunks;
+  }
+
+  /** The file position of chunk i. */
+  public long getFilePos(int i) {
+    return filePos[i];
+  }
+
+  /** The size in bytes of chunk i, as stored. */
+  public int getSize(int i) {
+    return sizes[i];
+  }
+
+  /** The bitfield of filters skipped for chunk i. */
+  public int getFilterMask(int i) {
+    return filterMasks[i];
+  }
+
+  /** The offset of chunk i, in elements, with a trailing 0 for the element size dimension. */
+  public int[] getOffset(int i) {
+    return Arrays.copyOfRange(offsets, i * ndim, (i + 1) * ndim);
+  }
+
+  /** The number of bytes used by this index. */
+  public long getSizeInBytes() {
+    return 8L * filePos.length + 4L * (sizes.length + filterMasks.length + offsets.length);
+  }
+
+  /**
+   * Find the chunks that intersect a section.
+   *
+   * @param want the section, in the variable's index space, or null for all chunks
+   * @return the indices of the chunks, in order
+   */
+  public int[] findChunks(Section want) {
+    if (want == null)
+      return all();
+
+    // the cells of the chunk grid, in each dimension, that the section covers
+    int[][] cells = new int[ndim][];
+    long ncells = 1;
+    for (int d = 0; d < ndim; d++) {
+      cells[d] = (d < want.getRank()) ? cells(want.getRange(d), chunkSize[d]) : new int[] {0};
+      ncells = Math.min(ncells * cells[d].length, Integer.MAX_VALUE);
+    }
+    if (ncells == 0)
+      return new int[0];
+    if (ncells >= nchunks)
+      return scan(cells);
+
+    // look up each grid cell, in row-major order
+    int[] result = new int[(int) ncells];
+    int count = 0;
+    int[] cell = new int[ndim];
+    int[] key = new int[ndim];
+    int from = 0;
+    for (long n = 0; n < ncells; n++) {
+      for (int d = 0; d < ndim; d++)
+        key[d] = cells[d][cell[d]] * chunkSize[d];
+      int i = search(key, from);
+      if (i >= 0) {
+        result[count++] = i;
+        from = i + 1;
+      } else {
+        from = -i - 1;
+      }
+      for (int d = ndim - 1; d >= 0; d--) {
+        if (cell[d] < cells[d].length - 1) {
+          cell[d]++;
+          break;
+        }
+        cell[d] = 0;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  // the cells, of this chunk size, that contain an element of the range
+  private static int[] cells(Range r, int size) {
+    if (r.length() == 0)
+      return new int[0];
+    int first = r.first() / size;
+    int last = r.last() / size;
+    int[] result = new int[last - first + 1];
+    int count = 0;
+    for (int c = first; c <= last; c++) {
+      // the first element of the range at or after the start of the cell
+      long start = (long) c * size;
+      long elem = (start <= r.first()) ? r.first()
+          : r.first() + ((start - r.first() + r.stride() - 1) / r.stride()) * r.stride();
+      if (elem < start + size && elem <= r.last())
+        result[count++] = c;
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private int[] all() {
+    int[] result = new int[nchunks];
+    for (int i = 0; i < nchunks; i++)
+      result[i] = i;
+    return result;
+  }
+
+  // when the section covers more grid cells than there are chunks, check every chunk
+  private int[] scan(int[][] cells) {
+    int[] result = new int[nchunks];
+    int count = 0;
+    for (int i = 0; i < nchunks; i++) {
+      boolean inside = true;
+      for (int d = 0; d < ndim && inside; d++) {
+        inside = Arrays.binarySearch(cells[d], offsets[i * ndim + d] / chunkSize[d]) >= 0;
+      }
+      if (inside)
+        result[count++] = i;
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  // binary search for the chunk with this offset, in [from, nchunks). Returns -(insertion point) - 1 if not found.
+  private int search(int[] key, int from) {
+    int low = from;
+    int high = nchunks - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(mid, key);
+      if (cmp < 0)
+        low = mid + 1;
+      else if (cmp > 0)
+        high = mid - 1;
+      else
+        return mid;
+    }
+    return -(low + 1);
+  }
+
+  private int compare(int i, int[] key) {
+    for (int d = 0; d < ndim; d++) {
+      int c = Integer.compare(offsets[i * ndim + d], key[d]);
+      if (c != 0)
+        return c;
+    }
+    return 0;
+  }
+
+  private int compare(int i, int j) {
+    for (int d = 0; d < ndim; d++) {
+      int c = Integer.compare(offsets[i * ndim + d], offsets[j * ndim + d]);
+      if (c != 0)
+        return c;
+    }
+    return 0;
+  }
+
+  private boolean isSorted() {
+    for (int i = 1; i < nchunks; i++) {
+      if (compare(i - 1, i) > 0)
+        return false;
+    }
+    return true;
+  }
+
+  // the B-tree should already be in order, but dont rely on it
+  private void sort() {
+    Integer[] order = new Integer[nchunks];
+    for (int i = 0; i < nchunks; i++)
+      order[i] = i;
+    Arrays.sort(order, this::compare);
+
+    long[] pos = filePos.clone();
+    int[] size = sizes.clone();
+    int[] mask = filterMasks.clone();
+    int[] offset = offsets.clone();
+    for (int i = 0; i < nchunks; i++) {
+      int from = order[i];
+      filePos[i] = pos[from];
+      sizes[i] = size[from];
+      filterMasks[i] = mask[from];
+      System.arraycopy(offset, from * ndim, offsets, i * ndim, ndim);
+    }
+  }
+
+  public void show(Formatter f) {
+    f.format("DataChunkIndex nchunks=%d bytes=%d%n", nchunks, getSizeInBytes());
+    for (int i = 0; i < nchunks; i++) {
+      f.format("  size=%d filterMask=%d filePos=%d offsets=%s%n", sizes[i], filterMasks[i], filePos[i],
+          Arrays.toString(getOffset(i)));
+    }
+  }
+
+  static Builder builder(int[] chunkSize) {
+    return new Builder(chunkSize);
+  }
+
+  static class Builder {
+    private final int ndim;
+    private final int[] chunkSize;
+    private int nchunks;
+    private long[] filePos = new long[16];
+    private int[] sizes = new int[16];
+    private int[] filterMasks = new int[16];
+    private int[] offsets;
+
+    private Builder(int[] chunkSize) {
+      this.ndim = chunkSize.length;
+      this.chunkSize = chunkSize.clone();
+      this.offsets = new int[16 * ndim];
+    }
+
+    Builder add(long pos, int size, int filterMask, int[] offset) {
+      if (nchunks == filePos.length) {
+        int n = 2 * nchunks;
+        filePos = Arrays.copyOf(filePos, n);
+        sizes = Arrays.copyOf(sizes, n);
+        filterMasks = Arrays.copyOf(filterMasks, n);
+        offsets = Arrays.copyOf(offsets, n * ndim);
+      }
+      filePos[nchunks] = pos;
+      sizes[nchunks] = size;
+      filterMasks[nchunks] = filterMask;
+      System.arraycopy(offset, 0, offsets, nchunks * ndim, ndim);
+      nchunks++;
+      return this;
+    }
+
+    DataChunkIndex build() {
+      return new DataChunkIndex(this);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A process-wide cache of decoded (uncompressed, unshuffled) chunks of HDF5 filtered variables, so that repeated
+ * reads of the same chunks do not read and decode them again. This is the same idea as the HDF5 library's chunk cache.
+ * Chunks are keyed by (file location, last modified, length, variable, chunk offset), so a file that is rewritten
+ * does not get the chunks of its previous version; those are evicted like any others. Remote files may not know their
+ * last modified time (it is 0 for http), and then only the length tells the versions apart. The cache is bounded by
+ * the total number of bytes held.
+ * <p/>
+ * Enable with {@link H5tiledLayoutBB#setChunkCache(H5chunkCache)}, or with the system properties
+ * {@value H5tiledLayoutBB#CHUNKCACHESIZE} and {@value H5tiledLayoutBB#CHUNKCACHESTORAGE}.
+ *
+ * @since 5.4
+ */
+@ThreadSafe
+public class H5chunkCache {
+
+  /** How the decoded chunks are held. */
+  public enum Storage {
+    /** on the heap */
+    HEAP,
+    /** on the heap, softly referenced, so that the garbage collector may clear them when memory is low */
+    SOFT,
+    /** off the heap, in direct ByteBuffers */
+    OFF_HEAP
+  }
+
+  private final String name;
+  private final long maxBytes;
+  private final Storage storage;
+  private final Cache<ChunkKey, ByteBuffer> cache;
+
+  /**
+   * Constructor.
+   *
+   * @param name name of the cache, used in showStats()
+   * @param maxBytes maximum number of bytes to hold
+   * @param storage how the chunks are held
+   */
+  public H5chunkCache(String name, long maxBytes, Storage storage) {
+    this.name = name;
+    this.maxBytes = maxBytes;
+    this.storage = storage;
+    CacheBuilder<ChunkKey, ByteBuffer> builder = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+        .weigher((ChunkKey key, ByteBuffer chunk) -> chunk.capacity()).recordStats();
+    if (storage == Storage.SOFT)
+      builder.softValues();
+    this.cache = builder.build();
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public Storage getStorage() {
+    return storage;
+  }
+
+  /** The number of bytes currently held. */
+  public long getSizeInBytes() {
+    return cache.asMap().values().stream().mapToLong(ByteBuffer::capacity).sum();
+  }
+
+  /** Hit, miss and eviction counts. */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Get a decoded chunk.
+   *
+   * @param file the file version
+   * @param varName full name of the variable
+   * @param offset chunk offset, in elements
+   * @param byteOrder byte order of the returned buffer
+   * @return a new buffer over the chunk's bytes, or null if not in the cache
+   */
+  @Nullable
+  ByteBuffer get(FileKey file, String varName, int[] offset, ByteOrder byteOrder) {
+    ByteBuffer chunk = cache.getIfPresent(new ChunkKey(file, varName, offset));
+    return (chunk == null) ? null : chunk.duplicate().order(byteOrder);
+  }
+
+  /**
+   * Add a decoded chunk. The chunk's bytes, from position to limit, must not be changed afterwards.
+   *
+   * @param file the file version
+   * @param varName full name of the variable
+   * @param offset chunk offset, in elements
+   * @param chunk the decoded chunk
+   */
+  void put(FileKey file, String varName, int[] offset, ByteBuffer chunk) {
+    ByteBuffer value = chunk.slice();
+    if (storage == Storage.OFF_HEAP) {
+      value = ByteBuffer.allocateDirect(chunk.remaining());
+      value.put(chunk.duplicate());
+      value.flip();
+    }
+    cache.put(new ChunkKey(file, varName, offset.clone()), value);
+  }
+
+  /** Remove all chunks. */
+  public void clearCache() {
+    cache.invalidateAll();
+  }
+
+  /** Show the number of cached chunks for each variable. */
+  public void showCache(Formatter f) {
+    Map<String, Integer> counts = new TreeMap<>();
+    for (ChunkKey key : cache.asMap().keySet()) {
+      counts.merge(key.file.location + " " + key.varName, 1, Integer::sum);
+    }
+    f.format("%s: %d variables%n", name, counts.size());
+    counts.forEach((var, count) -> f.format("  %s nchunks=%d%n", var, count));
+  }
+
+  public void showStats(Formatter f) {
+    CacheStats stats = cache.stats();
+    f.format("%s: maxBytes=%d storage=%s nchunks=%d bytes=%d%n", name, maxBytes, storage, cache.size(),
+        getSizeInBytes());
+    f.format("  hits=%d misses=%d evictions=%d hitRate=%.3f%n", stats.hitCount(), stats.missCount(),
+        stats.evictionCount(), stats.hitRate());
+  }
+
+  /** Identifies a version of a file, so that a rewritten file does not get the chunks of the previous version. */
+  static class FileKey {
+    private final String location;
+    private final long lastModified;
+    private final long length;
+
+    FileKey(String location, long lastModified, long length) {
+      this.location = location;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      FileKey fileKey = (FileKey) o;
+      return lastModified == fileKey.lastModified && length == fileKey.length && location.equals(fileKey.location);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(location, lastModified, length);
+    }
+  }
+
+  private static class ChunkKey {
+    private final FileKey file;
+    private final String varName;
+    private final int[] offset;
+    private final int hashCode;
+
+    ChunkKey(FileKey file, String varName, int[] offset) {
+      this.file = file;
+      this.varName = varName;
+      this.offset = offset;
+      this.hashCode = 31 * (31 * file.hashCode() + varName.hashCode()) + Arrays.hashCode(offset);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      ChunkKey chunkKey = (ChunkKey) o;
+      return Arrays.equals(offset, chunkKey.offset) && varName.equals(chunkKey.varName)
+          && file.equals(chunkKey.file);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -43,6 +43,7 @@ import ucar.nc2.Group.Builder;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.constants.CDM;
+import ucar.nc2.filter.Filters;
 import ucar.nc2.internal.iosp.hdf4.HdfEos;
 import ucar.nc2.internal.iosp.hdf4.HdfHeaderIF;
 import ucar.nc2.internal.iosp.hdf5.H5objects.DataObject;
@@ -1332,6 +1333,8 @@ public class H5headerNew implements HdfHeaderIF {
     int[] shape = makeVariableShape(facade.dobj.mdt, facade.dobj.mds, facade.dimList);
     if (vinfo.isChunked) { // make the data btree, but entries are not read in
       vinfo.btree = new DataBTree(this, dataAddress, shape, vinfo.storageSize, memTracker);
+      if (!vinfo.useFillValue && DataBTree.getIndexLoading() == DataBTree.IndexLoading.EAGER)
+        vinfo.btree.getChunkIndex();
 
       if (vinfo.isChunked) { // add an attribute describing the chunk size
         List<Integer> chunksize = new ArrayList<>();
@@ -1374,7 +1377,7 @@ public class H5headerNew implements HdfHeaderIF {
     vinfo.setOwner(vb);
     if ((vinfo.mfp != null) && warnings) {
       for (Filter f : vinfo.mfp.getFilters()) {
-        if (f.id > KNOWN_FILTERS) {
+        if ((f.id & 0xffff) > KNOWN_FILTERS && Filters.getFilter(f.id & 0xffff, f.data) == null) {
           log.warn("  Variable " + facade.name + " has unknown Filter(s) = " + vinfo.mfp);
           break;
         }
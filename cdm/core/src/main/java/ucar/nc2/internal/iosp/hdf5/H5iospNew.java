@@ -337,8 +337,7 @@ public class H5iospNew extends AbstractIOServiceProvider {
           System.out.println(
               " readStructure " + v.getFullName() + " chunk= " + chunk + " index.getElemSize= " + layout.getElemSize());
         // copy bytes directly into the underlying byte[] LOOK : assumes contiguous layout ??
-        raf.seek(chunk.getSrcPos());
-        raf.readFully(byteArray, (int) chunk.getDestElem() * recsize, chunk.getNelems() * recsize);
+        raf.readFully(chunk.getSrcPos(), byteArray, (int) chunk.getDestElem() * recsize, chunk.getNelems() * recsize);
       }
 
       // place data into an ArrayStructureBB
@@ -523,8 +522,7 @@ public class H5iospNew extends AbstractIOServiceProvider {
         int recsize = layout.getElemSize();
         for (int i = 0; i < chunk.getNelems(); i++) {
           byte[] pa = new byte[recsize];
-          raf.seek(chunk.getSrcPos() + i * recsize);
-          raf.readFully(pa, 0, recsize);
+          raf.readFully(chunk.getSrcPos() + i * recsize, pa, 0, recsize);
           opArray.setObject(count++, ByteBuffer.wrap(pa));
         }
       }
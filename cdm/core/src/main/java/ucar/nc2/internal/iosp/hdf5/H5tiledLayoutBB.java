@@ -6,20 +6,29 @@ package ucar.nc2.internal.iosp.hdf5;
 
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
 import ucar.nc2.Variable;
+import ucar.nc2.filter.Deflate;
+import ucar.nc2.filter.Filters;
 import ucar.nc2.internal.iosp.hdf5.H5objects.Filter;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutBBTiled;
-import ucar.nc2.util.IO;
+import ucar.unidata.io.FileRange;
 import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.io.ReadableRemoteFile;
 
 /**
  * Iterator to read/write subsets of an array.
@@ -32,16 +41,78 @@ import ucar.unidata.io.RandomAccessFile;
  */
 public class H5tiledLayoutBB implements LayoutBB {
 
-  static final int DEFAULTZIPBUFFERSIZE = 512;
-  // System property name for -D flag
-  static final String INFLATEBUFFERSIZE = "unidata.h5iosp.inflate.buffersize";
+  // System property name for -D flag: number of threads used to decode chunks, default 1 (decode in the reading thread)
+  static final String DECODETHREADS = "unidata.h5iosp.decode.threads";
+  // limits on the number of chunks, and their total size, fetched with one vectored read from a remote file
+  static final int MAXBATCHCHUNKS = 64;
+  static final long MAXBATCHBYTES = 32 * 1024 * 1024;
+  // System property names for -D flags: size in bytes of the decoded chunk cache, default 0 (no cache), and its storage
+  static final String CHUNKCACHESIZE = "unidata.h5iosp.chunkcache.size";
+  static final String CHUNKCACHESTORAGE = "unidata.h5iosp.chunkcache.storage";
 
   public static boolean debugFilter;
 
+  private static int decodeThreads = Integer.getInteger(DECODETHREADS, 1);
+  private static ForkJoinPool decodePool;
+  private static volatile H5chunkCache chunkCache = makeChunkCache();
+
+  private static H5chunkCache makeChunkCache() {
+    long size = Long.getLong(CHUNKCACHESIZE, 0);
+    if (size <= 0)
+      return null;
+    H5chunkCache.Storage storage = H5chunkCache.Storage.HEAP;
+    String s = System.getProperty(CHUNKCACHESTORAGE);
+    if (s != null) {
+      try {
+        storage = H5chunkCache.Storage.valueOf(s.toUpperCase());
+      } catch (IllegalArgumentException e) {
+        H5iospNew.log.warn(String.format("-D%s must be one of %s", CHUNKCACHESTORAGE,
+            Arrays.toString(H5chunkCache.Storage.values())));
+      }
+    }
+    return new H5chunkCache("H5chunkCache", size, storage);
+  }
+
+  /**
+   * Set the process-wide cache of decoded chunks, used by all filtered variables.
+   *
+   * @param cache the cache, or null for no cache
+   */
+  public static void setChunkCache(H5chunkCache cache) {
+    chunkCache = cache;
+  }
+
+  /** Get the process-wide cache of decoded chunks, or null if none. */
+  public static H5chunkCache getChunkCache() {
+    return chunkCache;
+  }
+
+  /**
+   * Set the number of threads used to decode (decompress etc) chunks. With more than one, the chunks of a read are
+   * decoded in parallel, while they are read and assembled in the calling thread.
+   *
+   * @param nthreads number of threads; 1 (the default) means decode in the calling thread
+   */
+  public static synchronized void setDecodeThreads(int nthreads) {
+    // reads in progress keep submitting to the old pool, so it is not shut down. its threads exit once idle.
+    decodePool = null;
+    decodeThreads = nthreads;
+  }
+
+  private static synchronized ForkJoinPool getDecodePool() {
+    if (decodePool == null && decodeThreads > 1)
+      decodePool = new ForkJoinPool(decodeThreads);
+    return decodePool;
+  }
+
   private LayoutBBTiled delegate;
 
   private RandomAccessFile raf;
+  private String varName;
+  private H5chunkCache cache;
+  private H5chunkCache.FileKey cacheFileKey; // this version of the file, if cache != null
   private Filter[] filters;
+  private ucar.nc2.filter.Filter[] plugins; // decoders of filters other than deflate, shuffle and fletcher32
   private ByteOrder byteOrder;
 
   private Section want;
@@ -49,9 +120,9 @@ public class H5tiledLayoutBB implements LayoutBB {
   private int elemSize; // last dimension of the StorageLayout message
   private int nChunkDims;
 
-  private boolean debug;
+  private int chunkBytes; // size of a decoded chunk, or 0 if too large for an array
 
-  private int inflatebuffersize = DEFAULTZIPBUFFERSIZE;
+  private boolean debug;
 
   /**
    * Constructor.
@@ -73,7 +144,17 @@ public class H5tiledLayoutBB implements LayoutBB {
     assert vinfo.btree != null;
 
     this.raf = raf;
+    this.varName = v2.getFullName();
+    this.cache = chunkCache;
+    if (cache != null)
+      this.cacheFileKey = new H5chunkCache.FileKey(raf.getLocation(), raf.getLastModified(), raf.length());
     this.filters = filters;
+    this.plugins = new ucar.nc2.filter.Filter[filters.length];
+    for (int i = 0; i < filters.length; i++) {
+      int id = filters[i].id & 0xffff;
+      if (id > 3)
+        plugins[i] = Filters.getFilter(id, filters[i].data);
+    }
     this.byteOrder = byteOrder;
 
     // we have to translate the want section into the same rank as the storageSize, in order to be able to call
@@ -91,26 +172,16 @@ public class H5tiledLayoutBB implements LayoutBB {
     this.chunkSize = new int[nChunkDims];
     System.arraycopy(vinfo.storageSize, 0, chunkSize, 0, nChunkDims);
     this.elemSize = vinfo.storageSize[vinfo.storageSize.length - 1]; // last one is always the elements size
+    long nbytes = elemSize;
+    for (int size : chunkSize)
+      nbytes *= size;
+    this.chunkBytes = (nbytes <= DataChunk.MAX_ARRAY_LEN) ? (int) nbytes : 0;
 
     // create the data chunk iterator
     DataBTree.DataChunkIterator iter = vinfo.btree.getDataChunkIteratorFilter(this.want);
     DataChunkIterator dcIter = new DataChunkIterator(iter);
     delegate = new LayoutBBTiled(dcIter, chunkSize, elemSize, this.want);
 
-    if (System.getProperty(INFLATEBUFFERSIZE) != null) {
-      try {
-        int size = Integer.parseInt(System.getProperty(INFLATEBUFFERSIZE));
-        if (size <= 0)
-          H5iospNew.log.warn(String.format("-D%s must be > 0", INFLATEBUFFERSIZE));
-        else
-          this.inflatebuffersize = size;
-      } catch (NumberFormatException nfe) {
-        H5iospNew.log.warn(String.format("-D%s is not an integer", INFLATEBUFFERSIZE));
-      }
-    }
-    if (debugFilter)
-      System.out.printf("inflate buffer size -D%s = %d%n", INFLATEBUFFERSIZE, this.inflatebuffersize);
-
     if (debug)
       System.out.println(" H5tiledLayout: " + this);
   }
@@ -147,17 +218,79 @@ public class H5tiledLayoutBB implements LayoutBB {
 
   private class DataChunkIterator implements LayoutBBTiled.DataChunkIterator {
     DataBTree.DataChunkIterator delegate;
+    // chunks taken from the btree but not yet returned. those that intersect want may already be read or decoding.
+    private final Deque<DataChunk> pending = new ArrayDeque<>();
+    private int npendingWanted;
+    private final boolean remote = raf instanceof ReadableRemoteFile;
+    private final ForkJoinPool pool = getDecodePool();
+    // how many wanted chunks to read ahead
+    private final int window =
+        Math.max(remote ? MAXBATCHCHUNKS : 1, pool != null ? 2 * pool.getParallelism() : 1);
 
     DataChunkIterator(DataBTree.DataChunkIterator delegate) {
       this.delegate = delegate;
     }
 
     public boolean hasNext() {
-      return delegate.hasNext();
+      return !pending.isEmpty() || delegate.hasNext();
     }
 
     public LayoutBBTiled.DataChunk next() throws IOException {
-      return new DataChunk(delegate.next());
+      if (npendingWanted <= window / 2)
+        readAhead();
+      DataChunk chunk = pending.isEmpty() ? new DataChunk(delegate.next()) : pending.poll();
+      if (chunk.wanted)
+        npendingWanted--;
+      return chunk;
+    }
+
+    // take the next chunks from the btree. read the ones that intersect want with one vectored read if the file
+    // is remote, and start decoding them if decoding in parallel.
+    private void readAhead() throws IOException {
+      List<DataChunk> wanted = new ArrayList<>();
+      long nbytes = 0;
+      int ntaken = 0;
+      while (delegate.hasNext() && npendingWanted < window && nbytes < MAXBATCHBYTES && ntaken < 4 * window) {
+        DataChunk chunk = new DataChunk(delegate.next());
+        pending.add(chunk);
+        ntaken++;
+        if (chunk.wanted) {
+          npendingWanted++;
+          ByteBuffer hit = chunk.getCached();
+          if (hit != null) {
+            chunk.decoded = CompletableFuture.completedFuture(hit);
+          } else {
+            wanted.add(chunk);
+            nbytes += chunk.delegate.size;
+          }
+        }
+      }
+
+      if (remote && wanted.size() > 1) {
+        List<FileRange> ranges = new ArrayList<>();
+        for (DataChunk chunk : wanted) {
+          ranges.add(FileRange.create(chunk.delegate.filePos, chunk.delegate.size));
+        }
+        List<ByteBuffer> data = ((ReadableRemoteFile) raf).readVectored(ranges);
+        for (int i = 0; i < wanted.size(); i++) {
+          ByteBuffer bb = data.get(i);
+          wanted.get(i).raw = new byte[bb.remaining()];
+          bb.get(wanted.get(i).raw);
+        }
+      }
+
+      if (pool != null) {
+        for (DataChunk chunk : wanted) {
+          byte[] raw = chunk.readRaw(); // reading stays on this thread, in file order
+          chunk.decoded = CompletableFuture.supplyAsync(() -> {
+            try {
+              return chunk.decode(raw);
+            } catch (IOException e) {
+              throw new CompletionException(e);
+            }
+          }, pool);
+        }
+      }
     }
   }
 
@@ -166,6 +299,10 @@ public class H5tiledLayoutBB implements LayoutBB {
     private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
 
     DataBTree.DataChunk delegate;
+    final boolean wanted; // does it intersect want
+    byte[] raw; // the bytes of the chunk, if already read
+    CompletableFuture<ByteBuffer> decoded; // if decoding in parallel, or found in the chunk cache
+    boolean cacheChecked; // already looked for in the chunk cache
 
     DataChunk(DataBTree.DataChunk delegate) {
       this.delegate = delegate;
@@ -189,6 +326,14 @@ public class H5tiledLayoutBB implements LayoutBB {
         throw new IllegalArgumentException(String.format("Filtered data chunk is %s bytes and we must load it all "
             + "into memory. However the maximum length of a byte array in Java is %s.", chunkSize, MAX_ARRAY_LEN));
       }
+
+      boolean intersects;
+      try {
+        intersects = new Section(getOffset(), chunkSize).intersects(want);
+      } catch (InvalidRangeException e) {
+        intersects = true; // let LayoutBBTiled deal with it
+      }
+      this.wanted = intersects;
     }
 
     public int[] getOffset() {
@@ -201,12 +346,46 @@ public class H5tiledLayoutBB implements LayoutBB {
     }
 
     public ByteBuffer getByteBuffer() throws IOException {
-      try {
-        // read the data
-        byte[] data = new byte[delegate.size];
-        raf.seek(delegate.filePos);
-        raf.readFully(data);
+      if (decoded != null) {
+        try {
+          return decoded.join();
+        } catch (CompletionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException)
+            throw (IOException) cause;
+          if (cause instanceof Error)
+            throw (Error) cause;
+          throw new IOException(cause);
+        } finally {
+          decoded = null;
+        }
+      }
+      ByteBuffer result = cacheChecked ? null : getCached();
+      if (result == null)
+        result = decode(readRaw());
+      return result;
+    }
+
+    // get the decoded chunk from the chunk cache, if any
+    private ByteBuffer getCached() {
+      cacheChecked = true;
+      return (cache == null) ? null : cache.get(cacheFileKey, varName, delegate.offset, byteOrder);
+    }
 
+    // read the bytes of the chunk, unless already read
+    private byte[] readRaw() throws IOException {
+      byte[] data = raw;
+      raw = null;
+      if (data == null) {
+        data = new byte[delegate.size];
+        raf.readFully(delegate.filePos, data, 0, data.length);
+      }
+      return data;
+    }
+
+    // apply the filters. may be called in any thread
+    private ByteBuffer decode(byte[] data) throws IOException {
+      try {
         // apply filters backwards
         for (int i = filters.length - 1; i >= 0; i--) {
           Filter f = filters[i];
@@ -221,16 +400,16 @@ public class H5tiledLayoutBB implements LayoutBB {
             data = shuffle(data, f.data[0]);
           } else if (f.id == 3) {
             data = checkfletcher32(data);
-            /*
-             * } else if (f.id == 307) {
-             * data = unbzip2(data);
-             */
+          } else if (plugins[i] != null) {
+            data = plugins[i].decode(data);
           } else
-            throw new RuntimeException("Unknown filter type=" + f.id);
+            throw new RuntimeException("Unknown filter type=" + (f.id & 0xffff) + " name=" + f.name);
         }
 
         ByteBuffer result = ByteBuffer.wrap(data);
         result.order(byteOrder);
+        if (cache != null)
+          cache.put(cacheFileKey, varName, delegate.offset, result);
         return result;
       } catch (OutOfMemoryError e) {
         Error oom = new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the "
@@ -241,51 +420,19 @@ public class H5tiledLayoutBB implements LayoutBB {
     }
 
     /**
-     * inflate data
+     * inflate data, directly into an array of the chunk's size
      *
      * @param compressed compressed data
      * @return uncompressed data
      * @throws IOException on I/O error
      */
     private byte[] inflate(byte[] compressed) throws IOException {
-      // run it through the Inflator
-      ByteArrayInputStream in = new ByteArrayInputStream(compressed);
-      java.util.zip.Inflater inflater = new java.util.zip.Inflater();
-      java.util.zip.InflaterInputStream inflatestream =
-          new java.util.zip.InflaterInputStream(in, inflater, inflatebuffersize);
-      int len = Math.min(8 * compressed.length, MAX_ARRAY_LEN);
-      ByteArrayOutputStream out = new ByteArrayOutputStream(len); // Fixes KXL-349288
-      IO.copyB(inflatestream, out, len);
-
-      byte[] uncomp = out.toByteArray();
+      byte[] uncomp = Deflate.inflate(compressed, chunkBytes);
       if (debug || debugFilter)
         System.out.println(" inflate bytes in= " + compressed.length + " bytes out= " + uncomp.length);
       return uncomp;
     }
 
-    /*
-     * private byte[] unbzip2(byte[] compressed) throws IOException {
-     * int max = 20 * compressed.length;
-     * byte[] buffer = new byte[max];
-     * ByteArrayOutputStream out = new ByteArrayOutputStream(20 * compressed.length);
-     * ByteArrayInputStream in = new ByteArrayInputStream(compressed);
-     * try (org.itadaki.bzip2.BZip2InputStream bzIn = new org.itadaki.bzip2.BZip2InputStream(in, false)) {
-     * int bytesRead;
-     * int totRead = 0;
-     * while ((bytesRead = bzIn.read (buffer)) != -1) {
-     * out.write (buffer, 0, bytesRead) ; // LOOK unneeded copy
-     * totRead += bytesRead;
-     * }
-     * out.close();
-     * //System.out.printf("unbzip2=%d%n", totRead);
-     * } catch (Exception e) {
-     * e.printStackTrace();
-     * }
-     * 
-     * return out.toByteArray();
-     * }
-     */
-
     // just strip off the 4-byte fletcher32 checksum at the end
     private byte[] checkfletcher32(byte[] org) {
       byte[] result = new byte[org.length - 4];
@@ -1,18 +1,32 @@
 /* Copyright Unidata */
 package ucar.nc2.internal.iosp.netcdf3;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Formatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import ucar.ma2.Array;
+import ucar.ma2.ArrayBB;
+import ucar.ma2.ArrayStructure;
 import ucar.ma2.ArrayStructureBB;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Range;
 import ucar.ma2.Section;
+import ucar.ma2.SegmentedArray;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureDataIterator;
 import ucar.ma2.StructureMembers;
 import ucar.nc2.Group;
 import ucar.nc2.NetcdfFile;
@@ -77,6 +91,13 @@ public class N3iospNew extends AbstractIOServiceProvider implements IOServicePro
    * Note also that all netCDF variables and records are padded to 4 byte boundaries.
    */
 
+  // maximum size of the blocks of records read by readArrays(), and default for the record iterator
+  private static final int RECORD_BLOCK_SIZE = 4 * 1024 * 1024;
+  // maximum size of a Java array
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+  // maximum size of the segments of readSegmented(); tests make it small
+  static int segmentSize = SegmentedArray.DEFAULT_SEGMENT_SIZE;
+
   protected N3headerNew header;
   protected long lastModified; // used by sync
   private boolean debugRecord = false;
@@ -104,6 +125,8 @@ public class N3iospNew extends AbstractIOServiceProvider implements IOServicePro
 
   // properties
   boolean useRecordStructure;
+  boolean useArrayBB; // return ArrayBB from readData()
+  boolean directArrayBB; // backed by direct ByteBuffers
 
   //////////////////////////////////////////////////////////////////////////////////////
   // read existing file
@@ -147,10 +170,178 @@ public class N3iospNew extends AbstractIOServiceProvider implements IOServicePro
       return Array.factory(dataType, section.getShape());
     }
 
+    if (useArrayBB && ArrayBB.isSupported(dataType)) {
+      // the file is big-endian, so the bytes are used as they are
+      return IospHelper.readDataBB(raf, layout, dataType, section.getShape(), ByteOrder.BIG_ENDIAN, directArrayBB);
+    }
+
     Object data = readData(layout, dataType);
     return Array.factory(dataType, section.getShape(), data);
   }
 
+  /**
+   * Read several variables. Record variables that want the same records are read together: each block of records is
+   * read once, with one large read, and its bytes are copied into the arrays of all the variables.
+   */
+  @Override
+  public List<Array> readArrays(List<Variable> variables, List<Section> sections)
+      throws IOException, InvalidRangeException {
+    Array[] result = new Array[variables.size()];
+
+    // group the record variables by the records they want
+    Map<Range, List<Integer>> groups = new LinkedHashMap<>();
+    for (int i = 0; i < variables.size(); i++) {
+      Variable v = variables.get(i);
+      if (v instanceof Structure || !((Vinfo) v.getSPobject()).isRecord) {
+        result[i] = readData(v, sections.get(i));
+      } else {
+        groups.computeIfAbsent(sections.get(i).getRange(0), k -> new ArrayList<>()).add(i);
+      }
+    }
+
+    for (Map.Entry<Range, List<Integer>> group : groups.entrySet()) {
+      readRecordVariables(group.getKey(), group.getValue(), variables, sections, result);
+    }
+    return Arrays.asList(result);
+  }
+
+  private void readRecordVariables(Range records, List<Integer> which, List<Variable> variables,
+      List<Section> sections, Array[] result) throws IOException, InvalidRangeException {
+    // the part of each record that holds these variables
+    long lo = Long.MAX_VALUE;
+    long hi = 0;
+    long wanted = 0;
+    for (int i : which) {
+      Vinfo vinfo = (Vinfo) variables.get(i).getSPobject();
+      lo = Math.min(lo, vinfo.begin - header.recStart);
+      hi = Math.max(hi, vinfo.begin - header.recStart + vinfo.vsize);
+      wanted += vinfo.vsize;
+    }
+    long span = hi - lo;
+
+    // when the variables are a small part of large records, reading them one at a time reads less
+    if (records.length() == 0 || span > RECORD_BLOCK_SIZE || span > Math.max(4 * wanted, raf.getBufferSize())) {
+      for (int i : which)
+        result[i] = readData(variables.get(i), sections.get(i));
+      return;
+    }
+
+    int n = which.size();
+    Layout[] layouts = new Layout[n];
+    Layout.Chunk[] pending = new Layout.Chunk[n];
+    Object[] arrays = new Object[n];
+    for (int j = 0; j < n; j++) {
+      Variable v = variables.get(which.get(j));
+      Vinfo vinfo = (Vinfo) v.getSPobject();
+      Section section = sections.get(which.get(j));
+      layouts[j] = new LayoutRegularSegmented(vinfo.begin, v.getElementSize(), header.recsize, v.getShape(), section);
+      arrays[j] = IospHelper.makePrimitiveArray((int) layouts[j].getTotalNelems(), v.getDataType());
+    }
+
+    // read blocks of records, and copy each variable's chunks out of them
+    long recordStep = records.stride() * header.recsize;
+    int perBlock = (int) Math.min(records.length(), (RECORD_BLOCK_SIZE - span) / recordStep + 1);
+    byte[] block = new byte[(int) ((perBlock - 1) * recordStep + span)];
+    ByteBuffer bb = ByteBuffer.wrap(block); // netcdf-3 is big-endian
+    for (int k = 0; k < records.length(); k += perBlock) {
+      int nrecs = Math.min(perBlock, records.length() - k);
+      long start = header.recStart + records.element(k) * header.recsize + lo;
+      int nbytes = (int) ((nrecs - 1) * recordStep + span);
+      int valid = readBlock(start, block, 0, nbytes);
+      if (debugRecord)
+        System.out.printf(" read %d records at %d, %d bytes%n", nrecs, start, nbytes);
+
+      for (int j = 0; j < n; j++) {
+        Variable v = variables.get(which.get(j));
+        int elemSize = v.getElementSize();
+        while (true) {
+          Layout.Chunk chunk = pending[j];
+          if (chunk == null) {
+            if (!layouts[j].hasNext())
+              break;
+            chunk = layouts[j].next();
+          }
+          if (chunk.getSrcPos() >= start + nbytes) { // in a later block
+            pending[j] = chunk;
+            break;
+          }
+          pending[j] = null;
+          int pos = (int) (chunk.getSrcPos() - start);
+          if (pos + chunk.getNelems() * elemSize > valid)
+            throw new EOFException("Reading " + raf.getLocation() + " at " + (start + valid) + " file length = "
+                + raf.length());
+          copy(bb, pos, v.getDataType(), arrays[j], (int) chunk.getDestElem(), chunk.getNelems());
+        }
+      }
+    }
+
+    for (int j = 0; j < n; j++) {
+      int i = which.get(j);
+      DataType dataType = variables.get(i).getDataType();
+      Object data = (dataType == DataType.CHAR) ? IospHelper.convertByteToChar((byte[]) arrays[j]) : arrays[j];
+      result[i] = Array.factory(dataType, sections.get(i).getShape(), data);
+    }
+  }
+
+  // read up to nbytes; the file may end early, since the last record may be missing its padding
+  private int readBlock(long pos, byte[] block, int off, int nbytes) throws IOException {
+    int done = 0;
+    while (done < nbytes) {
+      int count = raf.read(pos + done, block, off + done, nbytes - done);
+      if (count <= 0)
+        break;
+      done += count;
+    }
+    return done;
+  }
+
+  /**
+   * Read into a SegmentedArray, for data that may be larger than an Array.
+   * The segments are big-endian like the file, so the bytes of each chunk are read directly into them.
+   */
+  @Override
+  public SegmentedArray readSegmented(Variable v2, Section section) throws IOException, InvalidRangeException {
+    Vinfo vinfo = (Vinfo) v2.getSPobject();
+    int elemSize = v2.getElementSize();
+    SegmentedArray result =
+        SegmentedArray.factory(v2.getDataType(), section.getShape(), segmentSize, ByteOrder.BIG_ENDIAN);
+
+    for (int i = 0; i < result.getSegmentCount(); i++) {
+      Section want = section.compose(result.getSegmentSection(i));
+      Layout layout = (!vinfo.isRecord) ? new LayoutRegular(vinfo.begin, elemSize, v2.getShape(), want)
+          : new LayoutRegularSegmented(vinfo.begin, elemSize, header.recsize, v2.getShape(), want);
+      ByteBuffer segment = result.getSegment(i);
+      while (layout.hasNext()) {
+        Layout.Chunk chunk = layout.next();
+        int pos = (int) chunk.getDestElem() * elemSize;
+        segment.limit(pos + chunk.getNelems() * elemSize);
+        segment.position(pos);
+        raf.readFully(chunk.getSrcPos(), segment);
+      }
+    }
+    return result;
+  }
+
+  private static void copy(ByteBuffer bb, int pos, DataType dataType, Object arr, int dest, int nelems) {
+    bb.clear();
+    bb.position(pos);
+    if (dataType.getPrimitiveClassType() == byte.class || dataType == DataType.CHAR) {
+      System.arraycopy(bb.array(), pos, arr, dest, nelems);
+    } else if (dataType.getPrimitiveClassType() == short.class) {
+      bb.asShortBuffer().get((short[]) arr, dest, nelems);
+    } else if (dataType.getPrimitiveClassType() == int.class) {
+      bb.asIntBuffer().get((int[]) arr, dest, nelems);
+    } else if (dataType == DataType.FLOAT) {
+      bb.asFloatBuffer().get((float[]) arr, dest, nelems);
+    } else if (dataType == DataType.DOUBLE) {
+      bb.asDoubleBuffer().get((double[]) arr, dest, nelems);
+    } else if (dataType.getPrimitiveClassType() == long.class) {
+      bb.asLongBuffer().get((long[]) arr, dest, nelems);
+    } else {
+      throw new IllegalStateException("unexpected dataType " + dataType);
+    }
+  }
+
   // TODO
   private long readRecordData(ucar.nc2.Structure s, Section section, WritableByteChannel out)
       throws java.io.IOException {
@@ -231,6 +422,15 @@ public class N3iospNew extends AbstractIOServiceProvider implements IOServicePro
       this.useRecordStructure = true;
       return Boolean.TRUE;
     }
+    if (message == NetcdfFile.IOSP_MESSAGE_ARRAY_BB) {
+      this.useArrayBB = true;
+      return Boolean.TRUE;
+    }
+    if (message == NetcdfFile.IOSP_MESSAGE_ARRAY_BB_DIRECT) {
+      this.useArrayBB = true;
+      this.directArrayBB = true;
+      return Boolean.TRUE;
+    }
     return super.sendIospMessage(message);
   }
 
@@ -335,33 +535,115 @@ public class N3iospNew extends AbstractIOServiceProvider implements IOServicePro
     }
 
     // protect against too large of reads
-    if (header.recsize > Integer.MAX_VALUE)
-      throw new IllegalArgumentException("Cant read records when recsize > " + Integer.MAX_VALUE);
+    if (header.recsize > MAX_ARRAY_LEN)
+      throw new IllegalArgumentException("Cant read records when recsize > " + MAX_ARRAY_LEN);
     long nrecs = section.computeSize();
-    if (nrecs * header.recsize > Integer.MAX_VALUE)
-      throw new IllegalArgumentException(
-          "Too large read: nrecs * recsize= " + (nrecs * header.recsize) + "bytes exceeds " + Integer.MAX_VALUE);
+    if (nrecs * header.recsize > MAX_ARRAY_LEN)
+      throw new IllegalArgumentException("Too large read: nrecs * recsize= " + (nrecs * header.recsize)
+          + "bytes exceeds " + MAX_ARRAY_LEN + "; use the record structure's StructureDataIterator");
 
     members.setStructureSize((int) header.recsize);
     ArrayStructureBB structureArray = new ArrayStructureBB(members, new int[] {recordRange.length()});
-
-    // loop over records
     byte[] result = structureArray.getByteBuffer().array();
-    int count = 0;
-    for (int recnum : recordRange) {
-      if (debugRecord)
-        System.out.println(" read record " + recnum);
-      raf.seek(header.recStart + recnum * header.recsize); // where the record starts
+    int recsize = (int) header.recsize;
 
-      if (recnum != header.numrecs - 1) {
-        raf.readFully(result, (int) (count * header.recsize), (int) header.recsize);
-      } else {
-        // "wart" allows file to be one byte short. since its always padding, we allow
-        raf.read(result, (int) (count * header.recsize), (int) header.recsize);
+    if (recordRange.stride() == 1) {
+      // consecutive records are read together
+      if (debugRecord)
+        System.out.println(" read records " + recordRange);
+      readRecords(recordRange.first(), recordRange.length(), result, 0);
+    } else {
+      int count = 0;
+      for (int recnum : recordRange) {
+        if (debugRecord)
+          System.out.println(" read record " + recnum);
+        readRecords(recnum, 1, result, count * recsize);
+        count++;
       }
-      count++;
     }
 
     return structureArray;
   }
+
+  // read n records starting at record first
+  private void readRecords(int first, int n, byte[] dest, int off) throws IOException {
+    long pos = header.recStart + first * header.recsize; // where the record starts
+    int nbytes = (int) (n * header.recsize);
+    if (first + n < header.numrecs) {
+      raf.readFully(pos, dest, off, nbytes);
+    } else {
+      // "wart" allows file to be one byte short. since its always padding, we allow
+      int done = readBlock(pos, dest, off, nbytes);
+      if (done < nbytes - header.recsize)
+        throw new EOFException("Reading " + raf.getLocation() + " at " + (pos + done) + " file length = "
+            + raf.length());
+    }
+  }
+
+  /**
+   * Iterate over the records of the record structure. Reads a window of records at a time, so it can read all the
+   * records even when they are too large for an Array.
+   */
+  @Override
+  public StructureDataIterator getStructureIterator(Structure s, int bufferSize) {
+    return new RecordIterator(s, bufferSize);
+  }
+
+  private class RecordIterator implements StructureDataIterator {
+    private final Structure s;
+    private final int nrecs;
+    private int window; // number of records to read at a time
+    private int count; // records returned so far
+    private int readStart; // the first record in the window
+    private ArrayStructure as;
+
+    RecordIterator(Structure s, int bufferSize) {
+      this.s = s;
+      this.nrecs = (int) s.getSize();
+      setBufferSize(bufferSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return count < nrecs;
+    }
+
+    @Override
+    public StructureData next() throws IOException {
+      if (count >= nrecs)
+        throw new NoSuchElementException();
+      if (as == null || count >= readStart + window) {
+        readStart = count;
+        int n = Math.min(window, nrecs - count);
+        try {
+          as = (ArrayStructure) readRecordData(s, new Section(new Range(count, count + n - 1)));
+        } catch (InvalidRangeException e) {
+          throw new IllegalStateException(e); // cant happen
+        }
+      }
+      return as.getStructureData(count++ - readStart);
+    }
+
+    @Override
+    public void setBufferSize(int bytes) {
+      if (count > 0)
+        return; // too late
+      long recsize = Math.max(1, header.recsize);
+      long want = (bytes > 0) ? bytes : RECORD_BLOCK_SIZE;
+      window = (int) Math.max(1, Math.min(want / recsize, MAX_ARRAY_LEN / recsize));
+    }
+
+    @Override
+    public StructureDataIterator reset() {
+      count = 0;
+      readStart = 0;
+      as = null;
+      return this;
+    }
+
+    @Override
+    public int getCurrentRecno() {
+      return count - 1;
+    }
+  }
 }
@@ -6,8 +6,11 @@ package ucar.nc2.iosp;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import javax.annotation.Nullable;
 import ucar.ma2.Section;
+import ucar.ma2.SegmentedArray;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.StructureDataIterator;
 import ucar.nc2.Group;
@@ -76,6 +79,47 @@ public interface IOServiceProvider {
    */
   ucar.ma2.Array readData(Variable v2, Section section) throws java.io.IOException, ucar.ma2.InvalidRangeException;
 
+  /**
+   * Read data from several top level Variables. An IOSP may override this to read the variables together,
+   * for example with one pass through the records of the unlimited dimension.
+   * Default implementation calls readData() for each Variable.
+   *
+   * @param variables top-level Variables
+   * @param sections the section of data to read for each Variable, in the same order. Each must have a Range for
+   *        each Dimension in its Variable, in order. Note: no nulls allowed. IOSP may not modify.
+   * @return the requested data, one memory-resident Array for each Variable, in the same order
+   * @throws java.io.IOException if read error
+   * @throws ucar.ma2.InvalidRangeException if invalid section
+   */
+  default List<ucar.ma2.Array> readArrays(List<Variable> variables, List<Section> sections)
+      throws java.io.IOException, ucar.ma2.InvalidRangeException {
+    List<ucar.ma2.Array> result = new ArrayList<>(variables.size());
+    for (int i = 0; i < variables.size(); i++) {
+      result.add(readData(variables.get(i), sections.get(i)));
+    }
+    return result;
+  }
+
+  /**
+   * Read data from a top level Variable into a SegmentedArray, which may be larger than an Array.
+   * Default implementation calls readData() for the section of each segment, which must fit in an Array.
+   *
+   * @param v2 a top-level Variable of a numeric or CHAR type
+   * @param section the section of data to read. There must be a Range for each Dimension in the variable, in order.
+   *        Note: no nulls allowed. IOSP may not modify.
+   * @return the requested data in a memory-resident SegmentedArray
+   * @throws java.io.IOException if read error
+   * @throws ucar.ma2.InvalidRangeException if invalid section
+   */
+  default SegmentedArray readSegmented(Variable v2, Section section)
+      throws java.io.IOException, ucar.ma2.InvalidRangeException {
+    SegmentedArray result = SegmentedArray.factory(v2.getDataType(), section.getShape());
+    for (int i = 0; i < result.getSegmentCount(); i++) {
+      result.setSegmentArray(i, readData(v2, section.compose(result.getSegmentSection(i))));
+    }
+    return result;
+  }
+
   /**
    * Read data from a top level Variable and send data to a OutputStream.
    * Must be in big-endian order, following ncstream conventions.
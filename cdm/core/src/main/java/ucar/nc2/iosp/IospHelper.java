@@ -35,7 +35,8 @@ public class IospHelper {
    * @param dataType dataType of the variable
    * @param fillValue must be Number if dataType.isNumeric(), or String for STRING, byte[] for Structure, or null for
    *        none
-   * @param byteOrder if equal to RandomAccessFile.ORDER_XXXX, set the byte order just before reading
+   * @param byteOrder if equal to RandomAccessFile.BIG_ENDIAN or LITTLE_ENDIAN, read in that byte order, otherwise use
+   *        the byte order of the raf
    * @return primitive array with data read in
    * @throws java.io.IOException on read error
    */
@@ -61,7 +62,8 @@ public class IospHelper {
    * @param layout handles skipping around in the file.
    * @param dataType dataType of the variable
    * @param arr primitive array to read data into
-   * @param byteOrder if equal to RandomAccessFile.ORDER_XXXX, set the byte order just before reading
+   * @param byteOrder if equal to RandomAccessFile.BIG_ENDIAN or LITTLE_ENDIAN, read in that byte order, otherwise use
+   *        the byte order of the raf
    * @param convertChar true if bytes should be converted to char for dataType CHAR
    * @return primitive array with data read in
    * @throws java.io.IOException on read error
@@ -71,13 +73,15 @@ public class IospHelper {
     if (showLayoutTypes)
       System.out.println("***RAF LayoutType=" + layout.getClass().getName());
 
+    ByteOrder order = (byteOrder < 0) ? raf.getByteOrder()
+        : (byteOrder == RandomAccessFile.BIG_ENDIAN) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    PositionalReader reader = new PositionalReader(raf, order);
+
     if (dataType.getPrimitiveClassType() == byte.class || dataType == DataType.CHAR) {
       byte[] pa = (byte[]) arr;
       while (layout.hasNext()) {
         Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readFully(pa, (int) chunk.getDestElem(), chunk.getNelems());
+        reader.readFully(chunk.getSrcPos(), pa, (int) chunk.getDestElem(), chunk.getNelems());
       }
       if (convertChar && dataType == DataType.CHAR)
         return convertByteToChar(pa);
@@ -88,9 +92,8 @@ public class IospHelper {
       short[] pa = (short[]) arr;
       while (layout.hasNext()) {
         Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readShort(pa, (int) chunk.getDestElem(), chunk.getNelems());
+        reader.read(chunk.getSrcPos(), 2 * chunk.getNelems()).asShortBuffer().get(pa, (int) chunk.getDestElem(),
+            chunk.getNelems());
       }
       return pa;
 
@@ -98,9 +101,8 @@ public class IospHelper {
       int[] pa = (int[]) arr;
       while (layout.hasNext()) {
         Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readInt(pa, (int) chunk.getDestElem(), chunk.getNelems());
+        reader.read(chunk.getSrcPos(), 4 * chunk.getNelems()).asIntBuffer().get(pa, (int) chunk.getDestElem(),
+            chunk.getNelems());
       }
       return pa;
 
@@ -108,9 +110,8 @@ public class IospHelper {
       float[] pa = (float[]) arr;
       while (layout.hasNext()) {
         Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readFloat(pa, (int) chunk.getDestElem(), chunk.getNelems());
+        reader.read(chunk.getSrcPos(), 4 * chunk.getNelems()).asFloatBuffer().get(pa, (int) chunk.getDestElem(),
+            chunk.getNelems());
       }
       return pa;
 
@@ -118,9 +119,8 @@ public class IospHelper {
       double[] pa = (double[]) arr;
       while (layout.hasNext()) {
         Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readDouble(pa, (int) chunk.getDestElem(), chunk.getNelems());
+        reader.read(chunk.getSrcPos(), 8 * chunk.getNelems()).asDoubleBuffer().get(pa, (int) chunk.getDestElem(),
+            chunk.getNelems());
       }
       return pa;
 
@@ -128,9 +128,8 @@ public class IospHelper {
       long[] pa = (long[]) arr;
       while (layout.hasNext()) {
         Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readLong(pa, (int) chunk.getDestElem(), chunk.getNelems());
+        reader.read(chunk.getSrcPos(), 8 * chunk.getNelems()).asLongBuffer().get(pa, (int) chunk.getDestElem(),
+            chunk.getNelems());
       }
       return pa;
 
@@ -139,9 +138,7 @@ public class IospHelper {
       int recsize = layout.getElemSize();
       while (layout.hasNext()) {
         Layout.Chunk chunk = layout.next();
-        raf.order(byteOrder);
-        raf.seek(chunk.getSrcPos());
-        raf.readFully(pa, (int) chunk.getDestElem() * recsize, chunk.getNelems() * recsize);
+        reader.readFully(chunk.getSrcPos(), pa, (int) chunk.getDestElem() * recsize, chunk.getNelems() * recsize);
       }
       return pa;
     }
@@ -149,6 +146,91 @@ public class IospHelper {
     throw new IllegalStateException("unknown type= " + dataType);
   }
 
+  /**
+   * Reads from a RandomAccessFile using only positional reads, into a window private to this object.
+   * Small chunks that are close together are served from the same window, as the RandomAccessFile buffer would,
+   * but no state of the RandomAccessFile is used or changed, so many threads can read the same file at once.
+   */
+  private static class PositionalReader {
+    private final RandomAccessFile raf;
+    private final ByteOrder order;
+    private final ByteBuffer window;
+    private long windowStart;
+    private int windowSize; // number of valid bytes in the window
+
+    PositionalReader(RandomAccessFile raf, ByteOrder order) {
+      this.raf = raf;
+      this.order = order;
+      this.window = ByteBuffer.allocate(Math.max(raf.getBufferSize(), 1));
+      this.windowStart = -1;
+    }
+
+    /** Return a buffer positioned at file position pos, with nbytes remaining, in the wanted byte order. */
+    ByteBuffer read(long pos, int nbytes) throws IOException {
+      if (nbytes > window.capacity()) { // too big for the window: read it directly
+        ByteBuffer result = ByteBuffer.allocate(nbytes);
+        raf.readFully(pos, result);
+        result.flip();
+        return result.order(order);
+      }
+
+      if (windowStart < 0 || pos < windowStart || pos + nbytes > windowStart + windowSize) {
+        window.clear();
+        int n = Math.max(raf.read(pos, window), 0);
+        if (n < nbytes) {
+          windowStart = -1;
+          throw new java.io.EOFException(
+              "Reading " + raf.getLocation() + " at " + (pos + n) + " file length = " + raf.length());
+        }
+        windowStart = pos;
+        windowSize = n;
+      }
+
+      ByteBuffer result = window.duplicate();
+      result.limit((int) (pos - windowStart) + nbytes);
+      result.position((int) (pos - windowStart));
+      return result.slice().order(order);
+    }
+
+    /** Read nbytes at file position pos into dest. */
+    void readFully(long pos, byte[] dest, int offset, int nbytes) throws IOException {
+      if (nbytes > window.capacity())
+        raf.readFully(pos, dest, offset, nbytes); // no need to copy through the window
+      else
+        read(pos, nbytes).get(dest, offset, nbytes);
+    }
+  }
+
+  /**
+   * Read data subset from RandomAccessFile into an ArrayBB, without converting it: the bytes of each chunk are read
+   * directly into a ByteBuffer.
+   *
+   * @param raf read from here.
+   * @param layout handles skipping around in the file.
+   * @param dataType dataType of the variable, must be supported by ArrayBB
+   * @param shape shape of the result
+   * @param order byte order of the data in the file
+   * @param direct allocate the ByteBuffer outside the Java heap
+   * @return ArrayBB with data read in
+   * @throws java.io.IOException on read error
+   */
+  public static ArrayBB readDataBB(RandomAccessFile raf, Layout layout, DataType dataType, int[] shape,
+      ByteOrder order, boolean direct) throws java.io.IOException {
+    int elemSize = dataType.getSize();
+    int nbytes = (int) (layout.getTotalNelems() * elemSize);
+    ByteBuffer bb = direct ? ByteBuffer.allocateDirect(nbytes) : ByteBuffer.allocate(nbytes);
+    bb.order(order);
+    while (layout.hasNext()) {
+      Layout.Chunk chunk = layout.next();
+      int pos = (int) chunk.getDestElem() * elemSize;
+      bb.limit(pos + chunk.getNelems() * elemSize);
+      bb.position(pos);
+      raf.readFully(chunk.getSrcPos(), bb);
+    }
+    bb.clear();
+    return ArrayBB.factory(dataType, shape, bb);
+  }
+
   /**
    * Read data subset from PositioningDataInputStream, create primitive array of size Layout.getTotalNelems.
    * Reading is controlled by the Layout object.
@@ -386,6 +468,14 @@ public class IospHelper {
   public static long copyToByteChannel(Array data, WritableByteChannel channel) throws java.io.IOException {
     Class classType = data.getElementType();
 
+    ByteBuffer contiguous = (data instanceof ArrayBB) ? ((ArrayBB) data).getContiguousData() : null;
+    if (contiguous != null && (contiguous.order() == ByteOrder.BIG_ENDIAN || data.getDataType().getSize() == 1)) {
+      long size = contiguous.remaining();
+      while (contiguous.hasRemaining())
+        channel.write(contiguous);
+      return size;
+    }
+
     /*
      * if (data instanceof ArrayStructure) { // use NcStream encoding
      * DataOutputStream os = new DataOutputStream(Channels.newOutputStream(channel));
@@ -481,6 +571,13 @@ public class IospHelper {
   public static long copyToOutputStream(Array data, OutputStream out) throws java.io.IOException {
     Class classType = data.getElementType();
 
+    ByteBuffer contiguous = (data instanceof ArrayBB) ? ((ArrayBB) data).getContiguousData() : null;
+    if (contiguous != null && (contiguous.order() == ByteOrder.BIG_ENDIAN || data.getDataType().getSize() == 1)) {
+      long size = contiguous.remaining();
+      Channels.newChannel(out).write(contiguous);
+      return size;
+    }
+
     DataOutputStream dataOut;
     if (out instanceof DataOutputStream)
       dataOut = (DataOutputStream) out;
@@ -15,7 +15,6 @@ import java.util.Formatter;
 import java.util.List;
 import java.util.Optional;
 import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ucar.ma2.Array;
@@ -29,6 +28,7 @@ import ucar.nc2.Group;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
+import ucar.nc2.filter.Deflate;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.IO;
@@ -119,12 +119,8 @@ public class NcStreamIosp extends AbstractIOServiceProvider {
         raf.readFully(data);
 
         if (dataStorage.isDeflate) {
-          ByteArrayInputStream bin = new ByteArrayInputStream(data);
-          InflaterInputStream in = new InflaterInputStream(bin);
-          ByteArrayOutputStream bout = new ByteArrayOutputStream(data.length * 7);
-          IO.copy(in, bout);
-          byte[] resultb = bout.toByteArray();
-          result = ByteBuffer.wrap(resultb); // look - an extra copy !! override ByteArrayOutputStream to fix
+          byte[] resultb = Deflate.inflate(data, dataStorage.uncompressedLen);
+          result = ByteBuffer.wrap(resultb);
           if (debug)
             System.out.printf(" uncompressedLen header=%d actual=%d%n", dataStorage.uncompressedLen, resultb.length);
           result.order(dataStorage.bo);
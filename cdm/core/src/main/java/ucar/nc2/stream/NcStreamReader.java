@@ -10,14 +10,13 @@ import org.slf4j.LoggerFactory;
 import ucar.nc2.Group;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.Structure;
+import ucar.nc2.filter.Deflate;
 import ucar.ma2.*;
-import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.InputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.zip.InflaterInputStream;
 
 /**
  * Read an ncStream InputStream into a NetcdfFile.
@@ -187,10 +186,7 @@ public class NcStreamReader {
     NcStreamProto.Compress compress = dproto.getCompress();
     int uncompressedSize = dproto.getUncompressedSize();
     if (compress == NcStreamProto.Compress.DEFLATE) {
-      ByteArrayInputStream bin = new ByteArrayInputStream(datab);
-      InflaterInputStream in = new InflaterInputStream(bin);
-      byte[] resultb = new byte[uncompressedSize];
-      NcStream.readFully(in, resultb);
+      byte[] resultb = Deflate.inflate(datab, uncompressedSize);
 
       data = Array.factory(dataType, section.getShape(), ByteBuffer.wrap(resultb)); // another copy, not sure can do
                                                                                     // anything
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.Formatter;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A process-wide cache of fixed size file blocks, shared by all RandomAccessFiles reading the same file.
+ * Blocks are keyed by (location, last modified, length, block number), so a file that is rewritten or grows while
+ * it is open gets new blocks, including a new last block. The cache is bounded by the total number of bytes held.
+ * Least recently used blocks are evicted first. Blocks may be held on the heap or off-heap, in direct ByteBuffers.
+ * <p/>
+ * Enable with {@link RandomAccessFile#setGlobalBlockCache(BlockCache)}. Only files opened read-only use the cache.
+ *
+ * @since 5.4
+ */
+@ThreadSafe
+public class BlockCache {
+  public static final int defaultBlockSize = 64 * 1024;
+
+  // reads that span more than this many blocks bypass the cache
+  private static final int maxBlocksPerRead = 16;
+
+  private final String name;
+  private final int blockSize;
+  private final long maxBytes;
+  private final boolean offHeap;
+  private final Cache<BlockKey, ByteBuffer> cache;
+
+  /**
+   * Constructor.
+   *
+   * @param name name of the cache, used in showStats()
+   * @param maxBytes maximum number of bytes to hold
+   * @param blockSize size of the blocks, in bytes
+   * @param offHeap if true, store the blocks in direct ByteBuffers
+   */
+  public BlockCache(String name, long maxBytes, int blockSize, boolean offHeap) {
+    if (blockSize <= 0)
+      throw new IllegalArgumentException("blockSize must be > 0");
+    this.name = name;
+    this.blockSize = blockSize;
+    this.maxBytes = maxBytes;
+    this.offHeap = offHeap;
+    this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+        .weigher((BlockKey key, ByteBuffer block) -> block.capacity()).recordStats().build();
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** The number of bytes currently held. */
+  public long getSizeInBytes() {
+    return cache.asMap().values().stream().mapToLong(ByteBuffer::capacity).sum();
+  }
+
+  /** Hit, miss and eviction counts. */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Read from the file through the cache. Blocks not in the cache are read with
+   * {@link RandomAccessFile#readUncached(long, byte[], int, int)}.
+   *
+   * @param raf read from this file
+   * @param pos start here in the file
+   * @param b put data into this buffer
+   * @param offset buffer offset
+   * @param len this number of bytes
+   * @return actual number of bytes read, or -1 if pos is at the end of the file
+   * @throws IOException on io error
+   */
+  int read(RandomAccessFile raf, long pos, byte[] b, int offset, int len) throws IOException {
+    long firstBlock = pos / blockSize;
+    long lastBlock = (pos + len - 1) / blockSize;
+    if (lastBlock - firstBlock >= maxBlocksPerRead) {
+      return raf.readUncached(pos, b, offset, len); // dont flush the cache for large reads
+    }
+
+    FileKey fileKey = raf.getBlockCacheKey();
+    int done = 0;
+    for (long blockno = firstBlock; blockno <= lastBlock; blockno++) {
+      ByteBuffer block = getBlock(raf, fileKey, blockno).duplicate();
+      int blockPos = (int) (pos + done - blockno * blockSize);
+      if (blockPos >= block.limit())
+        break; // end of file
+      int n = Math.min(len - done, block.limit() - blockPos);
+      block.position(blockPos);
+      block.get(b, offset + done, n);
+      done += n;
+      if (block.limit() < blockSize)
+        break; // end of file
+    }
+    return (done == 0 && len > 0) ? -1 : done;
+  }
+
+  private ByteBuffer getBlock(RandomAccessFile raf, FileKey fileKey, long blockno) throws IOException {
+    try {
+      return cache.get(new BlockKey(fileKey, blockno), () -> readBlock(raf, fileKey.length, blockno));
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      throw new IOException(cause);
+    }
+  }
+
+  private ByteBuffer readBlock(RandomAccessFile raf, long length, long blockno) throws IOException {
+    long start = blockno * blockSize;
+    int want = (int) Math.max(0, Math.min(blockSize, length - start)); // last block may be short
+    byte[] data = new byte[want];
+    int n = 0;
+    while (n < want) {
+      int count = raf.readUncached(start + n, data, n, want - n);
+      if (count <= 0)
+        break;
+      n += count;
+    }
+    if (!offHeap) {
+      return ByteBuffer.wrap(data, 0, n).slice();
+    }
+    ByteBuffer block = ByteBuffer.allocateDirect(n);
+    block.put(data, 0, n);
+    block.flip();
+    return block;
+  }
+
+  /** Remove all blocks of the given location. */
+  public void eject(String location) {
+    cache.asMap().keySet().removeIf(key -> key.fileKey.location.equals(location));
+  }
+
+  /** Remove all blocks. */
+  public void clearCache() {
+    cache.invalidateAll();
+  }
+
+  /** Show the number of cached blocks for each file. */
+  public void showCache(Formatter f) {
+    Map<FileKey, Integer> counts = new TreeMap<>(Comparator.comparing((FileKey k) -> k.location)
+        .thenComparingLong(k -> k.lastModified).thenComparingLong(k -> k.length));
+    for (BlockKey key : cache.asMap().keySet()) {
+      counts.merge(key.fileKey, 1, Integer::sum);
+    }
+    f.format("%s: %d files%n", name, counts.size());
+    counts.forEach(
+        (key, count) -> f.format("  %s (lastModified=%d length=%d) nblocks=%d%n", key.location, key.lastModified,
+            key.length, count));
+  }
+
+  public void showStats(Formatter f) {
+    CacheStats stats = cache.stats();
+    f.format("%s: blockSize=%d maxBytes=%d offHeap=%s nblocks=%d bytes=%d%n", name, blockSize, maxBytes, offHeap,
+        cache.size(), getSizeInBytes());
+    f.format("  hits=%d misses=%d evictions=%d hitRate=%.3f%n", stats.hitCount(), stats.missCount(),
+        stats.evictionCount(), stats.hitRate());
+  }
+
+  /** Identifies a version of a file. */
+  static class FileKey {
+    final String location;
+    final long lastModified;
+    final long length;
+
+    FileKey(String location, long lastModified, long length) {
+      this.location = location;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      FileKey fileKey = (FileKey) o;
+      return lastModified == fileKey.lastModified && length == fileKey.length && location.equals(fileKey.location);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(location, lastModified, length);
+    }
+  }
+
+  private static class BlockKey {
+    private final FileKey fileKey;
+    private final long blockno;
+
+    BlockKey(FileKey fileKey, long blockno) {
+      this.fileKey = fileKey;
+      this.blockno = blockno;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      BlockKey blockKey = (BlockKey) o;
+      return blockno == blockKey.blockno && fileKey.equals(blockKey.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * fileKey.hashCode() + Long.hashCode(blockno);
+    }
+  }
+}
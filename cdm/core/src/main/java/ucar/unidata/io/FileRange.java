@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io;
+
+import com.google.auto.value.AutoValue;
+
+/** A contiguous range of bytes in a file, for vectored reads. */
+@AutoValue
+public abstract class FileRange {
+
+  /** Create a FileRange of length bytes, starting at offset. */
+  public static FileRange create(long offset, int length) {
+    if (offset < 0 || length < 0)
+      throw new IllegalArgumentException("FileRange offset and length must be >= 0");
+    return new AutoValue_FileRange(offset, length);
+  }
+
+  /** The starting position in the file. */
+  public abstract long getOffset();
+
+  /** The number of bytes. */
+  public abstract int getLength();
+
+  /** The position just after the last byte. */
+  public long getEnd() {
+    return getOffset() + getLength();
+  }
+}
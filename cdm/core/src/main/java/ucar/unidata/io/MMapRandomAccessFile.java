@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import ucar.unidata.io.spi.RandomAccessFileProvider;
+
+/**
+ * A read-only RandomAccessFile that serves reads from memory-mapped segments of the file,
+ * rather than copying through the read buffer.
+ * The file is mapped lazily in segments of {@code ucar.unidata.io.mmap.segmentSize} bytes (default 1 GiB),
+ * so files larger than 2 GB are supported. Primitive array reads are decoded directly from the mapped
+ * buffers, respecting {@link #order(int)}.
+ * <p/>
+ * Open with the "mmap:" prefix, e.g. {@code NetcdfFiles.open("mmap:/data/big.nc")}.
+ */
+public class MMapRandomAccessFile extends RandomAccessFile {
+  private static final int defaultSegmentSize = 1 << 30;
+  private static final int segmentSize =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.mmap.segmentSize", String.valueOf(defaultSegmentSize)));
+
+  // segments overlap by this many bytes, so that a primitive never straddles two segments
+  private static final int overlap = 8;
+
+  private final long fileLength;
+  private final int segSize;
+  private AtomicReferenceArray<MappedByteBuffer> segments;
+
+  /**
+   * Constructor, read-only access, default segment size.
+   *
+   * @param location location of the file
+   * @throws IOException on open error
+   */
+  public MMapRandomAccessFile(String location) throws IOException {
+    this(location, segmentSize);
+  }
+
+  /**
+   * Constructor, read-only access.
+   *
+   * @param location location of the file
+   * @param segSize map the file in segments of this many bytes
+   * @throws IOException on open error
+   */
+  public MMapRandomAccessFile(String location, int segSize) throws IOException {
+    super(location, "r", defaultBufferSize);
+    if (segSize <= overlap)
+      throw new IllegalArgumentException("segment size must be > " + overlap);
+    this.segSize = segSize;
+    this.fileChannel = file.getChannel();
+    this.fileLength = fileChannel.size();
+    this.segments = new AtomicReferenceArray<>((int) ((fileLength + segSize - 1) / segSize));
+  }
+
+  /** Get a view of the segment containing pos, positioned at pos, with the current byte order. */
+  private ByteBuffer segmentFor(long pos) throws IOException {
+    int segno = (int) (pos / segSize);
+    MappedByteBuffer seg = segments.get(segno);
+    if (seg == null) {
+      long start = (long) segno * segSize;
+      long size = Math.min(fileLength - start, (long) segSize + overlap);
+      seg = fileChannel.map(FileChannel.MapMode.READ_ONLY, start, size);
+      if (!segments.compareAndSet(segno, null, seg))
+        seg = segments.get(segno); // another thread got there first
+    }
+    ByteBuffer bb = seg.duplicate();
+    bb.position((int) (pos - (long) segno * segSize));
+    bb.order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    return bb;
+  }
+
+  /** Get a view positioned at filePosition, with at least elemSize bytes remaining. */
+  private ByteBuffer current(int elemSize) throws IOException {
+    if (filePosition + elemSize > fileLength) {
+      endOfFile = true;
+      throw new EOFException("Reading " + location + " at " + filePosition + " file length = " + fileLength);
+    }
+    return segmentFor(filePosition);
+  }
+
+  @Override
+  public long length() {
+    return fileLength;
+  }
+
+  @Override
+  public void setBufferSize(int bufferSize) {
+    // buffer is not used for reading
+  }
+
+  @Override
+  public void seek(long pos) throws IOException {
+    if (pos < 0)
+      throw new java.io.IOException("Negative seek offset");
+    filePosition = pos;
+    endOfFile = pos >= fileLength;
+  }
+
+  @Override
+  protected int read_(long pos, byte[] b, int offset, int len) throws IOException {
+    int done = 0;
+    while (done < len && pos < fileLength) {
+      ByteBuffer bb = segmentFor(pos);
+      int n = Math.min(len - done, bb.remaining());
+      bb.get(b, offset + done, n);
+      done += n;
+      pos += n;
+    }
+    return done;
+  }
+
+  @Override
+  public int read(long pos, ByteBuffer dst) throws IOException {
+    if (pos >= fileLength)
+      return dst.hasRemaining() ? -1 : 0;
+    int done = 0;
+    while (dst.hasRemaining() && pos < fileLength) {
+      ByteBuffer bb = segmentFor(pos);
+      int n = Math.min(dst.remaining(), bb.remaining());
+      bb.limit(bb.position() + n);
+      dst.put(bb);
+      done += n;
+      pos += n;
+    }
+    return done;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (filePosition >= fileLength) {
+      endOfFile = true;
+      return -1;
+    }
+    int b = segmentFor(filePosition).get() & 0xff;
+    filePosition++;
+    return b;
+  }
+
+  @Override
+  public int readBytes(byte[] b, int off, int len) throws IOException {
+    if (filePosition >= fileLength) {
+      endOfFile = true;
+      return -1;
+    }
+    int n = read_(filePosition, b, off, len);
+    filePosition += n;
+    return n;
+  }
+
+  @Override
+  public void readShort(short[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = current(2);
+      int count = Math.min(n, bb.remaining() / 2);
+      bb.asShortBuffer().get(pa, start, count);
+      filePosition += 2L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public void readInt(int[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = current(4);
+      int count = Math.min(n, bb.remaining() / 4);
+      bb.asIntBuffer().get(pa, start, count);
+      filePosition += 4L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public void readLong(long[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = current(8);
+      int count = Math.min(n, bb.remaining() / 8);
+      bb.asLongBuffer().get(pa, start, count);
+      filePosition += 8L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public void readFloat(float[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = current(4);
+      int count = Math.min(n, bb.remaining() / 4);
+      bb.asFloatBuffer().get(pa, start, count);
+      filePosition += 4L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public void readDouble(double[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = current(8);
+      int count = Math.min(n, bb.remaining() / 8);
+      bb.asDoubleBuffer().get(pa, start, count);
+      filePosition += 8L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public boolean searchForward(KMPMatch match, int maxBytes) throws IOException {
+    readBuffer(filePosition); // searching is done in the read buffer
+    return super.searchForward(match, maxBytes);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    segments = new AtomicReferenceArray<>(0); // mappings are released when garbage collected
+    super.close();
+  }
+
+  /**
+   * Hook for service provider interface RandomAccessFileProvider
+   */
+  public static class Provider implements RandomAccessFileProvider {
+
+    @Override
+    public boolean isOwnerOf(String location) {
+      return location.startsWith("mmap:");
+    }
+
+    @Override
+    public RandomAccessFile open(String location) throws IOException {
+      return new MMapRandomAccessFile(location.substring(5));
+    }
+  }
+}
@@ -17,7 +17,9 @@ import ucar.nc2.util.cache.FileFactory;
 import ucar.unidata.util.StringUtil2;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -42,6 +44,9 @@ import java.util.concurrent.atomic.AtomicLong;
  * Freeware Java Classes</a>.
  * <p/>
  * Must be thread confined - that is, can only be used by a single thread at a time..
+ * The exception are the positional reads, {@link #read(long, ByteBuffer)} and {@link #readFully(long, ByteBuffer)},
+ * which do not use the file pointer or the read buffer, and may be called concurrently while the file is not being
+ * written.
  *
  * @author Alex McManus
  * @author Russ Rew
@@ -198,6 +203,28 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
       cache.clearCache(true);
   }
 
+  /////////////////////////////////////////////////////////////////////////////////////////////
+  // global block cache, shared by all read only RandomAccessFiles.
+
+  private static volatile BlockCache blockCache;
+
+  /**
+   * Set the global block cache, or null for no block caching. To resize, set a new cache.
+   * The cache is looked up on every read, so this affects files that are already open, starting with their next read.
+   * The blocks held by the previous cache are discarded.
+   *
+   * @param _blockCache use this cache, or null
+   */
+  public static synchronized void setGlobalBlockCache(BlockCache _blockCache) {
+    if (blockCache != null)
+      blockCache.clearCache();
+    blockCache = _blockCache;
+  }
+
+  public static BlockCache getGlobalBlockCache() {
+    return blockCache;
+  }
+
   /////////////////////////////////////////////////////////////////////////////////////////////
 
   /**
@@ -205,6 +232,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    */
   protected String location;
   private int cacheState; // 0 - not in cache, 1 = in cache && in use, 2 = in cache but not in use
+  private volatile BlockCache.FileKey blockCacheKey; // lazy
 
   /**
    * The underlying java.io.RandomAccessFile.
@@ -558,6 +586,15 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     this.bigEndian = bo.equals(ByteOrder.BIG_ENDIAN);
   }
 
+  /**
+   * Get the current endian mode, used by reads of short, int, float, double, long, char.
+   *
+   * @return ByteOrder.BIG_ENDIAN or ByteOrder.LITTLE_ENDIAN
+   */
+  public ByteOrder getByteOrder() {
+    return bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+  }
+
   /**
    * Copy the contents of the buffer to the disk.
    *
@@ -696,12 +733,11 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    */
   public long readToByteChannel(WritableByteChannel dest, long offset, long nbytes) throws IOException {
 
-    if (fileChannel == null)
-      fileChannel = file.getChannel();
+    FileChannel channel = getFileChannel();
 
     long need = nbytes;
     while (need > 0) {
-      long count = fileChannel.transferTo(offset, need, dest);
+      long count = channel.transferTo(offset, need, dest);
       // if (count == 0) break; // LOOK not sure what the EOF condition is
       need -= count;
       offset += count;
@@ -713,6 +749,8 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
   /**
    * Read directly from file, without going through the buffer.
    * All reading goes through here or readToByteChannel;
+   * If the global block cache is set and the file is read only, the data is read through the block cache,
+   * otherwise from {@link #readUncached}.
    *
    * @param pos start here in the file
    * @param b put data into this buffer
@@ -722,8 +760,8 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @throws IOException on io error
    */
   protected int read_(long pos, byte[] b, int offset, int len) throws IOException {
-    file.seek(pos);
-    int n = file.read(b, offset, len);
+    BlockCache bc = useBlockCache();
+    int n = (bc != null) ? bc.read(this, pos, b, offset, len) : readUncached(pos, b, offset, len);
     if (debugAccess) {
       if (showRead)
         System.out.printf(" **read_ %s = %d bytes at %d; block = %d%n", location, len, pos, (pos / buffer.length));
@@ -737,6 +775,171 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     return n;
   }
 
+  /**
+   * Read directly from the file, bypassing the buffer and the block cache. Subclasses that read from somewhere
+   * other than a local file override this.
+   * Must be safe to call concurrently from multiple threads, since blocks may be loaded into the block cache
+   * by any thread.
+   *
+   * @param pos start here in the file
+   * @param b put data into this buffer
+   * @param offset buffer offset
+   * @param len this number of bytes
+   * @return actual number of bytes read, or -1 if pos is at or beyond the end of the file.
+   * @throws IOException on io error
+   */
+  protected int readUncached(long pos, byte[] b, int offset, int len) throws IOException {
+    synchronized (file) { // seek and read must not be interleaved
+      file.seek(pos);
+      return file.read(b, offset, len);
+    }
+  }
+
+  /** The global block cache, if this file should use it, else null. */
+  private BlockCache useBlockCache() {
+    return readonly ? blockCache : null;
+  }
+
+  /**
+   * Identifies this version of the file in the block cache. The length is checked on every call, and when it has
+   * changed, for example because the file is being appended to, the last modified time is looked up again.
+   */
+  BlockCache.FileKey getBlockCacheKey() throws IOException {
+    long length = length();
+    BlockCache.FileKey key = blockCacheKey;
+    if (key == null || key.length != length) {
+      String canon;
+      if (key != null)
+        canon = key.location;
+      else
+        canon = (file != null) ? new File(location).getCanonicalPath() : location;
+      key = new BlockCache.FileKey(canon, getLastModified(), length);
+      blockCacheKey = key;
+    }
+    return key;
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  // Positional reads.
+  // These neither use nor change the file pointer, the read buffer or the byte order, so they may be called
+  // concurrently by multiple threads, as long as no thread is writing to the file.
+
+  /**
+   * Read up to <code>dst.remaining()</code> bytes starting at the given file position.
+   * Does not use or change the file pointer or the read buffer.
+   * Local files are read with {@link java.nio.channels.FileChannel#read(ByteBuffer, long)}, subclasses
+   * without a local file (for example remote files), or files using the block cache, read through {@link #read_}.
+   *
+   * @param pos start here in the file
+   * @param dst put data into this buffer, starting at its position
+   * @return the actual number of bytes read, or -1 if pos is at or beyond the end of the file.
+   * @throws IOException if an I/O error occurs.
+   */
+  public int read(long pos, ByteBuffer dst) throws IOException {
+    if (pos < 0)
+      throw new java.io.IOException("Negative read offset");
+
+    // If we are writing and the buffer has been modified, the file must see the contents of the buffer.
+    if (bufferModified) {
+      flush();
+    }
+
+    int want = dst.remaining();
+    int done = 0;
+    if (file != null && useBlockCache() == null) {
+      FileChannel channel = getFileChannel();
+      while (dst.hasRemaining()) {
+        int n = channel.read(dst, pos + done);
+        if (n < 0)
+          break;
+        done += n;
+      }
+
+    } else if (pos < length()) {
+      if (dst.hasArray()) {
+        done = read_(pos, dst.array(), dst.arrayOffset() + dst.position(), want);
+        dst.position(dst.position() + Math.max(done, 0));
+      } else {
+        byte[] b = new byte[want];
+        done = read_(pos, b, 0, want);
+        dst.put(b, 0, Math.max(done, 0));
+      }
+    }
+
+    if (debugAccess) {
+      if (showRead)
+        System.out.printf(" **read %s = %d bytes at %d%n", location, want, pos);
+      debug_nseeks.incrementAndGet();
+      debug_nbytes.addAndGet(want);
+    }
+
+    if (extendMode && (done < want)) {
+      while (dst.hasRemaining())
+        dst.put((byte) 0);
+      done = want;
+    }
+    return (done <= 0 && want > 0) ? -1 : done;
+  }
+
+  /**
+   * Read up to <code>len</code> bytes into an array, starting at the given file position.
+   * Does not use or change the file pointer or the read buffer.
+   *
+   * @param pos start here in the file
+   * @param b the byte array to receive the bytes.
+   * @param off the offset in the array where copying will start.
+   * @param len the number of bytes to copy.
+   * @return the actual number of bytes read, or -1 if pos is at or beyond the end of the file.
+   * @throws IOException if an I/O error occurs.
+   */
+  public int read(long pos, byte[] b, int off, int len) throws IOException {
+    return read(pos, ByteBuffer.wrap(b, off, len));
+  }
+
+  /**
+   * Read exactly <code>dst.remaining()</code> bytes starting at the given file position.
+   * Does not use or change the file pointer or the read buffer.
+   *
+   * @param pos start here in the file
+   * @param dst put data into this buffer, starting at its position
+   * @throws EOFException if the end of the file is reached before reading all the bytes.
+   * @throws IOException if an I/O error occurs.
+   */
+  public void readFully(long pos, ByteBuffer dst) throws IOException {
+    long start = pos;
+    while (dst.hasRemaining()) {
+      int count = read(pos, dst);
+      if (count < 0) {
+        throw new EOFException("Reading " + location + " at " + start + " file length = " + length());
+      }
+      pos += count;
+    }
+  }
+
+  /**
+   * Read exactly <code>len</code> bytes into an array, starting at the given file position.
+   * Does not use or change the file pointer or the read buffer.
+   *
+   * @param pos start here in the file
+   * @param b the byte array to receive the bytes.
+   * @param off the offset in the array where copying will start.
+   * @param len the number of bytes to read.
+   * @throws EOFException if the end of the file is reached before reading all the bytes.
+   * @throws IOException if an I/O error occurs.
+   */
+  public void readFully(long pos, byte[] b, int off, int len) throws IOException {
+    readFully(pos, ByteBuffer.wrap(b, off, len));
+  }
+
+  private FileChannel getFileChannel() {
+    FileChannel channel = fileChannel;
+    if (channel == null) {
+      channel = file.getChannel(); // always returns the same channel
+      fileChannel = channel;
+    }
+    return channel;
+  }
+
   /**
    * Read up to <code>len</code> bytes into an array, at a specified
    * offset. This will block until at least one byte has been read.
@@ -1097,7 +1300,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n read this many elements
    * @throws IOException on read error
    */
-  public final void readShort(short[] pa, int start, int n) throws IOException {
+  public void readShort(short[] pa, int start, int n) throws IOException {
     for (int i = 0; i < n; i++) {
       pa[start + i] = readShort();
     }
@@ -1256,7 +1459,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n read this many elements
    * @throws IOException on read error
    */
-  public final void readInt(int[] pa, int start, int n) throws IOException {
+  public void readInt(int[] pa, int start, int n) throws IOException {
     for (int i = 0; i < n; i++) {
       pa[start + i] = readInt();
     }
@@ -1330,7 +1533,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n read this many elements
    * @throws IOException on read error
    */
-  public final void readLong(long[] pa, int start, int n) throws IOException {
+  public void readLong(long[] pa, int start, int n) throws IOException {
     for (int i = 0; i < n; i++) {
       pa[start + i] = readLong();
     }
@@ -1367,7 +1570,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n read this many elements
    * @throws IOException on read error
    */
-  public final void readFloat(float[] pa, int start, int n) throws IOException {
+  public void readFloat(float[] pa, int start, int n) throws IOException {
     for (int i = 0; i < n; i++) {
       pa[start + i] = Float.intBitsToFloat(readInt());
     }
@@ -1404,7 +1607,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n read this many elements
    * @throws IOException on read error
    */
-  public final void readDouble(double[] pa, int start, int n) throws IOException {
+  public void readDouble(double[] pa, int start, int n) throws IOException {
     for (int i = 0; i < n; i++) {
       pa[start + i] = Double.longBitsToDouble(readLong());
     }
@@ -6,7 +6,11 @@
 package ucar.unidata.io;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 /** A remote file that can be read from. */
 public interface ReadableRemoteFile extends Closeable {
@@ -24,6 +28,31 @@ public interface ReadableRemoteFile extends Closeable {
    */
   int readRemote(long pos, byte[] buff, int offset, int len) throws IOException;
 
+  /**
+   * Read several ranges of the remote file. Implementations may fetch the ranges concurrently, or combine them
+   * into fewer requests. This default reads them one at a time with {@link #readRemote}.
+   *
+   * @param ranges the ranges to read, in any order
+   * @return one ByteBuffer for each range, in the same order, each holding exactly the bytes of its range.
+   * @throws EOFException if a range extends past the end of the file
+   * @throws IOException on io error
+   */
+  default List<ByteBuffer> readVectored(List<FileRange> ranges) throws IOException {
+    List<ByteBuffer> result = new ArrayList<>(ranges.size());
+    for (FileRange range : ranges) {
+      byte[] data = new byte[range.getLength()];
+      int done = 0;
+      while (done < data.length) {
+        int count = readRemote(range.getOffset() + done, data, done, data.length - done);
+        if (count <= 0)
+          throw new EOFException("Reading " + range + " at " + (range.getOffset() + done));
+        done += count;
+      }
+      result.add(ByteBuffer.wrap(data));
+    }
+    return result;
+  }
+
   /**
    * Close any resources used to enable remote reading.
    *
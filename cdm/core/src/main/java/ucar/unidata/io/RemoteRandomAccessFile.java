@@ -8,11 +8,27 @@ package ucar.unidata.io;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,13 +46,61 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
   protected static final int defaultRemoteFileTimeout = 10 * 1000;
   // default cache time to live in milliseconds
   private static final long defaultReadCacheTimeToLive = 30 * 1000;
+  // default number of cache blocks to prefetch when reading sequentially, in pipelined mode
+  protected static final int defaultReadAheadBlocks = 4;
+  // in pipelined mode, a single range request fetches at most this many cache blocks
+  private static final int maxBlocksPerRequest = 8;
+  // vectored reads combine ranges separated by less than this many bytes
+  private static final int vectoredMergeGap = 4 * 1024;
+  // vectored reads dont combine ranges into one bigger than this
+  private static final int vectoredMaxMergedSize = 16 * 1024 * 1024;
+
+  // shared by all remote files for concurrent range requests in pipelined mode
+  private static final int readThreads =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.remote.readThreads", "8"));
+  // at most this many range requests wait for a thread. when full, readahead is skipped, and other requests are made
+  // in the calling thread, so many files reading at once cannot queue up an unbounded number of blocks.
+  private static final int maxQueuedReads = 4 * readThreads;
+  private static final ThreadPoolExecutor readExecutor = makeReadExecutor();
+
+  private static ThreadPoolExecutor makeReadExecutor() {
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(readThreads, readThreads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(maxQueuedReads),
+        new ThreadFactoryBuilder().setNameFormat("RemoteRandomAccessFile-%d").setDaemon(true).build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
 
   protected final String url;
   private final boolean readCacheEnabled;
   private final int readCacheBlockSize;
   private final LoadingCache<Long, byte[]> readCache;
 
+  // pipelined mode
+  private final boolean pipelined;
+  private final int readAheadBlocks;
+  private final ConcurrentHashMap<Long, CompletableFuture<byte[]>> inflight = new ConcurrentHashMap<>();
+  private volatile long lastReadEndBlock = -2;
+  private volatile boolean closed;
+
   protected RemoteRandomAccessFile(String url, int bufferSize, long maxRemoteCacheSize) {
+    this(url, bufferSize, maxRemoteCacheSize, false, 0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param url location of the remote file
+   * @param bufferSize size of the read buffer
+   * @param maxRemoteCacheSize maximum size of the read cache in bytes; if less than twice the buffer size, the read
+   *        cache is not used.
+   * @param pipelined if true (and the read cache is used), adjacent missing cache blocks are fetched with one range
+   *        request, separate ranges are fetched concurrently, and sequential reads trigger readahead.
+   * @param readAheadBlocks in pipelined mode, the number of cache blocks to prefetch when reading sequentially.
+   */
+  protected RemoteRandomAccessFile(String url, int bufferSize, long maxRemoteCacheSize, boolean pipelined,
+      int readAheadBlocks) {
     super(bufferSize);
 
     this.url = url;
@@ -58,6 +122,8 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
       readCacheEnabled = false;
       readCache = null;
     }
+    this.pipelined = pipelined && readCacheEnabled;
+    this.readAheadBlocks = Math.max(0, readAheadBlocks);
   }
 
   private LoadingCache<Long, byte[]> initCache(long maximumNumberOfCacheBlocks, java.time.Duration timeToLive) {
@@ -79,7 +145,7 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
    *
    * If the read cache is enabled, the cache will be checked for data first.
    * If not in the cache, data will be read directly from the remote service and placed in the cache.
-   * All reading goes through here or readToByteChannel;
+   * Called from read_, beneath the global block cache if that is enabled.
    *
    * @param pos start here in the file
    * @param buff put data into this buffer
@@ -89,47 +155,280 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
    * @throws IOException on io error
    */
   @Override
-  protected int read_(long pos, byte[] buff, int offset, int len) throws IOException {
+  protected int readUncached(long pos, byte[] buff, int offset, int len) throws IOException {
     return readCacheEnabled ? readFromCache(pos, buff, offset, len) : readRemote(pos, buff, offset, len);
   }
 
   private int readFromCache(long pos, byte[] buff, int offset, int len) throws IOException {
-    long startCacheBlock = pos / readCacheBlockSize;
-    long endCacheBlock = (pos + len - 1) / readCacheBlockSize;
-
     if (pos >= length()) {
       // Do not read past end of the file
       return 0;
-    } else if (endCacheBlock - startCacheBlock > 1) {
-      // If the request touches more than two cache blocks, punt
-      // This should never happen because cache block size is
-      // twice the buffer size
-      return readFromCache(pos, buff, offset, len);
-    } else if (endCacheBlock - startCacheBlock == 1) {
-      // If the request touches two cache blocks, split it
-      int length1 = (int) ((endCacheBlock * readCacheBlockSize) - pos);
-      int length2 = (int) ((pos + len) - (endCacheBlock * readCacheBlockSize));
-      return readFromCache(pos, buff, offset, length1) + readFromCache(pos + length1, buff, offset + length1, length2);
-    }
-
-    // If we make it here, we are servicing a request that touches
-    // only one cache block.
-    byte[] src;
-    Long key = startCacheBlock;
+    }
+    len = (int) Math.min(len, length() - pos);
+    long startCacheBlock = pos / readCacheBlockSize;
+    long endCacheBlock = (pos + len - 1) / readCacheBlockSize;
+
+    Map<Long, CompletableFuture<byte[]>> pending = null;
+    if (pipelined) {
+      pending = requestBlocks(startCacheBlock, endCacheBlock, true);
+      // sequential access: start fetching the next blocks before they are asked for.
+      // wait until the readahead window is half used, so that several blocks are fetched at a time.
+      long lastEnd = lastReadEndBlock;
+      lastReadEndBlock = endCacheBlock;
+      long trigger = endCacheBlock + readAheadBlocks / 2 + 1;
+      if (readAheadBlocks > 0 && (startCacheBlock == lastEnd || startCacheBlock == lastEnd + 1)
+          && readCache.getIfPresent(trigger) == null && !inflight.containsKey(trigger)) {
+        requestBlocks(endCacheBlock + 1, endCacheBlock + readAheadBlocks, false);
+      }
+    }
+
+    int done = 0;
+    for (long key = startCacheBlock; key <= endCacheBlock; key++) {
+      byte[] src = (pending != null) ? getPending(pending.get(key)) : getCacheBlock(key);
+      int srcPos = (int) (pos + done - (key * readCacheBlockSize));
+      int length = Math.min(src.length - srcPos, len - done);
+      if (length <= 0)
+        break;
+      // copy byte array fulfilling the request as obtained from the cache or a fresh read
+      // of the remote data into the destination buffer
+      System.arraycopy(src, srcPos, buff, offset + done, length);
+      done += length;
+    }
+    return done;
+  }
+
+  private byte[] getCacheBlock(long key) throws IOException {
     try {
-      src = readCache.get(key);
+      return readCache.get(key);
     } catch (ExecutionException ee) {
       throw new IOException(ee.getCause());
     }
+  }
 
-    int srcPos = (int) (pos - (key * readCacheBlockSize));
-    int toEOB = src.length - srcPos;
-    int length = Math.min(toEOB, len);
-    // copy byte array fulfilling the request as obtained from the cache or a fresh read
-    // of the remote data into the destination buffer
-    System.arraycopy(src, srcPos, buff, offset, length);
+  private byte[] getPending(CompletableFuture<byte[]> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+    }
+  }
 
-    return len;
+  /**
+   * Pipelined mode: make sure that the cache blocks first through last are in the cache or being fetched.
+   * Runs of adjacent missing blocks are fetched with one range request each. Blocks already being fetched by
+   * another read are not requested again.
+   *
+   * @param first first cache block
+   * @param last last cache block, inclusive; blocks past the end of the file are ignored.
+   * @param wait if true, the caller will wait for the blocks, so the last range request is made in the calling
+   *        thread. Otherwise all range requests are made in the background, or none if the shared queue is full.
+   * @return futures for the blocks, keyed by block number.
+   */
+  private Map<Long, CompletableFuture<byte[]>> requestBlocks(long first, long last, boolean wait)
+      throws IOException {
+    last = Math.min(last, (length() - 1) / readCacheBlockSize);
+    Map<Long, CompletableFuture<byte[]>> result = new HashMap<>();
+    if (!wait && readExecutor.getQueue().remainingCapacity() == 0)
+      return result; // readahead would only wait behind the queued requests
+    List<List<Long>> runs = new ArrayList<>();
+    List<Long> run = null;
+    for (long key = first; key <= last; key++) {
+      byte[] cached = readCache.getIfPresent(key);
+      if (cached != null) {
+        result.put(key, CompletableFuture.completedFuture(cached));
+        run = null;
+        continue;
+      }
+      CompletableFuture<byte[]> mine = new CompletableFuture<>();
+      CompletableFuture<byte[]> existing = inflight.putIfAbsent(key, mine);
+      if (existing != null) {
+        result.put(key, existing);
+        run = null;
+        continue;
+      }
+      result.put(key, mine);
+      if (run == null || run.size() >= maxBlocksPerRequest) {
+        run = new ArrayList<>();
+        runs.add(run);
+      }
+      run.add(key);
+    }
+
+    for (int i = 0; i < runs.size(); i++) {
+      List<Long> keys = runs.get(i);
+      if (wait && i == runs.size() - 1) {
+        fetchRun(keys, result); // no point in handing the last one off
+      } else {
+        readExecutor.execute(() -> fetchRun(keys, result));
+      }
+    }
+    return result;
+  }
+
+  /** Fetch adjacent cache blocks with one range request, put them into the cache and complete their futures. */
+  private void fetchRun(List<Long> keys, Map<Long, CompletableFuture<byte[]>> futures) {
+    long first = keys.get(0);
+    try {
+      if (closed)
+        throw new IOException("RemoteRandomAccessFile is closed: " + url);
+      long position = first * readCacheBlockSize;
+      int bytes = Math.toIntExact(Math.min(length() - position, (long) keys.size() * readCacheBlockSize));
+      byte[] data = new byte[bytes];
+      int done = 0;
+      while (done < bytes) {
+        int count = readRemote(position + done, data, done, bytes - done);
+        if (count <= 0)
+          break;
+        done += count;
+      }
+      for (long key : keys) {
+        int start = (int) ((key - first) * readCacheBlockSize);
+        byte[] block = Arrays.copyOfRange(data, Math.min(start, done), Math.min(start + readCacheBlockSize, done));
+        readCache.put(key, block);
+        futures.get(key).complete(block);
+      }
+    } catch (Throwable t) {
+      for (long key : keys) {
+        futures.get(key).completeExceptionally(t);
+      }
+    } finally {
+      for (long key : keys) {
+        inflight.remove(key, futures.get(key));
+      }
+    }
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////////////
+  // vectored reads
+
+  /**
+   * Read several ranges of the remote file, bypassing the read cache.
+   * Ranges that are adjacent or separated by small gaps are combined, and the combined ranges are fetched
+   * concurrently by {@link #readCoalesced}.
+   */
+  @Override
+  public List<ByteBuffer> readVectored(List<FileRange> ranges) throws IOException {
+    List<FileRange> coalesced = coalesce(ranges);
+    List<byte[]> data = readCoalesced(coalesced);
+
+    List<ByteBuffer> result = new ArrayList<>(ranges.size());
+    for (FileRange range : ranges) {
+      // find the last coalesced range starting at or before this one
+      int lo = 0, hi = coalesced.size() - 1;
+      while (lo < hi) {
+        int mid = (lo + hi + 1) >>> 1;
+        if (coalesced.get(mid).getOffset() <= range.getOffset())
+          lo = mid;
+        else
+          hi = mid - 1;
+      }
+      byte[] src = data.get(lo);
+      int start = (int) (range.getOffset() - coalesced.get(lo).getOffset());
+      if (start + range.getLength() > src.length)
+        throw new EOFException("Reading " + url + " " + range + " file length = " + length());
+      result.add(ByteBuffer.wrap(src, start, range.getLength()).slice());
+    }
+    return result;
+  }
+
+  /**
+   * Sort the ranges and combine those that overlap or are separated by less than vectoredMergeGap bytes,
+   * as long as the combined range is not bigger than vectoredMaxMergedSize.
+   */
+  private static List<FileRange> coalesce(List<FileRange> ranges) {
+    List<FileRange> sorted = new ArrayList<>(ranges);
+    sorted.sort(Comparator.comparingLong(FileRange::getOffset));
+    List<FileRange> result = new ArrayList<>();
+    FileRange current = null;
+    for (FileRange range : sorted) {
+      if (current != null && range.getOffset() <= current.getEnd() + vectoredMergeGap
+          && Math.max(current.getEnd(), range.getEnd()) - current.getOffset() <= vectoredMaxMergedSize) {
+        long end = Math.max(current.getEnd(), range.getEnd());
+        current = FileRange.create(current.getOffset(), (int) (end - current.getOffset()));
+      } else {
+        if (current != null)
+          result.add(current);
+        current = range;
+      }
+    }
+    if (current != null)
+      result.add(current);
+    return result;
+  }
+
+  /**
+   * Read sorted, non-overlapping ranges from the remote file.
+   * This issues one {@link #readRemote} request per range, concurrently.
+   * Subclasses that can fetch several ranges in one request may override.
+   *
+   * @param ranges sorted, non-overlapping ranges
+   * @return the data for each range, in the same order. The last may be short if it extends past the end of the
+   *         file.
+   * @throws IOException on io error
+   */
+  protected List<byte[]> readCoalesced(List<FileRange> ranges) throws IOException {
+    List<Callable<byte[]>> tasks = new ArrayList<>(ranges.size());
+    for (FileRange range : ranges) {
+      tasks.add(() -> readRange(range));
+    }
+    return runConcurrently(tasks);
+  }
+
+  /** Read one range from the remote file with readRemote. The result is short if it extends past the end of file. */
+  protected byte[] readRange(FileRange range) throws IOException {
+    int want = (int) Math.max(0, Math.min(range.getLength(), length() - range.getOffset()));
+    byte[] data = new byte[want];
+    int done = 0;
+    while (done < want) {
+      int count = readRemote(range.getOffset() + done, data, done, want - done);
+      if (count <= 0)
+        break;
+      done += count;
+    }
+    return (done == want) ? data : Arrays.copyOf(data, done);
+  }
+
+  /**
+   * Run the tasks on the shared remote read thread pool, the last one in the calling thread, and wait for all of
+   * them to finish.
+   *
+   * @return the results, in the same order as the tasks
+   * @throws IOException if any task fails
+   */
+  protected static <T> List<T> runConcurrently(List<Callable<T>> tasks) throws IOException {
+    List<Future<T>> futures = new ArrayList<>(tasks.size());
+    for (int i = 0; i < tasks.size() - 1; i++) {
+      futures.add(readExecutor.submit(tasks.get(i)));
+    }
+    List<T> result = new ArrayList<>(tasks.size());
+    try {
+      T last = tasks.isEmpty() ? null : tasks.get(tasks.size() - 1).call();
+      for (Future<T> future : futures) {
+        result.add(future.get());
+      }
+      if (!tasks.isEmpty())
+        result.add(last);
+      return result;
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+    } catch (IOException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    } finally {
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+    }
   }
 
   /**
@@ -158,6 +457,7 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
 
   @Override
   public void close() throws IOException {
+    closed = true;
     closeRemote();
     super.close();
     // clean out the cache when closing the Remote Random Access File
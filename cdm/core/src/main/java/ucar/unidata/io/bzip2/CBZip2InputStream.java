@@ -232,6 +232,25 @@ public class CBZip2InputStream extends InputStream implements BZip2Constants {
     }
   }
 
+  /**
+   * Reads up to len bytes of the stream into b, without the argument checks that InputStream.read(byte[], int, int)
+   * makes for each byte.
+   *
+   * @return the number of bytes read, or -1 at the end of the stream
+   * @throws BZip2ReadException if there is a problem.
+   */
+  @Override
+  public int read(byte[] b, int off, int len) {
+    int n = 0;
+    while (n < len) {
+      int c = read();
+      if (c < 0)
+        break;
+      b[off + n++] = (byte) c;
+    }
+    return (n == 0 && len > 0) ? -1 : n;
+  }
+
   private void initialize() {
     char magic3, magic4;
     magic3 = bsGetUChar();
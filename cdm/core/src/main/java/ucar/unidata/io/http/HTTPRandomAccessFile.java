@@ -4,17 +4,21 @@
  */
 package ucar.unidata.io.http;
 
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import ucar.httpservices.HTTPFactory;
 import ucar.httpservices.HTTPMethod;
 import ucar.httpservices.HTTPSession;
+import ucar.unidata.io.FileRange;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.io.RemoteRandomAccessFile;
 import ucar.unidata.io.spi.RandomAccessFileProvider;
@@ -40,12 +44,22 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
   private static final long httpMaxCacheSize = Long
       .parseLong(System.getProperty("ucar.unidata.io.http.maxReadCacheSize", String.valueOf(defaultMaxReadCacheSize)));
 
+  // fetch missing read cache blocks with coalesced, concurrent range requests, and read ahead when reading sequentially
+  private static final boolean httpPipelined =
+      Boolean.parseBoolean(System.getProperty("ucar.unidata.io.http.pipelined", "false"));
+  private static final int httpReadAheadBlocks = Integer
+      .parseInt(System.getProperty("ucar.unidata.io.http.readAheadBlocks", String.valueOf(defaultReadAheadBlocks)));
+
   private static final boolean debug = false, debugDetails = false;
 
   ///////////////////////////////////////////////////////////////////////////////////
 
+  // the maximum number of ranges in one multi-range request
+  private static final int maxRangesPerRequest = 32;
+
   private HTTPSession session;
   private long total_length;
+  private volatile boolean multiRangeOk = true;
 
   public HTTPRandomAccessFile(String url) throws IOException {
     this(url, httpBufferSize, httpMaxCacheSize);
@@ -54,7 +68,23 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
   // TODO make private in 6?
   @Urlencoded
   public HTTPRandomAccessFile(String url, int bufferSize, long maxRemoteCacheSize) throws IOException {
-    super(url, bufferSize, maxRemoteCacheSize);
+    this(url, bufferSize, maxRemoteCacheSize, httpPipelined, httpReadAheadBlocks);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param url location of the remote file
+   * @param bufferSize size of the read buffer
+   * @param maxRemoteCacheSize maximum size of the read cache in bytes
+   * @param pipelined use coalesced, concurrent range requests and readahead
+   * @param readAheadBlocks in pipelined mode, the number of read cache blocks to prefetch when reading sequentially
+   * @throws IOException on open error
+   */
+  @Urlencoded
+  public HTTPRandomAccessFile(String url, int bufferSize, long maxRemoteCacheSize, boolean pipelined,
+      int readAheadBlocks) throws IOException {
+    super(url, bufferSize, maxRemoteCacheSize, pipelined, readAheadBlocks);
 
     if (debugLeaks)
       allFiles.add(location);
@@ -195,6 +225,142 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
     }
   }
 
+  /**
+   * Read sorted, non-overlapping ranges, using multi-range requests of up to maxRangesPerRequest ranges each,
+   * issued concurrently. If the server does not return a multipart/byteranges response, fall back to concurrent
+   * single-range requests, and dont try multi-range requests on this file again.
+   */
+  @Override
+  protected List<byte[]> readCoalesced(List<FileRange> ranges) throws IOException {
+    if (!multiRangeOk || ranges.size() < 2)
+      return super.readCoalesced(ranges);
+
+    List<Callable<List<byte[]>>> tasks = new ArrayList<>();
+    for (int start = 0; start < ranges.size(); start += maxRangesPerRequest) {
+      List<FileRange> batch = ranges.subList(start, Math.min(start + maxRangesPerRequest, ranges.size()));
+      tasks.add(() -> readMultiRange(batch));
+    }
+    List<byte[]> result = new ArrayList<>(ranges.size());
+    for (List<byte[]> batchResult : runConcurrently(tasks)) {
+      if (batchResult == null) {
+        multiRangeOk = false;
+        return super.readCoalesced(ranges);
+      }
+      result.addAll(batchResult);
+    }
+    return result;
+  }
+
+  /** Fetch the ranges with one request. Return null if the server does not respond with the ranges asked for. */
+  private List<byte[]> readMultiRange(List<FileRange> ranges) throws IOException {
+    List<long[]> pairs = new ArrayList<>(ranges.size());
+    byte[][] result = new byte[ranges.size()][];
+    int[] filled = new int[ranges.size()];
+    for (int i = 0; i < ranges.size(); i++) {
+      FileRange range = ranges.get(i);
+      long end = Math.min(range.getEnd(), total_length);
+      result[i] = new byte[(int) Math.max(0, end - range.getOffset())];
+      if (result[i].length > 0)
+        pairs.add(new long[] {range.getOffset(), end - 1});
+    }
+    if (pairs.isEmpty())
+      return Arrays.asList(result);
+
+    try (HTTPMethod method = HTTPFactory.Get(session, url)) {
+      method.setFollowRedirects(true);
+      method.setRanges(pairs);
+      doConnect(method);
+      if (method.getStatusCode() != 206)
+        return null; // dont read the body, it may be the entire file
+
+      String contentType = method.getResponseHeaderValue("Content-Type").orElse("");
+      InputStream is = method.getResponseAsStream();
+      if (contentType.toLowerCase().startsWith("multipart/byteranges")) {
+        int pos = contentType.indexOf("boundary=");
+        if (pos < 0)
+          return null;
+        String boundary = "--" + contentType.substring(pos + 9).replace("\"", "").trim();
+        while (true) {
+          String line = readLine(is);
+          if (line == null || line.startsWith(boundary + "--"))
+            break;
+          if (!line.startsWith(boundary))
+            continue; // preamble or the CRLF after a part
+          long[] partRange = null;
+          while ((line = readLine(is)) != null && !line.isEmpty()) {
+            if (line.toLowerCase().startsWith("content-range:"))
+              partRange = parseContentRange(line.substring(14));
+          }
+          if (line == null)
+            throw new EOFException("Multipart response from " + url + " ends in the headers of a part");
+          if (partRange == null)
+            return null;
+          copyPart(is, partRange, ranges, result, filled);
+        }
+      } else {
+        // a single range, perhaps because the server combined our ranges
+        Optional<long[]> partRange = method.getResponseHeaderValue("Content-Range").map(this::parseContentRange);
+        if (!partRange.isPresent())
+          return null;
+        copyPart(is, partRange.get(), ranges, result, filled);
+      }
+    }
+
+    for (int i = 0; i < result.length; i++) {
+      if (filled[i] != result[i].length)
+        return null;
+    }
+    return Arrays.asList(result);
+  }
+
+  // parse " bytes lo-hi/total"
+  private long[] parseContentRange(String value) {
+    String r = value.trim();
+    if (r.startsWith("bytes"))
+      r = r.substring(5).trim();
+    int dash = r.indexOf('-');
+    int slash = r.indexOf('/');
+    if (dash < 0 || slash < dash)
+      return null;
+    try {
+      return new long[] {Long.parseLong(r.substring(0, dash).trim()),
+          Long.parseLong(r.substring(dash + 1, slash).trim())};
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  // copy a part of the response with file positions partRange[0] to partRange[1] inclusive into the wanted ranges
+  private void copyPart(InputStream is, long[] partRange, List<FileRange> ranges, byte[][] result, int[] filled)
+      throws IOException {
+    int partLen = (int) (partRange[1] - partRange[0] + 1);
+    byte[] part = new byte[partLen];
+    if (copy(is, part, 0, partLen) != partLen)
+      throw new EOFException("Short multipart response from " + url);
+    for (int i = 0; i < ranges.size(); i++) {
+      long start = Math.max(ranges.get(i).getOffset(), partRange[0]);
+      long end = Math.min(ranges.get(i).getOffset() + result[i].length, partRange[1] + 1);
+      if (start < end) {
+        System.arraycopy(part, (int) (start - partRange[0]), result[i], (int) (start - ranges.get(i).getOffset()),
+            (int) (end - start));
+        filled[i] += (int) (end - start);
+      }
+    }
+  }
+
+  // read an ascii line terminated by CRLF or LF, without the terminator. return null at end of stream
+  private static String readLine(InputStream is) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    int c;
+    while ((c = is.read()) != -1) {
+      if (c == '\n')
+        break;
+      if (c != '\r')
+        sb.append((char) c);
+    }
+    return (c == -1 && sb.length() == 0) ? null : sb.toString();
+  }
+
   private int copy(InputStream in, byte[] buff, int offset, int want) throws IOException {
     int done = 0;
     while (want > 0) {
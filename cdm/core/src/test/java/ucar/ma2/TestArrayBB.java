@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.ma2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import ucar.nc2.iosp.IospHelper;
+import org.junit.Test;
+
+/** Test {@link ArrayBB} */
+public class TestArrayBB {
+  private static final DataType[] TYPES = {DataType.BYTE, DataType.UBYTE, DataType.CHAR, DataType.SHORT,
+      DataType.USHORT, DataType.INT, DataType.UINT, DataType.LONG, DataType.FLOAT, DataType.DOUBLE};
+
+  private static Array makeArray(DataType dataType, int[] shape) {
+    Array data = Array.factory(dataType, shape);
+    IndexIterator ii = data.getIndexIterator();
+    for (int count = 0; ii.hasNext(); count++) {
+      if (dataType == DataType.CHAR)
+        ii.setCharNext((char) ('a' + count % 26));
+      else
+        ii.setLongNext(count * 7 - 50);
+    }
+    return data;
+  }
+
+  private static ArrayBB copy(Array data, ByteOrder order, boolean direct) {
+    int nbytes = (int) data.getSizeBytes();
+    ByteBuffer bb = direct ? ByteBuffer.allocateDirect(nbytes) : ByteBuffer.allocate(nbytes);
+    ArrayBB result = ArrayBB.factory(data.getDataType(), data.getShape(), bb.order(order));
+    MAMath.copy(result, data);
+    return result;
+  }
+
+  @Test
+  public void testDataTypes() throws InvalidRangeException {
+    int[] shape = {4, 5, 6};
+    for (DataType dataType : TYPES) {
+      Array data = makeArray(dataType, shape);
+      for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+        ArrayBB bb = copy(data, order, order == ByteOrder.BIG_ENDIAN);
+        assertThat(bb.getDataType()).isEqualTo(dataType);
+        assertThat(bb.getElementType()).isEqualTo(data.getElementType());
+        assertThat(bb.getByteOrder()).isEqualTo(order);
+        assertThat(MAMath.equals(bb, data)).isTrue();
+
+        IndexIterator want = data.getIndexIterator();
+        IndexIterator have = bb.getIndexIterator();
+        while (want.hasNext()) {
+          assertThat(have.getDoubleNext()).isEqualTo(want.getDoubleNext());
+          assertThat(have.getObjectCurrent()).isEqualTo(want.getObjectCurrent());
+        }
+
+        Index ima = bb.getIndex().set(3, 2, 1);
+        assertThat(bb.getLong(ima)).isEqualTo(data.getLong(ima));
+        assertThat(bb.getInt(ima)).isEqualTo(data.getInt(ima));
+        assertThat(bb.getShort(ima)).isEqualTo(data.getShort(ima));
+        assertThat(bb.getByte(ima)).isEqualTo(data.getByte(ima));
+        assertThat(bb.getFloat(ima)).isEqualTo(data.getFloat(ima));
+
+        Array flipped = bb.flip(1);
+        assertThat(MAMath.equals(flipped, data.flip(1))).isTrue();
+        assertThat(((ArrayBB) flipped).getContiguousData()).isNull();
+
+        // sections share the ByteBuffer
+        Array section = bb.section(new Section("1:3:2, :, 0:5:5").getRanges());
+        assertThat(section).isInstanceOf(ArrayBB.class);
+        assertThat(MAMath.equals(section, data.section(new Section("1:3:2, :, 0:5:5").getRanges()))).isTrue();
+        section.setDouble(section.getIndex().set(1, 4, 1), 42);
+        assertThat(bb.getDouble(ima.set(3, 4, 5))).isEqualTo(42.0);
+
+      }
+    }
+  }
+
+  @Test
+  public void testReshape() {
+    int[] shape = {4, 5, 6};
+    for (DataType dataType : TYPES) {
+      Array data = makeArray(dataType, shape);
+      ArrayBB bb = copy(data, ByteOrder.LITTLE_ENDIAN, false);
+
+      Array reshaped = bb.reshapeNoCopy(new int[] {20, 6});
+      assertThat(reshaped).isInstanceOf(ArrayBB.class);
+      assertThat(MAMath.equals(reshaped, data.reshapeNoCopy(new int[] {20, 6}))).isTrue();
+      reshaped.setDouble(reshaped.getIndex().set(19, 5), 42);
+      assertThat(bb.getDouble(bb.getIndex().set(3, 4, 5))).isEqualTo(42.0);
+
+      Array plusOne = Array.makeArrayRankPlusOne(bb);
+      assertThat(plusOne).isInstanceOf(ArrayBB.class);
+      assertThat(plusOne.getShape()).isEqualTo(new int[] {1, 4, 5, 6});
+      assertThat(MAMath.equals(plusOne.reduce(), bb)).isTrue();
+
+      try {
+        bb.reshapeNoCopy(new int[] {7, 6});
+        fail();
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testJavaArrays() throws InvalidRangeException {
+    int[] shape = {4, 5, 6};
+    for (DataType dataType : TYPES) {
+      Array data = makeArray(dataType, shape);
+      ArrayBB bb = copy(data, ByteOrder.LITTLE_ENDIAN, true);
+      Object ja = data.copyTo1DJavaArray();
+      assertThat(bb.copyTo1DJavaArray()).isEqualTo(ja);
+      assertThat(bb.copyToNDJavaArray()).isEqualTo(data.copyToNDJavaArray());
+
+      // not in canonical order
+      Section section = new Section("1:3:2, :, 0:5:5");
+      assertThat(bb.section(section.getRanges()).copyToNDJavaArray())
+          .isEqualTo(data.section(section.getRanges()).copyToNDJavaArray());
+      Array flipped = bb.flip(2);
+      assertThat(flipped.copyTo1DJavaArray()).isEqualTo(data.flip(2).copyTo1DJavaArray());
+
+      ArrayBB copy = ArrayBB.factory(dataType, shape, ByteBuffer.allocate((int) data.getSizeBytes()));
+      copy.copyFrom1DJavaArray(copy.getIndexIterator(), ja);
+      assertThat(MAMath.equals(copy, data)).isTrue();
+      Array copyFlipped = copy.flip(2);
+      copyFlipped.copyFrom1DJavaArray(copyFlipped.getIndexIterator(), ja);
+      assertThat(MAMath.equals(copy, data.flip(2))).isTrue();
+    }
+  }
+
+  @Test
+  public void testUnsigned() {
+    ArrayBB ubyte = ArrayBB.factory(DataType.UBYTE, new int[] {3}, ByteBuffer.wrap(new byte[] {-1, 0, -128}));
+    assertThat(ubyte.getInt(0)).isEqualTo(255);
+    assertThat(ubyte.getDouble(2)).isEqualTo(128.0);
+    assertThat(ubyte.getByte(0)).isEqualTo((byte) -1);
+
+    ArrayBB ushort = ArrayBB.factory(DataType.USHORT, new int[] {1}, ByteBuffer.wrap(new byte[] {-1, -2}));
+    assertThat(ushort.getInt(0)).isEqualTo(65534);
+    assertThat(ushort.getShort(0)).isEqualTo((short) -2);
+
+    ArrayBB uint = ArrayBB.factory(DataType.UINT, new int[] {1}, ByteBuffer.wrap(new byte[] {-1, -1, -1, -1}));
+    assertThat(uint.getLong(0)).isEqualTo(0xffffffffL);
+    assertThat(uint.getInt(0)).isEqualTo(-1);
+  }
+
+  @Test
+  public void testByteBuffers() throws Exception {
+    Array data = makeArray(DataType.INT, new int[] {3, 4});
+    ArrayBB bb = copy(data, ByteOrder.BIG_ENDIAN, true);
+
+    // the contiguous data is shared, getDataAsByteBuffer() copies into a heap buffer
+    ByteBuffer shared = bb.getContiguousData();
+    assertThat(shared.remaining()).isEqualTo(48);
+    assertThat(shared.isDirect()).isTrue();
+    assertThat(bb.getStorage()).isInstanceOf(ByteBuffer.class);
+    ByteBuffer copied = bb.getDataAsByteBuffer();
+    assertThat(copied.array()).isEqualTo(data.getDataAsByteBuffer().array());
+    assertThat(bb.getDataAsByteBuffer(ByteOrder.LITTLE_ENDIAN).array())
+        .isEqualTo(data.getDataAsByteBuffer(ByteOrder.LITTLE_ENDIAN).array());
+    shared.putInt(0, 99);
+    assertThat(bb.getInt(0)).isEqualTo(99);
+
+    // Java arrays are copies
+    int[] ja = (int[]) bb.get1DJavaArray(DataType.INT);
+    assertThat(ja[0]).isEqualTo(99);
+    ja[0] = 100;
+    assertThat(bb.getInt(0)).isEqualTo(99);
+    int[][] nd = (int[][]) bb.copyToNDJavaArray();
+    assertThat(nd[2][3]).isEqualTo(data.getInt(11));
+
+    // the ByteBuffer is written out directly, with the same bytes as other Arrays
+    data.setInt(0, 99);
+    ByteArrayOutputStream want = new ByteArrayOutputStream();
+    IospHelper.copyToOutputStream(data, want);
+    ByteArrayOutputStream have = new ByteArrayOutputStream();
+    assertThat(IospHelper.copyToOutputStream(bb, have)).isEqualTo(48);
+    assertThat(have.toByteArray()).isEqualTo(want.toByteArray());
+    have.reset();
+    IospHelper.copyToByteChannel(bb.section(new int[] {1, 0}, new int[] {2, 4}), Channels.newChannel(have));
+    assertThat(have.size()).isEqualTo(32);
+  }
+
+  @Test
+  public void testErrors() {
+    try {
+      ArrayBB.factory(DataType.DOUBLE, new int[] {2, 3}, ByteBuffer.allocate(40));
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("need 48");
+    }
+    try {
+      ArrayBB.factory(DataType.STRING, new int[] {2}, ByteBuffer.allocate(40));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      ArrayBB.factory(DataType.BYTE, new int[] {2}, ByteBuffer.allocate(2)).getBoolean(0);
+      fail();
+    } catch (ForbiddenConversionException e) {
+      // expected
+    }
+  }
+}
@@ -244,4 +244,72 @@ public class TestMAMath {
     // Null
     assertEquals(0, MAMath.hashCode(null));
   }
+
+  // the run kernels give the same results as an IndexIterator, on all kinds of views
+  @Test
+  public void testRunKernels() throws InvalidRangeException {
+    List<Array> arrays = Lists.newArrayList();
+    for (DataType dataType : new DataType[] {DataType.DOUBLE, DataType.FLOAT, DataType.INT, DataType.UBYTE}) {
+      Array data = Array.factory(dataType, new int[] {5, 4, 6});
+      IndexIterator ii = data.getIndexIterator();
+      for (int count = 0; ii.hasNext(); count++)
+        ii.setDoubleNext((count * 37) % 101 - 20);
+      arrays.add(data);
+      arrays.add(data.section(new Section("1:4:3, :, 1:5:2").getRanges()));
+      arrays.add(data.section(new Section("2, 1:3, :").getRanges()));
+      arrays.add(data.sectionNoReduce(new Section("0:4, 2:2, 0:5").getRanges()));
+      arrays.add(data.flip(2));
+      arrays.add(data.transpose(0, 2));
+      arrays.add(data.permute(new int[] {1, 0, 2}));
+      arrays.add(data.slice(2, 3));
+    }
+    arrays.add(Array.factoryConstant(DataType.DOUBLE, new int[] {3, 4}, new double[] {7.5}));
+    arrays.add(Array.factory(DataType.FLOAT, new int[0], new float[] {-1.5f}));
+    arrays.add(Array.factory(DataType.DOUBLE, new int[] {3, 0}));
+
+    for (Array a : arrays) {
+      int size = (int) a.getSize();
+      double[] want = new double[size];
+      IndexIterator ii = a.getIndexIterator();
+      double sum = 0, min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+      for (int i = 0; ii.hasNext(); i++) {
+        want[i] = ii.getDoubleNext();
+        sum += want[i];
+        min = Math.min(min, want[i]);
+        max = Math.max(max, want[i]);
+      }
+
+      double[] dst = new double[size];
+      a.copyTo(dst);
+      assertArrayEquals(want, dst, 0.0);
+      float[] fdst = new float[size];
+      a.copyTo(fdst);
+      for (int i = 0; i < size; i++)
+        assertEquals(want[i], fdst[i], 0.0);
+      List<Double> values = Lists.newArrayList();
+      a.forEachDouble(values::add);
+      assertEquals(size, values.size());
+      for (int i = 0; i < size; i++)
+        assertEquals(want[i], values.get(i), 0.0);
+
+      assertEquals(sum, MAMath.sumDouble(a), 0.0);
+      assertEquals(min, MAMath.getMinMax(a).min, 0.0);
+      assertEquals(max, MAMath.getMaximum(a), 0.0);
+      assertTrue(MAMath.equals(a.copy(), a));
+      Array copy = Array.factory(DataType.DOUBLE, a.getShape());
+      MAMath.copyDouble(copy, a);
+      assertArrayEquals(want, (double[]) copy.getStorage(), 0.0);
+    }
+  }
+
+  @Test
+  public void testSkipMissing() {
+    Array data = Array.makeFromJavaArray(new float[] {3, Float.NaN, -999, 1, 7, -999});
+    assertEquals(-999.0, MAMath.getMinimum(data), 0.0);
+    MAMath.MinMax minmax = MAMath.getMinMaxSkipMissingData(data, -999);
+    assertEquals(1.0, minmax.min, 0.0);
+    assertEquals(7.0, minmax.max, 0.0);
+    assertEquals(11.0, MAMath.sumDoubleSkipMissingData(data, -999), 0.0);
+    assertTrue(Double.isNaN(MAMath.sumDouble(data)));
+  }
 }
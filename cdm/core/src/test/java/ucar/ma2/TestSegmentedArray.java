@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.ma2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteOrder;
+import org.junit.Test;
+
+/** Test {@link SegmentedArray} */
+public class TestSegmentedArray {
+
+  private static Array makeArray(DataType dataType, int[] shape) {
+    Array data = Array.factory(dataType, shape);
+    IndexIterator ii = data.getIndexIterator();
+    for (int count = 0; ii.hasNext(); count++) {
+      if (dataType == DataType.CHAR)
+        ii.setCharNext((char) ('a' + count % 26));
+      else
+        ii.setLongNext(count * 7 - 50);
+    }
+    return data;
+  }
+
+  // fill a SegmentedArray from an Array, segment by segment
+  private static SegmentedArray copy(Array data, int segmentSize, ByteOrder order) throws InvalidRangeException {
+    SegmentedArray result = SegmentedArray.factory(data.getDataType(), data.getShape(), segmentSize, order);
+    for (int i = 0; i < result.getSegmentCount(); i++) {
+      result.setSegmentArray(i, data.sectionNoReduce(result.getSegmentSection(i).getRanges()).copy());
+    }
+    return result;
+  }
+
+  @Test
+  public void testSegments() throws InvalidRangeException {
+    int[] shape = {11, 3, 4};
+    Array data = makeArray(DataType.INT, shape);
+    // 48 byte rows, 2 in each segment
+    SegmentedArray sa = copy(data, 100, ByteOrder.BIG_ENDIAN);
+    assertThat(sa.getSize()).isEqualTo(132);
+    assertThat(sa.getSizeBytes()).isEqualTo(528);
+    assertThat(sa.getRowsPerSegment()).isEqualTo(2);
+    assertThat(sa.getSegmentCount()).isEqualTo(6);
+    assertThat(sa.getSegmentStart(3)).isEqualTo(72);
+    assertThat(sa.getSegmentSection(5).toString()).isEqualTo("10:10,0:2,0:3");
+    assertThat(sa.getSegment(5).remaining()).isEqualTo(48);
+    assertThat(sa.getSegment(0).order()).isEqualTo(ByteOrder.BIG_ENDIAN);
+
+    IndexIterator ii = data.getIndexIterator();
+    for (long i = 0; ii.hasNext(); i++) {
+      assertThat(sa.getInt(i)).isEqualTo(ii.getIntNext());
+    }
+    assertThat(sa.getDouble(sa.getIndex(10, 2, 3))).isEqualTo(data.getDouble(data.getIndex().set(10, 2, 3)));
+    for (int i = 0; i < sa.getSegmentCount(); i++) {
+      Array expected = data.sectionNoReduce(sa.getSegmentSection(i).getRanges()).copy();
+      assertThat(MAMath.equals(sa.getSegmentArray(i), expected)).isTrue();
+    }
+  }
+
+  @Test
+  public void testDataTypes() throws InvalidRangeException {
+    int[] shape = {7, 5};
+    for (DataType dataType : new DataType[] {DataType.BYTE, DataType.UBYTE, DataType.CHAR, DataType.SHORT,
+        DataType.USHORT, DataType.INT, DataType.UINT, DataType.LONG, DataType.FLOAT, DataType.DOUBLE}) {
+      Array data = makeArray(dataType, shape);
+      for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+        SegmentedArray sa = copy(data, 3 * 5 * dataType.getSize(), order);
+        assertThat(sa.getSegmentCount()).isEqualTo(3);
+        IndexIterator ii = data.getIndexIterator();
+        for (long i = 0; ii.hasNext(); i++) {
+          if (dataType == DataType.CHAR)
+            assertThat(sa.getChar(i)).isEqualTo(ii.getCharNext());
+          else
+            assertThat(sa.getDouble(i)).isEqualTo(ii.getDoubleNext());
+        }
+        Section want = new Section("1:6:2, 0:4:3");
+        assertThat(MAMath.equals(sa.section(want), data.sectionNoReduce(want.getRanges()).copy())).isTrue();
+      }
+    }
+  }
+
+  @Test
+  public void testUnsigned() {
+    SegmentedArray sa = SegmentedArray.factory(DataType.UBYTE, new int[] {4});
+    Array data = Array.makeFromJavaArray(new byte[] {-1, 0, 1, -128});
+    sa.setSegmentArray(0, data);
+    assertThat(sa.getLong(0)).isEqualTo(255);
+    assertThat(sa.getDouble(3)).isEqualTo(128.0);
+    assertThat(sa.getByte(0)).isEqualTo((byte) -1);
+  }
+
+  @Test
+  public void testEdges() {
+    SegmentedArray scalar = SegmentedArray.factory(DataType.DOUBLE, new int[0]);
+    assertThat(scalar.getSize()).isEqualTo(1);
+    assertThat(scalar.getSegmentCount()).isEqualTo(1);
+
+    SegmentedArray empty = SegmentedArray.factory(DataType.FLOAT, new int[] {0, 10});
+    assertThat(empty.getSize()).isEqualTo(0);
+    assertThat(empty.getSegmentCount()).isEqualTo(0);
+
+    try {
+      empty.getFloat(0);
+      fail();
+    } catch (ArrayIndexOutOfBoundsException e) {
+      // expected
+    }
+    try {
+      SegmentedArray.factory(DataType.INT, new int[] {10, 100}, 399, ByteOrder.BIG_ENDIAN);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("larger than the segment size");
+    }
+    try {
+      SegmentedArray.factory(DataType.STRING, new int[] {10});
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -394,4 +394,74 @@ public class TestScaleOffsetMissingUnsigned {
       Assert.assertEquals(106, var.read().getByte(0)); // -50 + 156 == 106
     }
   }
+
+  // the conversion one element at a time, through Numbers, as convert() did before it was done in one primitive loop
+  private static Array convertElementwise(VariableDS vs, Array packed) {
+    Array out = Array.factory(vs.getDataType(), packed.getShape());
+    boolean convertMissing = vs.getDataType().isFloatingPoint();
+    IndexIterator iterIn = packed.getIndexIterator();
+    IndexIterator iterOut = out.getIndexIterator();
+    while (iterIn.hasNext()) {
+      Number value = (Number) iterIn.getObjectNext();
+      if (vs.getSignedness() == DataType.Signedness.UNSIGNED)
+        value = vs.convertUnsigned(value);
+      if (vs.hasScaleOffset())
+        value = vs.applyScaleOffset(value);
+      if (convertMissing)
+        value = vs.convertMissing(value);
+      iterOut.setObjectNext(value);
+    }
+    return out;
+  }
+
+  @Test
+  public void testConvertMatchesElementwise() throws Exception {
+    String filename = tempFolder.newFile().getAbsolutePath();
+    NetcdfFormatWriter.Builder writerb = NetcdfFormatWriter.createNewNetcdf3(filename);
+    writerb.addDimension("y", 50);
+    writerb.addDimension("x", 40);
+    writerb.addVariable("short", DataType.SHORT, "y x").addAttribute(new Attribute(CDM.SCALE_FACTOR, 0.01f))
+        .addAttribute(new Attribute(CDM.ADD_OFFSET, 5.0f)).addAttribute(new Attribute(CDM.FILL_VALUE, (short) -1))
+        .addAttribute(Attribute.builder(CDM.VALID_RANGE).setValues(Array.makeFromJavaArray(new short[] {-100, 2000}))
+            .build());
+    writerb.addVariable("ushort", DataType.SHORT, "y x").addAttribute(new Attribute(CDM.UNSIGNED, "true"))
+        .addAttribute(new Attribute(CDM.SCALE_FACTOR, 0.5)).addAttribute(new Attribute(CDM.MISSING_VALUE, (short) -1));
+    writerb.addVariable("ubyte", DataType.BYTE, "y x").addAttribute(new Attribute(CDM.UNSIGNED, "true"));
+    writerb.addVariable("uint", DataType.INT, "y x").addAttribute(new Attribute(CDM.UNSIGNED, "true"))
+        .addAttribute(new Attribute(CDM.SCALE_FACTOR, 2));
+    writerb.addVariable("float", DataType.FLOAT, "y x").addAttribute(new Attribute(CDM.MISSING_VALUE, -999.0f))
+        .addAttribute(new Attribute(CDM.VALID_MIN, -150.0f));
+    writerb.addVariable("double", DataType.DOUBLE, "y x").addAttribute(new Attribute(CDM.SCALE_FACTOR, 1.5))
+        .addAttribute(new Attribute(CDM.ADD_OFFSET, -3.0));
+
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      for (Variable v : writer.getOutputFile().getVariables()) {
+        Array data = Array.factory(v.getDataType(), v.getShape());
+        IndexIterator ii = data.getIndexIterator();
+        for (int count = 0; ii.hasNext(); count++) {
+          int val = (count * 37) % 2400 - 200;
+          ii.setIntNext(count % 97 == 0 ? -1 : count % 89 == 0 ? -999 : val);
+        }
+        writer.write(v, data);
+      }
+    }
+
+    try (NetcdfDataset ncd = NetcdfDatasets.openDataset(filename)) {
+      for (Variable v : ncd.getVariables()) {
+        VariableDS vs = (VariableDS) v;
+        Array packed = vs.getOriginalVariable().read();
+        Array flipped = packed.flip(0).flip(1);
+        Array[] have = {vs.read(), vs.convert(flipped, true, true, true)};
+        Array[] want = {convertElementwise(vs, packed), convertElementwise(vs, flipped)};
+        for (int i = 0; i < have.length; i++) {
+          Assert.assertEquals(vs.getShortName(), want[i].getDataType(), have[i].getDataType());
+          IndexIterator iterWant = want[i].getIndexIterator();
+          IndexIterator iterHave = have[i].getIndexIterator();
+          while (iterWant.hasNext()) {
+            Assert.assertEquals(vs.getShortName(), iterWant.getDoubleNext(), iterHave.getDoubleNext(), 0.0);
+          }
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.filter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Test;
+
+/** Test {@link Deflate} */
+public class TestDeflate {
+
+  private static byte[] makeData(int n, long seed) {
+    Random random = new Random(seed);
+    byte[] data = new byte[n];
+    for (int i = 0; i < n; i++) {
+      data[i] = (byte) (random.nextInt(16) + (i / 100));
+    }
+    return data;
+  }
+
+  private static byte[] deflate(byte[] data) {
+    Deflater deflater = new Deflater();
+    deflater.setInput(data);
+    deflater.finish();
+    byte[] buf = new byte[data.length + 1000];
+    int n = deflater.deflate(buf);
+    deflater.end();
+    return Arrays.copyOf(buf, n);
+  }
+
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(bout)) {
+      out.write(data);
+    }
+    return bout.toByteArray();
+  }
+
+  @Test
+  public void testInflate() throws IOException {
+    byte[] data = makeData(100 * 1000, 17);
+    byte[] compressed = deflate(data);
+    // exact, too small and too large expected sizes all give the same result
+    for (int expected : new int[] {data.length, 0, 10, data.length - 1, data.length + 1, 3 * data.length}) {
+      assertThat(Deflate.inflate(compressed, expected)).isEqualTo(data);
+    }
+    assertThat(new Deflate().decode(compressed)).isEqualTo(data);
+    assertThat(Deflate.inflate(deflate(new byte[0]), 0)).isEmpty();
+  }
+
+  @Test
+  public void testInflateInto() throws IOException {
+    byte[] data = makeData(5000, 3);
+    byte[] compressed = new byte[7];
+    byte[] deflated = deflate(data);
+    compressed = Arrays.copyOf(compressed, 7 + deflated.length);
+    System.arraycopy(deflated, 0, compressed, 7, deflated.length);
+
+    byte[] dst = new byte[data.length + 20];
+    assertThat(Deflate.inflate(compressed, 7, deflated.length, dst, 10, data.length)).isEqualTo(data.length);
+    assertThat(Arrays.copyOfRange(dst, 10, 10 + data.length)).isEqualTo(data);
+
+    try {
+      Deflate.inflate(compressed, 7, deflated.length, dst, 0, data.length - 1);
+      fail();
+    } catch (IOException e) {
+      assertThat(e.getMessage()).contains("larger than");
+    }
+  }
+
+  @Test
+  public void testInvalid() {
+    byte[] compressed = deflate(makeData(5000, 5));
+    byte[][] bad = {Arrays.copyOf(compressed, compressed.length / 2), new byte[] {1, 2, 3, 4, 5, 6}};
+    for (byte[] b : bad) {
+      try {
+        Deflate.inflate(b, 5000);
+        fail();
+      } catch (IOException e) {
+        // expected
+      }
+    }
+    // the pooled inflater is still usable
+    byte[] data = makeData(1000, 6);
+    try {
+      assertThat(Deflate.inflate(deflate(data), data.length)).isEqualTo(data);
+    } catch (IOException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testConcurrent() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      Future<?>[] futures = new Future<?>[16];
+      for (int i = 0; i < futures.length; i++) {
+        long seed = i;
+        futures[i] = pool.submit(() -> {
+          byte[] data = makeData(20 * 1000, seed);
+          byte[] compressed = deflate(data);
+          for (int j = 0; j < 20; j++) {
+            assertThat(Deflate.inflate(compressed, data.length)).isEqualTo(data);
+          }
+          return null;
+        });
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testGunzip() throws IOException {
+    byte[] data = makeData(300 * 1000, 11);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertThat(Deflate.gunzip(new ByteArrayInputStream(gzip(data)), out)).isEqualTo(data.length);
+    assertThat(out.toByteArray()).isEqualTo(data);
+  }
+
+  @Test
+  public void testGunzipMultiMember() throws IOException {
+    byte[] data1 = makeData(1000, 1);
+    byte[] data2 = makeData(70 * 1000, 2);
+    ByteArrayOutputStream gz = new ByteArrayOutputStream();
+    gz.write(gzip(data1));
+    gz.write(gzip(new byte[0]));
+    gz.write(gzip(data2));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Deflate.gunzip(new ByteArrayInputStream(gz.toByteArray()), out);
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.write(data1);
+    expected.write(data2);
+    assertThat(out.toByteArray()).isEqualTo(expected.toByteArray());
+  }
+
+  @Test
+  public void testGunzipTrailingData() throws IOException {
+    byte[] data = makeData(3000, 9);
+    byte[] member = gzip(data);
+    byte[][] trailers = {new byte[1], new byte[512], new byte[] {'j', 'u', 'n', 'k', 1, 2, 3, 4, 5, 6, 7, 8, 9},
+        Arrays.copyOf(member, 5)};
+    for (byte[] trailer : trailers) {
+      ByteArrayOutputStream gz = new ByteArrayOutputStream();
+      gz.write(member);
+      gz.write(trailer);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertThat(Deflate.gunzip(new ByteArrayInputStream(gz.toByteArray()), out)).isEqualTo(data.length);
+      assertThat(out.toByteArray()).isEqualTo(data);
+    }
+  }
+
+  @Test
+  public void testGunzipHeaderFields() throws IOException {
+    byte[] data = makeData(2000, 4);
+    byte[] member = gzip(data);
+    // add FEXTRA, FNAME and FCOMMENT fields to the 10 byte header
+    ByteArrayOutputStream gz = new ByteArrayOutputStream();
+    gz.write(member, 0, 3);
+    gz.write(4 | 8 | 16);
+    gz.write(member, 4, 6);
+    gz.write(new byte[] {3, 0, 'a', 'b', 'c'});
+    gz.write(new byte[] {'f', '.', 'n', 'c', 0});
+    gz.write(new byte[] {'h', 'i', 0});
+    gz.write(member, 10, member.length - 10);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Deflate.gunzip(new ByteArrayInputStream(gz.toByteArray()), out);
+    assertThat(out.toByteArray()).isEqualTo(data);
+  }
+
+  @Test
+  public void testGunzipCorrupt() throws IOException {
+    byte[] gz = gzip(makeData(2000, 8));
+    byte[] badCrc = gz.clone();
+    badCrc[gz.length - 6]++;
+    byte[][] bad = {badCrc, Arrays.copyOf(gz, gz.length - 3), new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}};
+    for (byte[] b : bad) {
+      try {
+        Deflate.gunzip(new ByteArrayInputStream(b), new ByteArrayOutputStream());
+        fail();
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+}
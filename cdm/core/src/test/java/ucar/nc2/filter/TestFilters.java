@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.filter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+/** Test {@link Filters} and the filters that are not tested by reading hdf5 files. */
+public class TestFilters {
+
+  @Test
+  public void testServiceLoader() {
+    assertThat(Filters.getFilter(Deflate.ID, new int[] {5})).isInstanceOf(Deflate.class);
+    assertThat(Filters.getFilter(Bzip2.ID, new int[] {9})).isInstanceOf(Bzip2.class);
+    assertThat(Filters.getFilter(Lz4.ID, new int[0])).isInstanceOf(Lz4.class);
+    assertThat(Filters.getFilter(Zstd.ID, new int[] {3})).isInstanceOf(Zstd.class);
+    assertThat(Filters.getFilter(Blosc.ID, new int[] {2, 2, 4, 3600, 5, 1, 1})).isInstanceOf(Blosc.class);
+    assertThat(Filters.getFilter(32099, new int[0])).isNull();
+  }
+
+  @Test
+  public void testRegisteredProviderFirst() throws IOException {
+    Filter reverse = new Filter() {
+      public String getName() {
+        return "reverse";
+      }
+
+      public int getId() {
+        return 32000;
+      }
+
+      public byte[] decode(byte[] dataIn) {
+        byte[] result = new byte[dataIn.length];
+        for (int i = 0; i < dataIn.length; i++) {
+          result[i] = dataIn[dataIn.length - 1 - i];
+        }
+        return result;
+      }
+    };
+    Filters.registerFilterProvider(new FilterProvider() {
+      public int getId() {
+        return 32000;
+      }
+
+      public String getName() {
+        return "reverse";
+      }
+
+      public Filter create(int[] clientData) {
+        return reverse;
+      }
+    });
+    Filter filter = Filters.getFilter(32000, new int[0]);
+    assertThat(filter).isSameInstanceAs(reverse);
+    assertThat(filter.decode(new byte[] {1, 2, 3})).isEqualTo(new byte[] {3, 2, 1});
+  }
+
+  @Test
+  public void testBlosclz() throws IOException {
+    // 3 literals, a match of length 6 at distance 3, 1 literal
+    byte[] src = {2, 'a', 'b', 'c', (byte) 128, 2, 0, 'd'};
+    byte[] dst = new byte[10];
+    assertThat(Blosc.blosclzDecompress(src, 0, src.length, dst, 0, dst.length)).isEqualTo(10);
+    assertThat(new String(dst, StandardCharsets.US_ASCII)).isEqualTo("abcabcabcd");
+
+    try {
+      Blosc.blosclzDecompress(src, 0, src.length, dst, 0, 9);
+      fail("expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testBloscMemcpyed() throws IOException {
+    ByteBuffer bb = ByteBuffer.allocate(16 + 5).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+    bb.put((byte) 2).put((byte) 1).put((byte) 0x02).put((byte) 1).putInt(5).putInt(5).putInt(21);
+    bb.put(new byte[] {1, 2, 3, 4, 5});
+    assertThat(new Blosc().decode(bb.array())).isEqualTo(new byte[] {1, 2, 3, 4, 5});
+  }
+
+  @Test
+  public void testBloscDelta() {
+    // a blosclz chunk of one block, with the delta filter
+    ByteBuffer bb = ByteBuffer.allocate(16 + 4 + 4 + 5).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+    bb.put((byte) 2).put((byte) 1).put((byte) 0x08).put((byte) 1).putInt(5).putInt(5).putInt(29);
+    bb.putInt(20).putInt(5).put(new byte[] {1, 1, 1, 1, 1});
+    try {
+      new Blosc().decode(bb.array());
+      fail("expected IOException");
+    } catch (IOException e) {
+      assertThat(e.getMessage()).contains("delta");
+    }
+  }
+
+  @Test
+  public void testLz4StoredBlock() throws IOException {
+    ByteBuffer bb = ByteBuffer.allocate(8 + 4 + 4 + 5);
+    bb.putLong(5).putInt(1 << 30).putInt(5).put(new byte[] {5, 4, 3, 2, 1});
+    assertThat(new Lz4().decode(bb.array())).isEqualTo(new byte[] {5, 4, 3, 2, 1});
+  }
+
+  @Test
+  public void testZstdRawAndRleBlocks() throws IOException {
+    // single segment frame of 9 bytes: a raw block of 4 bytes, then a last RLE block of 5 bytes
+    byte[] src = {(byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD, 0x20, 9, 4 << 3, 0, 0, 1, 2, 3, 4,
+        (byte) ((5 << 3) | 2 | 1), 0, 0, 7};
+    assertThat(new Zstd().decode(src)).isEqualTo(new byte[] {1, 2, 3, 4, 7, 7, 7, 7, 7});
+  }
+
+  @Test
+  public void testInvalidData() {
+    for (Filter filter : new Filter[] {new Bzip2(), new Lz4(), new Zstd(), new Blosc()}) {
+      try {
+        filter.decode(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17});
+        fail("expected IOException from " + filter.getName());
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.ma2.Array;
+import ucar.ma2.Index;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.unidata.util.test.TestDir;
+
+/**
+ * Test {@link DataChunkIndex}. The variables have 3 level B-trees, with at most 4 entries in a node:
+ * deflate3d(i, j, k) = 10000 * i + 100 * j + k, shape 30 x 20 x 12 in 5 x 4 x 6 chunks, deflated;
+ * plain2d(i, j) = 1000 * i + j, shape 20 x 30 in 3 x 4 chunks, not filtered.
+ */
+@RunWith(Parameterized.class)
+public class TestDataChunkIndex {
+  private static final String filename = TestDir.cdmLocalTestDataDir + "hdf5/chunkIndex.h5";
+
+  @Parameterized.Parameters(name = "{0}")
+  public static List<Object[]> getTestParameters() {
+    List<Object[]> result = new ArrayList<>();
+    for (DataBTree.IndexLoading loading : DataBTree.IndexLoading.values()) {
+      result.add(new Object[] {loading});
+    }
+    return result;
+  }
+
+  private final DataBTree.IndexLoading loading;
+
+  public TestDataChunkIndex(DataBTree.IndexLoading loading) {
+    this.loading = loading;
+  }
+
+  @After
+  public void after() {
+    DataBTree.setIndexLoading(DataBTree.IndexLoading.NONE);
+  }
+
+  private void check3d(Variable v, String section) throws Exception {
+    Section s = new Section(section);
+    Array data = v.read(s);
+    Index ima = data.getIndex();
+    int[] shape = data.getShape();
+    for (int i = 0; i < shape[0]; i++) {
+      for (int j = 0; j < shape[1]; j++) {
+        for (int k = 0; k < shape[2]; k++) {
+          int expected =
+              10000 * s.getRange(0).element(i) + 100 * s.getRange(1).element(j) + s.getRange(2).element(k);
+          assertThat(data.getInt(ima.set(i, j, k))).isEqualTo(expected);
+        }
+      }
+    }
+  }
+
+  private void check2d(Variable v, String section) throws Exception {
+    Section s = new Section(section);
+    Array data = v.read(s);
+    Index ima = data.getIndex();
+    int[] shape = data.getShape();
+    for (int i = 0; i < shape[0]; i++) {
+      for (int j = 0; j < shape[1]; j++) {
+        int expected = 1000 * s.getRange(0).element(i) + s.getRange(1).element(j);
+        assertThat(data.getInt(ima.set(i, j))).isEqualTo(expected);
+      }
+    }
+  }
+
+  private DataBTree getBTree(Variable v) {
+    return ((H5headerNew.Vinfo) v.getSPobject()).btree;
+  }
+
+  @Test
+  public void testRead() throws Exception {
+    DataBTree.setIndexLoading(loading);
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      Variable v = ncfile.findVariable("deflate3d");
+      assertThat((Object) v).isNotNull();
+      check3d(v, "0:29, 0:19, 0:11");
+      check3d(v, "7, 3:13, 5:6");
+      check3d(v, "4:26:3, 19, 0:11:5");
+      check3d(v, "29, 19, 11");
+
+      Variable v2 = ncfile.findVariable("plain2d");
+      assertThat((Object) v2).isNotNull();
+      check2d(v2, "0:19, 0:29");
+      check2d(v2, "5:17, 9:10");
+      check2d(v2, "19, 0:29:7");
+    }
+  }
+
+  @Test
+  public void testIndexLoading() throws Exception {
+    DataBTree.setIndexLoading(loading);
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      Variable v = ncfile.findVariable("deflate3d");
+      assertThat((Object) v).isNotNull();
+      DataBTree btree = getBTree(v);
+
+      // eager loading reads the index on open, lazy loading on the first read
+      assertThat(btree.hasChunkIndex()).isEqualTo(loading == DataBTree.IndexLoading.EAGER);
+      check3d(v, "0, 0, 0");
+      assertThat(btree.hasChunkIndex()).isEqualTo(loading != DataBTree.IndexLoading.NONE);
+
+      DataChunkIndex index = btree.getChunkIndex();
+      assertThat(index.getNumberOfChunks()).isEqualTo(6 * 5 * 2);
+      assertThat(btree.getChunkIndex()).isSameInstanceAs(index);
+      assertThat(index.findChunks(new Section("7, 3:13, 5:6"))).hasLength(8);
+    }
+  }
+
+  @Test
+  public void testSameAsBTree() throws Exception {
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      for (String name : new String[] {"deflate3d", "plain2d"}) {
+        Variable v = ncfile.findVariable(name);
+        assertThat((Object) v).isNotNull();
+        DataBTree btree = getBTree(v);
+
+        // walk the B-tree
+        DataBTree.setIndexLoading(DataBTree.IndexLoading.NONE);
+        List<String> fromTree = new ArrayList<>();
+        DataBTree.DataChunkIterator iter = btree.getDataChunkIteratorFilter(null);
+        while (iter.hasNext()) {
+          fromTree.add(iter.next().toString());
+        }
+
+        DataBTree.setIndexLoading(loading);
+        DataChunkIndex index = btree.getChunkIndex();
+        List<String> fromIndex = new ArrayList<>();
+        iter = btree.getDataChunkIteratorFilter(null);
+        while (iter.hasNext()) {
+          fromIndex.add(iter.next().toString());
+        }
+        assertThat(fromIndex).containsExactlyElementsIn(fromTree).inOrder();
+        assertThat(index.getNumberOfChunks()).isEqualTo(fromTree.size());
+      }
+    }
+  }
+
+  @Test
+  public void testFindChunks() {
+    // a 4 x 6 grid of 10 x 10 chunks, with some unallocated, added out of order
+    DataChunkIndex.Builder builder = DataChunkIndex.builder(new int[] {10, 10, 4});
+    int pos = 0;
+    for (int i = 3; i >= 0; i--) {
+      for (int j = 0; j < 6; j++) {
+        if ((i + j) % 3 == 0)
+          continue;
+        builder.add(1000 + 100 * i + j, pos++, i, new int[] {10 * i, 10 * j, 0});
+      }
+    }
+    DataChunkIndex index = builder.build();
+    assertThat(index.getNumberOfChunks()).isEqualTo(16);
+    for (int i = 1; i < index.getNumberOfChunks(); i++) {
+      assertThat(index.getFilePos(i)).isGreaterThan(index.getFilePos(i - 1));
+    }
+
+    for (String spec : new String[] {"0:39, 0:59", "5:25, 12:37", "15, 0:59", "0:39, 59", "10:19, 30:39", "0, 0",
+        "0:39:20, 0:59"}) {
+      try {
+        Section want = new Section(spec);
+        int[] found = index.findChunks(want);
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < index.getNumberOfChunks(); i++) {
+          int[] offset = index.getOffset(i);
+          if (new Section(Arrays.copyOf(offset, 2), new int[] {10, 10}).intersects(want))
+            expected.add(index.getFilePos(i));
+        }
+        List<Long> actual = new ArrayList<>();
+        for (int i : found)
+          actual.add(index.getFilePos(i));
+        assertThat(actual).containsExactlyElementsIn(expected).inOrder();
+      } catch (Exception e) {
+        throw new AssertionError(spec, e);
+      }
+    }
+    assertThat(index.findChunks(null)).hasLength(16);
+  }
+}
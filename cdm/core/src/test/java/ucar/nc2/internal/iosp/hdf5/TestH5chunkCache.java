@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.ma2.Array;
+import ucar.ma2.Index;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.unidata.util.test.TestDir;
+
+/** Test {@link H5chunkCache}. data(i, j) = 1000 * i + j, in 10 x 20 chunks */
+@RunWith(Parameterized.class)
+public class TestH5chunkCache {
+  private static final String filename = TestDir.cdmLocalTestDataDir + "hdf5/shuffleDeflate.h5";
+  private static final int chunkBytes = 10 * 20 * 4;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static List<Object[]> getTestParameters() {
+    List<Object[]> result = new ArrayList<>();
+    for (H5chunkCache.Storage storage : H5chunkCache.Storage.values()) {
+      result.add(new Object[] {storage});
+    }
+    return result;
+  }
+
+  private final H5chunkCache.Storage storage;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  public TestH5chunkCache(H5chunkCache.Storage storage) {
+    this.storage = storage;
+  }
+
+  @After
+  public void after() {
+    H5tiledLayoutBB.setChunkCache(null);
+    H5tiledLayoutBB.setDecodeThreads(1);
+  }
+
+  private void checkData(Array data, int startRow, int startCol) {
+    int[] shape = data.getShape();
+    Index ima = data.getIndex();
+    for (int i = 0; i < shape[0]; i++) {
+      for (int j = 0; j < shape[1]; j++) {
+        assertThat(data.getInt(ima.set(i, j))).isEqualTo(1000 * (startRow + i) + startCol + j);
+      }
+    }
+  }
+
+  private void readColumns(H5chunkCache cache) throws Exception {
+    H5tiledLayoutBB.setChunkCache(cache);
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      Variable v = ncfile.findVariable("data");
+      assertThat((Object) v).isNotNull();
+
+      // a column through 10 chunks
+      checkData(v.read("0:99, 25"), 0, 25);
+      assertThat(cache.getStats().hitCount()).isEqualTo(0);
+      assertThat(cache.getStats().missCount()).isEqualTo(10);
+      assertThat(cache.getSizeInBytes()).isEqualTo(10 * chunkBytes);
+
+      // the next column is in the same chunks
+      checkData(v.read("0:99, 26"), 0, 26);
+      assertThat(cache.getStats().hitCount()).isEqualTo(10);
+      assertThat(cache.getStats().missCount()).isEqualTo(10);
+
+      // partly cached
+      checkData(v.read("0:99, 35:45"), 0, 35);
+      assertThat(cache.getStats().hitCount()).isEqualTo(20);
+      assertThat(cache.getStats().missCount()).isEqualTo(20);
+
+      Formatter f = new Formatter();
+      cache.showStats(f);
+      cache.showCache(f);
+      assertThat(f.toString()).contains("nchunks=20");
+    }
+    // the chunks are kept after the file is closed
+    assertThat(cache.getSizeInBytes()).isEqualTo(20 * chunkBytes);
+  }
+
+  @Test
+  public void testRepeatedReads() throws Exception {
+    readColumns(new H5chunkCache("test", 1000 * 1000, storage));
+  }
+
+  @Test
+  public void testParallelDecode() throws Exception {
+    H5tiledLayoutBB.setDecodeThreads(4);
+    readColumns(new H5chunkCache("test", 1000 * 1000, storage));
+  }
+
+  @Test
+  public void testRewrittenFile() throws Exception {
+    File copy = tempFolder.newFile("shuffleDeflate.h5");
+    Files.copy(new File(filename).toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    H5chunkCache cache = new H5chunkCache("test", 1000 * 1000, storage);
+    H5tiledLayoutBB.setChunkCache(cache);
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(copy.getPath())) {
+      checkData(ncfile.findVariable("data").read("0:99, 25"), 0, 25);
+    }
+    try (NetcdfFile ncfile = NetcdfFiles.open(copy.getPath())) {
+      checkData(ncfile.findVariable("data").read("0:99, 25"), 0, 25);
+    }
+    assertThat(cache.getStats().hitCount()).isEqualTo(10);
+
+    // a new version of the file does not get the chunks of the old one
+    assertThat(copy.setLastModified(copy.lastModified() - 10000)).isTrue();
+    try (NetcdfFile ncfile = NetcdfFiles.open(copy.getPath())) {
+      checkData(ncfile.findVariable("data").read("0:99, 25"), 0, 25);
+    }
+    assertThat(cache.getStats().hitCount()).isEqualTo(10);
+    assertThat(cache.getStats().missCount()).isEqualTo(20);
+  }
+
+  @Test
+  public void testBounded() throws Exception {
+    H5chunkCache cache = new H5chunkCache("test", 5 * chunkBytes, storage);
+    H5tiledLayoutBB.setChunkCache(cache);
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      Variable v = ncfile.findVariable("data");
+      assertThat((Object) v).isNotNull();
+      checkData(v.read(), 0, 0);
+      assertThat(cache.getSizeInBytes()).isAtMost(5 * chunkBytes);
+      assertThat(cache.getStats().evictionCount()).isGreaterThan(0);
+      checkData(v.read("55:99, 0:89"), 55, 0);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.ma2.Array;
+import ucar.ma2.Index;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.unidata.util.test.TestDir;
+
+/**
+ * Test reading hdf5 variables compressed with the filters in ucar.nc2.filter. data(i, j) = 1000 * i + j, in 20 x 45
+ * chunks.
+ */
+@RunWith(Parameterized.class)
+public class TestH5filters {
+  private static final String filename = TestDir.cdmLocalTestDataDir + "hdf5/filters.h5";
+
+  @Parameterized.Parameters(name = "{0}")
+  public static List<Object[]> getTestParameters() {
+    List<Object[]> result = new ArrayList<>();
+    result.add(new Object[] {"blosc_lz4_shuffle"});
+    result.add(new Object[] {"blosc_zlib"});
+    result.add(new Object[] {"blosc_zstd_bitshuffle"});
+    result.add(new Object[] {"bzip2"});
+    result.add(new Object[] {"lz4"});
+    result.add(new Object[] {"zstd"});
+    result.add(new Object[] {"zstd_shuffle"});
+    return result;
+  }
+
+  private final String varName;
+
+  public TestH5filters(String varName) {
+    this.varName = varName;
+  }
+
+  private void checkData(Array data, int startRow, int startCol) {
+    int[] shape = data.getShape();
+    Index ima = data.getIndex();
+    for (int i = 0; i < shape[0]; i++) {
+      for (int j = 0; j < shape[1]; j++) {
+        assertThat(data.getInt(ima.set(i, j))).isEqualTo(1000 * (startRow + i) + startCol + j);
+      }
+    }
+  }
+
+  @Test
+  public void testRead() throws Exception {
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      Variable v = ncfile.findVariable(varName);
+      assertThat((Object) v).isNotNull();
+      assertThat(v.getShape()).isEqualTo(new int[] {100, 90});
+      checkData(v.read(), 0, 0);
+      checkData(v.read("15:64, 40:50"), 15, 40);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.Index;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.unidata.util.test.TestDir;
+
+/** Test reading filtered chunked data in hdf5 files. data(i, j) = 1000 * i + j */
+public class TestH5tiledLayoutBB {
+  private static final String filename = TestDir.cdmLocalTestDataDir + "hdf5/shuffleDeflate.h5";
+
+  @After
+  public void after() {
+    H5tiledLayoutBB.setDecodeThreads(1);
+  }
+
+  private void checkData(Array data, int startRow, int startCol) {
+    int[] shape = data.getShape();
+    Index ima = data.getIndex();
+    for (int i = 0; i < shape[0]; i++) {
+      for (int j = 0; j < shape[1]; j++) {
+        assertThat(data.getInt(ima.set(i, j))).isEqualTo(1000 * (startRow + i) + startCol + j);
+      }
+    }
+  }
+
+  private void readAndCheck() throws IOException, InvalidRangeException {
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      Variable v = ncfile.findVariable("data");
+      assertThat((Object) v).isNotNull();
+      assertThat(v.getShape()).isEqualTo(new int[] {100, 90});
+
+      checkData(v.read(), 0, 0);
+      checkData(v.read("5:55, 33:77"), 5, 33);
+      checkData(v.read("99, 89"), 99, 89);
+      checkData(v.read("10:19, 20:39"), 10, 20); // exactly one chunk
+    }
+  }
+
+  @Test
+  public void testSerialDecode() throws Exception {
+    readAndCheck();
+  }
+
+  @Test
+  public void testParallelDecode() throws Exception {
+    H5tiledLayoutBB.setDecodeThreads(4);
+    readAndCheck();
+  }
+
+  @Test
+  public void testChangeDecodeThreadsWhileReading() throws Exception {
+    H5tiledLayoutBB.setDecodeThreads(4);
+    ExecutorService readers = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(readers.submit(() -> {
+          for (int j = 0; j < 10; j++) {
+            readAndCheck();
+          }
+          return null;
+        }));
+      }
+      while (!results.stream().allMatch(Future::isDone)) {
+        H5tiledLayoutBB.setDecodeThreads(2 + (int) (System.nanoTime() % 3));
+        Thread.sleep(1);
+      }
+      for (Future<?> result : results) {
+        result.get(); // throws if a read failed
+      }
+    } finally {
+      readers.shutdown();
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.netcdf3;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/** Test NetcdfFile.readArrays() on netcdf-3 record variables, read together in blocks of records. */
+public class TestN3readArrays {
+  private static final int NRECS = 300;
+  private static final String[] SMALL = {"b", "c", "s", "i", "f", "d"};
+
+  @ClassRule
+  public static TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static String filename;
+
+  // the records are about 20 Kbytes, so reading all the variables takes more than one block
+  @BeforeClass
+  public static void makeFile() throws IOException, InvalidRangeException {
+    filename = tempFolder.newFile("readArrays.nc").getAbsolutePath();
+    NetcdfFormatWriter.Builder writerb = NetcdfFormatWriter.createNewNetcdf3(filename).setFill(false);
+    writerb.addUnlimitedDimension("time");
+    writerb.addDimension("x", 3);
+    writerb.addDimension("y", 5);
+    writerb.addDimension("big", 5000);
+    writerb.addVariable("b", DataType.BYTE, "time x");
+    writerb.addVariable("c", DataType.CHAR, "time y");
+    writerb.addVariable("s", DataType.SHORT, "time x y");
+    writerb.addVariable("i", DataType.INT, "time");
+    writerb.addVariable("f", DataType.FLOAT, "time y");
+    writerb.addVariable("d", DataType.DOUBLE, "time x");
+    writerb.addVariable("big", DataType.FLOAT, "time big");
+    writerb.addVariable("last", DataType.SHORT, "time");
+    writerb.addVariable("fixed", DataType.INT, "x y");
+
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      for (Variable v : writer.getOutputFile().getVariables()) {
+        Array data = Array.factory(v.getDataType(), v.isUnlimited() ? withRecords(v.getShape()) : v.getShape());
+        IndexIterator ii = data.getIndexIterator();
+        int count = v.getShortName().hashCode() % 100;
+        while (ii.hasNext()) {
+          if (v.getDataType() == DataType.CHAR)
+            ii.setCharNext((char) ('a' + count++ % 26));
+          else
+            ii.setDoubleNext(count++ % 30000);
+        }
+        writer.write(v, data);
+      }
+    }
+  }
+
+  private static int[] withRecords(int[] shape) {
+    int[] result = shape.clone();
+    result[0] = NRECS;
+    return result;
+  }
+
+  // readArrays gives the same result as reading each variable
+  private void check(NetcdfFile ncfile, List<String> names, List<String> sections) throws Exception {
+    List<Variable> vars = new ArrayList<>();
+    List<Section> want = sections == null ? null : new ArrayList<>();
+    for (int i = 0; i < names.size(); i++) {
+      Variable v = ncfile.findVariable(names.get(i));
+      assertThat((Object) v).isNotNull();
+      vars.add(v);
+      if (want != null)
+        want.add(Section.fill(new Section(sections.get(i)), v.getShape()));
+    }
+
+    List<Array> result = ncfile.readArrays(vars, want);
+    assertThat(result).hasSize(vars.size());
+    for (int i = 0; i < vars.size(); i++) {
+      Variable v = vars.get(i);
+      Array expected = want == null ? v.read() : v.read(want.get(i));
+      Array data = result.get(i);
+      assertThat(data.getDataType()).isEqualTo(v.getDataType());
+      assertThat(data.getShape()).isEqualTo(expected.getShape());
+      assertThat(MAMath.equals(data, expected)).isTrue();
+    }
+  }
+
+  @Test
+  public void testAll() throws Exception {
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      assertThat(ncfile.findDimension("time").getLength()).isEqualTo(NRECS);
+      check(ncfile, Arrays.asList("b", "c", "s", "i", "f", "d", "big", "last", "fixed"), null);
+      check(ncfile, Arrays.asList(SMALL), null);
+    }
+  }
+
+  @Test
+  public void testSections() throws Exception {
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      check(ncfile, Arrays.asList(SMALL),
+          Arrays.asList("10:200, :", "10:200, :", "10:200, :, :", "10:200", "10:200, :", "10:200, :"));
+      check(ncfile, Arrays.asList(SMALL), Arrays.asList("0:299:7, 1", "0:299:7, 1:4:3", "0:299:7, 2, 1:3",
+          "0:299:7", "0:299:7, :", "0:299:7, 0:2:2"));
+      // different records
+      check(ncfile, Arrays.asList("b", "s", "big", "d", "i"),
+          Arrays.asList("5:6, :", "0:299:2, 0:2, 4", "100:290:10, 4000:4999", "5:6, 1", "5:6"));
+      check(ncfile, Arrays.asList("fixed", "last", "big", "b"), Arrays.asList("1:2, 0:4:2", "299", "3, 7", "299, :"));
+    }
+  }
+
+  @Test
+  public void testSpread() throws Exception {
+    // a small part of each large record: the variables are read one at a time
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      check(ncfile, Arrays.asList("b", "last"), null);
+      check(ncfile, Arrays.asList("last", "b", "i"), Arrays.asList("3:250:3", "3:250:3, :", "3:250:3"));
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.netcdf3;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.ArrayBB;
+import ucar.ma2.ArrayStructure;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.ma2.Section;
+import ucar.ma2.SegmentedArray;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureDataIterator;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Structure;
+import ucar.nc2.Variable;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/**
+ * Test reading netcdf-3 data into a SegmentedArray or an ArrayBB, and iterating over the record structure.
+ * The segments are made small, to test what happens with data larger than 2 Gbytes.
+ */
+public class TestN3segmented {
+  private static final int NRECS = 50;
+
+  @ClassRule
+  public static TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static String filename;
+
+  @BeforeClass
+  public static void makeFile() throws IOException, InvalidRangeException {
+    filename = tempFolder.newFile("segmented.nc").getAbsolutePath();
+    NetcdfFormatWriter.Builder writerb = NetcdfFormatWriter.createNewNetcdf3(filename).setFill(false);
+    writerb.addUnlimitedDimension("time");
+    writerb.addDimension("x", 7);
+    writerb.addDimension("y", 13);
+    writerb.addVariable("fixed", DataType.FLOAT, "x y");
+    writerb.addVariable("rec", DataType.SHORT, "time x y");
+    writerb.addVariable("name", DataType.CHAR, "time y");
+    writerb.addVariable("t", DataType.DOUBLE, "time");
+
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      for (Variable v : writer.getOutputFile().getVariables()) {
+        int[] shape = v.getShape();
+        if (v.isUnlimited())
+          shape[0] = NRECS;
+        Array data = Array.factory(v.getDataType(), shape);
+        IndexIterator ii = data.getIndexIterator();
+        for (int count = 0; ii.hasNext(); count++) {
+          if (v.getDataType() == DataType.CHAR)
+            ii.setCharNext((char) ('a' + count % 26));
+          else
+            ii.setDoubleNext(count - 100);
+        }
+        writer.write(v, data);
+      }
+    }
+  }
+
+  @After
+  public void after() {
+    N3iospNew.segmentSize = SegmentedArray.DEFAULT_SEGMENT_SIZE;
+  }
+
+  private void check(NetcdfFile ncfile, String name, String spec) throws Exception {
+    Variable v = ncfile.findVariable(name);
+    assertThat((Object) v).isNotNull();
+    Section section = spec == null ? null : new Section(spec);
+    Array expected = v.read(section);
+    SegmentedArray data = ncfile.readSegmented(v, section);
+    assertThat(data.getDataType()).isEqualTo(v.getDataType());
+    assertThat(data.getShape()).isEqualTo(expected.getShape());
+    for (int i = 0; i < data.getSegmentCount(); i++) {
+      Array segment = data.getSegmentArray(i);
+      Array want = expected.sectionNoReduce(data.getSegmentSection(i).getRanges()).copy();
+      assertThat(MAMath.equals(segment, want)).isTrue();
+    }
+  }
+
+  @Test
+  public void testReadSegmented() throws Exception {
+    // rec has 182 byte rows, name 13
+    N3iospNew.segmentSize = 1000;
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      check(ncfile, "rec", null);
+      check(ncfile, "rec", "3:47:4, 1:6, 0:12:3");
+      check(ncfile, "name", null);
+      check(ncfile, "name", "49, :");
+      check(ncfile, "t", "1:48");
+      check(ncfile, "fixed", null);
+      check(ncfile, "fixed", "2:5, 4");
+
+      SegmentedArray data = ncfile.readSegmented(ncfile.findVariable("rec"), null);
+      assertThat(data.getRowsPerSegment()).isEqualTo(5);
+      assertThat(data.getSegmentCount()).isEqualTo(10);
+    }
+  }
+
+  @Test
+  public void testArrayBB() throws Exception {
+    checkArrayBB(NetcdfFile.IOSP_MESSAGE_ARRAY_BB, false);
+    checkArrayBB(NetcdfFile.IOSP_MESSAGE_ARRAY_BB_DIRECT, true);
+  }
+
+  private void checkArrayBB(String message, boolean direct) throws Exception {
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename);
+        NetcdfFile ncfileBB = NetcdfFiles.open(filename, -1, null, message)) {
+      for (String spec : new String[] {"rec", "rec(3:47:4, 1:6, 0:12:3)", "name(49, :)", "t(1:48)", "fixed"}) {
+        Array expected = ncfile.readSection(spec);
+        Array data = ncfileBB.readSection(spec);
+        // small variables are cached by Variable, which returns copies
+        if (spec.startsWith("rec")) {
+          assertThat(data).isInstanceOf(ArrayBB.class);
+          assertThat(((ArrayBB) data).getByteBuffer().isDirect()).isEqualTo(direct);
+        }
+        assertThat(data.getShape()).isEqualTo(expected.getShape());
+        assertThat(MAMath.equals(data, expected)).isTrue();
+        assertThat(MAMath.equals(Array.makeArrayRankPlusOne(data), Array.makeArrayRankPlusOne(expected))).isTrue();
+      }
+    }
+  }
+
+  @Test
+  public void testRecordIterator() throws Exception {
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename, -1, null, NetcdfFile.IOSP_MESSAGE_ADD_RECORD_STRUCTURE)) {
+      Structure record = (Structure) ncfile.findVariable("record");
+      assertThat((Object) record).isNotNull();
+      ArrayStructure all = (ArrayStructure) record.read();
+
+      // windows of one record, several records, and all of them
+      for (int bufferSize : new int[] {1, 1000, -1}) {
+        try (StructureDataIterator iter = record.getStructureIterator(bufferSize)) {
+          assertThat(iter.getClass().getName()).isEqualTo(N3iospNew.class.getName() + "$RecordIterator");
+          int count = 0;
+          while (iter.hasNext()) {
+            StructureData sdata = iter.next();
+            assertThat(iter.getCurrentRecno()).isEqualTo(count);
+            StructureData expected = all.getStructureData(count);
+            for (String member : new String[] {"rec", "name", "t"}) {
+              assertThat(MAMath.equals(sdata.getArray(member), expected.getArray(member))).isTrue();
+            }
+            count++;
+          }
+          assertThat(count).isEqualTo(NRECS);
+
+          iter.reset();
+          assertThat(iter.next().getScalarDouble("t")).isEqualTo(-100.0);
+        }
+      }
+
+      // strided records
+      ArrayStructure strided = (ArrayStructure) record.read(new Section("1:49:6"));
+      assertThat(strided.getSize()).isEqualTo(9);
+      assertThat(strided.getStructureData(8).getScalarDouble("t")).isEqualTo(-100.0 + 49);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Formatter;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/** Test {@link BlockCache} */
+@RunWith(Parameterized.class)
+public class TestBlockCache {
+
+  @Parameterized.Parameters(name = "offHeap={0}")
+  public static Object[] getTestParameters() {
+    return new Object[] {false, true};
+  }
+
+  @Parameterized.Parameter
+  public boolean offHeap;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void after() {
+    RandomAccessFile.setGlobalBlockCache(null);
+  }
+
+  private File makeTestFile(int n) throws IOException {
+    File file = tempFolder.newFile();
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "rw")) {
+      for (int i = 0; i < n; i++) {
+        raf.writeInt(i);
+      }
+    }
+    return file;
+  }
+
+  @Test
+  public void testSharedBetweenFiles() throws IOException {
+    BlockCache blockCache = new BlockCache("test", 1000 * 1000, 1000, offHeap);
+    RandomAccessFile.setGlobalBlockCache(blockCache);
+    File file = makeTestFile(1001); // last block is short
+
+    for (int pass = 0; pass < 2; pass++) {
+      try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r", 100)) {
+        raf.order(RandomAccessFile.BIG_ENDIAN);
+        for (int i = 0; i < 1001; i++) {
+          assertThat(raf.readInt()).isEqualTo(i);
+        }
+        assertThat(raf.read()).isEqualTo(-1);
+
+        byte[] b = new byte[8];
+        assertThat(raf.read(4 * 999, b, 0, 8)).isEqualTo(8);
+        assertThat(raf.read(4 * 1000, b, 0, 8)).isEqualTo(4);
+        assertThat(raf.read(4 * 1001, b, 0, 8)).isEqualTo(-1);
+      }
+    }
+
+    // the second pass was served from the cache
+    assertThat(blockCache.getStats().missCount()).isEqualTo(5);
+    assertThat(blockCache.getStats().hitCount()).isGreaterThan(0);
+    assertThat(blockCache.getSizeInBytes()).isEqualTo(4004);
+
+    Formatter f = new Formatter();
+    blockCache.showCache(f);
+    blockCache.showStats(f);
+    assertThat(f.toString()).contains("nblocks=5");
+
+    blockCache.clearCache();
+    assertThat(blockCache.getSizeInBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    BlockCache blockCache = new BlockCache("test", 3000, 1000, offHeap);
+    RandomAccessFile.setGlobalBlockCache(blockCache);
+    File file = makeTestFile(10 * 1000);
+
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r", 100)) {
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+      for (int i = 0; i < 10 * 1000; i++) {
+        assertThat(raf.readInt()).isEqualTo(i);
+      }
+    }
+    assertThat(blockCache.getSizeInBytes()).isAtMost(3000);
+    assertThat(blockCache.getStats().evictionCount()).isGreaterThan(0);
+  }
+
+  @Test
+  public void testModifiedFileNotStale() throws IOException {
+    BlockCache blockCache = new BlockCache("test", 1000 * 1000, 1000, offHeap);
+    RandomAccessFile.setGlobalBlockCache(blockCache);
+    File file = makeTestFile(10);
+
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+      assertThat(raf.readInt()).isEqualTo(0);
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "rw")) {
+      raf.writeInt(-1);
+    }
+    assertThat(file.setLastModified(file.lastModified() + 10 * 1000)).isTrue();
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+      assertThat(raf.readInt()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testGrowingFile() throws IOException {
+    BlockCache blockCache = new BlockCache("test", 1000 * 1000, 1000, offHeap);
+    RandomAccessFile.setGlobalBlockCache(blockCache);
+    File file = makeTestFile(10);
+    long lastModified = file.lastModified();
+
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      byte[] b = new byte[8];
+      assertThat(raf.read(32, b, 0, 8)).isEqualTo(8);
+      assertThat(raf.read(40, b, 0, 8)).isEqualTo(-1); // the short last block is cached
+
+      // append while the file is open, without changing the last modified time
+      try (RandomAccessFile writer = new RandomAccessFile(file.getPath(), "rw")) {
+        writer.seek(40);
+        writer.writeInt(10);
+        writer.writeInt(11);
+      }
+      assertThat(file.setLastModified(lastModified)).isTrue();
+
+      assertThat(raf.read(40, b, 0, 8)).isEqualTo(8);
+      assertThat(b).isEqualTo(new byte[] {0, 0, 0, 10, 0, 0, 0, 11});
+    }
+  }
+
+  @Test
+  public void testLargeReadBypassesCache() throws IOException {
+    BlockCache blockCache = new BlockCache("test", 1000 * 1000, 100, offHeap);
+    RandomAccessFile.setGlobalBlockCache(blockCache);
+    File file = makeTestFile(1000);
+
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      byte[] b = new byte[4000];
+      raf.readFully(0, b, 0, b.length);
+      assertThat(b[4 * 999 + 3]).isEqualTo((byte) 999);
+    }
+    assertThat(blockCache.getSizeInBytes()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Formatter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.util.CompareNetcdf2;
+import ucar.unidata.util.test.TestDir;
+
+/** Test {@link MMapRandomAccessFile} against the buffered {@link RandomAccessFile} */
+public class TestMMapRandomAccessFile {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File makeTestFile(int n) throws IOException {
+    File file = tempFolder.newFile();
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "rw")) {
+      for (int i = 0; i < n; i++) {
+        raf.writeInt(i * 31);
+      }
+    }
+    return file;
+  }
+
+  @Test
+  public void testPrimitiveArrays() throws IOException {
+    int n = 1000;
+    File file = makeTestFile(n);
+
+    // small segment size so that reads cross segment boundaries
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r");
+        MMapRandomAccessFile mraf = new MMapRandomAccessFile(file.getPath(), 101)) {
+      assertThat(mraf.length()).isEqualTo(raf.length());
+
+      for (int endian : new int[] {RandomAccessFile.BIG_ENDIAN, RandomAccessFile.LITTLE_ENDIAN}) {
+        raf.order(endian);
+        mraf.order(endian);
+
+        int[] want = new int[n - 1];
+        int[] got = new int[n - 1];
+        raf.seek(3);
+        raf.readInt(want, 0, n - 1);
+        mraf.seek(3);
+        mraf.readInt(got, 0, n - 1);
+        assertThat(got).isEqualTo(want);
+        assertThat(mraf.getFilePointer()).isEqualTo(raf.getFilePointer());
+
+        float[] wantf = new float[n / 2];
+        float[] gotf = new float[n / 2];
+        raf.seek(17);
+        raf.readFloat(wantf, 0, n / 2);
+        mraf.seek(17);
+        mraf.readFloat(gotf, 0, n / 2);
+        assertThat(gotf).isEqualTo(wantf);
+
+        double[] wantd = new double[n / 3];
+        double[] gotd = new double[n / 3];
+        raf.seek(5);
+        raf.readDouble(wantd, 0, n / 3);
+        mraf.seek(5);
+        mraf.readDouble(gotd, 0, n / 3);
+        assertThat(gotd).isEqualTo(wantd);
+
+        short[] wants = new short[n];
+        short[] gots = new short[n];
+        raf.seek(1);
+        raf.readShort(wants, 0, n);
+        mraf.seek(1);
+        mraf.readShort(gots, 0, n);
+        assertThat(gots).isEqualTo(wants);
+
+        raf.seek(398);
+        mraf.seek(398);
+        assertThat(mraf.readLong()).isEqualTo(raf.readLong());
+        assertThat(mraf.readInt()).isEqualTo(raf.readInt());
+      }
+
+      byte[] want = new byte[555];
+      byte[] got = new byte[555];
+      raf.seek(99);
+      raf.readFully(want);
+      mraf.seek(99);
+      mraf.readFully(got);
+      assertThat(got).isEqualTo(want);
+    }
+  }
+
+  @Test
+  public void testEndOfFile() throws IOException {
+    File file = makeTestFile(10);
+    try (MMapRandomAccessFile mraf = new MMapRandomAccessFile(file.getPath(), 16)) {
+      mraf.order(RandomAccessFile.BIG_ENDIAN);
+      mraf.seek(36);
+      assertThat(mraf.readInt()).isEqualTo(9 * 31);
+      assertThat(mraf.read()).isEqualTo(-1);
+      assertThat(mraf.isAtEndOfFile()).isTrue();
+
+      mraf.seek(30);
+      try {
+        mraf.readInt(new int[3], 0, 3);
+        fail("expected EOFException");
+      } catch (java.io.EOFException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testOpenNetcdfFile() throws IOException {
+    String location = TestDir.cdmLocalTestDataDir + "testWrite.nc";
+    try (NetcdfFile org = NetcdfFiles.open(location); NetcdfFile mmap = NetcdfFiles.open("mmap:" + location)) {
+      Object raf = mmap.sendIospMessage(NetcdfFile.IOSP_MESSAGE_RANDOM_ACCESS_FILE);
+      assertThat(raf).isInstanceOf(MMapRandomAccessFile.class);
+
+      Formatter f = new Formatter();
+      CompareNetcdf2 compare = new CompareNetcdf2(f, false, false, true);
+      assertThat(compare.compare(org, mmap)).isTrue();
+    }
+  }
+}
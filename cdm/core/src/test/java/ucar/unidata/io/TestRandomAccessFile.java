@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Test the positional reads of {@link RandomAccessFile} */
+public class TestRandomAccessFile {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File makeTestFile(int n) throws IOException {
+    File file = tempFolder.newFile();
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "rw")) {
+      for (int i = 0; i < n; i++) {
+        raf.writeInt(i);
+      }
+    }
+    return file;
+  }
+
+  @Test
+  public void testPositionalRead() throws IOException {
+    File file = makeTestFile(1000);
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r", 100)) {
+      raf.seek(17);
+      byte[] b = new byte[400];
+      raf.readFully(4 * 500, b, 0, b.length);
+      ByteBuffer bb = ByteBuffer.wrap(b);
+      for (int i = 0; i < 100; i++) {
+        assertThat(bb.getInt()).isEqualTo(500 + i);
+      }
+      // file position is not changed
+      assertThat(raf.getFilePointer()).isEqualTo(17);
+
+      ByteBuffer dst = ByteBuffer.allocateDirect(8);
+      raf.readFully(4 * 998, dst);
+      dst.flip();
+      assertThat(dst.getInt()).isEqualTo(998);
+      assertThat(dst.getInt()).isEqualTo(999);
+
+      // partial read at end of file
+      assertThat(raf.read(4 * 999, new byte[8], 0, 8)).isEqualTo(4);
+      assertThat(raf.read(4 * 1000, new byte[8], 0, 8)).isEqualTo(-1);
+      try {
+        raf.readFully(4 * 999, new byte[8], 0, 8);
+        fail("expected EOFException");
+      } catch (EOFException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testPositionalReadSeesUnflushedWrites() throws IOException {
+    File file = makeTestFile(10);
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "rw")) {
+      raf.seek(4);
+      raf.writeInt(-1);
+      byte[] b = new byte[4];
+      raf.readFully(4, b, 0, 4);
+      assertThat(ByteBuffer.wrap(b).getInt()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testConcurrentPositionalReads() throws Exception {
+    int n = 100 * 1000;
+    File file = makeTestFile(n);
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        final int first = t * (n / 8);
+        results.add(pool.submit(() -> {
+          byte[] b = new byte[4 * 100];
+          for (int start = first; start < first + n / 8; start += 100) {
+            raf.readFully(4L * start, b, 0, b.length);
+            ByteBuffer bb = ByteBuffer.wrap(b);
+            for (int i = 0; i < 100; i++) {
+              if (bb.getInt() != start + i)
+                return false;
+            }
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
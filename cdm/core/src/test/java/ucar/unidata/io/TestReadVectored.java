@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.unidata.io.http.HTTPRandomAccessFile;
+
+/** Test {@link ReadableRemoteFile#readVectored} against a local http server. */
+public class TestReadVectored {
+  private static final String boundary = "THIS_STRING_SEPARATES";
+  private static final int nints = 250 * 1000;
+
+  private HttpServer server;
+  private String url;
+  private final byte[] content = new byte[4 * nints];
+  private final AtomicInteger nrequests = new AtomicInteger();
+  private volatile boolean multiRange = true;
+  private volatile boolean truncate; // end the multipart response in the headers of its second part
+
+  @Before
+  public void startServer() throws IOException {
+    ByteBuffer bb = ByteBuffer.wrap(content);
+    for (int i = 0; i < nints; i++) {
+      bb.putInt(i);
+    }
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/data.bin", this::handle);
+    server.start();
+    url = "http://localhost:" + server.getAddress().getPort() + "/data.bin";
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+    if (exchange.getRequestMethod().equals("HEAD")) {
+      exchange.getResponseHeaders().add("Content-Length", String.valueOf(content.length));
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+      return;
+    }
+    nrequests.incrementAndGet();
+    String[] ranges = exchange.getRequestHeaders().getFirst("Range").substring(6).split(",");
+    if (ranges.length > 1 && !multiRange) {
+      // like a server that ignores multiple ranges
+      exchange.sendResponseHeaders(200, content.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(content);
+      }
+      return;
+    }
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    if (ranges.length == 1) {
+      long[] r = parse(ranges[0]);
+      exchange.getResponseHeaders().add("Content-Range", "bytes " + r[0] + "-" + r[1] + "/" + content.length);
+      body.write(content, (int) r[0], (int) (r[1] - r[0] + 1));
+    } else {
+      exchange.getResponseHeaders().add("Content-Type", "multipart/byteranges; boundary=" + boundary);
+      for (String range : ranges) {
+        long[] r = parse(range);
+        String header = "\r\n--" + boundary + "\r\nContent-Type: application/octet-stream\r\nContent-Range: bytes "
+            + r[0] + "-" + r[1] + "/" + content.length + "\r\n\r\n";
+        body.write(header.getBytes(StandardCharsets.US_ASCII));
+        body.write(content, (int) r[0], (int) (r[1] - r[0] + 1));
+      }
+      body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+      if (truncate) {
+        byte[] b = body.toByteArray();
+        String s = new String(b, StandardCharsets.ISO_8859_1);
+        int second = s.indexOf("--" + boundary, s.indexOf("--" + boundary) + 1);
+        body.reset();
+        body.write(b, 0, s.indexOf("Content-Range", second));
+      }
+    }
+    exchange.sendResponseHeaders(206, body.size());
+    try (OutputStream os = exchange.getResponseBody()) {
+      body.writeTo(os);
+    }
+  }
+
+  private long[] parse(String range) {
+    String[] parts = range.trim().split("-");
+    return new long[] {Long.parseLong(parts[0]), Math.min(Long.parseLong(parts[1]), content.length - 1)};
+  }
+
+  private List<FileRange> makeRanges() {
+    List<FileRange> ranges = new ArrayList<>();
+    // far apart and out of order, plus one close enough to another to be combined
+    for (int i = 99; i >= 0; i -= 3) {
+      ranges.add(FileRange.create(i * 10000L, 400));
+    }
+    ranges.add(FileRange.create(1000, 12));
+    ranges.add(FileRange.create(content.length - 4, 4));
+    return ranges;
+  }
+
+  private void check(List<FileRange> ranges, List<ByteBuffer> result) {
+    assertThat(result).hasSize(ranges.size());
+    for (int i = 0; i < ranges.size(); i++) {
+      FileRange range = ranges.get(i);
+      ByteBuffer bb = result.get(i);
+      assertThat(bb.remaining()).isEqualTo(range.getLength());
+      for (int j = 0; j < range.getLength(); j++) {
+        assertThat(bb.get()).isEqualTo(content[(int) range.getOffset() + j]);
+      }
+    }
+  }
+
+  @Test
+  public void testMultiRange() throws IOException {
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url)) {
+      List<FileRange> ranges = makeRanges();
+      check(ranges, raf.readVectored(ranges));
+      // 35 separate ranges, at most 32 in a request
+      assertThat(nrequests.get()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void testFallbackToSingleRanges() throws IOException {
+    multiRange = false;
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url)) {
+      List<FileRange> ranges = makeRanges();
+      check(ranges, raf.readVectored(ranges));
+      nrequests.set(0);
+      check(ranges, raf.readVectored(ranges));
+      assertThat(nrequests.get()).isEqualTo(35);
+    }
+  }
+
+  @Test
+  public void testAdjacentRangesCombined() throws IOException {
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url)) {
+      List<FileRange> ranges = new ArrayList<>();
+      for (int i = 0; i < 50; i++) {
+        ranges.add(FileRange.create(i * 100L, 90));
+      }
+      check(ranges, raf.readVectored(ranges));
+      assertThat(nrequests.get()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testTruncatedMultipart() throws IOException {
+    truncate = true;
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url)) {
+      raf.readVectored(makeRanges());
+      fail("expected EOFException");
+    } catch (EOFException e) {
+      assertThat(e.getMessage()).contains("headers");
+    }
+  }
+
+  @Test
+  public void testPastEndOfFile() throws IOException {
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url)) {
+      List<FileRange> ranges = new ArrayList<>();
+      ranges.add(FileRange.create(0, 10));
+      ranges.add(FileRange.create(content.length - 4, 8));
+      raf.readVectored(ranges);
+      fail("expected EOFException");
+    } catch (EOFException e) {
+      // expected
+    }
+  }
+}
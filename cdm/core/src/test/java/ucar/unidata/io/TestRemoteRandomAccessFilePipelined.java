@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 1998-2020 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.unidata.io.http.HTTPRandomAccessFile;
+
+/** Test the pipelined mode of {@link RemoteRandomAccessFile} against a local http server. */
+public class TestRemoteRandomAccessFilePipelined {
+  private static final Pattern rangePattern = Pattern.compile("bytes=(\\d+)-(\\d+)");
+  private static final int bufferSize = 1000; // cache blocks are 2000 bytes
+  private static final int nints = 25 * 1000; // 100000 bytes, 50 cache blocks
+
+  private HttpServer server;
+  private String url;
+  private final byte[] content = new byte[4 * nints];
+  private final List<long[]> ranges = new CopyOnWriteArrayList<>();
+
+  @Before
+  public void startServer() throws IOException {
+    ByteBuffer bb = ByteBuffer.wrap(content);
+    for (int i = 0; i < nints; i++) {
+      bb.putInt(i);
+    }
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/data.bin", this::handle);
+    server.start();
+    url = "http://localhost:" + server.getAddress().getPort() + "/data.bin";
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+    if (exchange.getRequestMethod().equals("HEAD")) {
+      exchange.getResponseHeaders().add("Content-Length", String.valueOf(content.length));
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+      return;
+    }
+    Matcher m = rangePattern.matcher(exchange.getRequestHeaders().getFirst("Range"));
+    assertThat(m.matches()).isTrue();
+    long start = Long.parseLong(m.group(1));
+    long end = Math.min(Long.parseLong(m.group(2)), content.length - 1);
+    ranges.add(new long[] {start, end});
+    int len = (int) (end - start + 1);
+    exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+    exchange.sendResponseHeaders(206, len);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(content, (int) start, len);
+    }
+  }
+
+  @Test
+  public void testCoalescedRequest() throws IOException {
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url, bufferSize, 1000 * 1000, true, 0)) {
+      // one read spanning 10 cache blocks
+      byte[] b = new byte[20 * 1000];
+      raf.readFully(3000, b, 0, b.length);
+      ByteBuffer bb = ByteBuffer.wrap(b, 1000, 4);
+      assertThat(bb.getInt()).isEqualTo(1000);
+      // at most maxBlocksPerRequest blocks in a request
+      assertThat(ranges).hasSize(2);
+      assertThat(ranges.get(0)[1] - ranges.get(0)[0] + 1 + ranges.get(1)[1] - ranges.get(1)[0] + 1)
+          .isEqualTo(22 * 1000);
+
+      // now all in the cache
+      ranges.clear();
+      raf.readFully(2000, b, 0, b.length);
+      assertThat(ranges).isEmpty();
+    }
+  }
+
+  @Test
+  public void testSequentialReadAhead() throws IOException {
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url, bufferSize, 1000 * 1000, true, 4)) {
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+      for (int i = 0; i < nints; i++) {
+        assertThat(raf.readInt()).isEqualTo(i);
+      }
+      // prefetched blocks are fetched several at a time
+      assertThat(ranges.size()).isLessThan(50);
+      long total = ranges.stream().mapToLong(r -> r[1] - r[0] + 1).sum();
+      assertThat(total).isEqualTo(content.length);
+    }
+  }
+
+  @Test
+  public void testNotPipelined() throws IOException {
+    try (HTTPRandomAccessFile raf = new HTTPRandomAccessFile(url, bufferSize, 1000 * 1000, false, 4)) {
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+      for (int i = 0; i < nints; i++) {
+        assertThat(raf.readInt()).isEqualTo(i);
+      }
+      assertThat(ranges).hasSize(50);
+
+      // a read spanning many cache blocks
+      byte[] b = new byte[20 * 1000];
+      raf.readFully(3000, b, 0, b.length);
+      assertThat(ByteBuffer.wrap(b, 1000, 4).getInt()).isEqualTo(1000);
+    }
+  }
+}
@@ -43,6 +43,14 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
 
   private static final long s3MaxReadCacheSize = Long
       .parseLong(System.getProperty("ucar.unidata.io.s3.maxReadCacheSize", String.valueOf(defaultMaxReadCacheSize)));
+  /**
+   * If true, missing read cache blocks are fetched with coalesced, concurrent range requests, and sequential reads
+   * prefetch the next {@code ucar.unidata.io.s3.readAheadBlocks} blocks.
+   */
+  private static final boolean s3Pipelined =
+      Boolean.parseBoolean(System.getProperty("ucar.unidata.io.s3.pipelined", "false"));
+  private static final int s3ReadAheadBlocks = Integer
+      .parseInt(System.getProperty("ucar.unidata.io.s3.readAheadBlocks", String.valueOf(defaultReadAheadBlocks)));
   /**
    * The maximum number of connections allowed in the S3 http connection pool. Each built S3 HTTP client has it's own
    * private connection pool.
@@ -68,7 +76,7 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
   private HeadObjectResponse objectHeadResponse;
 
   private S3RandomAccessFile(String url) throws IOException {
-    super(url, s3BufferSize, s3MaxReadCacheSize);
+    super(url, s3BufferSize, s3MaxReadCacheSize, s3Pipelined, s3ReadAheadBlocks);
 
     // Region is tricky. Since we are using AWS SDK to manage connections to all object stores, we might have users
     // who use netCDF-Java and never touch AWS. If that's they case, they likely have not setup a basic credentials or
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * Unpacks the big-endian, unsigned, fixed width integers of a GRIB data section, many at a time.
+ * The section is read into memory once, instead of one byte at a time from the file as with
+ * {@link ucar.nc2.iosp.BitReader}. Values are shifted out of a 64-bit word, which is refilled 32 bits at a time, and
+ * byte aligned widths of 8, 16, 24 and 32 bits are loaded directly.
+ * Values are at most 32 bits wide; 32 bit values are returned as the int with the same bits.
+ */
+public class BitUnpacker {
+  private final byte[] bytes;
+  private final ByteBuffer bb;
+  private final int length;
+  private long bitPos;
+
+  /**
+   * Read nbytes of a file into memory, to unpack them.
+   *
+   * @param raf read from this file
+   * @param pos starting here
+   * @param nbytes number of bytes
+   */
+  public static BitUnpacker read(RandomAccessFile raf, long pos, int nbytes) throws IOException {
+    byte[] bytes = new byte[nbytes + Long.BYTES]; // padding, so all loads are full words
+    raf.seek(pos);
+    raf.readFully(bytes, 0, nbytes);
+    return new BitUnpacker(bytes, nbytes);
+  }
+
+  /**
+   * Unpack bytes in memory.
+   *
+   * @param bytes the packed values, starting at bytes[0]
+   * @param length number of bytes to use
+   */
+  public BitUnpacker(byte[] bytes, int length) {
+    this.bytes = bytes;
+    this.bb = ByteBuffer.wrap(bytes); // big-endian
+    this.length = length;
+  }
+
+  /** Current position, in bits from the start. */
+  public long getBitPos() {
+    return bitPos;
+  }
+
+  /** Skip to the start of the next byte, unless at the start of a byte. Same as BitReader.incrByte(). */
+  public void alignToByte() {
+    bitPos = (bitPos + 7) & ~7L;
+  }
+
+  /** Skip nbits bits. */
+  public void skip(long nbits) {
+    bitPos += nbits;
+  }
+
+  // the 64 bits starting at byte index, zero beyond the end
+  private long load(int index) {
+    if (index + Long.BYTES <= bytes.length)
+      return bb.getLong(index);
+    long word = 0;
+    for (int i = 0; i < Long.BYTES; i++)
+      word = (word << 8) | ((index + i < bytes.length) ? (bytes[index + i] & 0xff) : 0);
+    return word;
+  }
+
+  private void checkWidth(int nbits) {
+    if (nbits < 0 || nbits > 32)
+      throw new IllegalArgumentException("bit width must be 0 to 32: " + nbits);
+  }
+
+  private void checkRemaining(long nbits) throws IOException {
+    if (bitPos + nbits > 8L * length)
+      throw new EOFException("unpacking past the end of the data: " + (bitPos + nbits) / 8 + " > " + length);
+  }
+
+  /**
+   * Unpack the next value.
+   *
+   * @param nbits width in bits, 0 to 32
+   * @return the value; 0 if nbits is 0
+   */
+  public int next(int nbits) throws IOException {
+    checkWidth(nbits);
+    if (nbits == 0)
+      return 0;
+    checkRemaining(nbits);
+    long word = load((int) (bitPos >>> 3));
+    int value = (int) ((word << (bitPos & 7)) >>> (64 - nbits));
+    bitPos += nbits;
+    return value;
+  }
+
+  /**
+   * Unpack the next values.
+   *
+   * @param nbits width in bits, 0 to 32
+   * @param dest put them here
+   * @param off starting at dest[off]
+   * @param n number of values
+   */
+  public void next(int nbits, int[] dest, int off, int n) throws IOException {
+    checkWidth(nbits);
+    if (nbits == 0) {
+      Arrays.fill(dest, off, off + n, 0);
+      return;
+    }
+    checkRemaining((long) nbits * n);
+    if (n == 0)
+      return;
+
+    int index = (int) (bitPos >>> 3);
+    if ((bitPos & 7) == 0 && (nbits & 7) == 0) { // byte aligned
+      switch (nbits) {
+        case 8:
+          for (int i = 0; i < n; i++)
+            dest[off + i] = bytes[index + i] & 0xff;
+          break;
+        case 16:
+          for (int i = 0; i < n; i++, index += 2)
+            dest[off + i] = ((bytes[index] & 0xff) << 8) | (bytes[index + 1] & 0xff);
+          break;
+        case 24:
+          for (int i = 0; i < n; i++, index += 3)
+            dest[off + i] =
+                ((bytes[index] & 0xff) << 16) | ((bytes[index + 1] & 0xff) << 8) | (bytes[index + 2] & 0xff);
+          break;
+        default: // 32
+          for (int i = 0; i < n; i++, index += 4)
+            dest[off + i] = (int) word32(index);
+      }
+      bitPos += (long) nbits * n;
+      return;
+    }
+
+    // the low nacc bits of acc are the next bits; there is room for 32 more when nacc < nbits
+    int skip = (int) (bitPos & 7);
+    long acc = bytes[index++] & (0xff >>> skip);
+    int nacc = 8 - skip;
+    long mask = (1L << nbits) - 1;
+    for (int i = 0; i < n; i++) {
+      if (nacc < nbits) {
+        acc = (acc << 32) | word32(index);
+        index += 4;
+        nacc += 32;
+      }
+      nacc -= nbits;
+      dest[off + i] = (int) ((acc >>> nacc) & mask);
+    }
+    bitPos += (long) nbits * n;
+  }
+
+  // the 32 bits starting at byte index, unsigned, zero beyond the end
+  private long word32(int index) {
+    if (index + 4 <= bytes.length)
+      return (((bytes[index] & 0xff) << 24) | ((bytes[index + 1] & 0xff) << 16) | ((bytes[index + 2] & 0xff) << 8)
+          | (bytes[index + 3] & 0xff)) & 0xffffffffL;
+    long word = 0;
+    for (int i = 0; i < 4; i++)
+      word = (word << 8) | ((index + i < bytes.length) ? (bytes[index + i] & 0xff) : 0);
+    return word;
+  }
+}
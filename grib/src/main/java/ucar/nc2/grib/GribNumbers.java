@@ -294,4 +294,16 @@ public final class GribNumbers {
     return bits;
   }
 
+  // count number of bits on in the first n bits of bitmap
+  public static int countBits(byte[] bitmap, int n) {
+    int bits = 0;
+    for (int i = 0; i < n / 8; i++) {
+      bits += Integer.bitCount(bitmap[i] & 0xff);
+    }
+    if (n % 8 != 0) {
+      bits += Integer.bitCount(bitmap[n / 8] & 0xff & (0xff00 >>> (n % 8)));
+    }
+    return bits;
+  }
+
 }
@@ -8,10 +8,8 @@ package ucar.nc2.grib.collection;
 import javax.annotation.Nonnull;
 import thredds.featurecollection.FeatureCollectionConfig;
 import thredds.featurecollection.FeatureCollectionConfig.GribConfig;
-import thredds.inventory.CollectionUpdateType;
 import thredds.inventory.MCollection;
 import thredds.inventory.MFile;
-import ucar.nc2.grib.GribIndex;
 import ucar.nc2.grib.GribIndexCache;
 import ucar.nc2.grib.coord.Coordinate;
 import ucar.nc2.grib.coord.CoordinateEns;
@@ -27,7 +25,6 @@ import ucar.nc2.grib.grib2.Grib2Utils;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.time.CalendarPeriod;
-import ucar.nc2.util.CloseableIterator;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
@@ -54,12 +51,12 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
 
   // read all records in all files,
   // divide into groups based on GDS hash and optionally the runtime
-  // each group has an arraylist of all records that belong to it.
+  // each record is passed to the rectilyser of its group as it is read, which keeps only its keys and position.
   // for each group, call rectilizer to derive the coordinates and variables
   @Override
   public List<Grib1CollectionWriter.Group> makeGroups(List<MFile> allFiles, boolean singleRuntime, Formatter errlog)
       throws IOException {
-    Map<GroupAndRuntime, Grib1CollectionWriter.Group> gdsMap = new HashMap<>();
+    Map<GroupAndRuntime, Grib1Rectilyser> gdsMap = new HashMap<>();
 
     logger.debug("Grib1CollectionBuilder {}: makeGroups", name);
     int fileno = 0;
@@ -68,38 +65,15 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
     logger.debug(" dcm={}", dcm);
 
     // place each record into its group
-    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
-      if (iter == null)
+    try (IndexIterator<Grib1Index> iter = new IndexIterator<>()) { // not sorted
+      if (!iter.hasFiles())
         return new ArrayList<>(); // empty
 
       while (iter.hasNext()) {
-        MFile mfile = iter.next();
-        Grib1Index index;
-        try {
-          if (Grib.debugGbxIndexOnly) {
-            index = (Grib1Index) GribIndex.open(true, mfile);
-            if (index == null)
-              continue;
-          } else {
-            // here is where gbx9 files get recreated
-            index =
-                (Grib1Index) GribIndex.readOrCreateIndexFromSingleFile(true, mfile, CollectionUpdateType.test, logger);
-          }
-          allFiles.add(mfile); // add on success
-
-        } catch (IOException ioe) {
-          logger.error("Grib1CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath()
-              + " failed", ioe);
-          continue;
-        }
-        if (index == null) {
-          logger.error("Grib1CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath()
-              + " failed");
-          continue;
-        }
+        Grib1Index index = iter.next();
+        allFiles.add(iter.getMFile()); // add on success
 
-        for (Grib1Record gr : index.getRecords()) { // we are using entire Grib1Record - likely this is the memory
-                                                    // bottleneck for how big a collection can handle
+        for (Grib1Record gr : index.getRecords()) { // only the first record of each variable is kept
           if (this.cust == null) {
             cust = Grib1Customizer.factory(gr, null);
             cust.setTimeUnitConverter(gribConfig.getTimeUnitConverter());
@@ -122,27 +96,30 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
           long runtime = singleRuntime ? runtimeDate.getMillis() : 0; // seperate Groups for each runtime, if
                                                                       // singleRuntime is true
           GroupAndRuntime gar = new GroupAndRuntime(hashCode, runtime);
-          Grib1CollectionWriter.Group g = gdsMap.get(gar);
-          if (g == null) {
-            g = new Grib1CollectionWriter.Group(gr.getGDSsection(), hashCode, runtimeDate);
-            gdsMap.put(gar, g);
+          Grib1Rectilyser rect = gdsMap.get(gar);
+          if (rect == null) {
+            rect = new Grib1Rectilyser(new Grib1CollectionWriter.Group(gr.getGDSsection(), hashCode, runtimeDate));
+            gdsMap.put(gar, rect);
           }
-          g.records.add(gr);
-          g.runtimes.add(runtimeDate.getMillis());
+          rect.addRecord(gr);
+          rect.group.runtimes.add(runtimeDate.getMillis());
         }
         fileno++;
         statsAll.recordsTotal += index.getRecords().size();
       }
     }
+    if (isCancelled())
+      return new ArrayList<>();
 
     // rectilyze each group independently
-    List<Grib1CollectionWriter.Group> groups = new ArrayList<>(gdsMap.values());
-    for (Grib1CollectionWriter.Group g : groups) {
+    List<Grib1CollectionWriter.Group> groups = new ArrayList<>();
+    for (Grib1Rectilyser rect : gdsMap.values()) {
       GribRecordStats stats = new GribRecordStats(); // debugging
-      Grib1Rectilyser rect = new Grib1Rectilyser(g.records, g.hashCode);
-      rect.make(gribConfig, stats, errlog);
+      rect.make(stats, errlog);
+      Grib1CollectionWriter.Group g = rect.group;
       g.gribVars = rect.gribvars;
       g.coords = rect.coords;
+      groups.add(g);
 
       statsAll.add(stats);
     }
@@ -199,8 +176,9 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
     final Grib1Record first;
     final Grib1Variable gv;
 
-    final List<Grib1Record> atomList = new ArrayList<>(100); // not sorted
-    CoordinateND<Grib1Record> coordND;
+    final List<GribCollectionImmutable.Record> atomList = new ArrayList<>(100); // not sorted
+    CoordinateND.Builder<Grib1Record> coordNBuilder; // until the coordinates are finished
+    CoordinateND<GribCollectionImmutable.Record> coordND;
     CalendarPeriod timeUnit;
 
     List<Integer> coordIndex; // index into List<Coordinate>
@@ -226,86 +204,89 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
 
   // for a single group, create multidimensional (rectangular) variables
   private class Grib1Rectilyser {
-    private final int hashCode;
-    private final List<Grib1Record> records;
+    private final Grib1CollectionWriter.Group group;
+    private final Map<Grib1Variable, VariableBag> vbHash = new HashMap<>(100);
     private List<VariableBag> gribvars;
     private List<Coordinate> coords;
 
-    Grib1Rectilyser(List<Grib1Record> records, int hashCode) {
-      this.records = records;
-      this.hashCode = hashCode;
+    Grib1Rectilyser(Grib1CollectionWriter.Group group) {
+      this.group = group;
       // int gdsHash = gribConfig.convertGdsHash(gdsHashObject.hashCode());
       // gdsHashOverride = (gdsHash == gdsHashObject.hashCode()) ? 0 : gdsHash;
     }
 
-    public void make(FeatureCollectionConfig.GribConfig config, GribRecordStats counter, Formatter info) {
-      CalendarPeriod userTimeUnit = config.userTimeUnit;
-
-      // assign each record to unique variable using cdmVariableHash()
-      Map<Grib1Variable, VariableBag> vbHash = new HashMap<>(100);
-      for (Grib1Record gr : records) {
-        Grib1Variable cdmHash;
-        try {
-          cdmHash = new Grib1Variable(cust, gr, hashCode, gribConfig.useTableVersion, gribConfig.intvMerge,
-              gribConfig.useCenter);
-        } catch (Throwable t) {
-          logger.warn("Exception on record ", t);
-          continue; // keep going
-        }
-        VariableBag bag = vbHash.get(cdmHash);
-        if (bag == null) {
-          bag = new VariableBag(gr, cdmHash);
-          vbHash.put(cdmHash, bag);
-        }
-        bag.atomList.add(gr);
+    // assign the record to a unique variable using cdmVariableHash(), and add it to the coordinates of the variable.
+    // only the keys of its coordinate values and its position are kept, not the record.
+    void addRecord(Grib1Record gr) {
+      Grib1Variable cdmHash;
+      try {
+        cdmHash = new Grib1Variable(cust, gr, group.hashCode, gribConfig.useTableVersion, gribConfig.intvMerge,
+            gribConfig.useCenter);
+      } catch (Throwable t) {
+        logger.warn("Exception on record ", t);
+        return; // keep going
       }
+      VariableBag bag = vbHash.get(cdmHash);
+      if (bag == null) {
+        bag = new VariableBag(gr, cdmHash);
+        bag.coordNBuilder = makeCoordinateBuilder(bag);
+        vbHash.put(cdmHash, bag);
+      }
+      bag.coordNBuilder.addRecordKeys(gr);
+      bag.atomList.add(new GribCollectionImmutable.Record(gr.getFile(), gr.getIs().getStartPos(), 0, 0));
+    }
+
+    // create dense coordinates for a variable, based on its first record
+    private CoordinateND.Builder<Grib1Record> makeCoordinateBuilder(VariableBag vb) {
+      CalendarPeriod userTimeUnit = gribConfig.userTimeUnit;
+      Grib1SectionProductDefinition pdss = vb.first.getPDSsection();
+      Grib1ParamTime ptime = vb.first.getParamTime(cust);
+
+      int unit = cust.convertTimeUnit(pdss.getTimeUnit());
+      vb.timeUnit = userTimeUnit == null ? Grib2Utils.getCalendarPeriod(unit) : userTimeUnit; // so can override the
+                                                                                              // code // ok for GRIB1
+      CoordinateND.Builder<Grib1Record> coordNBuilder = new CoordinateND.Builder<>();
+
+      boolean isTimeInterval = ptime.isInterval();
+      /*
+       * if (isDense) { // time is runtime X time coord
+       * coordNBuilder.addBuilder(new CoordinateRuntime.Builder1(vb.timeUnit));
+       * if (isTimeInterval)
+       * coordNBuilder.addBuilder(new CoordinateTimeIntv.Builder1(cust, unit, vb.timeUnit, null)); // null refdate not
+       * ok
+       * else
+       * coordNBuilder.addBuilder(new CoordinateTime.Builder1(cust, pdss.getTimeUnit(), vb.timeUnit, null)); // null
+       * refdate not ok
+       * 
+       * } else {
+       */
+      // time is kept as 2D coordinate, separate list of times for each runtime
+      CoordinateTime2D.Builder1 builder2D = new CoordinateTime2D.Builder1(isTimeInterval, cust, vb.timeUnit, unit);
+      coordNBuilder.addBuilder(builder2D);
+      // }
+
+      if (vb.first.getPDSsection().isEnsemble())
+        coordNBuilder.addBuilder(new CoordinateEns.Builder1(cust, 0));
+
+      if (cust.isVerticalCoordinate(pdss.getLevelType()))
+        coordNBuilder.addBuilder(new CoordinateVert.Builder1(cust, pdss.getLevelType()));
+
+      return coordNBuilder;
+    }
+
+    public void make(GribRecordStats counter, Formatter info) {
       gribvars = new ArrayList<>(vbHash.values());
       Collections.sort(gribvars); // make it deterministic by sorting
 
-      // create dense coordinates for each variable
+      // done, build coordinates and sparse array indicating which records to use
       for (VariableBag vb : gribvars) {
-        Grib1SectionProductDefinition pdss = vb.first.getPDSsection();
-        Grib1ParamTime ptime = vb.first.getParamTime(cust);
-
-        int unit = cust.convertTimeUnit(pdss.getTimeUnit());
-        vb.timeUnit = userTimeUnit == null ? Grib2Utils.getCalendarPeriod(unit) : userTimeUnit; // so can override the
-                                                                                                // code // ok for GRIB1
-        CoordinateND.Builder<Grib1Record> coordNBuilder = new CoordinateND.Builder<>();
-
-        boolean isTimeInterval = ptime.isInterval();
-        /*
-         * if (isDense) { // time is runtime X time coord
-         * coordNBuilder.addBuilder(new CoordinateRuntime.Builder1(vb.timeUnit));
-         * if (isTimeInterval)
-         * coordNBuilder.addBuilder(new CoordinateTimeIntv.Builder1(cust, unit, vb.timeUnit, null)); // null refdate not
-         * ok
-         * else
-         * coordNBuilder.addBuilder(new CoordinateTime.Builder1(cust, pdss.getTimeUnit(), vb.timeUnit, null)); // null
-         * refdate not ok
-         * 
-         * } else {
-         */
-        // time is kept as 2D coordinate, separate list of times for each runtime
-        CoordinateTime2D.Builder1 builder2D = new CoordinateTime2D.Builder1(isTimeInterval, cust, vb.timeUnit, unit);
-        coordNBuilder.addBuilder(builder2D);
-        // }
-
-        if (vb.first.getPDSsection().isEnsemble())
-          coordNBuilder.addBuilder(new CoordinateEns.Builder1(cust, 0));
-
-        if (cust.isVerticalCoordinate(pdss.getLevelType()))
-          coordNBuilder.addBuilder(new CoordinateVert.Builder1(cust, pdss.getLevelType()));
-
-        // populate the coordinates with the inventory of data
-        for (Grib1Record gr : vb.atomList)
-          coordNBuilder.addRecord(gr);
-
-        // done, build coordinates and sparse array indicating which records to use
-        vb.coordND = coordNBuilder.finish(vb.atomList, info);
+        vb.coordND = vb.coordNBuilder.finishKeys(vb.atomList, info);
+        vb.coordNBuilder = null;
       }
 
       // make shared coordinates across variables
-      CoordinateSharer<Grib1Record> sharify = new CoordinateSharer<>(config.unionRuntimeCoord, logger);
+      CoordinateSharer<GribCollectionImmutable.Record> sharify =
+          new CoordinateSharer<>(gribConfig.unionRuntimeCoord, logger);
       for (VariableBag vb : gribvars) {
         sharify.addCoords(vb.coordND.getCoordinates());
       }
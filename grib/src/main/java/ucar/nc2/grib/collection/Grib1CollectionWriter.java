@@ -24,7 +24,6 @@ import ucar.nc2.time.CalendarDateRange;
 import ucar.unidata.io.RandomAccessFile;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -55,7 +54,6 @@ class Grib1CollectionWriter extends GribCollectionWriter {
     public List<Coordinate> coords;
 
     public final Set<Long> runtimes = new HashSet<>();
-    public final List<Grib1Record> records = new ArrayList<>();
     Set<Integer> fileSet; // this is so we can show just the component files that are in this group
 
     Group(Grib1SectionGridDefinition gdss, int hashCode, CalendarDate runtime) {
@@ -256,7 +254,7 @@ class Grib1CollectionWriter extends GribCollectionWriter {
   private GribCollectionProto.SparseArray writeSparseArray(Grib1CollectionBuilder.VariableBag vb,
       Set<Integer> fileSet) {
     GribCollectionProto.SparseArray.Builder b = GribCollectionProto.SparseArray.newBuilder();
-    SparseArray<Grib1Record> sa = vb.coordND.getSparseArray();
+    SparseArray<GribCollectionImmutable.Record> sa = vb.coordND.getSparseArray();
     for (int size : sa.getShape()) {
       b.addSize(size);
     }
@@ -264,13 +262,12 @@ class Grib1CollectionWriter extends GribCollectionWriter {
       b.addTrack(track);
     }
 
-    for (Grib1Record gr : sa.getContent()) {
+    for (GribCollectionImmutable.Record record : sa.getContent()) {
       GribCollectionProto.Record.Builder br = GribCollectionProto.Record.newBuilder();
 
-      br.setFileno(gr.getFile());
-      fileSet.add(gr.getFile());
-      Grib1SectionIndicator is = gr.getIs();
-      br.setStartPos(is.getStartPos()); // start of entire message
+      br.setFileno(record.fileno);
+      fileSet.add(record.fileno);
+      br.setStartPos(record.pos); // start of entire message
 
       b.addRecords(br);
     }
@@ -16,7 +16,7 @@ import java.io.File;
  * @since 2/21/14
  */
 class Grib1PartitionBuilder extends GribPartitionBuilder {
-  public static final String MAGIC_START = "Grib1Partition2Index"; // was Grib1Partition0Index
+  public static final String MAGIC_START = "Grib1Partition3Index"; // was Grib1Partition2Index
 
   Grib1PartitionBuilder(String name, File directory, PartitionManager tpc, org.slf4j.Logger logger) {
     super(name, tpc, logger);
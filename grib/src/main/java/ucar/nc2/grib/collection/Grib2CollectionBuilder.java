@@ -6,11 +6,10 @@
 package ucar.nc2.grib.collection;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import thredds.featurecollection.FeatureCollectionConfig;
-import thredds.inventory.CollectionUpdateType;
 import thredds.inventory.MCollection;
 import thredds.inventory.MFile;
-import ucar.nc2.grib.GribIndex;
 import ucar.nc2.grib.GribIndexCache;
 import ucar.nc2.grib.coord.Coordinate;
 import ucar.nc2.grib.coord.CoordinateEns;
@@ -26,7 +25,6 @@ import ucar.nc2.grib.grib2.table.Grib2Tables;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.time.CalendarPeriod;
-import ucar.nc2.util.CloseableIterator;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
@@ -50,14 +48,20 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
     gribConfig = config.gribConfig;
   }
 
+  @Override
+  protected boolean canUpdateIndex() {
+    return true;
+  }
+
   // read all records in all files,
   // divide into groups based on GDS hash and runtime
-  // each group has an arraylist of all records that belong to it.
+  // each record is passed to the rectilyser of its group as it is read, which keeps only its keys and position.
+  // when updating an index, the records of the files that have not changed are taken from it instead.
   // for each group, run rectlizer to derive the coordinates and variables
   @Override
   public List<Grib2CollectionWriter.Group> makeGroups(List<MFile> allFiles, boolean singleRuntime, Formatter errlog)
       throws IOException {
-    Map<GroupAndRuntime, Grib2CollectionWriter.Group> gdsMap = new HashMap<>();
+    Map<GroupAndRuntime, Grib2Rectilyser> gdsMap = new HashMap<>();
 
     logger.debug("Grib2CollectionBuilder {}: makeGroups", name);
     int fileno = 0;
@@ -67,42 +71,33 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
 
     // place each record into its group
     int totalRecords = 0;
-    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
-      if (iter == null)
+    Map<GribCollectionBuilder.PreviousVariable, PreviousBag> previousBags = new HashMap<>();
+    try (IndexIterator<Grib2Index> iter = new IndexIterator<>()) { // not sorted
+      if (!iter.hasFiles())
         return new ArrayList<>(); // empty
 
       while (iter.hasNext()) {
-        MFile mfile = iter.next();
-        Grib2Index index;
-
-        try {
-          if (Grib.debugGbxIndexOnly) {
-            index = (Grib2Index) GribIndex.open(false, mfile);
-          } else {
-            // this is where gbx9 files get recreated
-            index =
-                (Grib2Index) GribIndex.readOrCreateIndexFromSingleFile(false, mfile, CollectionUpdateType.test, logger);
-          }
-          allFiles.add(mfile); // add on success
-
-        } catch (IOException ioe) {
-          logger.error("Grib2CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath()
-              + " failed", ioe);
-          continue;
-        }
-        if (index == null) {
-          logger.error("Grib2CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath()
-              + " failed");
+        Grib2Index index = iter.next();
+        allFiles.add(iter.getMFile()); // add on success
+        if (index == null) { // not changed, its records are replayed from the index being updated
+          if (this.cust == null)
+            setCustomizer(Grib2Tables.factory(previous.gc.center, previous.gc.subcenter, previous.gc.master,
+                previous.gc.local, previous.gc.genProcessId));
+          int n = previous.replay(iter.getMFile(), fileno, (pv, record, values) -> {
+            PreviousBag pb = previousBags.computeIfAbsent(pv, k -> new PreviousBag(k, gdsMap));
+            pb.rect.addPreviousRecord(pb, record, values);
+          });
+          totalRecords += n;
+          fileno++;
+          statsAll.recordsTotal += n;
           continue;
         }
         int n = index.getNRecords();
         totalRecords += n;
 
-        for (Grib2Record gr : index.getRecords()) { // we are using entire Grib2Record - memory limitations
-          if (this.cust == null) {
-            this.cust = Grib2Tables.factory(gr);
-            cust.setTimeUnitConverter(gribConfig.getTimeUnitConverter());
-          }
+        for (Grib2Record gr : index.getRecords()) { // only the first record of each variable is kept
+          if (this.cust == null)
+            setCustomizer(Grib2Tables.factory(gr));
           if (filterIntervals(gr, gribConfig.intvFilter)) {
             statsAll.filter++;
             continue; // skip
@@ -121,18 +116,20 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
           long runtime = singleRuntime ? runtimeDate.getMillis() : 0; // seperate Groups for each runtime, if
                                                                       // singleRuntime is true
           GroupAndRuntime gar = new GroupAndRuntime(hashCode, runtime);
-          Grib2CollectionWriter.Group g = gdsMap.get(gar);
-          if (g == null) {
-            g = new Grib2CollectionWriter.Group(gr.getGDSsection(), hashCode, runtimeDate);
-            gdsMap.put(gar, g);
+          Grib2Rectilyser rect = gdsMap.get(gar);
+          if (rect == null) {
+            rect = new Grib2Rectilyser(new Grib2CollectionWriter.Group(gr.getGDSsection(), hashCode, runtimeDate));
+            gdsMap.put(gar, rect);
           }
-          g.records.add(gr);
-          g.runtimes.add(runtimeDate.getMillis());
+          rect.addRecord(gr);
+          rect.group.runtimes.add(runtimeDate.getMillis());
         }
         fileno++;
         statsAll.recordsTotal += index.getRecords().size();
       }
     }
+    if (isCancelled())
+      return new ArrayList<>();
 
     if (totalRecords == 0) {
       logger.warn("No records found in files. Check Grib1/Grib2 for collection {}. If wrong, delete gbx9.", name);
@@ -140,13 +137,14 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
     }
 
     // rectilyze each group independently
-    List<Grib2CollectionWriter.Group> groups = new ArrayList<>(gdsMap.values());
-    for (Grib2CollectionWriter.Group g : groups) {
+    List<Grib2CollectionWriter.Group> groups = new ArrayList<>();
+    for (Grib2Rectilyser rect : gdsMap.values()) {
       GribRecordStats stats = new GribRecordStats(); // debugging
-      Grib2Rectilyser rect = new Grib2Rectilyser(g.records, g.hashCode);
-      rect.make(gribConfig, stats, errlog);
+      rect.make(stats, errlog);
+      Grib2CollectionWriter.Group g = rect.group;
       g.gribVars = rect.gribvars;
       g.coords = rect.coords;
+      groups.add(g);
 
       statsAll.add(stats);
     }
@@ -158,6 +156,11 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
     return groups;
   }
 
+  private void setCustomizer(Grib2Tables cust) {
+    this.cust = cust;
+    cust.setTimeUnitConverter(gribConfig.getTimeUnitConverter());
+  }
+
   // true means discard
   private boolean filterIntervals(Grib2Record gr, FeatureCollectionConfig.GribIntvFilter intvFilter) {
     // hack a whack - filter out records with unknown time units
@@ -214,8 +217,9 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
     public final Grib2Record first;
     public final Grib2Variable gv;
 
-    final List<Grib2Record> atomList = new ArrayList<>(100); // not sorted
-    CoordinateND<Grib2Record> coordND;
+    final List<GribCollectionImmutable.Record> atomList = new ArrayList<>(100); // not sorted
+    CoordinateND.Builder<Grib2Record> coordNBuilder; // until the coordinates are finished
+    CoordinateND<GribCollectionImmutable.Record> coordND;
     CalendarPeriod timeUnit;
 
     List<Integer> coordIndex;
@@ -233,76 +237,128 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
     }
   }
 
+  // a variable of the previous index, with a record made from the metadata stored for it, to stand for its first record
+  private class PreviousBag {
+    private final Grib2Rectilyser rect;
+    private final Grib2Record first;
+    private final Grib2Variable gv;
+
+    PreviousBag(GribCollectionBuilder.PreviousVariable pv, Map<GroupAndRuntime, Grib2Rectilyser> gdsMap) {
+      GribCollectionMutable.VariableIndex vi = pv.vi;
+      Grib2SectionGridDefinition gdss = new Grib2SectionGridDefinition(pv.group.getGdsBytes());
+      Grib2Gds gds = gdss.getGDS();
+      int hashCode = gribConfig.convertGdsHash(gds.hashCode());
+      CalendarDate runtime = pv.getFirstRuntime();
+      GroupAndRuntime gar = new GroupAndRuntime(hashCode, 0);
+      Grib2Rectilyser rect = gdsMap.get(gar);
+      if (rect == null) { // not computeIfAbsent(), which changes the iteration order of the groups
+        rect = new Grib2Rectilyser(new Grib2CollectionWriter.Group(gdss, hashCode, runtime));
+        gdsMap.put(gar, rect);
+      }
+      this.rect = rect;
+
+      GribCollectionMutable gc = pv.group.getGribCollection();
+      Grib2SectionIdentification id = new Grib2SectionIdentification(vi.center, vi.subcenter, gc.master, gc.local, 0,
+          runtime.getFieldValue(CalendarPeriod.Field.Year), runtime.getFieldValue(CalendarPeriod.Field.Month),
+          runtime.getFieldValue(CalendarPeriod.Field.Day), runtime.getFieldValue(CalendarPeriod.Field.Hour),
+          runtime.getFieldValue(CalendarPeriod.Field.Minute), runtime.getFieldValue(CalendarPeriod.Field.Second), 0, 0);
+      first = new Grib2Record(null, new Grib2SectionIndicator(0, 0, vi.discipline), id, null, gdss,
+          new Grib2SectionProductDefinition(vi.rawPds), null, null, null, false, gds.getScanMode());
+      gv = new Grib2Variable(cust, first, hashCode, gribConfig.intvMerge, gribConfig.useGenType);
+    }
+  }
+
   private class Grib2Rectilyser {
-    private final int hashCode;
-    private final List<Grib2Record> records;
+    private final Grib2CollectionWriter.Group group;
+    private final Map<Grib2Variable, VariableBag> vbHash = new HashMap<>(100);
     private List<VariableBag> gribvars;
     private List<Coordinate> coords;
 
-    Grib2Rectilyser(List<Grib2Record> records, int hashCode) {
-      this.records = records;
-      this.hashCode = hashCode;
+    Grib2Rectilyser(Grib2CollectionWriter.Group group) {
+      this.group = group;
       /*
        * int gdsHash = gribConfig.convertGdsHash(gdsHashObject.hashCode());
        * gdsHashOverride = (gdsHash == gdsHashObject.hashCode()) ? 0 : gdsHash;
        */
     }
 
-    public void make(FeatureCollectionConfig.GribConfig config, GribRecordStats counter, Formatter info) {
-      CalendarPeriod userTimeUnit = config.userTimeUnit;
+    // assign the record to a unique variable using cdmVariableHash(), and add it to the coordinates of the variable.
+    // only the keys of its coordinate values and its position are kept, not the record.
+    void addRecord(Grib2Record gr) {
+      Grib2Variable gv;
+      try {
+        gv = new Grib2Variable(cust, gr, group.hashCode, gribConfig.intvMerge, gribConfig.useGenType);
 
-      // assign each record to unique variable using cdmVariableHash()
-      Map<Grib2Variable, VariableBag> vbHash = new HashMap<>(100);
-      for (Grib2Record gr : records) {
-        Grib2Variable gv;
-        try {
-          gv = new Grib2Variable(cust, gr, hashCode, gribConfig.intvMerge, gribConfig.useGenType);
+      } catch (Throwable t) {
+        logger.warn("Exception on record ", t);
+        return; // keep going
+      }
+      VariableBag bag = getBag(gr, gv);
+      bag.coordNBuilder.addRecordKeys(gr);
 
-        } catch (Throwable t) {
-          logger.warn("Exception on record ", t);
-          continue; // keep going
-        }
-        VariableBag bag = vbHash.get(gv);
-        if (bag == null) {
-          bag = new VariableBag(gr, gv);
-          vbHash.put(gv, bag);
-        }
-        bag.atomList.add(gr);
+      long startPos = gr.getIs().getStartPos();
+      int bmsOffset = gr.isBmsReplaced() ? (int) (gr.getBitmapSection().getStartingPosition() - startPos) : 0;
+      int drsOffset = (int) (gr.getDataRepresentationSection().getStartingPosition() - startPos);
+      bag.atomList.add(new GribCollectionImmutable.Record(gr.getFile(), startPos, bmsOffset, drsOffset));
+    }
+
+    // add a record of the previous index, by its coordinate values
+    void addPreviousRecord(PreviousBag pb, GribCollectionImmutable.Record record, @Nullable List<Object> values) {
+      VariableBag bag = getBag(pb.first, pb.gv);
+      bag.coordNBuilder.addKeys(values);
+      bag.atomList.add(record);
+      if (values != null)
+        group.runtimes.add(((CoordinateTime2D.Time2D) values.get(0)).getRefDate().getMillis());
+    }
+
+    private VariableBag getBag(Grib2Record first, Grib2Variable gv) {
+      VariableBag bag = vbHash.get(gv);
+      if (bag == null) {
+        bag = new VariableBag(first, gv);
+        bag.coordNBuilder = makeCoordinateBuilder(bag);
+        vbHash.put(gv, bag);
       }
+      return bag;
+    }
+
+    // create the coordinates of a variable, based on its first record
+    private CoordinateND.Builder<Grib2Record> makeCoordinateBuilder(VariableBag vb) {
+      CalendarPeriod userTimeUnit = gribConfig.userTimeUnit;
+      Grib2Pds pdsFirst = vb.first.getPDS();
+      int code = cust.convertTimeUnit(pdsFirst.getTimeUnit());
+      vb.timeUnit = userTimeUnit == null ? Grib2Utils.getCalendarPeriod(code) : userTimeUnit; // so can override the
+                                                                                              // code in config
+                                                                                              // "timeUnit"
+      CoordinateND.Builder<Grib2Record> coordNBuilder = new CoordinateND.Builder<>();
+
+      boolean isTimeInterval = vb.first.getPDS().isTimeInterval();
+      CoordinateTime2D.Builder2 builder2D = new CoordinateTime2D.Builder2(isTimeInterval, cust, vb.timeUnit, code);
+      coordNBuilder.addBuilder(builder2D);
+
+      if (vb.first.getPDS().isEnsemble())
+        coordNBuilder.addBuilder(new CoordinateEns.Builder2(0));
+
+      VertCoordType vertUnit = cust.getVertUnit(pdsFirst.getLevelType1());
+      if (vertUnit.isVerticalCoordinate())
+        coordNBuilder.addBuilder(
+            new CoordinateVert.Builder2(pdsFirst.getLevelType1(), cust.getVertUnit(pdsFirst.getLevelType1())));
+
+      return coordNBuilder;
+    }
+
+    public void make(GribRecordStats counter, Formatter info) {
       gribvars = new ArrayList<>(vbHash.values());
       Collections.sort(gribvars); // make it deterministic by sorting
 
-      // create coordinates for each variable
+      // done, build coordinates and sparse array indicating which records to use
       for (VariableBag vb : gribvars) {
-        Grib2Pds pdsFirst = vb.first.getPDS();
-        int code = cust.convertTimeUnit(pdsFirst.getTimeUnit());
-        vb.timeUnit = userTimeUnit == null ? Grib2Utils.getCalendarPeriod(code) : userTimeUnit; // so can override the
-                                                                                                // code in config
-                                                                                                // "timeUnit"
-        CoordinateND.Builder<Grib2Record> coordNBuilder = new CoordinateND.Builder<>();
-
-        boolean isTimeInterval = vb.first.getPDS().isTimeInterval();
-        CoordinateTime2D.Builder2 builder2D = new CoordinateTime2D.Builder2(isTimeInterval, cust, vb.timeUnit, code);
-        coordNBuilder.addBuilder(builder2D);
-
-        if (vb.first.getPDS().isEnsemble())
-          coordNBuilder.addBuilder(new CoordinateEns.Builder2(0));
-
-        VertCoordType vertUnit = cust.getVertUnit(pdsFirst.getLevelType1());
-        if (vertUnit.isVerticalCoordinate())
-          coordNBuilder.addBuilder(
-              new CoordinateVert.Builder2(pdsFirst.getLevelType1(), cust.getVertUnit(pdsFirst.getLevelType1())));
-
-        // populate the coordinates with the inventory of data
-        for (Grib2Record gr : vb.atomList)
-          coordNBuilder.addRecord(gr);
-
-        // done, build coordinates and sparse array indicating which records to use
-        vb.coordND = coordNBuilder.finish(vb.atomList, info);
+        vb.coordND = vb.coordNBuilder.finishKeys(vb.atomList, info);
+        vb.coordNBuilder = null;
       }
 
       // make shared coordinates across variables
-      CoordinateSharer<Grib2Record> sharify = new CoordinateSharer<>(config.unionRuntimeCoord, logger);
+      CoordinateSharer<GribCollectionImmutable.Record> sharify =
+          new CoordinateSharer<>(gribConfig.unionRuntimeCoord, logger);
       for (VariableBag vb : gribvars) {
         sharify.addCoords(vb.coordND.getCoordinates());
       }
@@ -47,7 +47,6 @@ class Grib2CollectionWriter extends GribCollectionWriter {
 
     List<Grib2CollectionBuilder.VariableBag> gribVars;
     public List<Coordinate> coords;
-    public final List<Grib2Record> records = new ArrayList<>();
     public final Set<Long> runtimes = new HashSet<>();
     Set<Integer> fileSet; // this is so we can show just the component files that are in this group
 
@@ -252,27 +251,21 @@ class Grib2CollectionWriter extends GribCollectionWriter {
   private GribCollectionProto.SparseArray writeSparseArray(Grib2CollectionBuilder.VariableBag vb,
       Set<Integer> fileSet) {
     GribCollectionProto.SparseArray.Builder b = GribCollectionProto.SparseArray.newBuilder();
-    SparseArray<Grib2Record> sa = vb.coordND.getSparseArray();
+    SparseArray<GribCollectionImmutable.Record> sa = vb.coordND.getSparseArray();
     for (int size : sa.getShape())
       b.addSize(size);
     for (int track : sa.getTrack())
       b.addTrack(track);
 
-    for (Grib2Record gr : sa.getContent()) {
+    for (GribCollectionImmutable.Record record : sa.getContent()) {
       GribCollectionProto.Record.Builder br = GribCollectionProto.Record.newBuilder();
 
-      br.setFileno(gr.getFile());
-      fileSet.add(gr.getFile());
-      long startPos = gr.getIs().getStartPos();
-      br.setStartPos(startPos);
-
-      if (gr.isBmsReplaced()) {
-        Grib2SectionBitMap bms = gr.getBitmapSection();
-        br.setBmsOffset((int) (bms.getStartingPosition() - startPos));
-      }
-
-      Grib2SectionDataRepresentation drs = gr.getDataRepresentationSection();
-      br.setDrsOffset((int) (drs.getStartingPosition() - startPos));
+      br.setFileno(record.fileno);
+      fileSet.add(record.fileno);
+      br.setStartPos(record.pos);
+      if (record.bmsOffset != 0)
+        br.setBmsOffset(record.bmsOffset);
+      br.setDrsOffset(record.drsOffset);
       b.addRecords(br);
     }
 
@@ -96,9 +96,11 @@ public class Grib2PartitionBuilderFromIndex extends Grib2CollectionBuilderFromIn
   @Override
   protected GribCollectionMutable.VariableIndex readVariableExtensions(GribCollectionMutable.GroupGC group,
       GribCollectionProto.Variable proto, GribCollectionMutable.VariableIndex vi) {
-    List<GribCollectionProto.PartitionVariable> pvList = proto.getPartVariableList();
-    PartitionCollectionMutable.VariableIndexPartitioned vip = pc.makeVariableIndexPartitioned(group, vi, pvList.size());
-    vip.setPartitions(pvList);
+    // the partitions are in the record section, read when needed
+    int nparts = vi.recordsLen / PartitionCollectionMutable.PARTITION_ENTRY_SIZE;
+    PartitionCollectionMutable.VariableIndexPartitioned vip = pc.makeVariableIndexPartitioned(group, vi, nparts);
+    vip.partitionsPos = vi.recordsPos;
+    vip.partitionsLen = vi.recordsLen;
 
     // cant put this in the constructor
     vip.ndups = vi.ndups;
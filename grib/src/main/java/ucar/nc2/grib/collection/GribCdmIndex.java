@@ -77,6 +77,17 @@ public class GribCdmIndex implements IndexReader {
     gribCollectionCache = cache;
   }
 
+  /**
+   * Set the number of threads used to read or create the gbx9 indexes of the files of a collection, when its ncx4
+   * index is built. The resulting index is the same for any number of threads. May also be set with the system
+   * property {@value GribCollectionBuilder#INDEXTHREADS}.
+   *
+   * @param nthreads number of threads; 1 (the default) means in the building thread
+   */
+  public static void setIndexThreads(int nthreads) {
+    GribCollectionBuilder.setIndexThreads(nthreads);
+  }
+
   // open GribCollectionImmutable from an existing index file. return null on failure
   static GribCollectionImmutable acquireGribCollection(FileFactory factory, Object hashKey, String location,
       int buffer_size, CancelTask cancelTask, Object spiObject) throws IOException {
@@ -343,6 +354,9 @@ public class GribCdmIndex implements IndexReader {
       }
     }
 
+    if (changed)
+      invalidateRecordCache(rootPath.toString());
+
     long took = System.currentTimeMillis() - start;
     logger.info("updateGribCollection {} changed {} took {} msecs", config.collectionName, changed, took);
     return changed;
@@ -351,23 +365,41 @@ public class GribCdmIndex implements IndexReader {
   // return true if changed, exception on failure
   public static boolean updateGribCollection(boolean isGrib1, MCollection dcm, CollectionUpdateType updateType,
       FeatureCollectionConfig.PartitionType ptype, Logger logger, Formatter errlog) throws IOException {
+    return updateGribCollection(isGrib1, dcm, updateType, ptype, logger, errlog, null);
+  }
+
+  // return true if changed, exception on failure; false if cancelled while reading or creating the gbx9 indexes
+  public static boolean updateGribCollection(boolean isGrib1, MCollection dcm, CollectionUpdateType updateType,
+      FeatureCollectionConfig.PartitionType ptype, Logger logger, Formatter errlog, @Nullable CancelTask cancelTask)
+      throws IOException {
 
     logger.debug("GribCdmIndex.updateGribCollection {} {}", dcm.getCollectionName(), updateType);
     if (!isUpdateNeeded(dcm.getIndexFilename(NCX_SUFFIX), updateType,
         (isGrib1 ? GribCollectionType.GRIB1 : GribCollectionType.GRIB2), logger))
       return false;
 
-    boolean changed;
+    GribCollectionBuilder builder;
     if (isGrib1) { // existing case handles correctly - make seperate index for each runtime (OR) partition == runtime
-      Grib1CollectionBuilder builder = new Grib1CollectionBuilder(dcm.getCollectionName(), dcm, logger);
-      changed = builder.updateNeeded(updateType) && builder.createIndex(ptype, errlog);
+      builder = new Grib1CollectionBuilder(dcm.getCollectionName(), dcm, logger);
     } else {
-      Grib2CollectionBuilder builder = new Grib2CollectionBuilder(dcm.getCollectionName(), dcm, logger);
-      changed = builder.updateNeeded(updateType) && builder.createIndex(ptype, errlog);
+      builder = new Grib2CollectionBuilder(dcm.getCollectionName(), dcm, logger);
     }
+    builder.setCancelTask(cancelTask);
+    // unless always, an existing index is updated, reading only the files that were added or changed
+    boolean changed = builder.updateNeeded(updateType) && (updateType == CollectionUpdateType.always
+        ? builder.createIndex(ptype, errlog) : builder.updateIndex(ptype, errlog));
+    if (changed && dcm.getRoot() != null)
+      invalidateRecordCache(dcm.getRoot());
     return changed;
   }
 
+  // the data files may have been rewritten, so the records decoded from them can no longer be used
+  private static void invalidateRecordCache(String rootDir) {
+    GribRecordCache cache = GribDataReader.getRecordCache();
+    if (cache != null)
+      cache.invalidateDirectory(rootDir);
+  }
+
   // return true if changed, exception on failure
   private static boolean updatePartition(boolean isGrib1, PartitionManager dcm, CollectionUpdateType updateType,
       Logger logger, Formatter errlog) throws IOException {
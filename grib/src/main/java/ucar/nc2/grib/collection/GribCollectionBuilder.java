@@ -5,6 +5,7 @@
 
 package ucar.nc2.grib.collection;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import thredds.featurecollection.FeatureCollectionConfig;
 import thredds.inventory.CollectionManager;
@@ -17,15 +18,25 @@ import ucar.nc2.grib.coord.Coordinate;
 import ucar.nc2.grib.coord.CoordinateRuntime;
 import ucar.nc2.grib.coord.CoordinateTime2D;
 import ucar.nc2.grib.coord.CoordinateTimeAbstract;
+import ucar.nc2.grib.coord.SparseArray;
+import ucar.nc2.grib.coord.TimeCoordIntvValue;
 import ucar.nc2.grib.GribIndex;
 import ucar.nc2.grib.GribIndexCache;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
+import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.CloseableIterator;
+import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.util.StringUtil2;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Superclass to build indexes for collections of Grib files.
@@ -34,6 +45,30 @@ import java.util.*;
  * @since 2/19/14
  */
 abstract class GribCollectionBuilder {
+  // System property name for -D flag: number of threads used to read or create the gbx9 indexes of the files of a
+  // collection, shared by all collection builds, default 1 (in the building thread)
+  static final String INDEXTHREADS = "unidata.grib.index.threads";
+
+  private static int indexThreads = Integer.getInteger(INDEXTHREADS, 1);
+  private static ForkJoinPool indexPool;
+
+  /**
+   * Set the number of threads used to read or create the gbx9 indexes of the files of a collection. With more than
+   * one, the indexes are read or created in parallel, on a pool shared by all collection builds.
+   *
+   * @param nthreads number of threads; 1 (the default) means in the building thread
+   */
+  static synchronized void setIndexThreads(int nthreads) {
+    // builds in progress keep submitting to the old pool, so it is not shut down. its threads exit once idle.
+    indexPool = null;
+    indexThreads = nthreads;
+  }
+
+  private static synchronized ForkJoinPool getIndexPool() {
+    if (indexPool == null && indexThreads > 1)
+      indexPool = new ForkJoinPool(indexThreads);
+    return indexPool;
+  }
 
   protected final MCollection dcm;
   protected final org.slf4j.Logger logger;
@@ -42,6 +77,8 @@ abstract class GribCollectionBuilder {
 
   protected final String name; // collection name
   protected final File directory; // top directory
+  protected CancelTask cancelTask; // may be null
+  protected PreviousIndex previous; // the index being updated by updateIndex(), while it runs
 
   protected abstract List<? extends Group> makeGroups(List<MFile> allFiles, boolean singleRuntime, Formatter errlog)
       throws IOException;
@@ -58,6 +95,15 @@ abstract class GribCollectionBuilder {
     this.directory = new File(dcm.getRoot());
   }
 
+  /** Show progress of the gbx9 indexing, and allow it to be cancelled, in which case no index is written. */
+  void setCancelTask(@Nullable CancelTask cancelTask) {
+    this.cancelTask = cancelTask;
+  }
+
+  protected boolean isCancelled() {
+    return cancelTask != null && cancelTask.isCancel();
+  }
+
   boolean updateNeeded(CollectionUpdateType ff) throws IOException {
     if (ff == CollectionUpdateType.never)
       return false;
@@ -112,6 +158,51 @@ abstract class GribCollectionBuilder {
 
   //////////////////////////////////////////////////////////////////////////////////////////////////////////
 
+  /**
+   * Update the index of the collection, reading only the files that were added or changed since it was written.
+   * The records of the other files are taken from the index, and merged with the new ones in file order, so the
+   * result is the same as createIndex(), which is used instead when that is not possible.
+   */
+  boolean updateIndex(FeatureCollectionConfig.PartitionType ptype, Formatter errlog) throws IOException {
+    if (ptype != FeatureCollectionConfig.PartitionType.all && canUpdateIndex())
+      previous = readPreviousIndex();
+    try {
+      return createIndex(ptype, errlog);
+    } finally {
+      previous = null;
+    }
+  }
+
+  // true if makeGroups() can use the records of the previous index
+  protected boolean canUpdateIndex() {
+    return false;
+  }
+
+  @Nullable
+  private PreviousIndex readPreviousIndex() throws IOException {
+    String indexFilename = dcm.getIndexFilename(GribCdmIndex.NCX_SUFFIX);
+    File indexFile = GribIndexCache.getExistingFileOrCache(indexFilename);
+    if (indexFile == null)
+      return null;
+    FeatureCollectionConfig config = (FeatureCollectionConfig) dcm.getAuxInfo(FeatureCollectionConfig.AUX_CONFIG);
+    GribCollectionMutable gc = GribCdmIndex.openMutableGCFromIndex(indexFilename, config, false, true, logger);
+    if (gc == null)
+      return null;
+
+    try {
+      if (gc instanceof PartitionCollectionMutable || gc.isGrib1 != isGrib1)
+        return null;
+      PreviousIndex result = new PreviousIndex(gc);
+      if (!result.read(indexFile)) {
+        logger.debug("GribCollectionBuilder {}: cannot update {}, recreate it", name, indexFile.getPath());
+        return null;
+      }
+      return result;
+    } finally {
+      gc.close();
+    }
+  }
+
   // Throw exception if failure
   boolean createIndex(FeatureCollectionConfig.PartitionType ptype, Formatter errlog) throws IOException {
     if (ptype == FeatureCollectionConfig.PartitionType.all)
@@ -126,6 +217,8 @@ abstract class GribCollectionBuilder {
 
     List<MFile> files = new ArrayList<>();
     List<? extends Group> groups = makeGroups(files, false, errlog);
+    if (isCancelled())
+      return false;
     List<MFile> allFiles = Collections.unmodifiableList(files);
     if (allFiles.isEmpty()) {
       throw new IllegalStateException("No files in this collection =" + name + " topdir=" + dcm.getRoot());
@@ -194,6 +287,8 @@ abstract class GribCollectionBuilder {
 
     List<MFile> files = new ArrayList<>();
     List<? extends Group> groups = makeGroups(files, true, errlog);
+    if (isCancelled())
+      return false;
     List<MFile> allFiles = Collections.unmodifiableList(files);
 
     // gather into collections with a single runtime
@@ -252,6 +347,367 @@ abstract class GribCollectionBuilder {
     return ok;
   }
 
+  // read or create the gbx9 index of one file; null on failure
+  @Nullable
+  private GribIndex readIndex(MFile mfile) {
+    String builderName = getClass().getSimpleName();
+    try {
+      // this is where gbx9 files get recreated
+      GribIndex index = Grib.debugGbxIndexOnly ? GribIndex.open(isGrib1, mfile)
+          : GribIndex.readOrCreateIndexFromSingleFile(isGrib1, mfile, CollectionUpdateType.test, logger);
+      if (index == null) {
+        logger.error(builderName + " " + name + " : reading/Creating gbx9 index for file " + mfile.getPath()
+            + " failed");
+      }
+      return index;
+
+    } catch (IOException ioe) {
+      logger.error(builderName + " " + name + " : reading/Creating gbx9 index for file " + mfile.getPath()
+          + " failed", ioe);
+      return null;
+    }
+  }
+
+  /**
+   * The gbx9 indexes of the files of the collection, in the order of its file iterator, skipping the files whose
+   * index cannot be read or created. With more than one index thread, the indexes of the following files are read or
+   * created in parallel, at most twice the number of threads ahead. They are still returned in order, so the file
+   * numbers, and the collection index, are the same as reading them one at a time.
+   * When updating an index, the files whose records are replayed from it are not read, and next() returns null.
+   * Progress is shown on the CancelTask, if any; hasNext() is false once it is cancelled.
+   */
+  class IndexIterator<I extends GribIndex> implements Closeable {
+    private final CloseableIterator<MFile> files;
+    private final ForkJoinPool pool;
+    private final int ahead;
+    private final Deque<MFile> pendingFiles = new ArrayDeque<>();
+    private final Deque<Future<GribIndex>> pendingIndexes = new ArrayDeque<>();
+    private int count;
+    private MFile nextFile, currentFile;
+    private I nextIndex;
+    private boolean haveNext;
+
+    IndexIterator() throws IOException {
+      this.files = dcm.getFileIterator();
+      this.pool = getIndexPool();
+      this.ahead = (pool == null) ? 0 : 2 * pool.getParallelism();
+    }
+
+    /** false if the collection has no file iterator */
+    boolean hasFiles() {
+      return files != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    boolean hasNext() throws IOException {
+      while (!haveNext) {
+        if (files == null || isCancelled())
+          return false;
+        while (pendingFiles.size() < ahead && files.hasNext()) {
+          MFile mfile = files.next();
+          pendingFiles.add(mfile);
+          pendingIndexes.add(isReplayed(mfile) ? CompletableFuture.completedFuture(null)
+              : pool.submit(() -> readIndex(mfile)));
+        }
+
+        if (!pendingFiles.isEmpty()) {
+          nextFile = pendingFiles.remove();
+          nextIndex = (I) getIndex(pendingIndexes.remove());
+        } else if (files.hasNext()) {
+          nextFile = files.next();
+          nextIndex = isReplayed(nextFile) ? null : (I) readIndex(nextFile);
+        } else {
+          return false;
+        }
+        haveNext = nextIndex != null || isReplayed(nextFile);
+        count++;
+        if (cancelTask != null)
+          cancelTask.setProgress("Indexed " + nextFile.getName(), count);
+      }
+      return true;
+    }
+
+    // the records of the file are in the index being updated
+    private boolean isReplayed(MFile mfile) {
+      return previous != null && previous.isReplayed(mfile);
+    }
+
+    /** The gbx9 index of the next file, or null if its records are replayed from the index being updated. */
+    @Nullable
+    I next() throws IOException {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      I result = nextIndex;
+      currentFile = nextFile;
+      nextIndex = null;
+      haveNext = false;
+      return result;
+    }
+
+    /** The file of the index last returned by next(). */
+    MFile getMFile() {
+      return currentFile;
+    }
+
+    private GribIndex getIndex(Future<GribIndex> future) throws IOException {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted reading gbx9 indexes of " + name);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        if (cause instanceof Error)
+          throw (Error) cause;
+        throw new IOException(cause);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (Future<GribIndex> future : pendingIndexes)
+        future.cancel(false);
+      pendingFiles.clear();
+      pendingIndexes.clear();
+      if (files != null)
+        files.close();
+    }
+  }
+
+  /** Takes the records of a file that are replayed from the index being updated. */
+  protected interface PreviousRecords {
+    /**
+     * @param pv the variable in the index
+     * @param record the record, with the file number in the new index
+     * @param values its coordinate values, as extracted by the coordinate builders of the variable, or null if it was
+     *        a duplicate of a record added later
+     */
+    void add(PreviousVariable pv, GribCollectionImmutable.Record record, @Nullable List<Object> values);
+  }
+
+  /**
+   * The collection index being updated. The files that have not changed since it was written are not read again;
+   * their records are replayed from the index, in the order they are in the file, by replay().
+   * The first record of a variable has its metadata, so the first file of a variable that has not changed is read again
+   * if it does not have the first record in the index.
+   * The index cannot be used if a variable has duplicate records and some of them are in files that changed, or in
+   * files that are no longer in the same order.
+   */
+  class PreviousIndex {
+    final GribCollectionMutable gc;
+    final List<PreviousVariable> vars = new ArrayList<>();
+    private final Map<String, Integer> replayed = new HashMap<>(); // path -> fileno in the index
+    // for each fileno in the index, (variable << 32 | content index) of its records, in the order they are in the file
+    private long[][] fileRecords;
+
+    private PreviousIndex(GribCollectionMutable gc) {
+      this.gc = gc;
+    }
+
+    private boolean read(File indexFile) throws IOException {
+      try (RandomAccessFile raf = new RandomAccessFile(indexFile.getPath(), "r")) {
+        for (GribCollectionMutable.GroupGC group : gc.getDatasetCanonical().getGroups()) {
+          for (GribCollectionMutable.VariableIndex vi : group.variList) {
+            if (vi.recordsLen == 0)
+              return false;
+            byte[] b = new byte[vi.recordsLen];
+            raf.seek(vi.recordsPos);
+            raf.readFully(b);
+            PreviousVariable pv = new PreviousVariable(group, vi, GribCollectionImmutable.readSparseArray(b));
+            if (!pv.hasTime2D())
+              return false;
+            vars.add(pv);
+          }
+        }
+      }
+
+      // the files that have not changed, and their position in the collection now
+      Map<String, Integer> filenos = new HashMap<>(2 * gc.fileMap.size());
+      int nfiles = 0;
+      for (Map.Entry<Integer, MFile> entry : gc.fileMap.entrySet()) {
+        filenos.put(entry.getValue().getPath(), entry.getKey());
+        nfiles = Math.max(nfiles, entry.getKey() + 1);
+      }
+      int[] position = new int[nfiles];
+      Arrays.fill(position, -1);
+      boolean inOrder = true;
+      int count = 0;
+      int last = -1;
+      try (CloseableIterator<MFile> iter = dcm.getFileIterator()) {
+        while (iter != null && iter.hasNext()) {
+          MFile mfile = iter.next();
+          Integer fileno = filenos.get(mfile.getPath());
+          MFile old = (fileno == null) ? null : gc.fileMap.get(fileno);
+          if (old != null && old.getLastModified() == mfile.getLastModified() && old.getLength() == mfile.getLength()) {
+            position[fileno] = count;
+            inOrder &= fileno > last;
+            last = fileno;
+          }
+          count++;
+        }
+      }
+
+      boolean[] reread = new boolean[nfiles];
+      for (PreviousVariable pv : vars) {
+        boolean hasDups = pv.sa.getNdups() > 0;
+        if (hasDups && !inOrder)
+          return false;
+        int firstFile = -1;
+        for (GribCollectionImmutable.Record record : pv.sa.getContent()) {
+          if (position[record.fileno] < 0) {
+            if (hasDups)
+              return false; // which duplicate is kept may change
+          } else if (firstFile < 0 || position[record.fileno] < position[firstFile]) {
+            firstFile = record.fileno;
+          }
+        }
+        if (firstFile >= 0 && firstFile != pv.sa.getContent().get(0).fileno)
+          reread[firstFile] = true;
+      }
+
+      int[] nrecords = new int[nfiles];
+      for (int fileno = 0; fileno < nfiles; fileno++) {
+        if (reread[fileno])
+          position[fileno] = -1;
+        else if (position[fileno] >= 0)
+          replayed.put(gc.fileMap.get(fileno).getPath(), fileno);
+      }
+      if (replayed.isEmpty())
+        return false;
+      for (PreviousVariable pv : vars) {
+        for (GribCollectionImmutable.Record record : pv.sa.getContent())
+          if (position[record.fileno] >= 0)
+            nrecords[record.fileno]++;
+      }
+
+      fileRecords = new long[nfiles][];
+      for (int fileno = 0; fileno < nfiles; fileno++)
+        fileRecords[fileno] = new long[nrecords[fileno]];
+      Arrays.fill(nrecords, 0);
+      for (int v = 0; v < vars.size(); v++) {
+        List<GribCollectionImmutable.Record> content = vars.get(v).sa.getContent();
+        for (int i = 0; i < content.size(); i++) {
+          int fileno = content.get(i).fileno;
+          if (position[fileno] >= 0)
+            fileRecords[fileno][nrecords[fileno]++] = ((long) v << 32) | i;
+        }
+      }
+
+      // replay in the order they are in the file, as a new index would see them
+      Comparator<Long> byPosition = Comparator.comparingLong((Long packed) -> getRecord(packed).pos)
+          .thenComparingInt(packed -> getRecord(packed).drsOffset);
+      for (int fileno = 0; fileno < nfiles; fileno++) {
+        Long[] records = Arrays.stream(fileRecords[fileno]).boxed().sorted(byPosition).toArray(Long[]::new);
+        for (int i = 0; i < records.length; i++)
+          fileRecords[fileno][i] = records[i];
+      }
+      return true;
+    }
+
+    private GribCollectionImmutable.Record getRecord(long packed) {
+      return vars.get((int) (packed >>> 32)).sa.getContent().get((int) packed);
+    }
+
+    boolean isReplayed(MFile mfile) {
+      return replayed.containsKey(mfile.getPath());
+    }
+
+    /**
+     * Replay the records of a file that has not changed.
+     *
+     * @param mfile the file
+     * @param fileno its number in the new index
+     * @param consumer takes the records
+     * @return the number of records
+     */
+    int replay(MFile mfile, int fileno, PreviousRecords consumer) {
+      long[] records = fileRecords[replayed.get(mfile.getPath())];
+      for (long packed : records) {
+        PreviousVariable pv = vars.get((int) (packed >>> 32));
+        int contentIdx = (int) packed;
+        GribCollectionImmutable.Record old = getRecord(packed);
+        consumer.add(pv, new GribCollectionImmutable.Record(fileno, old.pos, old.bmsOffset, old.drsOffset),
+            pv.getValues(contentIdx));
+      }
+      return records.length;
+    }
+  }
+
+  /** A variable of the index being updated. */
+  static class PreviousVariable {
+    final GribCollectionMutable.GroupGC group;
+    final GribCollectionMutable.VariableIndex vi;
+    private final List<Coordinate> coords;
+    private final SparseArray<GribCollectionImmutable.Record> sa;
+    private final int[] shape;
+    private final int[] trackIndex; // for each content index, where it is in the track, or -1 for a duplicate
+    private final CoordinateTimeAbstract[] timeCoords; // for each runtime of the time2D coordinate, when needed
+
+    private PreviousVariable(GribCollectionMutable.GroupGC group, GribCollectionMutable.VariableIndex vi,
+        SparseArray<GribCollectionImmutable.Record> sa) {
+      this.group = group;
+      this.vi = vi;
+      this.coords = vi.getCoordinates();
+      this.sa = sa;
+      this.shape = sa.getShape();
+
+      trackIndex = new int[sa.getContent().size()];
+      Arrays.fill(trackIndex, -1);
+      for (int i = 0; i < sa.getTotalSize(); i++) {
+        if (sa.getTrack(i) > 0)
+          trackIndex[sa.getTrack(i) - 1] = i;
+      }
+      CoordinateTime2D time2D = (CoordinateTime2D) vi.getCoordinate(Coordinate.Type.time2D);
+      timeCoords = new CoordinateTimeAbstract[time2D == null ? 0 : time2D.getNruns()];
+    }
+
+    // the coordinates are a runtime, a time2D on that runtime, then others, as made by the builders
+    private boolean hasTime2D() {
+      if (coords.size() < 2 || coords.get(0).getType() != Coordinate.Type.runtime
+          || coords.get(1).getType() != Coordinate.Type.time2D)
+        return false;
+      for (int i = 2; i < coords.size(); i++) {
+        Coordinate.Type type = coords.get(i).getType();
+        if (type != Coordinate.Type.ens && type != Coordinate.Type.vert)
+          return false;
+      }
+      return true;
+    }
+
+    /** The earliest runtime of the variable. */
+    CalendarDate getFirstRuntime() {
+      return ((CoordinateRuntime) coords.get(0)).getFirstDate();
+    }
+
+    // the coordinate values of a record, one for each builder; null for a duplicate
+    @Nullable
+    private List<Object> getValues(int contentIdx) {
+      int trackIdx = trackIndex[contentIdx];
+      if (trackIdx < 0)
+        return null;
+      int[] index = new int[shape.length];
+      for (int i = shape.length - 1; i >= 0; i--) {
+        index[i] = trackIdx % shape[i];
+        trackIdx /= shape[i];
+      }
+
+      List<Object> values = new ArrayList<>(coords.size() - 1);
+      long runtime = ((CoordinateRuntime) coords.get(0)).getRuntime(index[0]);
+      CoordinateTime2D time2D = (CoordinateTime2D) coords.get(1);
+      int runIdx = time2D.getRuntimeCoordinate().getIndex(runtime);
+      if (timeCoords[runIdx] == null)
+        timeCoords[runIdx] = time2D.getTimeCoordinate(runIdx);
+      Object time = timeCoords[runIdx].getValue(index[1]);
+      values.add(time instanceof Integer ? new CoordinateTime2D.Time2D(CalendarDate.of(runtime), (Integer) time, null)
+          : new CoordinateTime2D.Time2D(CalendarDate.of(runtime), null, (TimeCoordIntvValue) time));
+      for (int i = 2; i < coords.size(); i++)
+        values.add(coords.get(i).getValue(index[i]));
+      return values;
+    }
+  }
+
   public interface Group {
     CalendarDate getRuntime();
 
@@ -490,34 +490,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
         indexRaf.seek(recordsPos);
         indexRaf.readFully(b);
 
-        /*
-         * message SparseArray {
-         * repeated uint32 size = 2 [packed=true]; // multidim sizes = shape[]
-         * repeated uint32 track = 3 [packed=true]; // 1-based index into record list, 0 == missing
-         * repeated Record records = 4; // List<Record>
-         * uint32 ndups = 5; // duplicates found when creating
-         * }
-         */
-        GribCollectionProto.SparseArray proto = GribCollectionProto.SparseArray.parseFrom(b);
-
-        int nsizes = proto.getSizeCount();
-        int[] size = new int[nsizes];
-        for (int i = 0; i < nsizes; i++)
-          size[i] = proto.getSize(i);
-
-        int ntrack = proto.getTrackCount();
-        int[] track = new int[ntrack];
-        for (int i = 0; i < ntrack; i++)
-          track[i] = proto.getTrack(i);
-
-        int n = proto.getRecordsCount();
-        List<Record> records = new ArrayList<>(n);
-        for (int i = 0; i < n; i++) {
-          GribCollectionProto.Record pr = proto.getRecords(i);
-          records.add(new Record(pr.getFileno(), pr.getStartPos(), pr.getBmsOffset(), pr.getDrsOffset()));
-        }
-        int ndups = proto.getNdups();
-        this.sa = new SparseArray<>(size, track, records, ndups);
+        this.sa = readSparseArray(b);
 
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
         logger.error(" file={} recordsLen={} recordPos={}", indexFilename, recordsLen, recordsPos);
@@ -851,6 +824,67 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
 
   }
 
+  /*
+   * message SparseArray {
+   * repeated uint32 size = 2 [packed=true]; // multidim sizes = shape[]
+   * repeated uint32 track = 3 [packed=true]; // 1-based index into record list, 0 == missing
+   * repeated Record records = 4; // List<Record>
+   * uint32 ndups = 5; // duplicates found when creating
+   * }
+   */
+  static SparseArray<Record> readSparseArray(byte[] b) throws com.google.protobuf.InvalidProtocolBufferException {
+    GribCollectionProto.SparseArray proto = GribCollectionProto.SparseArray.parseFrom(b);
+
+    int nsizes = proto.getSizeCount();
+    int[] size = new int[nsizes];
+    for (int i = 0; i < nsizes; i++)
+      size[i] = proto.getSize(i);
+
+    int ntrack = proto.getTrackCount();
+    int[] track = new int[ntrack];
+    for (int i = 0; i < ntrack; i++)
+      track[i] = proto.getTrack(i);
+
+    int ndups = proto.getNdups();
+    return new SparseArray<>(size, track, new RecordList(proto), ndups);
+  }
+
+  /**
+   * The records of a SparseArray read from the index, kept in an array for each field rather than as Record objects,
+   * which take about twice the memory. A Record is made when it is asked for.
+   */
+  private static class RecordList extends AbstractList<Record> implements RandomAccess {
+    private final int[] fileno;
+    private final long[] pos;
+    private final int[] bmsOffset;
+    private final int[] drsOffset;
+
+    RecordList(GribCollectionProto.SparseArray proto) {
+      int n = proto.getRecordsCount();
+      fileno = new int[n];
+      pos = new long[n];
+      bmsOffset = new int[n];
+      drsOffset = new int[n];
+      for (int i = 0; i < n; i++) {
+        GribCollectionProto.Record pr = proto.getRecords(i);
+        fileno[i] = pr.getFileno();
+        pos[i] = pr.getStartPos();
+        bmsOffset[i] = pr.getBmsOffset();
+        drsOffset[i] = pr.getDrsOffset();
+      }
+    }
+
+    @Override
+    public Record get(int index) {
+      return new Record(fileno[index], pos[index], bmsOffset[index], drsOffset[index]);
+    }
+
+    @Override
+    public int size() {
+      return fileno.length;
+    }
+  }
+
   @Immutable
   public static class Record {
     public final int fileno; // which file
@@ -24,10 +24,21 @@ import ucar.nc2.grib.grib2.Grib2Record;
 import ucar.nc2.grib.grib2.Grib2RecordScanner;
 import ucar.nc2.grib.grib2.table.Grib2Tables;
 import ucar.nc2.util.Misc;
+import ucar.unidata.io.InMemoryRandomAccessFile;
 import ucar.unidata.io.RandomAccessFile;
 import javax.annotation.concurrent.Immutable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
 
 /**
  * Grib Data Reader.
@@ -40,6 +51,76 @@ import java.util.*;
 public abstract class GribDataReader {
   private static final Logger logger = LoggerFactory.getLogger(GribDataReader.class);
 
+  // System property names for -D flags: number of threads used to decode records, shared by all reads, default 1
+  // (decode in the reading thread), and the most records of one read that are decoded at the same time
+  static final String DECODETHREADS = "unidata.grib.decode.threads";
+  static final String DECODEPERREQUEST = "unidata.grib.decode.perRequest";
+  // System property names for -D flags: size in bytes of the decoded record cache, default 0 (no cache), and its
+  // storage
+  static final String RECORDCACHESIZE = "unidata.grib.recordcache.size";
+  static final String RECORDCACHESTORAGE = "unidata.grib.recordcache.storage";
+
+  private static int decodeThreads = Integer.getInteger(DECODETHREADS, 1);
+  private static int decodePerRequest = Integer.getInteger(DECODEPERREQUEST, 0);
+  private static ForkJoinPool decodePool;
+  private static volatile GribRecordCache recordCache = makeRecordCache();
+
+  private static GribRecordCache makeRecordCache() {
+    long size = Long.getLong(RECORDCACHESIZE, 0);
+    if (size <= 0)
+      return null;
+    GribRecordCache.Storage storage = GribRecordCache.Storage.HEAP;
+    String s = System.getProperty(RECORDCACHESTORAGE);
+    if (s != null) {
+      try {
+        storage = GribRecordCache.Storage.valueOf(s.toUpperCase());
+      } catch (IllegalArgumentException e) {
+        logger.warn(String.format("-D%s must be one of %s", RECORDCACHESTORAGE,
+            Arrays.toString(GribRecordCache.Storage.values())));
+      }
+    }
+    return new GribRecordCache("GribRecordCache", size, storage);
+  }
+
+  /**
+   * Set the process-wide cache of decoded records, used by all GRIB collections.
+   *
+   * @param cache the cache, or null for no cache
+   */
+  public static void setRecordCache(GribRecordCache cache) {
+    recordCache = cache;
+  }
+
+  /** Get the process-wide cache of decoded records, or null if none. */
+  public static GribRecordCache getRecordCache() {
+    return recordCache;
+  }
+
+  /**
+   * Set the number of threads used to decode records. With more than one, the records of a read are decoded in
+   * parallel on a pool shared by all reads, and each read uses at most perRequest of its threads at a time, so one
+   * large read cannot hold up the others.
+   *
+   * @param nthreads number of threads; 1 (the default) means decode in the calling thread
+   * @param perRequest most records of one read decoded at the same time; 0 or less means half of nthreads
+   */
+  public static synchronized void setDecodeThreads(int nthreads, int perRequest) {
+    // reads in progress keep submitting to the old pool, so it is not shut down. its threads exit once idle.
+    decodePool = null;
+    decodeThreads = nthreads;
+    decodePerRequest = perRequest;
+  }
+
+  private static synchronized ForkJoinPool getDecodePool() {
+    if (decodePool == null && decodeThreads > 1)
+      decodePool = new ForkJoinPool(decodeThreads);
+    return decodePool;
+  }
+
+  private static synchronized int getDecodePerRequest() {
+    return decodePerRequest > 0 ? Math.min(decodePerRequest, decodeThreads) : (decodeThreads + 1) / 2;
+  }
+
 
   public static GribDataReader factory(GribCollectionImmutable gribCollection,
       GribCollectionImmutable.VariableIndex vindex) {
@@ -49,7 +130,19 @@ public abstract class GribDataReader {
       return new Grib2DataReader(gribCollection, vindex);
   }
 
-  protected abstract float[] readData(RandomAccessFile rafData, DataRecord dr) throws IOException;
+  /**
+   * Read and decode the data of a record.
+   *
+   * @param rafData read from this file
+   * @param dr the record
+   * @param startPos where the record's GRIB message starts in rafData: dr.record.pos, or 0 if the message was read
+   *        into memory
+   * @return the data for the full (x,y) grid
+   */
+  protected abstract float[] readData(RandomAccessFile rafData, DataRecord dr, long startPos) throws IOException;
+
+  /** The length in bytes of the GRIB message starting at startPos. May move the file pointer. */
+  protected abstract long readMessageLength(RandomAccessFile rafData, long startPos) throws IOException;
 
   protected abstract void show(RandomAccessFile rafData, long dataPos) throws IOException;
 
@@ -62,6 +155,8 @@ public abstract class GribDataReader {
   protected final GribCollectionImmutable gribCollection;
   private final GribCollectionImmutable.VariableIndex vindex;
   private final List<DataRecord> records = new ArrayList<>();
+  private RandomAccessFile cacheRaf; // the data file of cacheFileKey
+  private GribRecordCache.FileKey cacheFileKey;
 
   protected GribDataReader(GribCollectionImmutable gribCollection, GribCollectionImmutable.VariableIndex vindex) {
     this.gribCollection = gribCollection;
@@ -237,6 +332,13 @@ public abstract class GribDataReader {
   private void read(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
 
+    ForkJoinPool pool = getDecodePool();
+    if (pool != null && canReadParallel()) {
+      readParallel(dataReceiver, pool, (dr, last) -> dr.record.fileno == last.record.fileno,
+          dr -> gribCollection.getDataRaf(dr.record.fileno));
+      return;
+    }
+
     int currFile = -1;
     RandomAccessFile rafData = null;
     try {
@@ -270,7 +372,7 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
+        float[] data = readRecord(rafData, dr);
         GdsHorizCoordSys hcs = vindex.group.getGdsHorizCoordSys();
         dataReceiver.addData(data, dr.resultIndex, hcs.nx);
       }
@@ -290,6 +392,16 @@ public abstract class GribDataReader {
   private void readPartitioned(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
 
+    ForkJoinPool pool = getDecodePool();
+    if (pool != null && canReadParallel()) {
+      readParallel(dataReceiver, pool,
+          (dr, last) -> ((PartitionCollectionImmutable.DataRecord) dr)
+              .usesSameFile((PartitionCollectionImmutable.DataRecord) last),
+          dr -> ((PartitionCollectionImmutable.DataRecord) dr).usePartition
+              .getRaf(((PartitionCollectionImmutable.DataRecord) dr).partno, dr.record.fileno));
+      return;
+    }
+
     PartitionCollectionImmutable.DataRecord lastRecord = null;
     RandomAccessFile rafData = null;
     try {
@@ -322,7 +434,7 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
+        float[] data = readRecord(rafData, dr);
         GdsHorizCoordSys hcs = dr.hcs;
         dataReceiver.addData(data, dr.resultIndex, hcs.nx);
       }
@@ -333,6 +445,177 @@ public abstract class GribDataReader {
     }
   }
 
+  // read and decode the record, or get it from the record cache
+  private float[] readRecord(RandomAccessFile rafData, DataRecord dr) throws IOException {
+    GribRecordCache cache = recordCache;
+    if (cache == null)
+      return readData(rafData, dr, dr.record.pos);
+    if (rafData != cacheRaf) {
+      cacheFileKey = GribRecordCache.FileKey.of(rafData);
+      cacheRaf = rafData;
+    }
+    float[] data = cache.get(cacheFileKey, dr.record.pos, dr.record.drsOffset);
+    if (data == null) {
+      data = readData(rafData, dr, dr.record.pos);
+      cache.put(cacheFileKey, dr.record.pos, dr.record.drsOffset, data);
+    }
+    return data;
+  }
+
+  // the debugging and validation hooks need the records read one at a time
+  private boolean canReadParallel() {
+    return records.size() > 1 && validator == null && !show && !Grib.debugIndexOnly && !Grib.debugGbxIndexOnly;
+  }
+
+  private interface DataRafOpener {
+    RandomAccessFile open(DataRecord dr) throws IOException;
+  }
+
+  /**
+   * Decode the sorted records on the shared pool, at most getDecodePerRequest() at a time.
+   * Each data file is opened once, in this thread, which reads the message lengths from it, and takes the records in
+   * the record cache from there. The workers read the bytes of each message with positional reads, which do not use
+   * the file pointer, decode them from memory, and write them to the dataReceiver, where each record has its own
+   * resultIndex.
+   *
+   * @param sameFile is the record in the same data file as the previous one
+   * @param opener open the data file of the record
+   */
+  private void readParallel(DataReceiverIF dataReceiver, ForkJoinPool pool,
+      BiPredicate<DataRecord, DataRecord> sameFile, DataRafOpener opener) throws IOException {
+    Semaphore permits = new Semaphore(getDecodePerRequest());
+    AtomicBoolean failed = new AtomicBoolean();
+    List<Future<Void>> futures = new ArrayList<>();
+    DataFile dataFile = null;
+    DataRecord lastRecord = null;
+    try {
+      for (DataRecord dr : records) {
+        if (failed.get())
+          break;
+        if (dataFile == null || !sameFile.test(dr, lastRecord)) {
+          if (dataFile != null)
+            dataFile.release();
+          dataFile = null; // dont release it again if the open fails
+          dataFile = new DataFile(opener.open(dr));
+        }
+        lastRecord = dr;
+
+        if (dr.record.pos == GribCollectionMutable.MISSING_RECORD)
+          continue;
+
+        GribRecordCache cache = recordCache;
+        String location = dataFile.raf.getLocation();
+        GribRecordCache.FileKey fileKey = (cache == null) ? null : dataFile.getCacheKey();
+        if (cache != null) {
+          float[] data = cache.get(fileKey, dr.record.pos, dr.record.drsOffset);
+          if (data != null) {
+            dataReceiver.addData(data, dr.resultIndex, dr.hcs.nx);
+            continue;
+          }
+        }
+
+        long length = readMessageLength(dataFile.raf, dr.record.pos);
+        if (length <= 0 || length > Integer.MAX_VALUE)
+          throw new IOException("Bad GRIB message length " + length + " at " + dr.record.pos + " in "
+              + dataFile.raf.getLocation());
+        try {
+          permits.acquire();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted reading " + dataFile.raf.getLocation());
+        }
+
+        DataFile df = dataFile;
+        df.acquire();
+        Callable<Void> task = () -> {
+          try {
+            if (failed.get())
+              return null;
+            byte[] message = new byte[(int) length];
+            df.raf.readFully(dr.record.pos, message, 0, message.length);
+            float[] data;
+            try (RandomAccessFile rafMessage = new InMemoryRandomAccessFile(location, message)) {
+              rafMessage.order(RandomAccessFile.BIG_ENDIAN);
+              data = readData(rafMessage, dr, 0);
+            }
+            if (cache != null)
+              cache.put(fileKey, dr.record.pos, dr.record.drsOffset, data);
+            dataReceiver.addData(data, dr.resultIndex, dr.hcs.nx);
+            return null;
+          } catch (Throwable t) {
+            failed.set(true);
+            throw t;
+          } finally {
+            df.release();
+            permits.release();
+          }
+        };
+        try {
+          futures.add(pool.submit(task));
+        } catch (RuntimeException e) {
+          df.release(); // the task never ran
+          permits.release();
+          throw e;
+        }
+      }
+
+    } finally {
+      if (dataFile != null)
+        dataFile.release(); // the last worker using it closes it
+    }
+
+    // the workers write into dataReceiver, so wait for all of them
+    Throwable error = null;
+    boolean interrupted = false;
+    for (Future<Void> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          if (error == null)
+            error = e.getCause();
+          break;
+        }
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+    if (error != null) {
+      Throwables.throwIfInstanceOf(error, IOException.class);
+      Throwables.throwIfUnchecked(error);
+      throw new IOException(error);
+    }
+  }
+
+  // A data file used by the workers of a parallel read, closed when the last of them is done with it.
+  private static class DataFile {
+    final RandomAccessFile raf;
+    private final AtomicInteger users = new AtomicInteger(1);
+    private GribRecordCache.FileKey cacheKey; // lazy, only used in the reading thread
+
+    DataFile(RandomAccessFile raf) {
+      this.raf = raf;
+    }
+
+    GribRecordCache.FileKey getCacheKey() throws IOException {
+      if (cacheKey == null)
+        cacheKey = GribRecordCache.FileKey.of(raf);
+      return cacheKey;
+    }
+
+    void acquire() {
+      users.incrementAndGet();
+    }
+
+    void release() throws IOException {
+      if (users.decrementAndGet() == 0)
+        raf.close();
+    }
+  }
+
   public static class DataRecord implements Comparable<DataRecord> {
     int resultIndex; // index into the result array
     final GribCollectionImmutable.Record record;
@@ -467,14 +750,22 @@ public abstract class GribDataReader {
     }
 
     @Override
-    protected float[] readData(RandomAccessFile rafData, GribDataReader.DataRecord dr) throws IOException {
+    protected float[] readData(RandomAccessFile rafData, GribDataReader.DataRecord dr, long startPos)
+        throws IOException {
       GdsHorizCoordSys hcs = dr.hcs;
-      long dataPos = dr.record.pos + dr.record.drsOffset;
-      long bmsPos = (dr.record.bmsOffset > 0) ? dr.record.pos + dr.record.bmsOffset : 0;
+      long dataPos = startPos + dr.record.drsOffset;
+      long bmsPos = (dr.record.bmsOffset > 0) ? startPos + dr.record.bmsOffset : 0;
       return Grib2Record.readData(rafData, dataPos, bmsPos, hcs.gdsNumberPoints, hcs.getScanMode(), hcs.nxRaw,
           hcs.nyRaw, hcs.nptsInLine);
     }
 
+    @Override
+    protected long readMessageLength(RandomAccessFile rafData, long startPos) throws IOException {
+      ByteBuffer bb = ByteBuffer.allocate(8); // octets 9-16 of the indicator section
+      rafData.readFully(startPos + 8, bb);
+      return bb.getLong(0);
+    }
+
     @Override
     protected void show(RandomAccessFile rafData, long pos) throws IOException {
       Grib2Record gr = Grib2RecordScanner.findRecordByDrspos(rafData, pos);
@@ -503,8 +794,13 @@ public abstract class GribDataReader {
     }
 
     @Override
-    protected float[] readData(RandomAccessFile rafData, DataRecord dr) throws IOException {
-      return Grib1Record.readData(rafData, dr.record.pos);
+    protected float[] readData(RandomAccessFile rafData, DataRecord dr, long startPos) throws IOException {
+      return Grib1Record.readData(rafData, startPos);
+    }
+
+    @Override
+    protected long readMessageLength(RandomAccessFile rafData, long startPos) throws IOException {
+      return Grib1Record.readMessageLength(rafData, startPos);
     }
 
     @Override
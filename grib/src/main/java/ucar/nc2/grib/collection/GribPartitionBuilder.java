@@ -6,6 +6,7 @@
 package ucar.nc2.grib.collection;
 
 import com.google.protobuf.ByteString;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import javax.annotation.Nullable;
 import thredds.featurecollection.FeatureCollectionConfig;
@@ -43,6 +44,7 @@ import java.util.*;
  * @since 2/21/14
  */
 abstract class GribPartitionBuilder {
+  static final int currentVersion = 2; // 2: the partitions of a variable are in the record section
 
   private final PartitionManager partitionManager; // defines the partition
   protected final String name; // collection name
@@ -507,7 +509,8 @@ abstract class GribPartitionBuilder {
       //// header message
       raf.write(getMagicStart().getBytes(StandardCharsets.UTF_8));
       raf.writeInt(getVersion());
-      raf.writeLong(0); // no record section
+      long lenPos = raf.getFilePointer();
+      raf.writeLong(0); // save space to write the length of the record section
 
       /*
        * message GribCollection {
@@ -541,6 +544,7 @@ abstract class GribPartitionBuilder {
 
       GribCollectionProto.GribCollection.Builder indexBuilder = GribCollectionProto.GribCollection.newBuilder();
       indexBuilder.setName(pc.getName());
+      indexBuilder.setVersion(currentVersion);
       Path topDir = pc.directory.toPath();
       String pathS = StringUtil2.replace(topDir.toString(), '\\', "/");
       indexBuilder.setTopDir(pathS);
@@ -571,9 +575,14 @@ abstract class GribPartitionBuilder {
 
       indexBuilder.setMasterRuntime(writer.writeCoordProto(pc.masterRuntime));
 
-      // dataset
+      // dataset; the partitions of each variable are written to the record section
       for (GribCollectionMutable.Dataset ds : pc.datasets)
-        indexBuilder.addDataset(writeDatasetProto(pc, ds));
+        indexBuilder.addDataset(writeDatasetProto(pc, ds, raf));
+
+      long pos = raf.getFilePointer();
+      raf.seek(lenPos);
+      raf.writeLong(pos - lenPos - 8);
+      raf.seek(pos); // back to the output.
 
       // extensions
       if (pc.run2part != null) {
@@ -608,15 +617,15 @@ abstract class GribPartitionBuilder {
    * repeated Group groups = 2;
    * }
    */
-  private GribCollectionProto.Dataset writeDatasetProto(PartitionCollectionMutable pc, GribCollectionMutable.Dataset ds)
-      throws IOException {
+  private GribCollectionProto.Dataset writeDatasetProto(PartitionCollectionMutable pc, GribCollectionMutable.Dataset ds,
+      RandomAccessFile raf) throws IOException {
     GribCollectionProto.Dataset.Builder b = GribCollectionProto.Dataset.newBuilder();
 
     GribCollectionProto.Dataset.Type type = GribCollectionProto.Dataset.Type.valueOf(ds.gctype.toString());
     b.setType(type);
 
     for (GribCollectionMutable.GroupGC group : ds.groups)
-      b.addGroups(writeGroupProto(pc, group));
+      b.addGroups(writeGroupProto(pc, group, raf));
 
     return b.build();
   }
@@ -629,15 +638,15 @@ abstract class GribPartitionBuilder {
    * repeated uint32 fileno = 4 [packed=true]; // the component files that are in this group, key into gc.mfiles
    * }
    */
-  private GribCollectionProto.Group writeGroupProto(PartitionCollectionMutable pc, GribCollectionMutable.GroupGC g)
-      throws IOException {
+  private GribCollectionProto.Group writeGroupProto(PartitionCollectionMutable pc, GribCollectionMutable.GroupGC g,
+      RandomAccessFile raf) throws IOException {
     GribCollectionProto.Group.Builder b = GribCollectionProto.Group.newBuilder();
 
     b.setGds(
         GribCollectionWriter.writeGdsProto(g.horizCoordSys.getRawGds(), g.horizCoordSys.getPredefinedGridDefinition()));
 
     for (GribCollectionMutable.VariableIndex vb : g.variList) {
-      b.addVariables(writeVariableProto((PartitionCollectionMutable.VariableIndexPartitioned) vb));
+      b.addVariables(writeVariableProto((PartitionCollectionMutable.VariableIndexPartitioned) vb, raf));
     }
 
     for (Coordinate coord : g.coords) {
@@ -676,8 +685,8 @@ abstract class GribPartitionBuilder {
    * bytes pds = 2; // raw pds
    * repeated uint32 ids = 3 [packed=true]; // extra info not in pds; grib2 id section
    * 
-   * uint64 recordsPos = 4; // offset of SparseArray message for this Variable
-   * uint32 recordsLen = 5; // size of SparseArray message for this Variable
+   * uint64 recordsPos = 4; // offset of the partitions of this Variable in the record section
+   * uint32 recordsLen = 5; // size of the partitions of this Variable, PARTITION_ENTRY_SIZE bytes each
    * 
    * repeated uint32 coordIdx = 6 [packed=true]; // indexes into Group.coords
    * 
@@ -686,11 +695,12 @@ abstract class GribPartitionBuilder {
    * uint32 nrecords = 9;
    * uint32 missing = 10;
    * 
-   * // partition only
+   * // partition only, before GribNPartition3Index
    * repeated PartitionVariable partVariable = 100;
    * }
    */
-  private GribCollectionProto.Variable writeVariableProto(PartitionCollectionMutable.VariableIndexPartitioned vp) {
+  private GribCollectionProto.Variable writeVariableProto(PartitionCollectionMutable.VariableIndexPartitioned vp,
+      RandomAccessFile raf) throws IOException {
 
     GribCollectionProto.Variable.Builder b = GribCollectionProto.Variable.newBuilder();
 
@@ -701,8 +711,18 @@ abstract class GribPartitionBuilder {
     b.addIds(vp.center);
     b.addIds(vp.subcenter);
 
-    b.setRecordsPos(vp.recordsPos);
-    b.setRecordsLen(vp.recordsLen);
+    // the partitions are written to the record section, so they can be read when needed, not when the index is opened
+    vp.readPartitions();
+    int nparts = (vp.partnoSA == null) ? 0 : vp.nparts;
+    ByteBuffer bb = ByteBuffer.allocate(nparts * PartitionCollectionMutable.PARTITION_ENTRY_SIZE);
+    for (int i = 0; i < nparts; i++) {
+      bb.putInt(vp.partnoSA.get(i));
+      bb.putInt(vp.groupnoSA.get(i));
+      bb.putInt(vp.varnoSA.get(i));
+    }
+    b.setRecordsPos(raf.getFilePointer());
+    b.setRecordsLen(bb.capacity());
+    raf.write(bb.array());
 
     for (int idx : vp.coordIndex)
       b.addCoordIdx(idx);
@@ -723,43 +743,9 @@ abstract class GribPartitionBuilder {
      * }
      */
 
-    // extensions
-    if (vp.nparts > 0 && vp.partnoSA != null) {
-      for (int i = 0; i < vp.nparts; i++) // PartitionCollection.PartitionForVariable2D pvar :
-                                          // vp.getPartitionForVariable2D())
-        b.addPartVariable(writePartitionVariableProto(vp.partnoSA.get(i), vp.groupnoSA.get(i), vp.varnoSA.get(i),
-            vp.nrecords, vp.ndups, vp.nmissing)); // LOOK was it finished ??
-    }
-
     return b.build();
   }
 
-  /*
-   * message PartitionVariable {
-   * uint32 groupno = 1;
-   * uint32 varno = 2;
-   * uint32 flag = 3;
-   * uint32 partno = 4;
-   * 
-   * // optionally keep stats
-   * uint32 ndups = 8;
-   * uint32 nrecords = 9;
-   * uint32 missing = 10;
-   * }
-   */
-  private GribCollectionProto.PartitionVariable writePartitionVariableProto(int partno, int groupno, int varno,
-      int nrecords, int ndups, int nmissing) {
-    GribCollectionProto.PartitionVariable.Builder pb = GribCollectionProto.PartitionVariable.newBuilder();
-    pb.setPartno(partno);
-    pb.setGroupno(groupno);
-    pb.setVarno(varno);
-    pb.setNdups(ndups);
-    pb.setNrecords(nrecords);
-    pb.setMissing(nmissing);
-
-    return pb.build();
-  }
-
   /*
    * message Partition {
    * string name = 1; // name is used in TDS - eg the subdirectory when generated by TimePartitionCollections
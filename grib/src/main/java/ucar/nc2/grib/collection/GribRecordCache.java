@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Formatter;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * A process-wide cache of decoded GRIB records, so that repeated reads of the same records, for example the latest
+ * analysis time of a popular variable, do not read and decode them again.
+ * Records are keyed by (data file location, last modified, length, record position, drs offset), so a data file
+ * that is rewritten or appended to does not get the records of the previous version. The cache is bounded by the
+ * total number of bytes held. The records of a collection are removed when its index is rebuilt by
+ * {@link GribCdmIndex#updateGribCollection}.
+ * <p/>
+ * Enable with {@link GribDataReader#setRecordCache(GribRecordCache)}, or with the system properties
+ * {@value GribDataReader#RECORDCACHESIZE} and {@value GribDataReader#RECORDCACHESTORAGE}.
+ *
+ * @since 5.4
+ */
+@ThreadSafe
+public class GribRecordCache {
+
+  /** How the decoded records are held. */
+  public enum Storage {
+    /** on the heap */
+    HEAP,
+    /** on the heap, softly referenced, so that the garbage collector may clear them when memory is low */
+    SOFT,
+    /** off the heap, in direct buffers */
+    OFF_HEAP
+  }
+
+  private final String name;
+  private final long maxBytes;
+  private final Storage storage;
+  private final Cache<RecordKey, FloatBuffer> cache;
+
+  /**
+   * Constructor.
+   *
+   * @param name name of the cache, used in showStats()
+   * @param maxBytes maximum number of bytes to hold
+   * @param storage how the records are held
+   */
+  public GribRecordCache(String name, long maxBytes, Storage storage) {
+    this.name = name;
+    this.maxBytes = maxBytes;
+    this.storage = storage;
+    CacheBuilder<RecordKey, FloatBuffer> builder = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+        .weigher((RecordKey key, FloatBuffer data) -> 4 * data.capacity()).recordStats();
+    if (storage == Storage.SOFT)
+      builder.softValues();
+    this.cache = builder.build();
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public Storage getStorage() {
+    return storage;
+  }
+
+  /** The number of bytes currently held. */
+  public long getSizeInBytes() {
+    return cache.asMap().values().stream().mapToLong(data -> 4L * data.capacity()).sum();
+  }
+
+  /** Hit, miss and eviction counts. */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Get a decoded record.
+   *
+   * @param file the data file version
+   * @param pos position of the record in the file
+   * @param drsOffset offset of the data representation section from pos
+   * @return the record's data, which must not be modified, or null if not in the cache
+   */
+  @Nullable
+  float[] get(FileKey file, long pos, int drsOffset) {
+    FloatBuffer data = cache.getIfPresent(new RecordKey(file, pos, drsOffset));
+    if (data == null)
+      return null;
+    if (data.hasArray())
+      return data.array();
+    float[] result = new float[data.capacity()];
+    data.duplicate().get(result);
+    return result;
+  }
+
+  /**
+   * Add a decoded record. The data must not be changed afterwards.
+   *
+   * @param file the data file version
+   * @param pos position of the record in the file
+   * @param drsOffset offset of the data representation section from pos
+   * @param data the record's data
+   */
+  void put(FileKey file, long pos, int drsOffset, float[] data) {
+    FloatBuffer value;
+    if (storage == Storage.OFF_HEAP) {
+      value = ByteBuffer.allocateDirect(4 * data.length).order(ByteOrder.nativeOrder()).asFloatBuffer();
+      value.put(data);
+      value.flip();
+    } else {
+      value = FloatBuffer.wrap(data);
+    }
+    cache.put(new RecordKey(file, pos, drsOffset), value);
+  }
+
+  /** Remove all records of the given data file, of every version of the file. */
+  public void invalidate(String location) {
+    cache.asMap().keySet().removeIf(key -> key.file.location.equals(location));
+  }
+
+  /** Remove all records of the data files in the given directory, or its subdirectories. */
+  public void invalidateDirectory(String dir) {
+    String prefix = normalize(dir);
+    String prefixDir = prefix.endsWith("/") ? prefix : prefix + "/";
+    cache.asMap().keySet().removeIf(key -> normalize(key.file.location).startsWith(prefixDir));
+  }
+
+  // absolute path with / separators, if location is a local file
+  private static String normalize(String location) {
+    try {
+      return Paths.get(location).toAbsolutePath().normalize().toString().replace('\\', '/');
+    } catch (InvalidPathException e) {
+      return location.replace('\\', '/');
+    }
+  }
+
+  /** Remove all records. */
+  public void clearCache() {
+    cache.invalidateAll();
+  }
+
+  /** Show the number of cached records for each data file. */
+  public void showCache(Formatter f) {
+    Map<String, Integer> counts = new TreeMap<>();
+    for (RecordKey key : cache.asMap().keySet()) {
+      counts.merge(key.file.location, 1, Integer::sum);
+    }
+    f.format("%s: %d files%n", name, counts.size());
+    counts.forEach((location, count) -> f.format("  %s nrecords=%d%n", location, count));
+  }
+
+  public void showStats(Formatter f) {
+    CacheStats stats = cache.stats();
+    f.format("%s: maxBytes=%d storage=%s nrecords=%d bytes=%d%n", name, maxBytes, storage, cache.size(),
+        getSizeInBytes());
+    f.format("  hits=%d misses=%d evictions=%d hitRate=%.3f%n", stats.hitCount(), stats.missCount(),
+        stats.evictionCount(), stats.hitRate());
+  }
+
+  /** Identifies a version of a data file. */
+  static class FileKey {
+    private final String location;
+    private final long lastModified;
+    private final long length;
+
+    FileKey(String location, long lastModified, long length) {
+      this.location = location;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+
+    /** The current version of the file. */
+    static FileKey of(RandomAccessFile raf) throws IOException {
+      return new FileKey(raf.getLocation(), raf.getLastModified(), raf.length());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      FileKey fileKey = (FileKey) o;
+      return lastModified == fileKey.lastModified && length == fileKey.length && location.equals(fileKey.location);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(location, lastModified, length);
+    }
+  }
+
+  private static class RecordKey {
+    private final FileKey file;
+    private final long pos;
+    private final int drsOffset;
+    private final int hashCode;
+
+    RecordKey(FileKey file, long pos, int drsOffset) {
+      this.file = file;
+      this.pos = pos;
+      this.drsOffset = drsOffset;
+      this.hashCode = 31 * (31 * file.hashCode() + Long.hashCode(pos)) + drsOffset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      RecordKey recordKey = (RecordKey) o;
+      return pos == recordKey.pos && drsOffset == recordKey.drsOffset && file.equals(recordKey.file);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
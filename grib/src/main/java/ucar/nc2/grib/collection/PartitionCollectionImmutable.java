@@ -276,11 +276,14 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
   @Immutable
   public class VariableIndexPartitioned extends GribCollectionImmutable.VariableIndex {
     final int nparts;
-    final SmartArrayInt partnoSA; // conceptually int[nparts] : index into PartitionCollectionImmutable.partitions[] ->
-                                  // Partition
-    final SmartArrayInt groupnoSA; // once you have the partition, which group in that partition's dataset?
-                                   // Partition.Dataset.Group[] -> Group
-    final SmartArrayInt varnoSA; // once you have the group, which variable? Group[] -> Variable
+    // these are read on demand from the index if partitionsPos is not zero, see readPartitions()
+    private SmartArrayInt partnoSA; // conceptually int[nparts] : index into PartitionCollectionImmutable.partitions[]
+                                    // -> Partition
+    private SmartArrayInt groupnoSA; // once you have the partition, which group in that partition's dataset?
+                                     // Partition.Dataset.Group[] -> Group
+    private SmartArrayInt varnoSA; // once you have the group, which variable? Group[] -> Variable
+    private final long partitionsPos;
+    private final int partitionsLen;
 
     // partition only
     // final SmartArrayInt time2runtime; // oneD only: for each timeIndex, which runtime coordinate does it use? 1-based
@@ -298,6 +301,18 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
       this.partnoSA = pother.partnoSA;
       this.groupnoSA = pother.groupnoSA;
       this.varnoSA = pother.varnoSA;
+      this.partitionsPos = pother.partitionsPos;
+      this.partitionsLen = pother.partitionsLen;
+    }
+
+    // first time, read the partitions and keep in memory
+    synchronized void readPartitions() throws IOException {
+      if (partnoSA != null || partitionsPos == 0)
+        return;
+      SmartArrayInt[] parts = PartitionCollectionMutable.readPartitions(indexFilename, partitionsPos, partitionsLen);
+      this.partnoSA = parts[0];
+      this.groupnoSA = parts[1];
+      this.varnoSA = parts[2];
     }
 
     public int getNparts() {
@@ -310,6 +325,12 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
 
     public void show(Formatter sb) {
       sb.format("VariableIndexPartitioned%n");
+      try {
+        readPartitions();
+      } catch (IOException e) {
+        sb.format(" failed to read partitions: %s%n", e.getMessage());
+        return;
+      }
       sb.format(" partno=");
       this.partnoSA.show(sb);
       sb.format("%n groupno=");
@@ -491,6 +512,7 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
 
       if (vip == null)
         throw new IllegalStateException();
+      vip.readPartitions();
 
       int partWant = vip.partnoSA.findIdx(partno); // which partition ? index into
                                                    // PartitionCollectionImmutable.partitions[]. variable doesnt have to
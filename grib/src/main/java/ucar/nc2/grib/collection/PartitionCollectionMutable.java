@@ -14,10 +14,13 @@ import ucar.nc2.dataset.DatasetUrl;
 import ucar.nc2.grib.GribIndexCache;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.util.cache.SmartArrayInt;
+import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.util.StringUtil2;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.*;
 
 /**
@@ -46,6 +49,9 @@ public class PartitionCollectionMutable extends GribCollectionMutable {
     SmartArrayInt partnoSA;
     SmartArrayInt groupnoSA;
     SmartArrayInt varnoSA;
+    // if partitionsPos is not zero, the partitions are read on demand from the record section of the index
+    long partitionsPos;
+    int partitionsLen;
 
     List<PartitionForVariable2D> partList; // used only when creating, then discarded in finish
 
@@ -54,24 +60,6 @@ public class PartitionCollectionMutable extends GribCollectionMutable {
       this.nparts = nparts;
     }
 
-    public void setPartitions(List<GribCollectionProto.PartitionVariable> pvList) {
-      int[] partno = new int[nparts];
-      int[] groupno = new int[nparts];
-      int[] varno = new int[nparts];
-      int count = 0;
-      for (GribCollectionProto.PartitionVariable part : pvList) {
-        partno[count] = part.getPartno();
-        groupno[count] = part.getGroupno();
-        varno[count] = part.getVarno();
-        count++;
-      }
-      this.partnoSA = new SmartArrayInt(partno);
-      this.groupnoSA = new SmartArrayInt(groupno);
-      this.varnoSA = new SmartArrayInt(varno);
-
-      partList = null; // GC
-    }
-
     public void finish() {
       if (partList == null)
         return; // nothing to do
@@ -95,6 +83,16 @@ public class PartitionCollectionMutable extends GribCollectionMutable {
       partList = null; // GC
     }
 
+    /** Read the partitions from the index, if they were not read with the variable. */
+    synchronized void readPartitions() throws IOException {
+      if (partnoSA != null || partitionsPos == 0)
+        return;
+      SmartArrayInt[] parts = PartitionCollectionMutable.readPartitions(indexFilename, partitionsPos, partitionsLen);
+      this.partnoSA = parts[0];
+      this.groupnoSA = parts[1];
+      this.varnoSA = parts[2];
+    }
+
     // only used by PartitionBuilder, not PartitionBuilderFromIndex
     void addPartition(int partno, int groupno, int varno, int ndups, int nrecords, int nmissing,
         GribCollectionMutable.VariableIndex vi) {
@@ -110,6 +108,12 @@ public class PartitionCollectionMutable extends GribCollectionMutable {
     public String toStringComplete() {
       Formatter sb = new Formatter();
       sb.format("VariableIndexPartitioned%n");
+      try {
+        readPartitions();
+      } catch (IOException e) {
+        sb.format(" failed to read partitions: %s%n", e.getMessage());
+        return sb.toString();
+      }
       sb.format(" partno=");
       this.partnoSA.show(sb);
       sb.format("%n groupno=");
@@ -132,6 +136,34 @@ public class PartitionCollectionMutable extends GribCollectionMutable {
 
   }
 
+  // size of the (partno, groupno, varno) of each partition of a variable, in the record section of the index
+  static final int PARTITION_ENTRY_SIZE = 12;
+
+  /**
+   * Read the partitions of a variable from the record section of a partition index,
+   * where each partition is a big-endian int partno, groupno and varno.
+   *
+   * @return partno, groupno and varno arrays
+   */
+  static SmartArrayInt[] readPartitions(String indexFilename, long pos, int len) throws IOException {
+    byte[] b = new byte[len];
+    try (RandomAccessFile indexRaf = RandomAccessFile.acquire(indexFilename)) {
+      indexRaf.readFully(pos, b, 0, len);
+    }
+
+    int nparts = len / PARTITION_ENTRY_SIZE;
+    int[] partno = new int[nparts];
+    int[] groupno = new int[nparts];
+    int[] varno = new int[nparts];
+    IntBuffer ib = ByteBuffer.wrap(b).asIntBuffer();
+    for (int i = 0; i < nparts; i++) {
+      partno[i] = ib.get();
+      groupno[i] = ib.get();
+      varno[i] = ib.get();
+    }
+    return new SmartArrayInt[] {new SmartArrayInt(partno), new SmartArrayInt(groupno), new SmartArrayInt(varno)};
+  }
+
   //////////////////////////////////////////////////////////////////////////////////////////
 
   // wrapper around a GribCollection
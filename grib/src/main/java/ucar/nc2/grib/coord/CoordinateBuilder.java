@@ -18,6 +18,9 @@ public interface CoordinateBuilder<T> {
 
   Object extract(T gr);
 
+  // add a value as returned by extract()
+  void add(Object val);
+
   // must sort values; Coordinate must be immutable
   Coordinate makeCoordinate(List<Object> values);
 
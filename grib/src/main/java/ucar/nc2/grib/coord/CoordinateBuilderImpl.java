@@ -29,6 +29,7 @@ public abstract class CoordinateBuilderImpl<T> implements CoordinateBuilder<T> {
     valSet.addAll(coord.getValues());
   }
 
+  @Override
   public void add(Object val) {
     valSet.add(val);
   }
@@ -6,6 +6,7 @@ package ucar.nc2.grib.coord;
 
 import ucar.ma2.Section;
 import ucar.nc2.util.Indent;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.util.*;
 
@@ -62,6 +63,12 @@ public class CoordinateND<T> {
     private List<CoordinateBuilder<T>> builders;
     private List<Coordinate> coordb = new ArrayList<>();
 
+    // used by addRecordKeys(): the distinct values of each coordinate, numbered in the order found,
+    // and the key of each coordinate value of each record, one column per builder
+    private List<Map<Object, Integer>> keyMaps;
+    private int[][] keys;
+    private int nkeys;
+
     public Builder() {
       builders = new ArrayList<>();
     }
@@ -75,19 +82,145 @@ public class CoordinateND<T> {
         builder.addRecord(gr);
     }
 
+    /**
+     * Add a record to the coordinates, keeping only the keys of its coordinate values, so that the record itself
+     * need not be kept. The keys number the distinct values of each coordinate in the order they are found.
+     * Use finishKeys() to make the SparseArray.
+     */
+    public void addRecordKeys(T gr) {
+      growKeys();
+      for (int i = 0; i < builders.size(); i++) {
+        CoordinateBuilder<T> builder = builders.get(i);
+        builder.addRecord(gr);
+        keys[i][nkeys] = getKey(i, builder.extract(gr));
+      }
+      nkeys++;
+    }
+
+    /**
+     * Add a record by its coordinate values, as returned by the extract() of each builder, like addRecordKeys().
+     * Used for the records of an existing collection index, which are not read again.
+     *
+     * @param values the coordinate values, one for each builder; null for a record that is a duplicate of one added
+     *        later, which is kept only in the content of the SparseArray.
+     */
+    public void addKeys(@Nullable List<Object> values) {
+      growKeys();
+      for (int i = 0; i < builders.size(); i++) {
+        if (values == null) {
+          keys[i][nkeys] = -1;
+        } else {
+          builders.get(i).add(values.get(i));
+          keys[i][nkeys] = getKey(i, values.get(i));
+        }
+      }
+      nkeys++;
+    }
+
+    private void growKeys() {
+      if (keys == null) {
+        keys = new int[builders.size()][100];
+        keyMaps = new ArrayList<>(builders.size());
+        for (int i = 0; i < builders.size(); i++)
+          keyMaps.add(new HashMap<>());
+      }
+      if (nkeys == keys[0].length) {
+        for (int i = 0; i < builders.size(); i++)
+          keys[i] = Arrays.copyOf(keys[i], 2 * nkeys);
+      }
+    }
+
+    private int getKey(int builderIdx, Object val) {
+      Map<Object, Integer> keyMap = keyMaps.get(builderIdx);
+      Integer key = keyMap.get(val);
+      if (key == null) {
+        key = keyMap.size();
+        keyMap.put(val, key);
+      }
+      return key;
+    }
+
     public CoordinateND<T> finish(List<T> records, Formatter info) {
+      finishCoordinates();
+      SparseArray<T> sa = buildSparseArray(records, info);
+      return new CoordinateND<>(coordb, sa);
+    }
+
+    /**
+     * Build the coordinates and the SparseArray from the keys of the records added with addRecordKeys() or addKeys().
+     *
+     * @param things what to keep in the SparseArray for each record, in the order the records were added.
+     */
+    public <R> CoordinateND<R> finishKeys(List<R> things, Formatter info) {
+      assert things.size() == nkeys;
+      finishCoordinates();
+
+      // the index in its coordinate of each key
+      int[][] keyIndex = new int[coordb.size()][];
+      int[] keyColumn = new int[coordb.size()];
+      int count = 0;
+      for (int i = 0; i < builders.size(); i++) {
+        Coordinate coord = builders.get(i).getCoordinate();
+        Map<Object, Integer> keyMap = keyMaps == null ? new HashMap<>() : keyMaps.get(i);
+        if (coord.getType() == Coordinate.Type.time2D) {
+          CoordinateTime2D coord2D = (CoordinateTime2D) coord;
+          int[] runIndex = new int[keyMap.size()];
+          int[] timeIndex = new int[keyMap.size()];
+          int[] index2D = new int[2];
+          for (Map.Entry<Object, Integer> entry : keyMap.entrySet()) {
+            coord2D.getIndex((CoordinateTime2D.Time2D) entry.getKey(), index2D);
+            runIndex[entry.getValue()] = index2D[0];
+            timeIndex[entry.getValue()] = index2D[1];
+          }
+          keyColumn[count] = i;
+          keyIndex[count++] = runIndex;
+          keyColumn[count] = i;
+          keyIndex[count++] = timeIndex;
+
+        } else {
+          Map<Object, Integer> valMap = new HashMap<>(2 * coord.getSize());
+          List<?> values = coord.getValues();
+          for (int j = 0; j < values.size(); j++)
+            valMap.put(values.get(j), j);
+          int[] index = new int[keyMap.size()];
+          for (Map.Entry<Object, Integer> entry : keyMap.entrySet()) {
+            Integer result = valMap.get(entry.getKey());
+            if (result == null)
+              throw new IllegalStateException("value " + entry.getKey() + " not in coordinate " + coord.getName());
+            index[entry.getValue()] = result;
+          }
+          keyColumn[count] = i;
+          keyIndex[count++] = index;
+        }
+      }
+
+      SparseArray.Builder<R> saBuilder = new SparseArray.Builder<>(getSizeArray());
+      int[] index = new int[coordb.size()];
+      for (int n = 0; n < nkeys; n++) {
+        if (keys[0][n] < 0) {
+          saBuilder.addDuplicate(things.get(n));
+          continue;
+        }
+        for (int i = 0; i < index.length; i++)
+          index[i] = keyIndex[i][keys[keyColumn[i]][n]];
+        saBuilder.add(things.get(n), info, index);
+      }
+      keys = null;
+      keyMaps = null;
+
+      return new CoordinateND<>(coordb, saBuilder.finish());
+    }
+
+    private void finishCoordinates() {
       for (CoordinateBuilder builder : builders) {
         Coordinate coord = builder.finish();
         if (coord.getType() == Coordinate.Type.time2D)
           coordb.add(((CoordinateTime2D) coord).getRuntimeCoordinate());
         coordb.add(coord);
       }
-
-      SparseArray<T> sa = buildSparseArray(records, info);
-      return new CoordinateND<>(coordb, sa);
     }
 
-    SparseArray<T> buildSparseArray(List<T> records, Formatter info) {
+    private int[] getSizeArray() {
       int[] sizeArray = new int[coordb.size()];
       for (int i = 0; i < coordb.size(); i++) {
         Coordinate coord = coordb.get(i);
@@ -96,7 +229,11 @@ public class CoordinateND<T> {
         else
           sizeArray[i] = coord.getSize();
       }
-      SparseArray.Builder<T> saBuilder = new SparseArray.Builder<>(sizeArray);
+      return sizeArray;
+    }
+
+    SparseArray<T> buildSparseArray(List<T> records, Formatter info) {
+      SparseArray.Builder<T> saBuilder = new SparseArray.Builder<>(getSizeArray());
 
       int[] index = new int[coordb.size()];
       for (T gr : records) {
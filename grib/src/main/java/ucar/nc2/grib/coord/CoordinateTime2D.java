@@ -941,18 +941,22 @@ public class CoordinateTime2D extends CoordinateTimeAbstract implements Coordina
 
     @Override
     public void addAll(Coordinate coord) {
-      super.addAll(coord);
-      for (Object val : coord.getValues()) {
-        Time2D val2D = (Time2D) val;
-        runBuilder.add(val2D.refDate);
-        CoordinateBuilderImpl<Grib2Record> timeBuilder = timeBuilders.get(val2D.refDate);
-        if (timeBuilder == null) {
-          timeBuilder = isTimeInterval ? new CoordinateTimeIntv.Builder2(cust, code, timeUnit, val2D.getRefDate())
-              : new CoordinateTime.Builder2(code, timeUnit, val2D.getRefDate());
-          timeBuilders.put(val2D.refDate, timeBuilder);
-        }
-        timeBuilder.add(isTimeInterval ? val2D.tinv : val2D.time);
+      for (Object val : coord.getValues())
+        add(val);
+    }
+
+    @Override
+    public void add(Object val) {
+      super.add(val);
+      Time2D val2D = (Time2D) val;
+      runBuilder.add(val2D.refDate);
+      CoordinateBuilderImpl<Grib2Record> timeBuilder = timeBuilders.get(val2D.refDate);
+      if (timeBuilder == null) {
+        timeBuilder = isTimeInterval ? new CoordinateTimeIntv.Builder2(cust, code, timeUnit, val2D.getRefDate())
+            : new CoordinateTime.Builder2(code, timeUnit, val2D.getRefDate());
+        timeBuilders.put(val2D.refDate, timeBuilder);
       }
+      timeBuilder.add(isTimeInterval ? val2D.tinv : val2D.time);
     }
 
     @Override
@@ -1038,18 +1042,22 @@ public class CoordinateTime2D extends CoordinateTimeAbstract implements Coordina
 
     @Override
     public void addAll(Coordinate coord) {
-      super.addAll(coord);
-      for (Object val : coord.getValues()) {
-        Time2D val2D = (Time2D) val;
-        runBuilder.add(val2D.refDate);
-        CoordinateBuilderImpl<Grib1Record> timeBuilder = timeBuilders.get(val2D.refDate);
-        if (timeBuilder == null) {
-          timeBuilder = isTimeInterval ? new CoordinateTimeIntv.Builder1(cust, code, timeUnit, val2D.getRefDate())
-              : new CoordinateTime.Builder1(cust, code, timeUnit, val2D.getRefDate());
-          timeBuilders.put(val2D.refDate, timeBuilder);
-        }
-        timeBuilder.add(isTimeInterval ? val2D.tinv : val2D.time);
+      for (Object val : coord.getValues())
+        add(val);
+    }
+
+    @Override
+    public void add(Object val) {
+      super.add(val);
+      Time2D val2D = (Time2D) val;
+      runBuilder.add(val2D.refDate);
+      CoordinateBuilderImpl<Grib1Record> timeBuilder = timeBuilders.get(val2D.refDate);
+      if (timeBuilder == null) {
+        timeBuilder = isTimeInterval ? new CoordinateTimeIntv.Builder1(cust, code, timeUnit, val2D.getRefDate())
+            : new CoordinateTime.Builder1(cust, code, timeUnit, val2D.getRefDate());
+        timeBuilders.put(val2D.refDate, timeBuilder);
       }
+      timeBuilder.add(isTimeInterval ? val2D.tinv : val2D.time);
     }
 
     @Override
@@ -190,13 +190,14 @@ public class CoordinateVert implements Coordinate {
       this.vunit = vunit;
     }
 
+    // values are rounded to float, as they are stored in the collection index
     @Override
     public Object extract(Grib2Record gr) {
       Grib2Pds pds = gr.getPDS();
       if (Grib2Utils.isLayer(pds))
-        return new VertCoordValue(pds.getLevelValue1(), pds.getLevelValue2());
+        return new VertCoordValue((float) pds.getLevelValue1(), (float) pds.getLevelValue2());
       else
-        return new VertCoordValue(pds.getLevelValue1());
+        return new VertCoordValue((float) pds.getLevelValue1());
     }
 
     @Override
@@ -218,15 +219,16 @@ public class CoordinateVert implements Coordinate {
       this.code = code;
     }
 
+    // values are rounded to float, as they are stored in the collection index
     @Override
     public Object extract(Grib1Record gr) {
       Grib1SectionProductDefinition pds = gr.getPDSsection();
       boolean isLayer = cust.isLayer(pds.getLevelType());
       Grib1ParamLevel plevel = cust.getParamLevel(pds);
       if (isLayer)
-        return new VertCoordValue(plevel.getValue1(), plevel.getValue2());
+        return new VertCoordValue((float) plevel.getValue1(), (float) plevel.getValue2());
       else
-        return new VertCoordValue(plevel.getValue1());
+        return new VertCoordValue((float) plevel.getValue1());
     }
 
     @Override
@@ -20,6 +20,8 @@ import java.util.List;
  * Conceptually a multidim array with shape[n] and totalsize.
  * Stored as track[totalsize] = {0 = missing, else = index+1 into List<T> content}
  * So we dont have to store missing Ts.
+ * The track is kept in bytes or shorts when the content is small enough, and only its non-missing values are kept
+ * when that takes less memory.
  *
  * @author caron
  * @since 11/24/13
@@ -32,7 +34,7 @@ public class SparseArray<T> {
   private final int[] stride; // for index calculation
   private final int totalSize; // product of sizes
 
-  private final int[] track; // index into content, size totalSize. LOOK could use byte, short to save memory ??
+  private final Track track; // index into content, size totalSize.
   private final List<T> content; // keep the things in a List.
   private final int ndups;
 
@@ -41,12 +43,12 @@ public class SparseArray<T> {
     this.totalSize = calcTotalSize(shape);
     this.stride = calcStrides(shape);
 
-    this.track = track;
-    this.content = Collections.unmodifiableList(content);
-    this.ndups = ndups;
-
     if (track.length != totalSize)
       throw new IllegalStateException("track len " + track.length + " != totalSize " + totalSize);
+
+    this.track = Track.of(track);
+    this.content = Collections.unmodifiableList(content);
+    this.ndups = ndups;
   }
 
   static int calcTotalSize(int[] shape) {
@@ -77,9 +79,11 @@ public class SparseArray<T> {
 
   @Nullable
   public T getContent(int idx) {
-    if (idx >= track.length || idx < 0)
-      logger.error("BAD index get=" + idx + " max= " + track.length, new Throwable());
-    int contentIdx = track[idx] - 1;
+    if (idx >= totalSize || idx < 0) {
+      logger.error("BAD index get=" + idx + " max= " + totalSize, new Throwable());
+      throw new ArrayIndexOutOfBoundsException(idx);
+    }
+    int contentIdx = track.get(idx) - 1;
     if (contentIdx < 0)
       return null; // missing
     return content.get(contentIdx);
@@ -102,12 +106,18 @@ public class SparseArray<T> {
     return totalSize;
   }
 
+  /** The track as an int[totalsize]; this is a copy, so use getTrack(idx) for single values. */
   public int[] getTrack() {
-    return track;
+    int[] result = new int[totalSize];
+    for (int i = 0; i < totalSize; i++)
+      result[i] = track.get(i);
+    return result;
   }
 
   public int getTrack(int idx) {
-    return track[idx];
+    if (idx >= totalSize || idx < 0) // the track encodings don't all check
+      throw new ArrayIndexOutOfBoundsException(idx);
+    return track.get(idx);
   }
 
   public List<T> getContent() {
@@ -115,19 +125,11 @@ public class SparseArray<T> {
   }
 
   public int countNotMissing() { // LOOK could use content.size()
-    int result = 0;
-    for (int idx : track)
-      if (idx > 0)
-        result++;
-    return result;
+    return track.countNotMissing();
   }
 
   public int countMissing() {
-    int result = 0;
-    for (int idx : track)
-      if (idx == 0)
-        result++;
-    return result;
+    return totalSize - track.countNotMissing();
   }
 
   public float getDensity() {
@@ -165,7 +167,7 @@ public class SparseArray<T> {
     if (sizes.size() == 1) {
       int len = sizes.get(0);
       for (int i = 0; i < len; i++) {
-        boolean hasRecord = track[offset + i] > 0;
+        boolean hasRecord = track.get(offset + i) > 0;
         if (hasRecord)
           f.format("X");
         else
@@ -197,8 +199,137 @@ public class SparseArray<T> {
   public void showTracks(Formatter f) {
     int count = 0;
     f.format("Track%n");
-    for (int t : track)
-      f.format(" %4d %5d %n", count++, t);
+    for (int i = 0; i < totalSize; i++)
+      f.format(" %4d %5d %n", count++, track.get(i));
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////
+
+  /** The values of a track, stored in the smallest of the encodings below. */
+  private abstract static class Track {
+    abstract int get(int idx);
+
+    abstract int countNotMissing();
+
+    static Track of(int[] track) {
+      int max = 0;
+      int notMissing = 0;
+      for (int value : track) {
+        max = Math.max(max, value);
+        if (value > 0)
+          notMissing++;
+      }
+      int width = (max <= 0xff) ? 1 : (max <= 0xffff) ? 2 : 4;
+
+      // a mostly missing track keeps the positions and values of its non-missing entries
+      if ((long) notMissing * (4 + width) < (long) track.length * width) {
+        int[] where = new int[notMissing];
+        int[] values = new int[notMissing];
+        int count = 0;
+        for (int i = 0; i < track.length; i++) {
+          if (track[i] > 0) {
+            where[count] = i;
+            values[count++] = track[i];
+          }
+        }
+        return new NotMissingTrack(where, of(values, width));
+      }
+      return of(track, width);
+    }
+
+    private static Track of(int[] track, int width) {
+      switch (width) {
+        case 1:
+          return new ByteTrack(track);
+        case 2:
+          return new ShortTrack(track);
+        default:
+          return new IntTrack(track);
+      }
+    }
+  }
+
+  private static class ByteTrack extends Track {
+    private final byte[] values;
+
+    ByteTrack(int[] track) {
+      values = new byte[track.length];
+      for (int i = 0; i < track.length; i++)
+        values[i] = (byte) track[i];
+    }
+
+    int get(int idx) {
+      return values[idx] & 0xff;
+    }
+
+    int countNotMissing() {
+      int result = 0;
+      for (byte value : values)
+        if (value != 0)
+          result++;
+      return result;
+    }
+  }
+
+  private static class ShortTrack extends Track {
+    private final short[] values;
+
+    ShortTrack(int[] track) {
+      values = new short[track.length];
+      for (int i = 0; i < track.length; i++)
+        values[i] = (short) track[i];
+    }
+
+    int get(int idx) {
+      return values[idx] & 0xffff;
+    }
+
+    int countNotMissing() {
+      int result = 0;
+      for (short value : values)
+        if (value != 0)
+          result++;
+      return result;
+    }
+  }
+
+  private static class IntTrack extends Track {
+    private final int[] values;
+
+    IntTrack(int[] track) {
+      values = track;
+    }
+
+    int get(int idx) {
+      return values[idx];
+    }
+
+    int countNotMissing() {
+      int result = 0;
+      for (int value : values)
+        if (value > 0)
+          result++;
+      return result;
+    }
+  }
+
+  private static class NotMissingTrack extends Track {
+    private final int[] where; // sorted positions of the non-missing values
+    private final Track values;
+
+    NotMissingTrack(int[] where, Track values) {
+      this.where = where;
+      this.values = values;
+    }
+
+    int get(int idx) {
+      int pos = Arrays.binarySearch(where, idx);
+      return (pos < 0) ? 0 : values.get(pos);
+    }
+
+    int countNotMissing() {
+      return where.length;
+    }
   }
 
   ////////////////////////////////////////////////////////////////////////////////////
@@ -210,7 +341,7 @@ public class SparseArray<T> {
     private int totalSize; // product of sizes
     private int ndups; // number of duplicates
 
-    private int[] track; // index into content, size totalSize. LOOK use byte, short to save memory ??
+    private int[] track; // index into content, size totalSize. compacted by finish()
     private List<T> content; // keep the things in a List.
 
     public Builder(int... shape) {
@@ -236,6 +367,12 @@ public class SparseArray<T> {
       track[where] = content.size(); // 1-based so that 0 = missing, so content at where = content.get(track[where]-1)
     }
 
+    // add a thing that is known to be replaced by a duplicate added later, so only kept in the content
+    public void addDuplicate(T thing) {
+      content.add(thing);
+      ndups++;
+    }
+
     int calcIndex(int... index) {
       assert index.length == shape.length;
       int result = 0;
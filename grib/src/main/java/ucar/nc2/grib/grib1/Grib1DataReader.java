@@ -5,6 +5,7 @@
 
 package ucar.nc2.grib.grib1;
 
+import ucar.nc2.grib.BitUnpacker;
 import ucar.nc2.grib.GribData;
 import ucar.nc2.grib.GribNumbers;
 import ucar.nc2.iosp.BitReader;
@@ -22,6 +23,14 @@ import java.util.Formatter;
 public class Grib1DataReader {
   private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(Grib1DataReader.class);
   private static final float staticMissingValue = Float.NaN;
+  // values at a time, when unpacking with BitUnpacker
+  private static final int CHUNK = 4096;
+
+  // System property name for -D flag: decode simple packing with the original BitReader decoder instead of
+  // BitUnpacker, for comparison, default false
+  static final String BITREADER = "unidata.grib1.decode.bitreader";
+
+  private static final boolean useBulkUnpacker = !Boolean.getBoolean(BITREADER);
 
   ///////////////////////////////// Grib1Data
 
@@ -85,6 +94,15 @@ public class Grib1DataReader {
   }
 
   public float[] getData(RandomAccessFile raf, byte[] bitmap) throws IOException {
+    return getData(raf, bitmap, useBulkUnpacker);
+  }
+
+  /**
+   * Same as getData(raf, bitmap), choosing the decoder.
+   *
+   * @param bulk decode simple packing with BitUnpacker, else with the original BitReader decoder
+   */
+  float[] getData(RandomAccessFile raf, byte[] bitmap, boolean bulk) throws IOException {
     GribData.Info info = Grib1SectionBinaryData.getBinaryDataInfo(raf, startPos);
 
     if (!info.isGridPointData()) {
@@ -92,7 +110,7 @@ public class Grib1DataReader {
       throw new IllegalStateException("Grib1BinaryDataSection: (octet 4, 1st half) not grid point data");
     }
 
-    return info.isSimplePacking() ? readSimplePacking(raf, bitmap, info)
+    return info.isSimplePacking() ? readSimplePacking(raf, bitmap, info, bulk)
         : readExtendedComplexPacking(raf, bitmap, info);
   }
 
@@ -107,7 +125,8 @@ public class Grib1DataReader {
    */
 
   // raf will be positioned at byte 12
-  private float[] readSimplePacking(RandomAccessFile raf, byte[] bitmap, GribData.Info info) throws IOException {
+  private float[] readSimplePacking(RandomAccessFile raf, byte[] bitmap, GribData.Info info, boolean bulk)
+      throws IOException {
     boolean isConstant = (info.numberOfBits == 0);
     int unusedbits = info.flag & 15;
 
@@ -122,8 +141,12 @@ public class Grib1DataReader {
             raf.getLocation());
         throw new IllegalStateException("Bitmap section length!= grid length");
       }
-      BitReader reader = new BitReader(raf, startPos + 11);
       values = new float[nPts];
+      if (!isConstant && bulk && unpackSimplePacking(raf, info, ref, scale, bitmap, values)) {
+        scanningModeCheck(values, scanMode, nxRaw);
+        return values;
+      }
+      BitReader reader = new BitReader(raf, startPos + 11);
       for (int i = 0; i < nPts; i++) {
         if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
           if (!isConstant) {
@@ -147,9 +170,11 @@ public class Grib1DataReader {
             logger.warn("nptsExpected {} != npts {}", nptsExpected, nPts);
           values = new float[nPts];
         }
-        BitReader reader = new BitReader(raf, startPos + 11);
-        for (int i = 0; i < values.length; i++) {
-          values[i] = ref + scale * reader.bits2UInt(info.numberOfBits);
+        if (!bulk || !unpackSimplePacking(raf, info, ref, scale, null, values)) {
+          BitReader reader = new BitReader(raf, startPos + 11);
+          for (int i = 0; i < values.length; i++) {
+            values[i] = ref + scale * reader.bits2UInt(info.numberOfBits);
+          }
         }
         scanningModeCheck(values, scanMode, nxRaw);
 
@@ -164,6 +189,45 @@ public class Grib1DataReader {
     return values;
   }
 
+  /*
+   * Same as the BitReader loops of readSimplePacking(), with the data section unpacked by BitUnpacker, CHUNK values at
+   * a time, and the bitmap expanded as the values are scaled. The float arithmetic is the same, so the results are
+   * identical. Returns false, without reading, for widths over 31 bits or a data section too short for the values,
+   * which are left to the BitReader loops.
+   */
+  private boolean unpackSimplePacking(RandomAccessFile raf, GribData.Info info, float ref, float scale, byte[] bitmap,
+      float[] values) throws IOException {
+    int nb = info.numberOfBits;
+    int nvalues = (bitmap == null) ? values.length : GribNumbers.countBits(bitmap, values.length);
+    if (nb > 31 || (long) nb * nvalues > 8 * (info.dataLength - 11)) {
+      return false;
+    }
+
+    BitUnpacker unpacker = BitUnpacker.read(raf, startPos + 11, (int) (info.dataLength - 11));
+    int[] X = new int[Math.min(nvalues, CHUNK)];
+    int count = 0; // next point in values
+    for (int start = 0; start < nvalues; start += X.length) {
+      int n = Math.min(X.length, nvalues - start);
+      unpacker.next(nb, X, 0, n);
+      if (bitmap == null) {
+        for (int i = 0; i < n; i++) {
+          values[count++] = ref + scale * X[i];
+        }
+      } else {
+        for (int i = 0; i < n; i++) {
+          while (!GribNumbers.testBitIsSet(bitmap[count / 8], count % 8)) {
+            values[count++] = staticMissingValue;
+          }
+          values[count++] = ref + scale * X[i];
+        }
+      }
+    }
+    while (count < values.length) { // bitmap is not set for the remaining points
+      values[count++] = staticMissingValue;
+    }
+    return true;
+  }
+
   /*
    * From WMO Manual on Codes I-2 bi - 5
    * (3) When second-order grid-point packing is indicated, the actual value Y (in the units of Code table 2)
@@ -196,6 +196,19 @@ public class Grib1Record {
     return gr.readData(raf);
   }
 
+  /**
+   * Read the length of the GRIB-1 message starting at startPos, including the fix for large ECMWF messages.
+   * Moves the file pointer.
+   *
+   * @param raf from this RandomAccessFile
+   * @param startPos message starts here
+   * @return length in bytes of the message
+   */
+  public static long readMessageLength(RandomAccessFile raf, long startPos) throws IOException {
+    raf.seek(startPos);
+    return new Grib1SectionIndicator(raf).getMessageLength();
+  }
+
   // debugging, do not use
   public static Grib1Record lastRecordRead;
 
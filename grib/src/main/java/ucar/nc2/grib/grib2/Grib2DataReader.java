@@ -6,6 +6,7 @@
 package ucar.nc2.grib.grib2;
 
 import javax.annotation.Nullable;
+import ucar.nc2.grib.BitUnpacker;
 import ucar.nc2.grib.GribNumbers;
 import ucar.nc2.grib.GribUtils;
 import ucar.nc2.iosp.BitReader;
@@ -39,6 +40,12 @@ public class Grib2DataReader {
     }
   }
 
+  // System property name for -D flag: decode with the original BitReader decoders where BitUnpacker is implemented,
+  // for comparison, default false
+  static final String BITREADER = "unidata.grib2.decode.bitreader";
+
+  private static final boolean useBulkUnpacker = !Boolean.getBoolean(BITREADER);
+
   ///////////////////////////////////////////////
 
   private final int dataTemplate;
@@ -81,6 +88,16 @@ public class Grib2DataReader {
    */
 
   public float[] getData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs) throws IOException {
+    return getData(raf, bitmapSection, gdrs, useBulkUnpacker);
+  }
+
+  /**
+   * Same as getData(raf, bitmapSection, gdrs), choosing the decoder.
+   *
+   * @param bulk decode with BitUnpacker where it is implemented, else with the original BitReader decoders
+   */
+  float[] getData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs, boolean bulk)
+      throws IOException {
     this.bitmap = bitmapSection.getBitmap(raf);
     this.bitmapIndicator = bitmapSection.getBitMapIndicator();
 
@@ -97,13 +114,13 @@ public class Grib2DataReader {
     float[] data;
     switch (dataTemplate) {
       case 0:
-        data = getData0(raf, (Grib2Drs.Type0) gdrs);
+        data = bulk ? getData0Bulk(raf, (Grib2Drs.Type0) gdrs) : getData0(raf, (Grib2Drs.Type0) gdrs);
         break;
       case 2:
         data = getData2(raf, (Grib2Drs.Type2) gdrs);
         break;
       case 3:
-        data = getData3(raf, (Grib2Drs.Type3) gdrs);
+        data = bulk ? getData3Bulk(raf, (Grib2Drs.Type3) gdrs) : getData3(raf, (Grib2Drs.Type3) gdrs);
         break;
       case 40:
         data = getData40(raf, (Grib2Drs.Type40) gdrs);
@@ -248,6 +265,52 @@ public class Grib2DataReader {
     return data;
   }
 
+  // values at a time, when unpacking with BitUnpacker
+  private static final int CHUNK = 4096;
+
+  /*
+   * Same as getData0(), with the data section unpacked by BitUnpacker, CHUNK values at a time, and the bitmap
+   * expanded as the values are scaled. The float arithmetic is the same as in getData0(), so the results are identical.
+   */
+  private float[] getData0Bulk(RandomAccessFile raf, Grib2Drs.Type0 gdrs) throws IOException {
+    int nb = gdrs.numberOfBits;
+    float DD = (float) java.lang.Math.pow((double) 10, (double) gdrs.decimalScaleFactor);
+    float R = gdrs.referenceValue;
+    float EE = (float) java.lang.Math.pow(2.0, (double) gdrs.binaryScaleFactor);
+
+    // getData0() reads past the end of the data section if it is too short, leave that to it
+    int nvalues = (bitmap == null) ? totalNPoints : GribNumbers.countBits(bitmap, totalNPoints);
+    if (nb > 31 || (long) nb * nvalues > 8L * (dataLength - 5)) {
+      return getData0(raf, gdrs);
+    }
+
+    float[] data = new float[totalNPoints];
+    BitUnpacker unpacker = BitUnpacker.read(raf, startPos + 5, dataLength - 5);
+    int[] X = new int[Math.min(nvalues, CHUNK)];
+    int count = 0; // next point in data
+    for (int start = 0; start < nvalues; start += X.length) {
+      int n = Math.min(X.length, nvalues - start);
+      unpacker.next(nb, X, 0, n);
+      if (bitmap == null) {
+        for (int i = 0; i < n; i++) {
+          data[count++] = (R + X[i] * EE) / DD;
+        }
+      } else {
+        for (int i = 0; i < n; i++) {
+          while (!GribNumbers.testBitIsSet(bitmap[count / 8], count % 8)) {
+            data[count++] = staticMissingValue;
+          }
+          data[count++] = (R + X[i] * EE) / DD;
+        }
+      }
+    }
+    while (count < totalNPoints) { // bitmap is not set for the remaining points
+      data[count++] = staticMissingValue;
+    }
+
+    return data;
+  }
+
   /*
    * Data template 7.2 – Grid point data – complex packing
    * Note: For most templates, details of the packing process are described in Regulation 92.9.4.
@@ -736,6 +799,210 @@ public class Grib2DataReader {
     return data;
   }
 
+  /*
+   * Same as getData3(), with the data section unpacked by BitUnpacker, a group at a time, and the missing values,
+   * spatial differencing, scaling and bitmap done in one pass over the values. The float arithmetic is the same as
+   * in getData3(), so the results are identical.
+   */
+  private float[] getData3Bulk(RandomAccessFile raf, Grib2Drs.Type3 gdrs) throws IOException {
+    int mvm = gdrs.missingValueManagement;
+    float mv = getMissingValue(gdrs);
+
+    float DD = (float) java.lang.Math.pow((double) 10, (double) gdrs.decimalScaleFactor);
+    float R = gdrs.referenceValue;
+    float EE = (float) java.lang.Math.pow(2.0, (double) gdrs.binaryScaleFactor);
+    float ref_val = R / DD;
+
+    int NG = gdrs.numberOfGroups;
+    if (NG == 0) {
+      return nGroups0(bitmapIndicator, ref_val, mv);
+    }
+
+    int os = gdrs.orderSpatial;
+    int nbitsd = gdrs.descriptorSpatial * 8;
+    if (nbitsd == 0) {
+      float[] data = new float[totalNPoints];
+      Arrays.fill(data, mv);
+      return data;
+    }
+    // widths that BitUnpacker cannot unpack, or that getData3() does not handle: leave them to getData3()
+    boolean missingValues = (mvm == 1 || mvm == 2);
+    if (nbitsd > 33 || gdrs.numberOfBits > 32 || gdrs.bitsGroupWidths > 32 || gdrs.bitsScaledGroupLength > 32
+        || (mvm != 0 && !missingValues) || (missingValues && gdrs.numberOfBits > 30)) {
+      return getData3(raf, gdrs);
+    }
+
+    BitUnpacker unpacker = BitUnpacker.read(raf, startPos + 5, dataLength - 5);
+
+    // [6-ww] 1st values of undifferenced scaled values and minimums
+    int ival1 = nextSignMagnitude(unpacker, nbitsd);
+    int ival2 = (os == 2) ? nextSignMagnitude(unpacker, nbitsd) : 0;
+    int minsd = nextSignMagnitude(unpacker, nbitsd);
+
+    // [ww +1]-xx reference values for groups (X1's)
+    int[] X1 = new int[NG];
+    if (gdrs.numberOfBits != 0) {
+      unpacker.alignToByte();
+      unpacker.next(gdrs.numberOfBits, X1, 0, NG);
+    }
+
+    // [xx +1 ]-yy number of bits used to encode each group
+    int[] NB = new int[NG];
+    if (gdrs.bitsGroupWidths != 0) {
+      unpacker.alignToByte();
+      unpacker.next(gdrs.bitsGroupWidths, NB, 0, NG);
+    }
+    int maxWidth = 0;
+    for (int i = 0; i < NG; i++) {
+      NB[i] += gdrs.referenceGroupWidths;
+      maxWidth = Math.max(maxWidth, NB[i]);
+    }
+    if (maxWidth > (missingValues ? 30 : 32)) {
+      return getData3(raf, gdrs);
+    }
+
+    // [yy +1 ]-zz the scaled group lengths
+    int[] L = new int[NG];
+    if (gdrs.bitsScaledGroupLength != 0) {
+      unpacker.alignToByte();
+      unpacker.next(gdrs.bitsScaledGroupLength, L, 0, NG);
+    }
+    int totalL = 0;
+    int maxLength = 0;
+    for (int i = 0; i < NG; i++) {
+      L[i] = (i == NG - 1) ? gdrs.lengthLastGroup : L[i] * gdrs.lengthIncrement + gdrs.referenceGroupLength;
+      totalL += L[i];
+      maxLength = Math.max(maxLength, L[i]);
+    }
+
+    if (totalL != (mvm != 0 ? totalNPoints : dataNPoints)) {
+      logger.warn("NPoints != " + (mvm != 0 ? "gds" : "drs") + ".nPts: " + totalL + "!=" + totalNPoints);
+      float[] data = new float[totalNPoints];
+      Arrays.fill(data, mv);
+      return data;
+    }
+
+    // [zz +1 ]-nn the X2 values. Each value X1 + X2 of a group is either missing, or is differenced in order
+    // with the other values that are not missing, scaled, and put at the next point set in the bitmap, if any.
+    float[] data = new float[totalNPoints];
+    int[] X2 = new int[maxLength];
+    int count = 0; // next point in data
+    int nvalues = 0; // number of values not missing, for the spatial differencing
+    float prev1 = 0; // previous two values
+    float prev2 = 0;
+    unpacker.alignToByte();
+
+    for (int i = 0; i < NG && count < totalNPoints; i++) {
+      int width = NB[i];
+      int len = L[i];
+      if (width != 0) {
+        unpacker.next(width, X2, 0, len);
+      }
+
+      // the common case, without missing values or bitmap, after the first values: no tests for each value
+      if (!missingValues && bitmap == null && (os == 1 || os == 2) && nvalues >= os && count + len <= totalNPoints) {
+        if (width == 0) {
+          Arrays.fill(X2, 0, len, 0);
+        }
+        int x1 = X1[i];
+        for (int j = 0; j < len; j++) {
+          float value = X2[j] + x1;
+          value += minsd;
+          value = (os == 1) ? value + prev1 : value + (2 * prev1) - prev2;
+          prev2 = prev1;
+          prev1 = value;
+          data[count + j] = (R + (value * EE)) / DD;
+        }
+        count += len;
+        nvalues += len;
+        continue;
+      }
+
+      boolean groupMissing = false;
+      int msng1 = 0;
+      int msng2 = 0;
+      if (missingValues) {
+        msng1 = bitsmv1[width != 0 ? width : gdrs.numberOfBits];
+        msng2 = msng1 - 1;
+        groupMissing = width == 0 && (X1[i] == msng1 || mvm == 2 && X1[i] == msng2);
+      }
+
+      for (int j = 0; j < len && count < totalNPoints; j++) {
+        float value;
+        boolean missing = groupMissing;
+        if (!missingValues) {
+          value = (width != 0) ? X2[j] + X1[i] : X1[i];
+        } else if (width != 0) {
+          value = X2[j]; // compare as float, as getData3() does
+          missing = value == msng1 || mvm == 2 && value == msng2;
+          value = value + X1[i];
+        } else {
+          value = X1[i];
+        }
+
+        if (missing) {
+          value = mv;
+        } else {
+          value = undifference(os, nvalues++, value, minsd, ival1, ival2, prev1, prev2);
+          prev2 = prev1;
+          prev1 = value;
+          value = (R + (value * EE)) / DD;
+        }
+
+        if (bitmap != null) {
+          while (count < totalNPoints && !GribNumbers.testBitIsSet(bitmap[count / 8], count % 8)) {
+            data[count++] = mv;
+          }
+          if (count == totalNPoints) {
+            break;
+          }
+        }
+        data[count++] = value;
+      }
+    }
+
+    // points not covered by the groups: getData3() differences zeros after dataNPoints, if no missing values
+    while (count < totalNPoints) {
+      if (missingValues || (bitmap != null && !GribNumbers.testBitIsSet(bitmap[count / 8], count % 8))) {
+        data[count++] = mv;
+      } else {
+        float value = undifference(os, nvalues++, 0, minsd, ival1, ival2, prev1, prev2);
+        prev2 = prev1;
+        prev1 = value;
+        data[count++] = (R + (value * EE)) / DD;
+      }
+    }
+
+    return data;
+  }
+
+  // the n-th value not missing, after undoing the spatial differencing, given the previous two
+  private static float undifference(int os, int n, float value, int minsd, int ival1, int ival2, float prev1,
+      float prev2) {
+    if (os == 1) { // F(n) = G(n) + F(n -1 )
+      if (n == 0) {
+        return ival1;
+      }
+      value += minsd;
+      return value + prev1;
+    } else if (os == 2) {
+      if (n == 0) {
+        return ival1;
+      } else if (n == 1) {
+        return ival2;
+      }
+      value += minsd;
+      return value + (2 * prev1) - prev2;
+    }
+    return value;
+  }
+
+  private static int nextSignMagnitude(BitUnpacker unpacker, int nbits) throws IOException {
+    int sign = unpacker.next(1);
+    int value = unpacker.next(nbits - 1);
+    return (sign == 1) ? -value : value;
+  }
+
   // Grid point data - JPEG 2000 code stream format
   private float[] getData40(RandomAccessFile raf, Grib2Drs.Type40 gdrs) throws IOException {
     // 6-xx jpeg2000 data block to decode
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import ucar.nc2.iosp.BitReader;
+
+/** Compare {@link BitUnpacker} with {@link BitReader}, for all widths and starting bits. */
+@RunWith(JUnit4.class)
+public class TestBitUnpacker {
+  private static final int N = 101;
+
+  private final byte[] bytes = new byte[40 * N];
+
+  public TestBitUnpacker() {
+    new Random(17).nextBytes(bytes);
+  }
+
+  @Test
+  public void testNext() throws IOException {
+    for (int nbits = 0; nbits <= 32; nbits++) {
+      for (int start = 0; start < 8; start++) {
+        BitReader reader = new BitReader(bytes);
+        reader.bits2UInt(start);
+        BitUnpacker unpacker = new BitUnpacker(bytes, bytes.length);
+        unpacker.skip(start);
+        for (int i = 0; i < N; i++) {
+          assertThat(unpacker.next(nbits)).isEqualTo((int) reader.bits2UInt(nbits));
+        }
+        assertThat(unpacker.getBitPos()).isEqualTo(start + (long) N * nbits);
+      }
+    }
+  }
+
+  @Test
+  public void testNextBulk() throws IOException {
+    int[] values = new int[N + 2];
+    for (int nbits = 0; nbits <= 32; nbits++) {
+      for (int start = 0; start < 8; start++) {
+        BitReader reader = new BitReader(bytes);
+        reader.bits2UInt(start);
+        BitUnpacker unpacker = new BitUnpacker(bytes, bytes.length);
+        unpacker.skip(start);
+        unpacker.next(nbits, values, 1, N);
+        for (int i = 0; i < N; i++) {
+          assertThat(values[i + 1]).isEqualTo((int) reader.bits2UInt(nbits));
+        }
+        assertThat(unpacker.getBitPos()).isEqualTo(start + (long) N * nbits);
+      }
+    }
+  }
+
+  @Test
+  public void testAlignToByte() throws IOException {
+    BitReader reader = new BitReader(bytes);
+    BitUnpacker unpacker = new BitUnpacker(bytes, bytes.length);
+    for (int nbits = 1; nbits <= 32; nbits++) {
+      assertThat(unpacker.next(nbits)).isEqualTo((int) reader.bits2UInt(nbits));
+      reader.incrByte();
+      unpacker.alignToByte();
+      reader.incrByte();
+      unpacker.alignToByte();
+    }
+  }
+
+  @Test
+  public void testEnd() throws IOException {
+    // the last values are at the end of the array, without padding
+    byte[] end = {(byte) 0x81, (byte) 0xff, 0x01};
+    BitUnpacker unpacker = new BitUnpacker(end, end.length);
+    int[] values = new int[3];
+    unpacker.next(7, values, 0, 3);
+    assertThat(values).isEqualTo(new int[] {0x40, 0x7f, 0x60});
+    assertThat(unpacker.next(3)).isEqualTo(1);
+
+    try {
+      unpacker.next(1);
+      throw new AssertionError("read past the end");
+    } catch (EOFException e) {
+      // expected
+    }
+  }
+}
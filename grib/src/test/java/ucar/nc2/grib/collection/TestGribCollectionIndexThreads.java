@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.re2j.Pattern;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Formatter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.featurecollection.FeatureCollectionType;
+import thredds.inventory.CollectionUpdateType;
+import thredds.inventory.filter.StreamFilter;
+import thredds.inventory.partition.DirectoryCollection;
+import ucar.nc2.util.CancelTask;
+
+/** Build a collection index with the gbx9 indexes made in parallel, and compare to making them one at a time. */
+@RunWith(JUnit4.class)
+public class TestGribCollectionIndexThreads {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int NFILES = 12;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File dir;
+
+  @Before
+  public void makeFiles() throws IOException {
+    dir = tempFolder.newFolder("collection");
+    makeFiles(new File("../grib/src/test/data/ds.sky.grib2"), dir);
+  }
+
+  @After
+  public void serial() {
+    GribCdmIndex.setIndexThreads(1);
+  }
+
+  @Test
+  public void testSameIndex() throws IOException {
+    byte[] serial = buildIndex(null);
+    assertThat(serial).isNotNull();
+
+    GribCdmIndex.setIndexThreads(4);
+    byte[] parallel = buildIndex(null);
+    assertThat(parallel).isEqualTo(serial);
+  }
+
+  @Test
+  public void testCancel() throws IOException {
+    GribCdmIndex.setIndexThreads(4);
+    CountingCancelTask cancelTask = new CountingCancelTask(3);
+    assertThat(buildIndex(cancelTask)).isNull();
+    assertThat(cancelTask.progress).isEqualTo(3);
+
+    cancelTask = new CountingCancelTask(NFILES + 1);
+    assertThat(buildIndex(cancelTask)).isNotNull();
+    assertThat(cancelTask.progress).isEqualTo(NFILES);
+  }
+
+  // build the ncx4 index from scratch, return its contents, or null if it was not written
+  private byte[] buildIndex(CancelTask cancelTask) throws IOException {
+    File[] oldIndexes = dir.listFiles((d, name) -> name.endsWith(".gbx9") || name.endsWith(GribCdmIndex.NCX_SUFFIX));
+    for (File index : oldIndexes)
+      assertThat(index.delete()).isTrue();
+
+    FeatureCollectionConfig config = new FeatureCollectionConfig("test", "test", FeatureCollectionType.GRIB2,
+        dir.getPath() + "/.*grib2$", null, null, null, "directory", null);
+    try (DirectoryCollection dcm = new DirectoryCollection(config.collectionName, dir.toPath(), true, null, logger)) {
+      dcm.putAuxInfo(FeatureCollectionConfig.AUX_CONFIG, config);
+      dcm.setStreamFilter(new StreamFilter(Pattern.compile(".*grib2$"), true));
+      boolean changed = GribCdmIndex.updateGribCollection(false, dcm, CollectionUpdateType.always,
+          FeatureCollectionConfig.PartitionType.directory, logger, new Formatter(), cancelTask);
+
+      File ncx = new File(dcm.getIndexFilename(GribCdmIndex.NCX_SUFFIX));
+      assertThat(ncx.exists()).isEqualTo(changed);
+      return changed ? Files.readAllBytes(ncx.toPath()) : null;
+    }
+  }
+
+  // Copy the single GRIB-2 message into NFILES files, changing the forecast time (template 4.0) in each.
+  private void makeFiles(File grib2, File dir) throws IOException {
+    byte[] message = Files.readAllBytes(grib2.toPath());
+    ByteBuffer bb = ByteBuffer.wrap(message);
+    int section4 = 16;
+    while (bb.get(section4 + 4) != 4)
+      section4 += bb.getInt(section4);
+
+    for (int time = 0; time < NFILES; time++) {
+      bb.putInt(section4 + 18, time); // forecast time, octets 19-22
+      Files.write(new File(dir, String.format("time%02d.grib2", time)).toPath(), message);
+    }
+  }
+
+  // cancel after some number of progress calls
+  private static class CountingCancelTask implements CancelTask {
+    private final int cancelAfter;
+    private int progress;
+
+    CountingCancelTask(int cancelAfter) {
+      this.cancelAfter = cancelAfter;
+    }
+
+    @Override
+    public boolean isCancel() {
+      return progress >= cancelAfter;
+    }
+
+    @Override
+    public boolean isDone() {
+      return false;
+    }
+
+    @Override
+    public void setDone(boolean done) {}
+
+    @Override
+    public void setError(String msg) {}
+
+    @Override
+    public void setProgress(String msg, int progress) {
+      this.progress = progress;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.re2j.Pattern;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.util.Formatter;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.featurecollection.FeatureCollectionType;
+import thredds.inventory.CollectionUpdateType;
+import thredds.inventory.filter.StreamFilter;
+import thredds.inventory.partition.DirectoryCollection;
+import ucar.nc2.grib.coord.SparseArray;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Read the records of each variable of some collection indexes, and compare them to the protobuf messages. */
+@RunWith(JUnit4.class)
+public class TestGribCollectionRecords {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testGrib1() throws IOException {
+    checkRecords("ECMWF.grib1", FeatureCollectionType.GRIB1);
+    checkRecords("afwa.grib1", FeatureCollectionType.GRIB1);
+  }
+
+  @Test
+  public void testGrib2() throws IOException {
+    checkRecords("cosmo-eu.grib2", FeatureCollectionType.GRIB2);
+    checkRecords("rap-native.grib2", FeatureCollectionType.GRIB2);
+    checkRecords("sref.pds2.grib2", FeatureCollectionType.GRIB2);
+  }
+
+  private void checkRecords(String filename, FeatureCollectionType type) throws IOException {
+    File dir = tempFolder.newFolder();
+    File file = new File(dir, filename);
+    Files.copy(new File("../grib/src/test/data", filename).toPath(), file.toPath());
+    String suffix = type == FeatureCollectionType.GRIB1 ? ".*grib1$" : ".*grib2$";
+
+    FeatureCollectionConfig config =
+        new FeatureCollectionConfig("test", "test", type, dir.getPath() + "/" + suffix, null, null, null, "file", null);
+    try (DirectoryCollection dcm = new DirectoryCollection(config.collectionName, dir.toPath(), true, null, logger)) {
+      dcm.putAuxInfo(FeatureCollectionConfig.AUX_CONFIG, config);
+      dcm.setStreamFilter(new StreamFilter(Pattern.compile(suffix), true));
+      assertThat(GribCdmIndex.updateGribCollection(type == FeatureCollectionType.GRIB1, dcm,
+          CollectionUpdateType.always, FeatureCollectionConfig.PartitionType.directory, logger, new Formatter()))
+              .isTrue();
+    }
+
+    String indexFilename = new File(dir, "test" + GribCdmIndex.NCX_SUFFIX).getPath();
+    int nvars = 0;
+    try (GribCollectionImmutable gc = GribCdmIndex.openCdmIndex(indexFilename, config, false, logger);
+        RandomAccessFile raf = new RandomAccessFile(indexFilename, "r")) {
+      assertThat(gc).isNotNull();
+      for (GribCollectionImmutable.Dataset ds : gc.getDatasets()) {
+        for (GribCollectionImmutable.GroupGC group : ds.getGroups()) {
+          for (GribCollectionImmutable.VariableIndex vi : group.getVariables()) {
+            byte[] b = new byte[vi.recordsLen];
+            raf.readFully(vi.recordsPos, b, 0, b.length);
+            checkSparseArray(GribCollectionProto.SparseArray.parseFrom(b), GribCollectionImmutable.readSparseArray(b));
+            nvars++;
+          }
+        }
+      }
+    }
+    assertThat(nvars).isGreaterThan(0);
+  }
+
+  private void checkSparseArray(GribCollectionProto.SparseArray proto, SparseArray<GribCollectionImmutable.Record> sa) {
+    assertThat(sa.getShape()).asList().isEqualTo(proto.getSizeList());
+    assertThat(sa.getTrack()).asList().isEqualTo(proto.getTrackList());
+    assertThat(sa.getNdups()).isEqualTo(proto.getNdups());
+
+    List<GribCollectionImmutable.Record> records = sa.getContent();
+    assertThat(records).hasSize(proto.getRecordsCount());
+    for (int i = 0; i < records.size(); i++) {
+      GribCollectionImmutable.Record record = records.get(i);
+      GribCollectionProto.Record pr = proto.getRecords(i);
+      assertThat(record.fileno).isEqualTo(pr.getFileno());
+      assertThat(record.pos).isEqualTo(pr.getStartPos());
+      assertThat(record.bmsOffset).isEqualTo(pr.getBmsOffset());
+      assertThat(record.drsOffset).isEqualTo(pr.getDrsOffset());
+    }
+
+    for (int i = 0; i < sa.getTotalSize(); i++) {
+      int track = proto.getTrack(i);
+      GribCollectionImmutable.Record record = sa.getContent(i);
+      if (track == 0)
+        assertThat(record).isNull();
+      else
+        assertThat(record.pos).isEqualTo(proto.getRecords(track - 1).getStartPos());
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.re2j.Pattern;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.featurecollection.FeatureCollectionType;
+import thredds.inventory.CollectionUpdateType;
+import thredds.inventory.MFile;
+import thredds.inventory.filter.StreamFilter;
+import thredds.inventory.partition.DirectoryCollection;
+import ucar.nc2.util.CloseableIterator;
+
+/**
+ * Update a collection index after files are added, changed or deleted, and compare to recreating it.
+ * The files that have not changed must not be read again, which is checked by deleting their gbx9 indexes.
+ */
+@RunWith(JUnit4.class)
+public class TestGribCollectionUpdate {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File dir;
+  private byte[] message;
+  private int section1, section4;
+
+  @Before
+  public void readMessage() throws IOException {
+    dir = tempFolder.newFolder("collection");
+    message = Files.readAllBytes(new File("../grib/src/test/data/ds.sky.grib2").toPath());
+    ByteBuffer bb = ByteBuffer.wrap(message);
+    section1 = 16;
+    section4 = section1;
+    while (bb.get(section4 + 4) != 4)
+      section4 += bb.getInt(section4);
+  }
+
+  @Test
+  public void testAddFiles() throws IOException {
+    for (int i = 0; i < 8; i++)
+      makeFile(i, i);
+    assertThat(updateIndex(CollectionUpdateType.always)).isTrue();
+
+    for (int i = 8; i < 12; i++)
+      makeFile(i, i);
+    checkUpdate(8, 9, 10, 11);
+  }
+
+  @Test
+  public void testChangeAndDeleteFiles() throws IOException {
+    for (int i = 0; i < 10; i++)
+      makeFile(i, i);
+    assertThat(updateIndex(CollectionUpdateType.always)).isTrue();
+
+    assertThat(getFile(4).delete()).isTrue();
+    makeFile(6, 50);
+    assertThat(getFile(6).setLastModified(getFile(6).lastModified() - 10000)).isTrue();
+    makeFile(10, 10);
+    checkUpdate(6, 10);
+  }
+
+  @Test
+  public void testDeleteFirstFile() throws IOException {
+    for (int i = 0; i < 8; i++)
+      makeFile(i, i);
+    assertThat(updateIndex(CollectionUpdateType.always)).isTrue();
+
+    // the first record of the variable is gone, so the next file is read again
+    List<String> names = getFileNames();
+    assertThat(new File(dir, names.get(0)).delete()).isTrue();
+    makeFile(8, 8);
+    checkUpdate(Integer.parseInt(names.get(1).substring(4, 6)), 8);
+  }
+
+  @Test
+  public void testDuplicates() throws IOException {
+    for (int i = 0; i < 6; i++)
+      makeFile(i, i);
+    Files.copy(getFile(2).toPath(), new File(dir, "time02copy.grib2").toPath());
+    assertThat(updateIndex(CollectionUpdateType.always)).isTrue();
+
+    makeFile(6, 2);
+    makeFile(7, 7);
+    checkUpdate(6, 7);
+  }
+
+  @Test
+  public void testNotChanged() throws IOException {
+    for (int i = 0; i < 4; i++)
+      makeFile(i, i);
+    assertThat(updateIndex(CollectionUpdateType.always)).isTrue();
+    assertThat(updateIndex(CollectionUpdateType.test)).isFalse();
+  }
+
+  // update the index, reading only the files that were added or changed, and compare to recreating it
+  private void checkUpdate(int... newFiles) throws IOException {
+    File[] gbx9s = dir.listFiles((d, name) -> name.endsWith(".gbx9"));
+    for (File gbx9 : gbx9s)
+      assertThat(gbx9.delete()).isTrue();
+
+    assertThat(updateIndex(CollectionUpdateType.test)).isTrue();
+    int nread = dir.listFiles((d, name) -> name.endsWith(".gbx9")).length;
+    assertThat(nread).isEqualTo(newFiles.length);
+    for (int i : newFiles)
+      assertThat(new File(getFile(i).getPath() + ".gbx9").exists()).isTrue();
+    byte[] updated = readIndex();
+
+    assertThat(updateIndex(CollectionUpdateType.always)).isTrue();
+    assertThat(updated).isEqualTo(readIndex());
+  }
+
+  private boolean updateIndex(CollectionUpdateType updateType) throws IOException {
+    try (DirectoryCollection dcm = makeCollection()) {
+      return GribCdmIndex.updateGribCollection(false, dcm, updateType, FeatureCollectionConfig.PartitionType.directory,
+          logger, new Formatter());
+    }
+  }
+
+  // the files in the order of the collection, which is not sorted
+  private List<String> getFileNames() throws IOException {
+    List<String> names = new ArrayList<>();
+    try (DirectoryCollection dcm = makeCollection(); CloseableIterator<MFile> iter = dcm.getFileIterator()) {
+      while (iter.hasNext())
+        names.add(iter.next().getName());
+    }
+    return names;
+  }
+
+  private DirectoryCollection makeCollection() throws IOException {
+    FeatureCollectionConfig config = new FeatureCollectionConfig("test", "test", FeatureCollectionType.GRIB2,
+        dir.getPath() + "/.*grib2$", null, null, null, "directory", null);
+    DirectoryCollection dcm = new DirectoryCollection(config.collectionName, dir.toPath(), true, null, logger);
+    dcm.putAuxInfo(FeatureCollectionConfig.AUX_CONFIG, config);
+    dcm.setStreamFilter(new StreamFilter(Pattern.compile(".*grib2$"), true));
+    return dcm;
+  }
+
+  private byte[] readIndex() throws IOException {
+    File[] ncx = dir.listFiles((d, name) -> name.endsWith(GribCdmIndex.NCX_SUFFIX));
+    assertThat(ncx).hasLength(1);
+    return Files.readAllBytes(ncx[0].toPath());
+  }
+
+  private File getFile(int fileno) {
+    return new File(dir, String.format("time%02d.grib2", fileno));
+  }
+
+  // Copy the single GRIB-2 message, with a run every 12 hours (octet 17 of section 1), and the forecast time
+  // (octets 19-22 of template 4.0).
+  private void makeFile(int fileno, int time) throws IOException {
+    ByteBuffer bb = ByteBuffer.wrap(message);
+    bb.put(section1 + 16, (byte) (12 * (fileno % 2)));
+    bb.putInt(section4 + 18, time);
+    Files.write(getFile(fileno).toPath(), message);
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.MAMath;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/** Read GRIB records in parallel with GribDataReader.setDecodeThreads, and compare to reading them serially. */
+@RunWith(JUnit4.class)
+public class TestGribDataReaderParallel {
+  private static final int NTIMES = 12;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void serial() {
+    GribDataReader.setDecodeThreads(1, 0);
+  }
+
+  @Test
+  public void testGrib1() throws IOException {
+    compare("../grib/src/test/data/single_point_gds.grib1",
+        "Downward_UV_radiation_at_the_surface_surface_1_Hour_Accumulation");
+  }
+
+  @Test
+  public void testGrib2() throws IOException {
+    File file = makeTimeSeries(new File("../grib/src/test/data/ds.sky.grib2"));
+    Array data = compare(file.getPath(), "Total_cloud_cover_surface");
+    assertThat(data.getShape()[0]).isEqualTo(NTIMES);
+
+    // each time has a different reference value, so a record put in the wrong place would be seen
+    Array first = data.slice(0, 0);
+    for (int time = 1; time < NTIMES; time++)
+      assertThat(MAMath.nearlyEquals(first, data.slice(0, time))).isFalse();
+  }
+
+  @Test
+  public void testChangeDecodeThreadsWhileReading() throws Exception {
+    String filename = makeTimeSeries(new File("../grib/src/test/data/ds.sky.grib2")).getPath();
+    String varName = "Total_cloud_cover_surface";
+    float[] serial = (float[]) read(filename, varName).get1DJavaArray(DataType.FLOAT); // also makes the index
+
+    GribDataReader.setDecodeThreads(4, 0);
+    ExecutorService readers = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(readers.submit(() -> {
+          for (int j = 0; j < 10; j++) {
+            assertThat((float[]) read(filename, varName).get1DJavaArray(DataType.FLOAT)).isEqualTo(serial);
+          }
+          return null;
+        }));
+      }
+      while (!results.stream().allMatch(Future::isDone)) {
+        GribDataReader.setDecodeThreads(2 + (int) (System.nanoTime() % 3), 0);
+        Thread.sleep(1);
+      }
+      for (Future<?> result : results) {
+        result.get(); // throws if a read failed
+      }
+    } finally {
+      readers.shutdown();
+    }
+  }
+
+  private Array compare(String filename, String varName) throws IOException {
+    Array serial = read(filename, varName);
+    assertThat(serial.getShape()[0]).isGreaterThan(1);
+    for (int perRequest : new int[] {0, 1, 3}) {
+      GribDataReader.setDecodeThreads(4, perRequest);
+      Array parallel = read(filename, varName);
+      assertThat(parallel.getShape()).isEqualTo(serial.getShape());
+      assertThat((float[]) parallel.get1DJavaArray(DataType.FLOAT))
+          .isEqualTo((float[]) serial.get1DJavaArray(DataType.FLOAT));
+    }
+    return serial;
+  }
+
+  private Array read(String filename, String varName) throws IOException {
+    try (NetcdfFile nc = NetcdfFiles.open(filename)) {
+      Variable var = nc.findVariable(varName);
+      assertThat(var).isNotNull();
+      return var.read().reduce();
+    }
+  }
+
+  // Copy the single GRIB-2 message NTIMES times, changing the forecast time (template 4.0) and the reference value.
+  private File makeTimeSeries(File grib2) throws IOException {
+    byte[] message = Files.readAllBytes(grib2.toPath());
+    ByteBuffer bb = ByteBuffer.wrap(message);
+    int section4 = 0;
+    int section5 = 0;
+    for (int pos = 16; bb.get(pos + 4) < 5 || section5 == 0; pos += bb.getInt(pos)) {
+      if (bb.get(pos + 4) == 4)
+        section4 = pos;
+      else if (bb.get(pos + 4) == 5)
+        section5 = pos;
+    }
+    assertThat(bb.getShort(section4 + 7)).isEqualTo((short) 0);
+    float refValue = bb.getFloat(section5 + 11);
+
+    File file = tempFolder.newFile("timeSeries.grib2");
+    ByteBuffer out = ByteBuffer.allocate(NTIMES * message.length);
+    for (int time = 0; time < NTIMES; time++) {
+      bb.putInt(section4 + 18, time); // forecast time, octets 19-22
+      bb.putFloat(section5 + 11, refValue + 10 * time); // octets 12-15
+      out.put(message);
+    }
+    Files.write(file.toPath(), out.array());
+    return file;
+  }
+}
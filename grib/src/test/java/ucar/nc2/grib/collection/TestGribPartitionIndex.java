@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.featurecollection.FeatureCollectionType;
+import thredds.inventory.CollectionUpdateType;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/**
+ * Build a directory partition, whose variables read their partitions from the record section of the index
+ * when data is first read, and compare its data to the partition files.
+ */
+@RunWith(JUnit4.class)
+public class TestGribPartitionIndex {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int NPARTS = 3;
+  private static final String VARNAME = "Total_cloud_cover_surface";
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File dir;
+
+  // Each partition has a copy of the single GRIB-2 message, with the reference day (octet 15 of section 1) and the
+  // reference value of the packing (octets 12-15 of section 5) changed, so that the data of each partition differs.
+  @Before
+  public void makePartitions() throws IOException {
+    dir = tempFolder.newFolder("partition");
+    byte[] message = Files.readAllBytes(new File("../grib/src/test/data/ds.sky.grib2").toPath());
+    ByteBuffer bb = ByteBuffer.wrap(message);
+    int section1 = 16;
+    int section5 = section1;
+    while (bb.get(section5 + 4) != 5)
+      section5 += bb.getInt(section5);
+    byte day = bb.get(section1 + 14);
+    float refValue = bb.getFloat(section5 + 11);
+
+    for (int partno = 0; partno < NPARTS; partno++) {
+      File partDir = new File(dir, String.format("p%d", partno));
+      assertThat(partDir.mkdir()).isTrue();
+      bb.put(section1 + 14, (byte) (day + partno));
+      bb.putFloat(section5 + 11, refValue + 10 * partno);
+      Files.write(new File(partDir, "ds.sky.grib2").toPath(), message);
+    }
+  }
+
+  @Test
+  public void testReadPartitions() throws IOException, InvalidRangeException {
+    FeatureCollectionConfig config = new FeatureCollectionConfig("test", "test", FeatureCollectionType.GRIB2,
+        dir.getPath() + "/**/.*grib2$", null, null, null, "directory", null);
+    assertThat(GribCdmIndex.updateGribCollection(config, CollectionUpdateType.always, logger)).isTrue();
+    File index = new File(dir, "test" + GribCdmIndex.NCX_SUFFIX);
+
+    // the partitions of the variable are in the record section
+    try (RandomAccessFile raf = new RandomAccessFile(index, "r")) {
+      byte[] magic = new byte[Grib2PartitionBuilder.MAGIC_START.length()];
+      raf.readFully(magic);
+      assertThat(new String(magic, StandardCharsets.UTF_8)).isEqualTo("Grib2Partition3Index");
+      raf.readInt(); // version
+      assertThat(raf.readLong()).isEqualTo(NPARTS * PartitionCollectionMutable.PARTITION_ENTRY_SIZE);
+    }
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(index.getPath())) {
+      Variable v = findVariable(ncfile);
+      assertThat(v.getShape()[0]).isEqualTo(NPARTS);
+
+      for (int partno = 0; partno < NPARTS; partno++) {
+        File file = new File(dir, String.format("p%d/ds.sky.grib2", partno));
+        try (NetcdfFile partFile = NetcdfFiles.open(file.getPath())) {
+          Array expected = partFile.findVariable(VARNAME).read().reduce();
+          assertThat(MAMath.nearlyEquals(expected, v.slice(0, partno).read().reduce())).isTrue();
+        }
+      }
+    }
+  }
+
+  private Variable findVariable(NetcdfFile ncfile) {
+    for (Variable v : ncfile.getVariables()) {
+      if (v.getShortName().equals(VARNAME))
+        return v;
+    }
+    throw new IllegalStateException(VARNAME);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/** Test {@link GribRecordCache}. */
+@RunWith(Parameterized.class)
+public class TestGribRecordCache {
+  private static final String filename = "../grib/src/test/data/single_point_gds.grib1";
+  private static final String varName = "Downward_UV_radiation_at_the_surface_surface_1_Hour_Accumulation";
+
+  @Parameterized.Parameters(name = "{0}")
+  public static List<Object[]> getTestParameters() {
+    List<Object[]> result = new ArrayList<>();
+    for (GribRecordCache.Storage storage : GribRecordCache.Storage.values()) {
+      result.add(new Object[] {storage});
+    }
+    return result;
+  }
+
+  private final GribRecordCache.Storage storage;
+
+  public TestGribRecordCache(GribRecordCache.Storage storage) {
+    this.storage = storage;
+  }
+
+  @After
+  public void after() {
+    GribDataReader.setRecordCache(null);
+    GribDataReader.setDecodeThreads(1, 0);
+  }
+
+  private float[] read() throws IOException {
+    try (NetcdfFile nc = NetcdfFiles.open(filename)) {
+      Variable var = nc.findVariable(varName);
+      assertThat(var).isNotNull();
+      return (float[]) var.read().get1DJavaArray(DataType.FLOAT);
+    }
+  }
+
+  @Test
+  public void testHits() throws IOException {
+    float[] expected = read();
+
+    GribRecordCache cache = new GribRecordCache("test", 1000 * 1000, storage);
+    GribDataReader.setRecordCache(cache);
+    assertThat(read()).isEqualTo(expected);
+    long nrecords = cache.getStats().missCount();
+    assertThat(nrecords).isGreaterThan(1L);
+    assertThat(cache.getStats().hitCount()).isEqualTo(0);
+    assertThat(cache.getSizeInBytes()).isGreaterThan(0L);
+
+    assertThat(read()).isEqualTo(expected);
+    assertThat(cache.getStats().hitCount()).isEqualTo(nrecords);
+
+    // the parallel read uses the same cache
+    GribDataReader.setDecodeThreads(4, 2);
+    assertThat(read()).isEqualTo(expected);
+    assertThat(cache.getStats().hitCount()).isEqualTo(2 * nrecords);
+    assertThat(cache.getStats().missCount()).isEqualTo(nrecords);
+
+    Formatter f = new Formatter();
+    cache.showStats(f);
+    cache.showCache(f);
+    assertThat(f.toString()).contains("hits=" + 2 * nrecords);
+  }
+
+  @Test
+  public void testParallelMisses() throws IOException {
+    float[] expected = read();
+
+    GribRecordCache cache = new GribRecordCache("test", 1000 * 1000, storage);
+    GribDataReader.setRecordCache(cache);
+    GribDataReader.setDecodeThreads(4, 0);
+    assertThat(read()).isEqualTo(expected);
+    long nrecords = cache.getStats().missCount();
+    assertThat(nrecords).isGreaterThan(1L);
+
+    GribDataReader.setDecodeThreads(1, 0);
+    assertThat(read()).isEqualTo(expected);
+    assertThat(cache.getStats().hitCount()).isEqualTo(nrecords);
+  }
+
+  @Test
+  public void testInvalidate() throws IOException {
+    GribRecordCache cache = new GribRecordCache("test", 1000 * 1000, storage);
+    GribDataReader.setRecordCache(cache);
+    read();
+    assertThat(cache.getSizeInBytes()).isGreaterThan(0L);
+
+    String dir = new File(filename).getParent();
+    cache.invalidateDirectory(dir + "Other");
+    assertThat(cache.getSizeInBytes()).isGreaterThan(0L);
+
+    cache.invalidateDirectory(dir);
+    assertThat(cache.getSizeInBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testNewFileVersion() {
+    GribRecordCache cache = new GribRecordCache("test", 1000 * 1000, storage);
+    float[] data = {1, 2, 3};
+    cache.put(new GribRecordCache.FileKey("data.grib2", 1000, 500), 100, 16, data);
+    assertThat(cache.get(new GribRecordCache.FileKey("data.grib2", 1000, 500), 100, 16)).isEqualTo(data);
+
+    // rewritten, or appended to
+    assertThat(cache.get(new GribRecordCache.FileKey("data.grib2", 2000, 500), 100, 16)).isNull();
+    assertThat(cache.get(new GribRecordCache.FileKey("data.grib2", 1000, 600), 100, 16)).isNull();
+
+    cache.invalidate("data.grib2");
+    assertThat(cache.getSizeInBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testMaxBytes() throws IOException {
+    GribRecordCache cache = new GribRecordCache("test", 40, storage);
+    GribDataReader.setRecordCache(cache);
+    read();
+    assertThat(cache.getSizeInBytes()).isAtMost(40L);
+    assertThat(cache.getStats().evictionCount()).isGreaterThan(0L);
+  }
+}
@@ -1,9 +1,17 @@
 package ucar.nc2.grib.coord;
 
+import static com.google.common.truth.Truth.assertThat;
+
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ucar.nc2.grib.grib2.Grib2Record;
+import ucar.nc2.grib.grib2.Grib2RecordScanner;
+import ucar.nc2.grib.grib2.Grib2Utils;
+import ucar.nc2.grib.grib2.table.Grib2Tables;
+import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.util.test.Assert2;
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Formatter;
@@ -45,6 +53,55 @@ public class TestCoordinateND {
     Assert2.assertNearlyEquals(reindexed.getSparseArray().getDensity(), .826446f);
   }
 
+  // building from the keys of the records must give the same result as building from the records
+  @Test
+  public void testFinishKeys() throws IOException {
+    List<Grib2Record> records = new ArrayList<>();
+    try (RandomAccessFile raf = new RandomAccessFile("../grib/src/test/data/berkes.grib2", "r")) {
+      Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+      while (scanner.hasNext()) {
+        Grib2Record gr = scanner.next();
+        if (records.isEmpty() || gr.getPDS().isTimeInterval() == records.get(0).getPDS().isTimeInterval())
+          records.add(gr);
+      }
+    }
+    assertThat(records.size()).isGreaterThan(10);
+
+    CoordinateND.Builder<Grib2Record> recordBuilder = makeBuilder(records.get(0));
+    for (Grib2Record gr : records)
+      recordBuilder.addRecord(gr);
+    CoordinateND<Grib2Record> expected = recordBuilder.finish(records, new Formatter());
+
+    CoordinateND.Builder<Grib2Record> builder = makeBuilder(records.get(0));
+    List<Integer> things = new ArrayList<>();
+    for (Grib2Record gr : records) {
+      builder.addRecordKeys(gr);
+      things.add(things.size());
+    }
+    CoordinateND<Integer> keyed = builder.finishKeys(things, new Formatter());
+
+    assertThat(keyed.getCoordinates()).isEqualTo(expected.getCoordinates());
+    SparseArray<Integer> sa = keyed.getSparseArray();
+    assertThat(sa.getShape()).isEqualTo(expected.getSparseArray().getShape());
+    assertThat(sa.getTrack()).isEqualTo(expected.getSparseArray().getTrack());
+    assertThat(sa.getNdups()).isEqualTo(expected.getSparseArray().getNdups());
+    for (int i = 0; i < sa.getTotalSize(); i++) {
+      Integer thing = sa.getContent(i);
+      assertThat(thing == null ? null : records.get(thing)).isSameInstanceAs(expected.getSparseArray().getContent(i));
+    }
+  }
+
+  private CoordinateND.Builder<Grib2Record> makeBuilder(Grib2Record first) {
+    Grib2Tables cust = Grib2Tables.factory(first);
+    int code = cust.convertTimeUnit(first.getPDS().getTimeUnit());
+    CoordinateND.Builder<Grib2Record> builder = new CoordinateND.Builder<>();
+    builder.addBuilder(
+        new CoordinateTime2D.Builder2(first.getPDS().isTimeInterval(), cust, Grib2Utils.getCalendarPeriod(code), code));
+    int levelType = first.getPDS().getLevelType1();
+    builder.addBuilder(new CoordinateVert.Builder2(levelType, cust.getVertUnit(levelType)));
+    return builder;
+  }
+
   public static CoordinateND<Short> makeCoordinateND(int rank, int size) {
     List<Coordinate> coords = new ArrayList<>();
     for (int i = 0; i < rank; i++)
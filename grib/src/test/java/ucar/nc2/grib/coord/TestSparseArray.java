@@ -1,5 +1,8 @@
 package ucar.nc2.grib.coord;
 
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,6 +11,7 @@ import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.List;
+import java.util.Random;
 
 /**
  * Test SparseArray class.
@@ -36,4 +40,66 @@ public class TestSparseArray {
 
     Assert2.assertNearlyEquals(sa.getDensity(), 0.906667f);
   }
+
+  // tracks whose values need a byte, short or int, with few to all values missing
+  @Test
+  public void testTrackEncodings() {
+    Random random = new Random(1234);
+    for (int ncontent : new int[] {0, 1, 255, 256, 65535, 65536, 100000}) {
+      for (double density : new double[] {0.0, 0.01, 0.2, 0.5, 1.0})
+        checkTrack(random, ncontent, density);
+    }
+  }
+
+  private void checkTrack(Random random, int ncontent, double density) {
+    int[] shape = new int[] {7, 11, 1300};
+    int totalSize = 7 * 11 * 1300;
+    int[] track = new int[totalSize];
+    List<Integer> content = new ArrayList<>();
+    for (int i = 0; i < ncontent; i++)
+      content.add(i);
+    if (ncontent > 0) {
+      for (int i = 0; i < totalSize; i++) {
+        if (random.nextDouble() < density)
+          track[i] = 1 + random.nextInt(ncontent);
+      }
+      track[random.nextInt(totalSize)] = ncontent; // the largest value
+    }
+
+    SparseArray<Integer> sa = new SparseArray<>(shape, track.clone(), content, 0);
+    assertThat(sa.getTrack()).isEqualTo(track);
+
+    int[] values = new int[totalSize];
+    Integer[] things = new Integer[totalSize];
+    Integer[] expected = new Integer[totalSize];
+    int notMissing = 0;
+    for (int i = 0; i < totalSize; i++) {
+      values[i] = sa.getTrack(i);
+      things[i] = sa.getContent(i);
+      expected[i] = (track[i] == 0) ? null : track[i] - 1;
+      if (track[i] > 0)
+        notMissing++;
+    }
+    assertThat(values).isEqualTo(track);
+    assertThat(things).isEqualTo(expected);
+    assertThat(sa.getContent(new int[] {6, 10, 1299})).isEqualTo(expected[totalSize - 1]);
+    assertThat(sa.countNotMissing()).isEqualTo(notMissing);
+    assertThat(sa.countMissing()).isEqualTo(totalSize - notMissing);
+
+    // every encoding rejects indexes out of range
+    for (int idx : new int[] {-1, totalSize}) {
+      try {
+        sa.getContent(idx);
+        fail();
+      } catch (ArrayIndexOutOfBoundsException e) {
+        // expected
+      }
+      try {
+        sa.getTrack(idx);
+        fail();
+      } catch (ArrayIndexOutOfBoundsException e) {
+        // expected
+      }
+    }
+  }
 }
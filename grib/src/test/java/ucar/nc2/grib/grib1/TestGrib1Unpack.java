@@ -15,6 +15,8 @@ import ucar.nc2.Variable;
 import ucar.nc2.grib.GribData;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import ucar.unidata.io.RandomAccessFile;
 import ucar.nc2.write.Ncdump;
 
 /**
@@ -27,6 +29,29 @@ import ucar.nc2.write.Ncdump;
 public class TestGrib1Unpack {
   private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  // Tests that simple packing unpacked with BitUnpacker is the same as with BitReader, with and without bitmaps
+  @Test
+  public void testBulkUnpacker() throws IOException {
+    String[] testfiles = {"../grib/src/test/data/ECMWF.grib1", "../grib/src/test/data/noaaRFC-QPE.grib1",
+        "../grib/src/test/data/radar_national.grib1", "../grib/src/test/data/rotatedlatlon.grib1",
+        "../grib/src/test/data/jma.grib1"};
+    for (String testfile : testfiles) {
+      try (RandomAccessFile raf = new RandomAccessFile(testfile, "r")) {
+        Grib1RecordScanner scanner = new Grib1RecordScanner(raf);
+        while (scanner.hasNext()) {
+          Grib1Record record = scanner.next();
+          Grib1Gds gds = record.getGDS();
+          Grib1DataReader reader = new Grib1DataReader(record.getPDSsection().getDecimalScale(), gds.getScanMode(),
+              gds.getNxRaw(), gds.getNyRaw(), gds.getNpts(), record.getDataSection().getStartingPosition());
+          byte[] bitmap = (record.getBitMapSection() == null) ? null : record.getBitMapSection().getBitmap(raf);
+          float[] expected = reader.getData(raf, bitmap, false);
+          float[] data = reader.getData(raf, bitmap, true);
+          Assert.assertTrue(testfile, Arrays.equals(expected, data));
+        }
+      }
+    }
+  }
+
   // Tests reading data with Ecmwf extended complex packing
   @Test
   public void testEcmwfExtendedComplexData() throws IOException {
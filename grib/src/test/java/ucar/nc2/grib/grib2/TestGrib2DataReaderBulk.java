@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 1998-2020 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import ucar.unidata.io.InMemoryRandomAccessFile;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * Compare the data decoded with {@link ucar.nc2.grib.BitUnpacker} to the data decoded with BitReader, which must be
+ * identical. The data sections are random, with random packing parameters.
+ */
+@RunWith(JUnit4.class)
+public class TestGrib2DataReaderBulk {
+  private final Random random = new Random(1234);
+
+  private float[] readData(byte[] sections, int npoints, boolean bulk) throws IOException {
+    try (RandomAccessFile raf = new InMemoryRandomAccessFile("test", sections)) {
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+      Grib2SectionDataRepresentation drs = new Grib2SectionDataRepresentation(raf);
+      Grib2SectionBitMap bms = new Grib2SectionBitMap(raf);
+      Grib2SectionData dataSection = new Grib2SectionData(raf);
+      return decode(raf, drs, bms, dataSection, npoints, 64, npoints, bulk);
+    }
+  }
+
+  private float[] decode(RandomAccessFile raf, Grib2SectionDataRepresentation drs, Grib2SectionBitMap bms,
+      Grib2SectionData dataSection, int npoints, int scanMode, int nx, boolean bulk) throws IOException {
+    Grib2DataReader reader = new Grib2DataReader(drs.getDataTemplate(), npoints, drs.getDataPoints(), scanMode, nx,
+        dataSection.getStartingPosition(), dataSection.getMsgLength());
+    return reader.getData(raf, bms, drs.getDrs(raf), bulk);
+  }
+
+  private void compare(byte[] sections, int npoints) throws IOException {
+    float[] expected = readData(sections, npoints, false);
+    float[] data = readData(sections, npoints, true);
+    assertThat(data).hasLength(npoints);
+    for (int i = 0; i < npoints; i++) {
+      if (Float.floatToRawIntBits(data[i]) != Float.floatToRawIntBits(expected[i]))
+        throw new AssertionError(String.format("data[%d] = %s != %s", i, data[i], expected[i]));
+    }
+  }
+
+  @Test
+  public void testDrs0() throws IOException {
+    for (int test = 0; test < 200; test++) {
+      int nbits = (test < 32) ? test : random.nextInt(32);
+      compare(makeDrs0(nbits, random.nextBoolean()), npoints);
+    }
+  }
+
+  @Test
+  public void testDrs3() throws IOException {
+    for (int test = 0; test < 500; test++) {
+      int order = 1 + random.nextInt(2);
+      int mvm = random.nextInt(3);
+      boolean hasBitmap = random.nextBoolean();
+      int refWidth = random.nextInt(10);
+      int bitsWidth = random.nextInt(5);
+      if (test % 10 == 0) { // all the same width, byte aligned
+        refWidth = 8 * (1 + random.nextInt(2));
+        bitsWidth = 0;
+      }
+      compare(makeDrs3(order, mvm, hasBitmap, refWidth, bitsWidth), npoints);
+    }
+  }
+
+  @Test
+  public void testDrs3File() throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile("../grib/src/test/data/ds.sky.grib2", "r")) {
+      Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+      int nrecords = 0;
+      while (scanner.hasNext()) {
+        Grib2Record gr = scanner.next();
+        assertThat(gr.getDataRepresentationSection().getDataTemplate()).isEqualTo(3);
+        int npoints = gr.getGDSsection().getNumberPoints();
+        int nx = gr.getGDS().getNxRaw();
+        float[] expected = decode(raf, gr.getDataRepresentationSection(), gr.getBitmapSection(), gr.getDataSection(),
+            npoints, gr.getScanMode(), nx, false);
+        float[] data = decode(raf, gr.getDataRepresentationSection(), gr.getBitmapSection(), gr.getDataSection(),
+            npoints, gr.getScanMode(), nx, true);
+        assertThat(data).isEqualTo(expected);
+        nrecords++;
+      }
+      assertThat(nrecords).isGreaterThan(0);
+    }
+  }
+
+  private int npoints;
+
+  // Sections 5 to 8 of a record with simple packing, with random values.
+  private byte[] makeDrs0(int nbits, boolean hasBitmap) throws IOException {
+    npoints = 1 + random.nextInt(5000);
+    byte[] bitmap = hasBitmap ? makeBitmap() : null;
+    int ndata = hasBitmap ? countBits(bitmap) : npoints;
+
+    BitWriter bits = new BitWriter();
+    for (int i = 0; i < ndata; i++)
+      bits.write(random.nextInt() >>> (32 - nbits), nbits);
+    byte[] data = bits.toByteArray();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    // section 5
+    out.writeInt(21);
+    out.writeByte(5);
+    out.writeInt(ndata);
+    out.writeShort(0);
+    out.writeFloat(random.nextFloat() * 1000 - 500);
+    out.writeShort(signMagnitude(random.nextInt(7) - 3)); // E
+    out.writeShort(signMagnitude(random.nextInt(3))); // D
+    out.writeByte(nbits);
+    out.writeByte(0);
+    writeSections678(out, bitmap, data);
+    return bytes.toByteArray();
+  }
+
+  private byte[] makeBitmap() {
+    byte[] bitmap = new byte[(npoints + 7) / 8];
+    random.nextBytes(bitmap);
+    return bitmap;
+  }
+
+  private int countBits(byte[] bitmap) {
+    int count = 0;
+    for (int i = 0; i < npoints; i++)
+      if ((bitmap[i / 8] & (0x80 >>> (i % 8))) != 0)
+        count++;
+    return count;
+  }
+
+  private void writeSections678(DataOutputStream out, byte[] bitmap, byte[] data) throws IOException {
+    // section 6
+    out.writeInt(6 + (bitmap == null ? 0 : bitmap.length));
+    out.writeByte(6);
+    out.writeByte(bitmap == null ? 255 : 0);
+    if (bitmap != null)
+      out.write(bitmap);
+    // section 7
+    out.writeInt(5 + data.length);
+    out.writeByte(7);
+    out.write(data);
+    // section 8
+    out.writeBytes("7777");
+  }
+
+  // Sections 5 to 8 of a record with complex packing and spatial differencing, with random values.
+  private byte[] makeDrs3(int order, int mvm, boolean hasBitmap, int refWidth, int bitsWidth) throws IOException {
+    npoints = 1 + random.nextInt(2000);
+    byte[] bitmap = hasBitmap ? makeBitmap() : null;
+    int ndata = hasBitmap ? countBits(bitmap) : npoints;
+    int nvalues = (mvm == 0) ? ndata : npoints;
+
+    // groups
+    int refLength = 1 + random.nextInt(10);
+    int lengthIncrement = 1 + random.nextInt(3);
+    int bitsLength = random.nextInt(5);
+    int maxLength = refLength + ((1 << bitsLength) - 1) * lengthIncrement;
+    List<Integer> scaledLengths = new ArrayList<>();
+    int remaining = nvalues;
+    while (remaining > maxLength) {
+      int scaled = random.nextInt(1 << bitsLength);
+      scaledLengths.add(scaled);
+      remaining -= refLength + scaled * lengthIncrement;
+    }
+    scaledLengths.add(random.nextInt(1 << bitsLength)); // the last group, its length is lengthLastGroup
+    int ngroups = scaledLengths.size();
+    int lengthLastGroup = remaining;
+
+    int nbitsRef = random.nextInt(12);
+    int descriptorBytes = 1 + random.nextInt(3);
+
+    BitWriter bits = new BitWriter();
+    for (int i = 0; i < order + 1; i++) { // ival1, ival2, minsd
+      bits.write(random.nextInt(2), 1);
+      bits.write(random.nextInt(100), 8 * descriptorBytes - 1);
+    }
+    int[] refs = new int[ngroups];
+    int[] widths = new int[ngroups];
+    if (nbitsRef != 0) {
+      bits.align();
+      for (int i = 0; i < ngroups; i++) {
+        refs[i] = random.nextInt(8) == 0 ? (1 << nbitsRef) - 1 - random.nextInt(2) : random.nextInt(1 << nbitsRef);
+        bits.write(refs[i], nbitsRef);
+      }
+    }
+    if (bitsWidth != 0) {
+      bits.align();
+      for (int i = 0; i < ngroups; i++) {
+        widths[i] = random.nextInt(1 << bitsWidth);
+        bits.write(widths[i], bitsWidth);
+      }
+    }
+    if (bitsLength != 0) {
+      bits.align();
+      for (int i = 0; i < ngroups; i++)
+        bits.write(scaledLengths.get(i), bitsLength);
+    }
+    bits.align();
+    for (int i = 0; i < ngroups; i++) {
+      int width = refWidth + widths[i];
+      int length = (i == ngroups - 1) ? lengthLastGroup : refLength + scaledLengths.get(i) * lengthIncrement;
+      for (int j = 0; width > 0 && j < length; j++) {
+        int max = (1 << width) - 1;
+        bits.write(random.nextInt(10) == 0 ? max - random.nextInt(2) : random.nextInt(max + 1), width);
+      }
+    }
+    byte[] data = bits.toByteArray();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    // section 5
+    out.writeInt(49);
+    out.writeByte(5);
+    out.writeInt(ndata);
+    out.writeShort(3);
+    out.writeFloat(random.nextFloat() * 1000 - 500);
+    out.writeShort(signMagnitude(random.nextInt(7) - 3)); // E
+    out.writeShort(signMagnitude(random.nextInt(3))); // D
+    out.writeByte(nbitsRef);
+    out.writeByte(0);
+    out.writeByte(1); // splitting method
+    out.writeByte(mvm);
+    out.writeFloat(9999);
+    out.writeFloat(-9999);
+    out.writeInt(ngroups);
+    out.writeByte(refWidth);
+    out.writeByte(bitsWidth);
+    out.writeInt(refLength);
+    out.writeByte(lengthIncrement);
+    out.writeInt(lengthLastGroup);
+    out.writeByte(bitsLength);
+    out.writeByte(order);
+    out.writeByte(descriptorBytes);
+    writeSections678(out, bitmap, data);
+    return bytes.toByteArray();
+  }
+
+  private static int signMagnitude(int value) {
+    return value < 0 ? 0x8000 | -value : value;
+  }
+
+  private static class BitWriter {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private int current;
+    private int nbits;
+
+    void write(int value, int width) {
+      for (int i = width - 1; i >= 0; i--) {
+        current = (current << 1) | ((value >>> i) & 1);
+        if (++nbits == 8) {
+          out.write(current);
+          current = 0;
+          nbits = 0;
+        }
+      }
+    }
+
+    void align() {
+      if (nbits > 0)
+        write(0, 8 - nbits);
+    }
+
+    byte[] toByteArray() {
+      align();
+      return out.toByteArray();
+    }
+  }
+}
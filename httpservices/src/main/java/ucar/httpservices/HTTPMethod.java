@@ -173,7 +173,7 @@ public class HTTPMethod implements Closeable, Comparable<HTTPMethod> {
   protected HTTPMethodStream methodstream = null; // wrapper for strm
   protected HttpRequestBase lastrequest = null;
   protected HttpResponse lastresponse = null;
-  protected long[] range = null;
+  protected long[] range = null; // pairs of (lo, hi)
   // State tracking
   protected boolean closed = false;
   protected boolean executed = false;
@@ -355,7 +355,13 @@ public class HTTPMethod implements Closeable, Comparable<HTTPMethod> {
     try {
       // add range header
       if (this.range != null) {
-        this.headers.put("Range", "bytes=" + range[0] + "-" + range[1]);
+        StringBuilder sb = new StringBuilder("bytes=");
+        for (int i = 0; i < range.length; i += 2) {
+          if (i > 0)
+            sb.append(",");
+          sb.append(range[i]).append("-").append(range[i + 1]);
+        }
+        this.headers.put("Range", sb.toString());
         range = null;
       }
       RequestBuilder rb = getRequestBuilder();
@@ -738,6 +744,20 @@ public class HTTPMethod implements Closeable, Comparable<HTTPMethod> {
     return this;
   }
 
+  /**
+   * Request several byte ranges at once. The server may respond with a multipart/byteranges body.
+   *
+   * @param ranges list of {lo, hi} pairs, inclusive
+   */
+  public HTTPMethod setRanges(List<long[]> ranges) {
+    range = new long[2 * ranges.size()];
+    for (int i = 0; i < ranges.size(); i++) {
+      range[2 * i] = ranges.get(i)[0];
+      range[2 * i + 1] = ranges.get(i)[1];
+    }
+    return this;
+  }
+
   //////////////////////////////////////////////////
   // Pass thru's to HTTPSession
 